@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.benchmarks.support.BenchmarkPayloads;
+import org.jboss.errai.benchmarks.support.BenchmarkQueueSession;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.MessageQueueImpl;
+import org.jboss.errai.bus.server.io.BufferHelper;
+import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.jboss.errai.bus.server.io.BufferDeliveryHandler#copyFromBuffer} framing a batch of buffered
+ * messages into a single JSON array with the {@link org.jboss.errai.bus.server.io.MultiMessageFilter}, as a
+ * long-poll response does. Each invocation buffers the batch first and then polls it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CopyFromBufferBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int batchSize;
+
+  @Param({"heap", "direct"})
+  public String allocation;
+
+  private MessageQueueImpl queue;
+  private Message message;
+  private byte[] payload;
+  private ByteArrayOutputStream outputStream;
+  private OutputStreamWriteAdapter adapter;
+
+  @Setup
+  public void setup() {
+    MappingContextSingleton.get();
+
+    final TransmissionBuffer buffer = "direct".equals(allocation)
+        ? TransmissionBuffer.createDirect() : TransmissionBuffer.create();
+
+    queue = new MessageQueueImpl(buffer, new BenchmarkQueueSession("session"), Integer.MAX_VALUE / 1000);
+    message = CommandMessage.createWithParts(BenchmarkPayloads.createParts("BenchmarkClient", 4));
+    payload = BufferHelper.encode(message);
+
+    outputStream = new ByteArrayOutputStream(1024 * 64);
+    adapter = new OutputStreamWriteAdapter(outputStream);
+  }
+
+  @Benchmark
+  public boolean bufferAndPoll() throws IOException {
+    for (int i = 0; i < batchSize; i++) {
+      queue.offerEncoded(message, payload);
+    }
+
+    outputStream.reset();
+    return queue.poll(adapter);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.benchmarks.support.BenchmarkPayloads;
+import org.jboss.errai.benchmarks.support.BenchmarkQueueSession;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.io.MessageFactory;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MessageFactory#createCommandMessage(QueueSession, java.io.InputStream)}, which turns the body of
+ * an inbound request into messages, with either the <tt>stream</tt> or the <tt>pull</tt> JSON decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessageFactoryBenchmark {
+
+  @Param({"1", "10"})
+  public int messages;
+
+  @Param({"stream", "pull"})
+  public String decoder;
+
+  private QueueSession session;
+  private byte[] requestBody;
+
+  @Setup
+  public void setup() {
+    MappingContextSingleton.get();
+    MessageFactory.setPullParserEnabled("pull".equals(decoder));
+
+    session = new BenchmarkQueueSession("session");
+
+    final byte[] message = ErraiProtocolServer.encodePayloadToByteArray(BenchmarkPayloads.createParts("Service", 4));
+    final int size = 2 + message.length * messages + (messages - 1);
+    requestBody = new byte[size];
+
+    int pos = 0;
+    requestBody[pos++] = '[';
+    for (int i = 0; i < messages; i++) {
+      if (i != 0) {
+        requestBody[pos++] = ',';
+      }
+      System.arraycopy(message, 0, requestBody, pos, message.length);
+      pos += message.length;
+    }
+    requestBody[pos] = ']';
+  }
+
+  @Benchmark
+  public List<Message> createCommandMessage() throws IOException {
+    return MessageFactory.createCommandMessage(session, new ByteArrayInputStream(requestBody));
+  }
+}
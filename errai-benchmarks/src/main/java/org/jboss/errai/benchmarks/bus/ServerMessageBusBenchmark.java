@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.benchmarks.support.BenchmarkBus;
+import org.jboss.errai.benchmarks.support.BenchmarkPayloads;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.ServerMessageBusImpl;
+import org.jboss.errai.common.client.protocols.Resources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of routing a message through {@link ServerMessageBusImpl} to a local service, to a subject all
+ * remote sessions are subscribed to (which is written once to the broadcast color), and to a single remote session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ServerMessageBusBenchmark {
+  private static final String LOCAL_SUBJECT = "BenchmarkService";
+  private static final String REMOTE_SUBJECT = "BenchmarkClient";
+
+  @Param({"1", "100"})
+  public int sessions;
+
+  private ServerMessageBusImpl bus;
+  private QueueSession[] queueSessions;
+  private int nextSession;
+
+  @Setup
+  public void setup() {
+    bus = BenchmarkBus.create(32);
+    bus.subscribe(LOCAL_SUBJECT, new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+      }
+    });
+
+    queueSessions = new QueueSession[sessions];
+    for (int i = 0; i < sessions; i++) {
+      queueSessions[i] = BenchmarkBus.connect(bus, "session-" + i, REMOTE_SUBJECT);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    bus.stop();
+  }
+
+  @Benchmark
+  public void sendGlobalLocal(final Blackhole blackhole) {
+    final Message message = CommandMessage.createWithParts(BenchmarkPayloads.createParts(LOCAL_SUBJECT, 4));
+    bus.sendGlobal(message);
+    blackhole.consume(message);
+  }
+
+  @Benchmark
+  public void sendGlobalBroadcast(final Blackhole blackhole) {
+    final Message message = CommandMessage.createWithParts(BenchmarkPayloads.createParts(REMOTE_SUBJECT, 4));
+    bus.sendGlobal(message);
+    blackhole.consume(message);
+  }
+
+  @Benchmark
+  public void sendToSession(final Blackhole blackhole) {
+    final QueueSession session = queueSessions[nextSession++ % sessions];
+    final Message message = CommandMessage.createWithParts(BenchmarkPayloads.createParts(REMOTE_SUBJECT, 4))
+        .setResource(Resources.Session.name(), session);
+    bus.send(message);
+    blackhole.consume(message);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.benchmarks.support.BenchmarkHttpSession;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.server.CompactSessionProvider;
+import org.jboss.errai.bus.server.HttpSessionProvider;
+import org.jboss.errai.bus.server.api.SessionProvider;
+import org.jboss.errai.bus.server.io.websockets.WebSocketTokenManager;
+import org.jboss.errai.bus.server.util.LocalContext;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpSession;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained per client by a {@link SessionProvider}, for the default {@link HttpSessionProvider}
+ * and the {@link CompactSessionProvider}. Each client gets an <tt>HttpSession</tt> and a queue session, which is used
+ * the way the bus uses it on connect: an attribute is set, a web socket token is handed out and redeemed, and the
+ * local context of a service is read.
+ * <p/>
+ * The footprint is reported as the <tt>bytesPerSession</tt> secondary result, and includes the
+ * <tt>HttpSession</tt> itself. The primary result is the time to look up the queue session of a client, which is
+ * done on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SessionFootprintBenchmark {
+
+  @Param({"10000", "50000", "100000"})
+  public int sessions;
+
+  @Param({"http", "compact"})
+  public String provider;
+
+  private SessionProvider<HttpSession> sessionProvider;
+  private HttpSession[] httpSessions;
+  private String[] remoteQueueIds;
+  private long bytesPerSession;
+  private int next;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Footprint {
+    public long bytesPerSession;
+  }
+
+  @Setup
+  public void setup() {
+    final long before = usedHeap();
+
+    sessionProvider = "compact".equals(provider) ? new CompactSessionProvider() : new HttpSessionProvider();
+    httpSessions = new HttpSession[sessions];
+    remoteQueueIds = new String[sessions];
+
+    for (int i = 0; i < sessions; i++) {
+      httpSessions[i] = new BenchmarkHttpSession("HttpSession" + i);
+      remoteQueueIds[i] = "queue" + i;
+
+      final QueueSession session = sessionProvider.createOrGetSession(httpSessions[i], remoteQueueIds[i]);
+      session.setAttribute("ClientId", "client" + i);
+      WebSocketTokenManager.verifyOneTimeToken(session, WebSocketTokenManager.getNewOneTimeToken(session));
+      LocalContext.get(session).getAttribute(String.class, "Service");
+    }
+
+    bytesPerSession = (usedHeap() - before) / sessions;
+  }
+
+  @Benchmark
+  public QueueSession lookupSession(final Footprint footprint) {
+    footprint.bytesPerSession = bytesPerSession;
+
+    // stride through the clients, so the lookups do not stay in the cache.
+    final int i = next = (next + 7919) % sessions;
+    return sessionProvider.createOrGetSession(httpSessions[i], remoteQueueIds[i]);
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
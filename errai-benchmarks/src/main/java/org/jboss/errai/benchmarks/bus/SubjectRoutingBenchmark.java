@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.benchmarks.support.BenchmarkBus;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.DeliveryPlan;
+import org.jboss.errai.bus.server.ServerMessageBusImpl;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares routing a message to a local-only subscription, and building a message from the standard parts, with the
+ * way it was done before subjects were routed through a single lookup and the standard parts were stored by ordinal.
+ * The <tt>legacy</tt> benchmarks reproduce the previous code paths: up to six lookups in the subscription map,
+ * including two <tt>"local:"</tt> concatenations, and a <tt>HashMap</tt> of parts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SubjectRoutingBenchmark {
+
+  @Param({"10", "1000"})
+  public int subjects;
+
+  private ServerMessageBusImpl bus;
+  private final Map<String, DeliveryPlan> legacySubscriptions = new ConcurrentHashMap<String, DeliveryPlan>();
+  private String[] subjectNames;
+  private int nextSubject;
+
+  @Setup
+  public void setup() {
+    bus = BenchmarkBus.create(1);
+
+    final MessageCallback callback = new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+      }
+    };
+
+    subjectNames = new String[subjects];
+    for (int i = 0; i < subjects; i++) {
+      // built at runtime, so the subjects are not the interned constants.
+      subjectNames[i] = new StringBuilder("LocalService").append(i).toString();
+      bus.subscribeLocal(subjectNames[i], callback);
+      legacySubscriptions.put("local:".concat(subjectNames[i]), DeliveryPlan.newDeliveryPlan(callback));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    bus.stop();
+  }
+
+  private String nextSubject() {
+    return subjectNames[nextSubject++ % subjects];
+  }
+
+  @Benchmark
+  public void routeLocal(final Blackhole blackhole) {
+    final Message message = CommandMessage.create().toSubject(nextSubject());
+    bus.sendGlobal(message);
+    blackhole.consume(message);
+  }
+
+  @Benchmark
+  public void routeLocalLegacy(final Blackhole blackhole) {
+    final Map<String, Object> parts = new HashMap<String, Object>();
+    parts.put(MessageParts.ToSubject.name(), nextSubject());
+    final Message message = CommandMessage.createWithParts(parts);
+    message.commit();
+
+    final String subject = message.getSubject();
+    if (!legacySubscriptions.containsKey(subject) && !legacySubscriptions.containsKey("local:".concat(subject))) {
+      throw new IllegalStateException("no subscription for " + subject);
+    }
+
+    if (legacySubscriptions.containsKey(subject)) {
+      legacySubscriptions.get(subject).deliver(message);
+    }
+    else if (legacySubscriptions.containsKey("local:".concat(subject))) {
+      legacySubscriptions.get("local:".concat(subject)).deliver(message);
+    }
+    blackhole.consume(message);
+  }
+
+  @Benchmark
+  public Object buildMessage() {
+    final Message message = CommandMessage.create()
+        .toSubject("BenchmarkService")
+        .command("Go")
+        .set(MessageParts.ReplyTo, "BenchmarkClient")
+        .set(MessageParts.PriorityProcessing, "1")
+        .set(MessageParts.Value, "value");
+    return message.get(String.class, MessageParts.ReplyTo) + message.getSubject() + message.getCommandType();
+  }
+
+  @Benchmark
+  public Object buildMessageLegacy() {
+    final Message message = CommandMessage.createWithParts(new HashMap<String, Object>())
+        .toSubject("BenchmarkService")
+        .command("Go")
+        .set(MessageParts.ReplyTo, "BenchmarkClient")
+        .set(MessageParts.PriorityProcessing, "1")
+        .set(MessageParts.Value, "value");
+    return message.get(String.class, MessageParts.ReplyTo) + message.getSubject() + message.getCommandType();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.bus.server.io.AbstractByteWriteAdapter;
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writers and readers of a single {@link TransmissionBuffer} running at the same time: four threads write
+ * to one color while one thread drains it, as happens when many services reply to one busy session.
+ * <p/>
+ * Nothing stops the writers from lapping the reader, so when the reader falls more than half the buffer behind, or
+ * is lapped in the middle of a read, it skips ahead to the head, the same way a queue recovers from an overflow.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransmissionBufferContentionBenchmark {
+  private static final int SEGMENT_SIZE = 256;
+  private static final int SEGMENTS = 1024 * 128;
+
+  @Param({"128", "2048"})
+  public int messageSize;
+
+  @Param({"heap", "direct"})
+  public String allocation;
+
+  private TransmissionBuffer buffer;
+  private BufferColor color;
+  private byte[] message;
+
+  @Setup
+  public void setup() {
+    buffer = "direct".equals(allocation)
+        ? TransmissionBuffer.createDirect(SEGMENT_SIZE, SEGMENTS) : TransmissionBuffer.create(SEGMENT_SIZE, SEGMENTS);
+    color = BufferColor.getNewColorFromHead(buffer);
+
+    message = new byte[messageSize];
+    for (int i = 0; i < messageSize; i++) {
+      message[i] = (byte) ('a' + (i % 26));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ReaderState {
+    final CountingWriteAdapter adapter = new CountingWriteAdapter();
+  }
+
+  static class CountingWriteAdapter extends AbstractByteWriteAdapter {
+    long count;
+
+    @Override
+    public void write(final byte b) throws IOException {
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(4)
+  public void write() throws IOException {
+    buffer.write(message, color);
+  }
+
+  @Benchmark
+  @Group("readWrite")
+  @GroupThreads(1)
+  public long read(final ReaderState state) throws IOException {
+    final long head = buffer.getHeadSequence();
+    if (head - color.getSequence().get() > SEGMENTS / 2) {
+      color.getSequence().set(head);
+    }
+
+    try {
+      buffer.read(state.adapter, color);
+    }
+    catch (RuntimeException e) {
+      // lapped mid-read: the chunk we were reading was overwritten.
+      color.getSequence().set(buffer.getHeadSequence());
+    }
+    return state.adapter.count;
+  }
+}
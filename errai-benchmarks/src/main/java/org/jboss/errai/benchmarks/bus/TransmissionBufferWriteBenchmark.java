@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.bus;
+
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Measures the throughput of many producers writing to the broadcast color of a single {@link TransmissionBuffer}.
+ * <p/>
+ * The <tt>colorLocked</tt> mode holds the color's lock around every write, which is how all writes were serialized
+ * before the buffer moved to claim-and-publish writes, and serves as the baseline for the <tt>lockFree</tt> mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransmissionBufferWriteBenchmark {
+
+  @Param({"lockFree", "colorLocked"})
+  public String mode;
+
+  @Param({"128", "2048"})
+  public int messageSize;
+
+  private TransmissionBuffer buffer;
+  private BufferColor color;
+  private byte[] message;
+  private boolean locked;
+
+  @Setup
+  public void setup() {
+    buffer = TransmissionBuffer.create();
+    color = BufferColor.getAllBuffersColor();
+    locked = "colorLocked".equals(mode);
+
+    message = new byte[messageSize];
+    for (int i = 0; i < messageSize; i++) {
+      message[i] = (byte) ('a' + (i % 26));
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void write1Thread() throws IOException {
+    write();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void write4Threads() throws IOException {
+    write();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void write16Threads() throws IOException {
+    write();
+  }
+
+  private void write() throws IOException {
+    if (locked) {
+      final ReentrantLock lock = color.getLock();
+      lock.lock();
+      try {
+        buffer.write(message, color);
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    else {
+      buffer.write(message, color);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.marshalling;
+
+import org.jboss.errai.benchmarks.support.BenchmarkPayloads;
+import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a message payload with {@link ErraiProtocol#encodePayload(Map)}, or streaming it into a reused
+ * buffer with {@link ErraiProtocol#encodePayload(StringBuilder, Map)}, and decoding the resulting JSON with
+ * {@link JSONStreamDecoder#decode(java.io.InputStream)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ErraiProtocolBenchmark {
+
+  @Param({"4", "256"})
+  public int listSize;
+
+  private Map<String, Object> parts;
+  private byte[] encoded;
+  private final StringBuilder buffer = new StringBuilder();
+
+  @Setup
+  public void setup() throws IOException {
+    MappingContextSingleton.get();
+
+    parts = BenchmarkPayloads.createParts("BenchmarkService", listSize);
+    encoded = ErraiProtocol.encodePayload(parts).getBytes("UTF-8");
+  }
+
+  @Benchmark
+  public String encodePayload() {
+    return ErraiProtocol.encodePayload(parts);
+  }
+
+  @Benchmark
+  public int encodePayloadIntoBuffer() {
+    buffer.setLength(0);
+    ErraiProtocol.encodePayload(buffer, parts);
+    return buffer.length();
+  }
+
+  @Benchmark
+  public EJValue decode() throws IOException {
+    return JSONStreamDecoder.decode(new ByteArrayInputStream(encoded));
+  }
+}
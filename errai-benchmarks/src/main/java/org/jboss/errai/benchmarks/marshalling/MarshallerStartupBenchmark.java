@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.benchmarks.marshalling;
+
+import org.jboss.errai.marshalling.client.api.MarshallerFactory;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.util.ServerMarshallUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to get the static server marshallers when they have to be generated and compiled, and
+ * when they can be loaded from the errai cache. The warmup shot of {@link #loadFromCache()} fills the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class MarshallerStartupBenchmark {
+
+  @Setup
+  public void setup() {
+    // loads the mapping definitions, which the generated marshallers are built from.
+    MappingContextSingleton.get();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = {"-Derrai.marshalling.force_static_marshallers=true",
+      "-Derrai.marshalling.use_native_javac=true",
+      "-Derrai.devel.nocache=true"})
+  public Class<? extends MarshallerFactory> generateAndCompile() {
+    return ServerMarshallUtil.getGeneratedMarshallerFactoryForServer();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = {"-Derrai.marshalling.force_static_marshallers=true",
+      "-Derrai.marshalling.use_native_javac=true"})
+  public Class<? extends MarshallerFactory> loadFromCache() {
+    return ServerMarshallUtil.getGeneratedMarshallerFactoryForServer();
+  }
+}
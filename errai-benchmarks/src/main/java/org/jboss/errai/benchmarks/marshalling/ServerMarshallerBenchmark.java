@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.benchmarks.marshalling;
+
+import org.jboss.errai.common.client.PageRequest;
+import org.jboss.errai.marshalling.client.Marshalling;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures marshalling and demarshalling a single portable object with the dynamic server marshallers, which go
+ * through {@link org.jboss.errai.marshalling.server.marshallers.DefaultDefinitionMarshaller}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ServerMarshallerBenchmark {
+
+  private PageRequest request;
+  private String json;
+
+  @Setup
+  public void setup() {
+    MappingContextSingleton.get();
+
+    final Map<String, Object> state = new HashMap<String, Object>();
+    state.put("id", "42");
+    request = new PageRequest("BenchmarkPage", state);
+    json = Marshalling.toJSON(request);
+  }
+
+  @Benchmark
+  public String marshall() {
+    return Marshalling.toJSON(request);
+  }
+
+  @Benchmark
+  public PageRequest demarshall() {
+    return Marshalling.fromJSON(json, PageRequest.class);
+  }
+}
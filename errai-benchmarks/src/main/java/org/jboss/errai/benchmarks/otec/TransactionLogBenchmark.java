@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.benchmarks.otec;
+
+import static org.jboss.errai.otec.client.mutation.MutationType.Delete;
+import static org.jboss.errai.otec.client.mutation.MutationType.Insert;
+
+import org.jboss.errai.otec.client.LogQuery;
+import org.jboss.errai.otec.client.OTClientEngine;
+import org.jboss.errai.otec.client.OTEngine;
+import org.jboss.errai.otec.client.OTEntity;
+import org.jboss.errai.otec.client.StringState;
+import org.jboss.errai.otec.client.TransactionLog;
+import org.jboss.errai.otec.client.operation.OTOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the transaction log queries a transform makes when a remote operation arrives a few revisions late, for
+ * entities with a growing history. The history interleaves a local and a remote agent, and alternately inserts and
+ * deletes, so the document itself stays small.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransactionLogBenchmark {
+  private static final int LAG = 8;
+
+  @Param({"1024", "16384", "131072"})
+  private int history;
+
+  private OTEngine remoteEngine;
+  private TransactionLog log;
+  private int remoteRevision;
+
+  @Setup
+  public void setup() {
+    final OTEngine engine = OTClientEngine.createEngineWithSinglePeer("local");
+    remoteEngine = OTClientEngine.createEngineWithSinglePeer("remote");
+    final OTEntity entity = engine.getEntityStateSpace().addEntity(StringState.of("Hello, World!"));
+
+    for (int i = 0; i < history; i++) {
+      final OTEngine author = i % 4 == 0 ? remoteEngine : engine;
+      final OTOperation op;
+      if (i % 2 == 0) {
+        op = author.getOperationsFactory().createOperation(entity).add(Insert, i % 13, "ab").build();
+      }
+      else {
+        op = author.getOperationsFactory().createOperation(entity).add(Delete, (i - 1) % 13, "ab").build();
+      }
+      ((OTClientEngine) engine).applyLocally(op);
+    }
+
+    log = entity.getTransactionLog();
+    remoteRevision = entity.getRevision() - LAG;
+  }
+
+  @Benchmark
+  public LogQuery effectiveStateForLateOperation() {
+    return log.getEffectiveStateForRevision(remoteRevision + 1);
+  }
+
+  @Benchmark
+  public List<OTOperation> remoteOpsSinceLateOperation() {
+    return log.getRemoteOpsSinceRevision(remoteEngine.getId(), remoteRevision);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.support;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.framework.BuiltInServices;
+import org.jboss.errai.bus.client.protocols.BusCommand;
+import org.jboss.errai.bus.server.ServerMessageBusImpl;
+import org.jboss.errai.bus.server.io.PageUtil;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.common.client.protocols.Resources;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+
+/**
+ * Sets up a {@link ServerMessageBusImpl} with connected remote sessions, the way the servlets would, but without a
+ * container.
+ */
+public final class BenchmarkBus {
+  private BenchmarkBus() {
+  }
+
+  /**
+   * Creates a bus with a heap allocated buffer of the specified size.
+   *
+   * @param bufferSizeMegabytes
+   *     the size of the transmission buffer in megabytes.
+   */
+  public static ServerMessageBusImpl create(final int bufferSizeMegabytes) {
+    // make sure the server marshallers are in place before anything is encoded.
+    MappingContextSingleton.get();
+
+    final ErraiServiceConfigurator config = new BenchmarkConfigurator();
+    ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(config, "false");
+    ErraiConfigAttribs.BUS_BUFFER_SIZE.set(config, String.valueOf(bufferSizeMegabytes));
+    ErraiConfigAttribs.BUS_BUFFER_ALLOCATION_MODE.set(config, "heap");
+    ErraiConfigAttribs.BUS_PAGING_DIRECTORY.set(config, PageUtil.getDefaultPageDirectory().getPath());
+
+    // the queues are never polled, so don't let the housekeeper expire them mid-run.
+    ErraiConfigAttribs.MESSAGE_QUEUE_TIMEOUT_SECS.set(config, String.valueOf(Integer.MAX_VALUE / 1000));
+
+    return new ServerMessageBusImpl(new BenchmarkErraiService(), config);
+  }
+
+  /**
+   * Connects a new remote session to the bus, as the client bus does when it starts up, subscribing it to the
+   * specified remote services.
+   *
+   * @param bus
+   *     the bus to connect to.
+   * @param sessionId
+   *     the id of the new session.
+   * @param remoteServices
+   *     a comma separated list of subjects the client is subscribed to.
+   *
+   * @return the session.
+   */
+  public static QueueSession connect(final ServerMessageBusImpl bus, final String sessionId,
+                                     final String remoteServices) {
+    final QueueSession session = new BenchmarkQueueSession(sessionId);
+
+    bus.sendGlobal(CommandMessage.create()
+        .toSubject(BuiltInServices.ServerBus.name())
+        .command(BusCommand.Associate)
+        .set(MessageParts.RemoteServices, remoteServices)
+        .setResource(Resources.Session.name(), session));
+
+    if (bus.getQueue(session) == null) {
+      throw new IllegalStateException("could not connect session: " + sessionId);
+    }
+
+    return session;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.support;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A minimal {@link HttpSession}, holding its attributes in a map the way a servlet container would.
+ */
+@SuppressWarnings("deprecation")
+public class BenchmarkHttpSession implements HttpSession {
+  private final String id;
+  private final long creationTime = System.currentTimeMillis();
+  private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+  public BenchmarkHttpSession(final String id) {
+    this.id = id;
+  }
+
+  @Override
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public long getLastAccessedTime() {
+    return creationTime;
+  }
+
+  @Override
+  public ServletContext getServletContext() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setMaxInactiveInterval(final int interval) {
+  }
+
+  @Override
+  public int getMaxInactiveInterval() {
+    return 0;
+  }
+
+  @Override
+  public HttpSessionContext getSessionContext() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public synchronized Object getAttribute(final String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public Object getValue(final String name) {
+    return getAttribute(name);
+  }
+
+  @Override
+  public synchronized Enumeration<String> getAttributeNames() {
+    return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+  }
+
+  @Override
+  public synchronized String[] getValueNames() {
+    return attributes.keySet().toArray(new String[attributes.size()]);
+  }
+
+  @Override
+  public synchronized void setAttribute(final String name, final Object value) {
+    attributes.put(name, value);
+  }
+
+  @Override
+  public void putValue(final String name, final Object value) {
+    setAttribute(name, value);
+  }
+
+  @Override
+  public void removeAttribute(final String name) {
+    final Object value;
+    synchronized (this) {
+      value = attributes.remove(name);
+    }
+    if (value instanceof HttpSessionBindingListener) {
+      ((HttpSessionBindingListener) value).valueUnbound(new HttpSessionBindingEvent(this, name, value));
+    }
+  }
+
+  @Override
+  public void removeValue(final String name) {
+    removeAttribute(name);
+  }
+
+  @Override
+  public void invalidate() {
+    final ArrayList<String> names;
+    synchronized (this) {
+      names = new ArrayList<String>(attributes.keySet());
+    }
+    for (final String name : names) {
+      removeAttribute(name);
+    }
+  }
+
+  @Override
+  public boolean isNew() {
+    return false;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.support;
+
+import org.jboss.errai.common.client.protocols.MessageParts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representative message payloads shared by the benchmarks.
+ */
+public final class BenchmarkPayloads {
+  private BenchmarkPayloads() {
+  }
+
+  /**
+   * Creates the parts of a typical message: a subject, a command and a handful of application values, the last of
+   * which is a list of the specified number of strings, to let the size of the payload be varied.
+   */
+  public static Map<String, Object> createParts(final String subject, final int listSize) {
+    final Map<String, Object> parts = new HashMap<String, Object>();
+    parts.put(MessageParts.ToSubject.name(), subject);
+    parts.put(MessageParts.CommandType.name(), "Update");
+    parts.put("Name", "Errai \"benchmark\" message");
+    parts.put("Count", 42);
+    parts.put("Enabled", Boolean.TRUE);
+
+    final List<String> items = new ArrayList<String>(listSize);
+    for (int i = 0; i < listSize; i++) {
+      items.add("item-" + i);
+    }
+    parts.put("Items", items);
+
+    return parts;
+  }
+}
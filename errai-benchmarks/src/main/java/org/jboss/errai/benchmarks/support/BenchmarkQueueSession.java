@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.support;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.SessionEndListener;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link QueueSession} which is not backed by an HTTP session.
+ */
+public class BenchmarkQueueSession implements QueueSession {
+  private final String sessionId;
+  private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+  public BenchmarkQueueSession(final String sessionId) {
+    this.sessionId = sessionId;
+  }
+
+  @Override
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  @Override
+  public String getParentSessionId() {
+    return sessionId;
+  }
+
+  @Override
+  public boolean endSession() {
+    return true;
+  }
+
+  @Override
+  public void setAttribute(final String attribute, final Object value) {
+    attributes.put(attribute, value);
+  }
+
+  @Override
+  public <T> T getAttribute(final Class<T> type, final String attribute) {
+    return type.cast(attributes.get(attribute));
+  }
+
+  @Override
+  public Collection<String> getAttributeNames() {
+    return attributes.keySet();
+  }
+
+  @Override
+  public boolean hasAttribute(final String attribute) {
+    return attributes.containsKey(attribute);
+  }
+
+  @Override
+  public Object removeAttribute(final String attribute) {
+    return attributes.remove(attribute);
+  }
+
+  @Override
+  public void addSessionEndListener(final SessionEndListener listener) {
+  }
+
+  @Override
+  public boolean isValid() {
+    return true;
+  }
+}
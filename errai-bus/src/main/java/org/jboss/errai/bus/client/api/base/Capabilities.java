@@ -43,4 +43,11 @@ public enum Capabilities {
    * This message bus can communicate using Server-Sent Events
    */
   SSE,
+
+  /**
+   * This message bus can read and write payloads with the compact type encoding, in which the types of marshalled
+   * objects are listed once per payload and referred to by index. Unlike the other capabilities, this one does not
+   * name a transport.
+   */
+  CompactTypeEncoding,
 }
@@ -26,6 +26,7 @@ import org.jboss.errai.common.client.api.ResourceProvider;
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.common.client.types.TypeHandlerFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -103,7 +104,7 @@ public class CommandMessage implements Message {
   }
 
   CommandMessage() {
-    this.parts = new HashMap<String, Object>();
+    this.parts = new MessagePartMap();
     this.providedParts = new HashMap<String, ResourceProvider<?>>(5);
   }
 
@@ -125,34 +126,38 @@ public class CommandMessage implements Message {
 
   @Override
   public String getCommandType() {
-    return (String) parts.get(MessageParts.CommandType.name());
+    return (String) getPart(MessageParts.CommandType);
   }
 
   @Override
   public String getSubject() {
-    return String.valueOf(parts.get(MessageParts.ToSubject.name()));
+    return String.valueOf(getPart(MessageParts.ToSubject));
   }
 
   @Override
   public Message toSubject(final String subject) {
-    parts.put(MessageParts.ToSubject.name(), subject);
+    putPart(MessageParts.ToSubject, subject);
     return this;
   }
 
   @Override
   public Message command(final Enum<?> type) {
-    parts.put(MessageParts.CommandType.name(), type.name());
+    putPart(MessageParts.CommandType, type.name());
     return this;
   }
 
   @Override
   public Message command(final String type) {
-    parts.put(MessageParts.CommandType.name(), type);
+    putPart(MessageParts.CommandType, type);
     return this;
   }
 
   @Override
   public Message set(final Enum<?> part, final Object value) {
+    if (part instanceof MessageParts) {
+      putPart((MessageParts) part, value);
+      return this;
+    }
     return set(part.name(), value);
   }
 
@@ -180,7 +185,12 @@ public class CommandMessage implements Message {
 
   @Override
   public void remove(final Enum<?> part) {
-    parts.remove(part.name());
+    if (part instanceof MessageParts && parts instanceof MessagePartMap) {
+      ((MessagePartMap) parts).remove((MessageParts) part);
+    }
+    else {
+      parts.remove(part.name());
+    }
   }
 
   @Override
@@ -221,6 +231,10 @@ public class CommandMessage implements Message {
   @Override
   @SuppressWarnings({ "UnusedDeclaration" })
   public <T> T get(final Class<T> type, final Enum<?> part) {
+    if (part instanceof MessageParts) {
+      final Object value = getPart((MessageParts) part);
+      return value == null ? null : TypeHandlerFactory.convert(value.getClass(), type, value);
+    }
     return get(type, part.toString());
   }
 
@@ -233,6 +247,9 @@ public class CommandMessage implements Message {
 
   @Override
   public boolean hasPart(final Enum<?> part) {
+    if (part instanceof MessageParts && parts instanceof MessagePartMap) {
+      return ((MessagePartMap) parts).containsKey((MessageParts) part);
+    }
     return hasPart(part.name());
   }
 
@@ -241,6 +258,25 @@ public class CommandMessage implements Message {
     return parts.containsKey(part);
   }
 
+  /**
+   * Reads a standard part, straight from its slot if the parts are held in a {@link MessagePartMap}.
+   */
+  private Object getPart(final MessageParts part) {
+    if (parts instanceof MessagePartMap) {
+      return ((MessagePartMap) parts).get(part);
+    }
+    return parts.get(part.name());
+  }
+
+  private void putPart(final MessageParts part, final Object value) {
+    if (parts instanceof MessagePartMap) {
+      ((MessagePartMap) parts).put(part, value);
+    }
+    else {
+      parts.put(part.name(), value);
+    }
+  }
+
   @Override
   public Map<String, Object> getParts() {
     return parts;
@@ -322,6 +358,13 @@ public class CommandMessage implements Message {
     }
   }
 
+  /**
+   * Returns the resources of this message, which must not be modified.
+   */
+  public Map<String, Object> getResources() {
+    return resources == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(resources);
+  }
+
   @Override
   public void commit() {
     if (!providedParts.isEmpty()) {
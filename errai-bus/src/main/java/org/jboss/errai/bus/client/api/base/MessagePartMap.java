@@ -0,0 +1,313 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.client.api.base;
+
+import org.jboss.errai.common.client.protocols.MessageParts;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The parts of a {@link CommandMessage}. The standard {@link MessageParts} are stored in an array indexed by their
+ * ordinal, so setting and reading them does not hash or allocate an entry. All other parts are kept in a
+ * <tt>HashMap</tt>, which is only created once the first such part is set.
+ * <p/>
+ * As a <tt>Map</tt>, it behaves like any other map keyed by the part names, so it can be passed to the marshallers
+ * and compared with other maps.
+ */
+class MessagePartMap extends AbstractMap<String, Object> {
+  private static final MessageParts[] STANDARD_PARTS = MessageParts.values();
+
+  /**
+   * An open addressing table of the names of the standard parts, for resolving them from strings.
+   */
+  private static final String[] NAME_TABLE = new String[tableSizeFor(STANDARD_PARTS.length)];
+  private static final int[] ORDINAL_TABLE = new int[NAME_TABLE.length];
+
+  /**
+   * Stands in for a standard part which was explicitly set to null, to tell it apart from a part which is not set.
+   */
+  private static final Object NULL_VALUE = new Object();
+
+  static {
+    for (final MessageParts part : STANDARD_PARTS) {
+      int i = spread(part.name().hashCode());
+      while (NAME_TABLE[i] != null) {
+        i = (i + 1) & (NAME_TABLE.length - 1);
+      }
+      NAME_TABLE[i] = part.name();
+      ORDINAL_TABLE[i] = part.ordinal();
+    }
+  }
+
+  private final Object[] standard = new Object[STANDARD_PARTS.length];
+  private int standardCount;
+  private Map<String, Object> other;
+
+  private Set<Entry<String, Object>> entrySet;
+
+  MessagePartMap() {
+  }
+
+  Object get(final MessageParts part) {
+    return unmask(standard[part.ordinal()]);
+  }
+
+  boolean containsKey(final MessageParts part) {
+    return standard[part.ordinal()] != null;
+  }
+
+  Object put(final MessageParts part, final Object value) {
+    final int ordinal = part.ordinal();
+    final Object old = standard[ordinal];
+    if (old == null) {
+      standardCount++;
+    }
+    standard[ordinal] = value == null ? NULL_VALUE : value;
+    return unmask(old);
+  }
+
+  Object remove(final MessageParts part) {
+    final int ordinal = part.ordinal();
+    final Object old = standard[ordinal];
+    if (old != null) {
+      standard[ordinal] = null;
+      standardCount--;
+    }
+    return unmask(old);
+  }
+
+  @Override
+  public Object get(final Object key) {
+    final int ordinal = indexOf(key);
+    if (ordinal != -1) {
+      return unmask(standard[ordinal]);
+    }
+    return other == null ? null : other.get(key);
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    final int ordinal = indexOf(key);
+    if (ordinal != -1) {
+      return standard[ordinal] != null;
+    }
+    return other != null && other.containsKey(key);
+  }
+
+  @Override
+  public Object put(final String key, final Object value) {
+    final int ordinal = indexOf(key);
+    if (ordinal != -1) {
+      return put(STANDARD_PARTS[ordinal], value);
+    }
+    if (other == null) {
+      other = new HashMap<String, Object>();
+    }
+    return other.put(key, value);
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    final int ordinal = indexOf(key);
+    if (ordinal != -1) {
+      return remove(STANDARD_PARTS[ordinal]);
+    }
+    return other == null ? null : other.remove(key);
+  }
+
+  @Override
+  public int size() {
+    return standardCount + (other == null ? 0 : other.size());
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < standard.length; i++) {
+      standard[i] = null;
+    }
+    standardCount = 0;
+    other = null;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+          return MessagePartMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+          MessagePartMap.this.clear();
+        }
+      };
+    }
+    return entrySet;
+  }
+
+  private static int indexOf(final Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+
+    for (int i = spread(key.hashCode()); NAME_TABLE[i] != null; i = (i + 1) & (NAME_TABLE.length - 1)) {
+      // the names of the standard parts are usually passed in as the very same instances.
+      if (NAME_TABLE[i] == key || NAME_TABLE[i].equals(key)) {
+        return ORDINAL_TABLE[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the smallest power of two which keeps the table at most a quarter full.
+   */
+  private static int tableSizeFor(final int entries) {
+    int size = 16;
+    while (size < entries * 4) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  private static int spread(final int hash) {
+    return (hash ^ (hash >>> 16)) & (NAME_TABLE.length - 1);
+  }
+
+  private static Object unmask(final Object value) {
+    return value == NULL_VALUE ? null : value;
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, Object>> {
+    private int nextOrdinal = -1;
+    private int lastOrdinal = -1;
+    private Iterator<Entry<String, Object>> otherIterator;
+    private boolean lastWasOther;
+
+    private EntryIterator() {
+      advance();
+    }
+
+    private void advance() {
+      do {
+        nextOrdinal++;
+      }
+      while (nextOrdinal < standard.length && standard[nextOrdinal] == null);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (nextOrdinal < standard.length) {
+        return true;
+      }
+      if (otherIterator == null && other != null) {
+        otherIterator = other.entrySet().iterator();
+      }
+      return otherIterator != null && otherIterator.hasNext();
+    }
+
+    @Override
+    public Entry<String, Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      if (nextOrdinal < standard.length) {
+        lastOrdinal = nextOrdinal;
+        lastWasOther = false;
+        advance();
+        return new StandardEntry(lastOrdinal);
+      }
+
+      lastWasOther = true;
+      return otherIterator.next();
+    }
+
+    @Override
+    public void remove() {
+      if (lastWasOther) {
+        otherIterator.remove();
+      }
+      else if (lastOrdinal != -1 && standard[lastOrdinal] != null) {
+        standard[lastOrdinal] = null;
+        standardCount--;
+      }
+      else {
+        throw new IllegalStateException();
+      }
+    }
+  }
+
+  private class StandardEntry implements Entry<String, Object> {
+    private final int ordinal;
+
+    private StandardEntry(final int ordinal) {
+      this.ordinal = ordinal;
+    }
+
+    @Override
+    public String getKey() {
+      return STANDARD_PARTS[ordinal].name();
+    }
+
+    @Override
+    public Object getValue() {
+      return unmask(standard[ordinal]);
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      final Object old = unmask(standard[ordinal]);
+      standard[ordinal] = value == null ? NULL_VALUE : value;
+      return old;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      final Entry<?, ?> e = (Entry<?, ?>) o;
+      final Object value = getValue();
+      return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      final Object value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
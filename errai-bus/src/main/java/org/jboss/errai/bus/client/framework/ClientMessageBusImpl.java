@@ -91,6 +91,11 @@ public class ClientMessageBusImpl implements ClientMessageBus {
   private final String clientId;
   private String sessionId;
 
+  /**
+   * True if the server agreed to the compact type encoding when this bus last associated with it.
+   */
+  private boolean compactTypeEncoding;
+
   private final List<SubscribeListener> onSubscribeHooks = new ArrayList<SubscribeListener>();
   private final List<UnsubscribeListener> onUnsubscribeHooks = new ArrayList<UnsubscribeListener>();
   private final List<UncaughtExceptionHandler> uncaughtExceptionHandlers = new ArrayList<UncaughtExceptionHandler>();
@@ -422,6 +427,7 @@ public class ClientMessageBusImpl implements ClientMessageBus {
           .set(ToSubject, "ServerBus")
           .set(PriorityProcessing, "1")
           .set(MessageParts.RemoteServices, getAdvertisableSubjects())
+          .set(MessageParts.CapabilitiesFlags, Capabilities.CompactTypeEncoding.name())
           .setResource(TransportHandler.EXTRA_URI_PARMS_RESOURCE, properties)));
 
       transportHandler.start();
@@ -442,7 +448,14 @@ public class ClientMessageBusImpl implements ClientMessageBus {
   }
 
   private void processCapabilities(final Message message) {
+    compactTypeEncoding = false;
+
     for (final String capability : message.get(String.class, MessageParts.CapabilitiesFlags).split(",")) {
+      if (Capabilities.CompactTypeEncoding.name().equals(capability)) {
+        compactTypeEncoding = true;
+        continue;
+      }
+
       final TransportHandler handler = availableHandlers.get(capability);
       if (handler == null) {
         logger.warn("could not find handler for capability type: " + capability);
@@ -455,6 +468,13 @@ public class ClientMessageBusImpl implements ClientMessageBus {
     reconsiderTransport();
   }
 
+  /**
+   * Returns true if messages to the server are to be encoded with the compact type encoding.
+   */
+  public boolean isCompactTypeEncoding() {
+    return compactTypeEncoding;
+  }
+
   private void declareSubscriptionListeners() {
     addUnsubscribeListener(new UnsubscribeListener() {
       @Override
@@ -214,7 +214,7 @@ public class HttpPollingHandler implements TransportHandler, TransportStatistics
 
     undeliveredMessages.addAll(toSend);
 
-    final String message = BusToolsCli.encodeMessages(toSend);
+    final String message = BusToolsCli.encodeMessages(toSend, messageBus.isCompactTypeEncoding());
     logger.trace("[bus] toSend=" + toSend);
 
     try {
@@ -249,7 +249,7 @@ public class HttpPollingHandler implements TransportHandler, TransportStatistics
         toSend = new ArrayList<Message>(getDeferredToSend());
       }
 
-      request = sendPollingRequest(BusToolsCli.encodeMessages(toSend), Collections.<String, String>emptyMap(), receiveCommCallback);
+      request = sendPollingRequest(BusToolsCli.encodeMessages(toSend, messageBus.isCompactTypeEncoding()), Collections.<String, String>emptyMap(), receiveCommCallback);
     }
     catch (RequestTimeoutException e) {
       receiveCommCallback.onError(null, e);
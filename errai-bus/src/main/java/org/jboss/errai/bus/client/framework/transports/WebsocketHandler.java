@@ -32,9 +32,17 @@ import org.jboss.errai.common.client.protocols.MessageParts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.user.client.Timer;
 
 /**
+ * A transport which uses a web socket channel, after negotiating it over the long polling transport.
+ * <p/>
+ * If the server offers binary frames, the channel uses them once it has been negotiated: each frame carries a batch
+ * of records, each of which is a 4 byte big-endian length followed by that many bytes of UTF-8 encoded JSON. All the
+ * messages passed to {@link #transmit(List)} are sent in a single frame, one record per message.
+ *
  * @author Mike Brock
  */
 public class WebsocketHandler implements TransportHandler, TransportStatistics {
@@ -42,6 +50,8 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
 
   private String webSocketUrl;
   private String webSocketToken;
+  private boolean binaryFrames;
+  private boolean channelOpen;
   private Object webSocketChannel;
   private HttpPollingHandler longPollingTransport;
 
@@ -58,6 +68,8 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
   private int retries;
 
   private String unsupportedReason = UNSUPPORTED_MESSAGE_NO_SERVER_SUPPORT;
+
+  private static final String BINARY_FRAME_FORMAT = "Binary";
   
   private static Logger logger = LoggerFactory.getLogger(WebsocketHandler.class);
 
@@ -79,6 +91,8 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
 
     webSocketUrl = capabilitiesMessage.get(String.class, MessageParts.WebSocketURL);
     webSocketToken = capabilitiesMessage.get(String.class, MessageParts.WebSocketToken);
+    binaryFrames = BINARY_FRAME_FORMAT.equals(capabilitiesMessage.get(String.class, MessageParts.WebSocketFrameFormat))
+        && isBinaryWebSocketSupported();
 
     hosed = (webSocketUrl == null || webSocketToken == null);
 
@@ -103,7 +117,20 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
   @Override
   public void transmit(final List<Message> txMessages) {
     if (webSocketChannel != null) {
-      if (!transmitToSocket(webSocketChannel, BusToolsCli.encodeMessages(txMessages))) {
+      final boolean sent;
+      if (binaryFrames && channelOpen) {
+        final JsArrayString payloads = JavaScriptObject.createArray().cast();
+        for (final Message message : txMessages) {
+          payloads.push(BusToolsCli.encodeMessage(message, messageBus.isCompactTypeEncoding()));
+        }
+        sent = transmitFrameToSocket(webSocketChannel, encodeBinaryFrame(payloads));
+      }
+      else {
+        sent = transmitToSocket(webSocketChannel,
+            BusToolsCli.encodeMessages(txMessages, messageBus.isCompactTypeEncoding()));
+      }
+
+      if (!sent) {
         longPollingTransport.transmit(txMessages);
         txCount++;
         lastTransmission = System.currentTimeMillis();
@@ -134,6 +161,7 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
         longPollingTransport.stop(false);
         // send final message to open the channel
         transmitToSocket(webSocketChannel, getWebSocketNegotiationString());
+        channelOpen = true;
 
         webSocketToken = message.get(String.class, MessageParts.WebSocketToken);
 
@@ -178,7 +206,9 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
   private String getWebSocketNegotiationString() {
     return "{\"" + MessageParts.CommandType.name() + "\":\"" + BusCommand.Associate.name() + "\", \""
         + MessageParts.ConnectionSessionKey + "\":\"" + messageBus.getSessionId() + "\"" + ",\""
-        + MessageParts.WebSocketToken + "\":\"" + webSocketToken + "\"}";
+        + MessageParts.WebSocketToken + "\":\"" + webSocketToken + "\""
+        + (binaryFrames ? ",\"" + MessageParts.WebSocketFrameFormat + "\":\"" + BINARY_FRAME_FORMAT + "\"" : "")
+        + "}";
   }
 
   private void handleReceived(String json) {
@@ -200,14 +230,105 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
       return !!window.WebSocket;
   }-*/;
 
+  public native static boolean isBinaryWebSocketSupported() /*-{
+      return !!window.ArrayBuffer && !!window.Uint8Array;
+  }-*/;
+
+  /**
+   * Encodes the specified JSON payloads into a binary frame, as a UTF-8 encoded, length-prefixed record each.
+   */
+  private native static JavaScriptObject encodeBinaryFrame(final JsArrayString payloads) /*-{
+      var records = [];
+      var total = 0;
+      for (var i = 0; i < payloads.length; i++) {
+          var s = payloads[i];
+          var bytes = [];
+          for (var j = 0; j < s.length; j++) {
+              var c = s.charCodeAt(j);
+              if (c < 0x80) {
+                  bytes.push(c);
+              }
+              else if (c < 0x800) {
+                  bytes.push(0xC0 | (c >> 6), 0x80 | (c & 0x3F));
+              }
+              else if (c >= 0xD800 && c <= 0xDBFF && j + 1 < s.length) {
+                  var cp = 0x10000 + ((c - 0xD800) << 10) + (s.charCodeAt(++j) - 0xDC00);
+                  bytes.push(0xF0 | (cp >> 18), 0x80 | ((cp >> 12) & 0x3F), 0x80 | ((cp >> 6) & 0x3F), 0x80 | (cp & 0x3F));
+              }
+              else {
+                  bytes.push(0xE0 | (c >> 12), 0x80 | ((c >> 6) & 0x3F), 0x80 | (c & 0x3F));
+              }
+          }
+          records.push(bytes);
+          total += 4 + bytes.length;
+      }
+
+      var frame = new Uint8Array(total);
+      var pos = 0;
+      for (var i = 0; i < records.length; i++) {
+          var len = records[i].length;
+          frame[pos++] = (len >>> 24) & 0xFF;
+          frame[pos++] = (len >>> 16) & 0xFF;
+          frame[pos++] = (len >>> 8) & 0xFF;
+          frame[pos++] = len & 0xFF;
+          frame.set(records[i], pos);
+          pos += len;
+      }
+      return frame.buffer;
+  }-*/;
+
+  /**
+   * Decodes each of the length-prefixed records in a binary frame and passes it to {@link #handleReceived(String)}.
+   */
+  private native void handleReceivedFrame(final JavaScriptObject buffer) /*-{
+      var bytes = new Uint8Array(buffer);
+      var pos = 0;
+      while (pos + 4 <= bytes.length) {
+          var len = ((bytes[pos] << 24) | (bytes[pos + 1] << 16) | (bytes[pos + 2] << 8) | bytes[pos + 3]) >>> 0;
+          pos += 4;
+          var end = pos + len;
+          var chars = [];
+          while (pos < end) {
+              var b = bytes[pos++];
+              if (b < 0x80) {
+                  chars.push(b);
+              }
+              else if (b < 0xE0) {
+                  chars.push(((b & 0x1F) << 6) | (bytes[pos++] & 0x3F));
+              }
+              else if (b < 0xF0) {
+                  chars.push(((b & 0x0F) << 12) | ((bytes[pos++] & 0x3F) << 6) | (bytes[pos++] & 0x3F));
+              }
+              else {
+                  var cp = (((b & 0x07) << 18) | ((bytes[pos++] & 0x3F) << 12) | ((bytes[pos++] & 0x3F) << 6)
+                      | (bytes[pos++] & 0x3F)) - 0x10000;
+                  chars.push(0xD800 + (cp >> 10), 0xDC00 + (cp & 0x3FF));
+              }
+          }
+
+          // String.fromCharCode.apply() is limited by the maximum number of arguments, so convert in chunks.
+          var text = '';
+          for (var k = 0; k < chars.length; k += 4096) {
+              text += String.fromCharCode.apply(null, chars.slice(k, k + 4096));
+          }
+          this.@org.jboss.errai.bus.client.framework.transports.WebsocketHandler::handleReceived(Ljava/lang/String;)(text);
+      }
+  }-*/;
+
   public native Object attemptWebSocketConnect(final String websocketAddr) /*-{
       var thisRef = this;
       var socket;
       if (window.WebSocket) {
           socket = new WebSocket(websocketAddr);
+          socket.binaryType = "arraybuffer";
 
           socket.onmessage = function (event) {
-              thisRef.@org.jboss.errai.bus.client.framework.transports.WebsocketHandler::handleReceived(Ljava/lang/String;)(event.data);
+              if (typeof event.data == "string") {
+                  thisRef.@org.jboss.errai.bus.client.framework.transports.WebsocketHandler::handleReceived(Ljava/lang/String;)(event.data);
+              }
+              else {
+                  thisRef.@org.jboss.errai.bus.client.framework.transports.WebsocketHandler::handleReceivedFrame(Lcom/google/gwt/core/client/JavaScriptObject;)(event.data);
+              }
           };
 
           socket.onopen = function (event) {
@@ -240,6 +361,16 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
       }
   }-*/;
 
+  public native boolean transmitFrameToSocket(final Object socket, final JavaScriptObject frame) /*-{
+      if (socket.readyState == WebSocket.OPEN) {
+          socket.send(frame);
+          return true;
+      }
+      else {
+          return false;
+      }
+  }-*/;
+
   public native static boolean isConnected(final Object socket) /*-{
       return socket.readyState == WebSocket.OPEN;
   }-*/;
@@ -250,6 +381,7 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
     messageBus.setState(BusState.CONNECTION_INTERRUPTED);
     disconnectSocket(webSocketChannel);
     webSocketChannel = null;
+    channelOpen = false;
     connectedTime = -1;
 
     if (!stopped) {
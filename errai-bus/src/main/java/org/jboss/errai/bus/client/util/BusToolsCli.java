@@ -76,22 +76,34 @@ public class BusToolsCli {
   }
 
   public static String encodeMessage(final Message message) {
+    return encodeMessage(message, false);
+  }
+
+  /**
+   * Encodes a message, optionally using the compact type encoding, which may only be used if the remote bus has
+   * agreed to it. Messages which are already encoded are passed on as they are.
+   */
+  public static String encodeMessage(final Message message, final boolean compactTypeEncoding) {
     if (message instanceof HasEncoded) {
       return ((HasEncoded) message).getEncoded();
     }
     else {
-      return ErraiProtocol.encodePayload(message.getParts());
+      return ErraiProtocol.encodePayload(message.getParts(), compactTypeEncoding);
     }
   }
 
   public static String encodeMessages(final Collection<Message> messages) {
+    return encodeMessages(messages, false);
+  }
+
+  public static String encodeMessages(final Collection<Message> messages, final boolean compactTypeEncoding) {
     final StringBuilder sbuf = new StringBuilder("[");
     boolean first = true;
     for (final Message m : messages) {
       if (!first) {
         sbuf.append(',');
       }
-      sbuf.append(encodeMessage(m));
+      sbuf.append(encodeMessage(m, compactTypeEncoding));
       first = false;
     }
     return sbuf.append("]").toString();
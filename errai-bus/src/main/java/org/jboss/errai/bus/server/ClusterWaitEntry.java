@@ -23,6 +23,11 @@ import org.jboss.errai.bus.client.api.messaging.Message;
 * @author Mike Brock
 */
 public class ClusterWaitEntry {
+  /**
+   * How long a message waits for another node of the cluster to claim it, in milliseconds.
+   */
+  public static final long TIMEOUT = 10 * 1000;
+
   final long time;
   final Message message;
   final Runnable timeoutCallback;
@@ -42,7 +47,14 @@ public class ClusterWaitEntry {
   }
 
   public boolean isStale() {
-    return (System.currentTimeMillis() - time) > (10 * 1000);
+    return (System.currentTimeMillis() - time) > TIMEOUT;
+  }
+
+  /**
+   * Returns the time after which this entry is stale, in milliseconds.
+   */
+  public long getExpiryTime() {
+    return time + TIMEOUT + 1;
   }
 
   public void notifyTimeout() {
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.SessionEndEvent;
+import org.jboss.errai.bus.client.api.SessionEndListener;
+import org.jboss.errai.bus.client.api.laundry.LaundryListProviderFactory;
+import org.jboss.errai.bus.server.api.SessionProvider;
+import org.jboss.errai.bus.server.util.AttributeTable;
+import org.jboss.errai.bus.server.util.SecureHashUtil;
+import org.jboss.errai.bus.server.util.ServerLaundryList;
+import org.jboss.errai.common.client.api.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A SessionProvider for HTTP-based queue sessions which is designed for servers holding a large number of sessions.
+ * <p/>
+ * Unlike {@link HttpSessionProvider}, the queue sessions are not kept in the <tt>HttpSession</tt>, but in a store
+ * owned by the provider, which only leaves a small marker in the <tt>HttpSession</tt> to remove them again when it is
+ * invalidated. The queue sessions of an <tt>HttpSession</tt> and their shared attributes are kept in flat arrays
+ * rather than in hash maps, which are only allocated once they are needed.
+ * <p/>
+ * It is enabled by setting <tt>errai.session_provider_implementation</tt> to the name of this class.
+ */
+public class CompactSessionProvider implements SessionProvider<HttpSession> {
+  private static final Logger log = LoggerFactory.getLogger(CompactSessionProvider.class);
+
+  private static final String BINDING_ATTRIBUTE = CompactSessionProvider.class.getName() + ":Binding";
+
+  /**
+   * The live providers, for bindings which have lost their reference to the provider by being serialized.
+   */
+  private static final Set<CompactSessionProvider> providers
+      = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<CompactSessionProvider, Boolean>()));
+
+  private final ConcurrentMap<String, SessionsContainer> containers = new ConcurrentHashMap<String, SessionsContainer>();
+  private final Object containerCreationLock = new Object();
+
+  public CompactSessionProvider() {
+    providers.add(this);
+  }
+
+  @Override
+  public QueueSession createOrGetSession(final HttpSession externSessRef, final String remoteQueueID) {
+    final String httpSessionId = externSessRef.getId();
+
+    SessionsContainer sc = containers.get(httpSessionId);
+    if (sc == null) {
+      synchronized (containerCreationLock) {
+        sc = containers.get(httpSessionId);
+        if (sc == null) {
+          sc = new SessionsContainer(httpSessionId);
+          // the marker goes in first, so a container is never visible without it.
+          externSessRef.setAttribute(BINDING_ATTRIBUTE, new ContainerBinding(this, httpSessionId));
+          containers.put(httpSessionId, sc);
+        }
+      }
+    }
+
+    synchronized (sc) {
+      QueueSession qs = sc.getSession(remoteQueueID);
+      if (qs == null) {
+        log.debug("queue session " + remoteQueueID + " started");
+        qs = sc.createSession(remoteQueueID);
+        qs.setAttribute(HttpSession.class.getName(), externSessRef);
+      }
+      return qs;
+    }
+  }
+
+  /**
+   * Returns the number of <tt>HttpSession</tt>s which currently have queue sessions in this provider.
+   */
+  public int getHttpSessionCount() {
+    return containers.size();
+  }
+
+  private void removeContainer(final String httpSessionId) {
+    final SessionsContainer sc = containers.remove(httpSessionId);
+    if (sc != null) {
+      sc.sharedAttributes.clear();
+    }
+  }
+
+  /**
+   * Removes the queue sessions of an <tt>HttpSession</tt> from the provider once the <tt>HttpSession</tt> is
+   * invalidated, or once the marker is removed from it.
+   * <p/>
+   * The marker is serializable, so the <tt>HttpSession</tt> can still be passivated or replicated. Only the session id
+   * is serialized: a marker which was restored from its serialized form no longer knows its provider, and removes the
+   * queue sessions of its <tt>HttpSession</tt> from all the live providers instead.
+   */
+  private static class ContainerBinding implements HttpSessionBindingListener, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String httpSessionId;
+    private transient CompactSessionProvider provider;
+
+    private ContainerBinding(final CompactSessionProvider provider, final String httpSessionId) {
+      this.provider = provider;
+      this.httpSessionId = httpSessionId;
+    }
+
+    @Override
+    public void valueBound(final HttpSessionBindingEvent event) {
+    }
+
+    @Override
+    public void valueUnbound(final HttpSessionBindingEvent event) {
+      if (provider != null) {
+        provider.removeContainer(httpSessionId);
+        return;
+      }
+
+      final List<CompactSessionProvider> live;
+      synchronized (providers) {
+        live = new ArrayList<CompactSessionProvider>(providers);
+      }
+      for (final CompactSessionProvider p : live) {
+        p.removeContainer(httpSessionId);
+      }
+    }
+  }
+
+  /**
+   * The queue sessions of one <tt>HttpSession</tt>. There is rarely more than one, so they are kept in an array which
+   * grows as needed. Guarded by this.
+   */
+  private static class SessionsContainer {
+    private final String httpSessionId;
+    private final AttributeTable sharedAttributes = new AttributeTable();
+    private CompactQueueSession[] queueSessions = new CompactQueueSession[1];
+    private int queueSessionCount;
+
+    private SessionsContainer(final String httpSessionId) {
+      this.httpSessionId = httpSessionId;
+    }
+
+    synchronized QueueSession createSession(final String remoteQueueID) {
+      final CompactQueueSession qs = new CompactQueueSession(this, remoteQueueID);
+      if (queueSessionCount == queueSessions.length) {
+        final CompactQueueSession[] newSessions = new CompactQueueSession[queueSessions.length * 2];
+        System.arraycopy(queueSessions, 0, newSessions, 0, queueSessions.length);
+        queueSessions = newSessions;
+      }
+      queueSessions[queueSessionCount++] = qs;
+      return qs;
+    }
+
+    synchronized QueueSession getSession(final String remoteQueueID) {
+      final int i = indexOf(remoteQueueID);
+      return i == -1 ? null : queueSessions[i];
+    }
+
+    synchronized void removeSession(final String remoteQueueID) {
+      final int i = indexOf(remoteQueueID);
+      if (i != -1) {
+        queueSessions[i] = queueSessions[--queueSessionCount];
+        queueSessions[queueSessionCount] = null;
+      }
+    }
+
+    private int indexOf(final String remoteQueueID) {
+      for (int i = 0; i < queueSessionCount; i++) {
+        if (queueSessions[i].remoteQueueID.equals(remoteQueueID)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private static class CompactQueueSession implements QueueSession {
+    private final SessionsContainer container;
+    private final String sessionId;
+    private final String remoteQueueID;
+    private List<SessionEndListener> sessionEndListeners;
+
+    private CompactQueueSession(final SessionsContainer container, final String remoteQueueID) {
+      this.container = Assert.notNull(container);
+      this.remoteQueueID = Assert.notNull(remoteQueueID);
+      this.sessionId = SecureHashUtil.nextSecureHash("SHA-256",
+          container.httpSessionId.getBytes(), remoteQueueID.getBytes());
+    }
+
+    @Override
+    public String getSessionId() {
+      return sessionId;
+    }
+
+    @Override
+    public String getParentSessionId() {
+      return container.httpSessionId;
+    }
+
+    @Override
+    public boolean endSession() {
+      log.debug("queue session " + remoteQueueID + " ended");
+      container.removeSession(remoteQueueID);
+      fireSessionEndListeners();
+      return true;
+    }
+
+    @Override
+    public boolean isValid() {
+      return container.getSession(remoteQueueID) != null;
+    }
+
+    @Override
+    public void setAttribute(final String attribute, final Object value) {
+      container.sharedAttributes.put(attribute, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getAttribute(final Class<T> type, final String attribute) {
+      return (T) container.sharedAttributes.get(attribute);
+    }
+
+    @Override
+    public Collection<String> getAttributeNames() {
+      return container.sharedAttributes.names();
+    }
+
+    @Override
+    public boolean hasAttribute(final String attribute) {
+      return container.sharedAttributes.containsKey(attribute);
+    }
+
+    @Override
+    public Object removeAttribute(final String attribute) {
+      return container.sharedAttributes.remove(attribute);
+    }
+
+    @Override
+    public void addSessionEndListener(final SessionEndListener listener) {
+      synchronized (this) {
+        if (sessionEndListeners == null) {
+          sessionEndListeners = new ArrayList<SessionEndListener>(1);
+        }
+        sessionEndListeners.add(listener);
+      }
+    }
+
+    private void fireSessionEndListeners() {
+      ((ServerLaundryList) LaundryListProviderFactory.get().getLaundryList(this)).cleanAll();
+
+      final List<SessionEndListener> listeners;
+      synchronized (this) {
+        if (sessionEndListeners == null) return;
+        listeners = new ArrayList<SessionEndListener>(sessionEndListeners);
+      }
+
+      final SessionEndEvent event = new SessionEndEvent(this);
+      for (final SessionEndListener sessionEndListener : listeners) {
+        sessionEndListener.onSessionEnd(event);
+      }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (!(o instanceof CompactQueueSession)) return false;
+
+      final CompactQueueSession that = (CompactQueueSession) o;
+      return remoteQueueID.equals(that.remoteQueueID) && sessionId.equals(that.sessionId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * sessionId.hashCode() + remoteQueueID.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return "CompactQueueSession{" +
+          "sessionId='" + sessionId + '\'' +
+          ", remoteQueueID='" + remoteQueueID + '\'' +
+          '}';
+    }
+  }
+}
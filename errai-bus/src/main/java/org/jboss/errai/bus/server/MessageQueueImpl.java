@@ -18,9 +18,9 @@ package org.jboss.errai.bus.server;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.client.api.messaging.Message;
@@ -31,7 +31,10 @@ import org.jboss.errai.bus.server.io.Buffered;
 import org.jboss.errai.bus.server.io.ByteWriteAdapter;
 import org.jboss.errai.bus.server.io.Cleanable;
 import org.jboss.errai.bus.server.io.DirectChannel;
+import org.jboss.errai.bus.server.io.EncodedDeliveryHandler;
 import org.jboss.errai.bus.server.io.MessageDeliveryHandler;
+import org.jboss.errai.bus.server.io.PageStore;
+import org.jboss.errai.bus.server.io.PageUtil;
 import org.jboss.errai.bus.server.io.Wakeable;
 import org.jboss.errai.bus.server.io.buffers.Buffer;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
@@ -51,6 +54,8 @@ public class MessageQueueImpl implements MessageQueue {
   private boolean queueRunning = true;
   private volatile long lastTransmission = System.currentTimeMillis();
   private volatile boolean pagedOut = false;
+  private volatile boolean compactTypeEncoding = false;
+  private volatile boolean arrivalsTracked = false;
 
   private volatile MessageDeliveryHandler deliveryHandler = BufferDeliveryHandler.getInstance();
   private volatile QueueActivationCallback activationCallback;
@@ -58,18 +63,30 @@ public class MessageQueueImpl implements MessageQueue {
 
   private final TransmissionBuffer buffer;
   private final BufferColor bufferColor;
+  private final PageStore pageStore;
 
   private final Object activationLock = new Object();
   private final Object pageLock = new Object();
   private final AtomicInteger messageCount = new AtomicInteger();
+  private final AtomicLong bytesWaiting = new AtomicLong();
 
   private static final Logger log = getLogger(MessageQueueImpl.class);
 
+  /**
+   * Creates a queue which pages out to the {@link PageUtil#getDefaultPageStore() default store}, shared with all the
+   * other queues created this way.
+   */
   public MessageQueueImpl(final TransmissionBuffer buffer, final QueueSession session, final int timeoutSecs) {
+    this(buffer, session, timeoutSecs, PageUtil.getDefaultPageStore());
+  }
+
+  public MessageQueueImpl(final TransmissionBuffer buffer, final QueueSession session, final int timeoutSecs,
+                          final PageStore pageStore) {
     this.buffer = buffer;
     this.session = session;
     this.bufferColor = BufferColor.getNewColorFromHead(buffer);
     this.timeout = (timeoutSecs * 1000);
+    this.pageStore = pageStore;
   }
 
   @Override
@@ -123,6 +140,32 @@ public class MessageQueueImpl implements MessageQueue {
     return deliveryHandler.deliver(this, message);
   }
 
+  /**
+   * Inserts a message which has already been encoded into the queue. If the current delivery handler cannot accept
+   * pre-encoded data, the message is delivered as if it had been passed to {@link #offer(Message)}.
+   *
+   * @param message
+   *     - the message which was encoded
+   * @param payload
+   *     - the encoded form of the message, which may be shared with other queues and must not be modified.
+   *
+   * @return true if insertion was successful
+   */
+  @Override
+  public boolean offerEncoded(final Message message, final byte[] payload) throws IOException {
+    if (!queueRunning) {
+      throw new QueueUnavailableException("queue is not available");
+    }
+
+    final MessageDeliveryHandler handler = deliveryHandler;
+    if (handler instanceof EncodedDeliveryHandler) {
+      return ((EncodedDeliveryHandler) handler).deliverEncoded(this, payload);
+    }
+    else {
+      return handler.deliver(this, message);
+    }
+  }
+
   @Override
   public long getCurrentBufferSequenceNumber() {
     return bufferColor.getSequence().get();
@@ -238,6 +281,16 @@ public class MessageQueueImpl implements MessageQueue {
     this.pagedOut = pagedOut;
   }
 
+  @Override
+  public boolean isCompactTypeEncoding() {
+    return compactTypeEncoding;
+  }
+
+  @Override
+  public void setCompactTypeEncoding(final boolean compactTypeEncoding) {
+    this.compactTypeEncoding = compactTypeEncoding;
+  }
+
   @Override
   public void discard() {
     queueRunning = false;
@@ -258,7 +311,7 @@ public class MessageQueueImpl implements MessageQueue {
        * we write a single byte to the buffer, with the color for this queue. this is to knock any
        * waiting thread loose and return it to the work pool.
        */
-      buffer.write(1, new ByteArrayInputStream(new byte[]{-1}), bufferColor);
+      buffer.write(new byte[]{-1}, bufferColor);
     }
     catch (Exception e) {
       throw new RuntimeException("error trying to stop queue");
@@ -301,6 +354,11 @@ public class MessageQueueImpl implements MessageQueue {
     return buffer;
   }
 
+  @Override
+  public PageStore getPageStore() {
+    return pageStore;
+  }
+
   @Override
   public int incrementMessageCount() {
     return messageCount.incrementAndGet();
@@ -309,6 +367,27 @@ public class MessageQueueImpl implements MessageQueue {
   @Override
   public void resetMessageCount() {
     messageCount.set(0);
+    bytesWaiting.set(0);
+  }
+
+  @Override
+  public void addBytesWaiting(final long bytes) {
+    bytesWaiting.addAndGet(bytes);
+  }
+
+  @Override
+  public long getBytesWaiting() {
+    return bytesWaiting.get();
+  }
+
+  @Override
+  public void setArrivalsTracked(final boolean arrivalsTracked) {
+    this.arrivalsTracked = arrivalsTracked;
+  }
+
+  @Override
+  public boolean isArrivalsTracked() {
+    return arrivalsTracked;
   }
 
   @Override
@@ -316,6 +395,11 @@ public class MessageQueueImpl implements MessageQueue {
     return lastTransmission;
   }
 
+  @Override
+  public long getTimeout() {
+    return timeout;
+  }
+
   @Override
   public void setTimeout(final long timeout) {
     this.timeout = timeout;
@@ -24,11 +24,12 @@ import static org.jboss.errai.common.client.protocols.MessageParts.ConnectionSes
 import static org.jboss.errai.common.client.protocols.MessageParts.RemoteServices;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -36,7 +37,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -51,6 +55,7 @@ import org.jboss.errai.bus.client.api.SubscribeListener;
 import org.jboss.errai.bus.client.api.Subscription;
 import org.jboss.errai.bus.client.api.UnsubscribeListener;
 import org.jboss.errai.bus.client.api.base.Capabilities;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
 import org.jboss.errai.bus.client.api.base.ConversationMessage;
 import org.jboss.errai.bus.client.api.base.MessageBuilder;
 import org.jboss.errai.bus.client.api.base.NoSubscribersToDeliverTo;
@@ -66,16 +71,22 @@ import org.jboss.errai.bus.server.api.QueueClosedListener;
 import org.jboss.errai.bus.server.api.ServerMessageBus;
 import org.jboss.errai.bus.server.cluster.ClusteringProvider;
 import org.jboss.errai.bus.server.io.BufferHelper;
+import org.jboss.errai.bus.server.io.MessageFactory;
+import org.jboss.errai.bus.server.io.PageStore;
 import org.jboss.errai.bus.server.io.PageUtil;
+import org.jboss.errai.bus.server.io.Pageable;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
 import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
 import org.jboss.errai.bus.server.io.websockets.WebSocketServerHandler;
+import org.jboss.errai.bus.server.io.websockets.BinaryFrameCodec;
 import org.jboss.errai.bus.server.io.websockets.WebSocketTokenManager;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
 import org.jboss.errai.bus.server.util.LocalContext;
+import org.jboss.errai.bus.server.util.NamedThreadFactory;
 import org.jboss.errai.bus.server.util.SecureHashUtil;
+import org.jboss.errai.bus.server.util.TimerWheel;
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.common.client.protocols.Resources;
 import org.jboss.errai.common.server.api.ErraiBootstrapFailure;
@@ -95,22 +106,79 @@ import com.google.inject.Singleton;
 @Singleton
 public class ServerMessageBusImpl implements ServerMessageBus {
   private final TransmissionBuffer transmissionbuffer;
+  private final PageStore pageStore;
+
+  private static final String LOCAL_PREFIX = "local:";
 
   private final Map<String, DeliveryPlan> subscriptions = new ConcurrentHashMap<String, DeliveryPlan>();
+
+  /**
+   * The routes of the subscribed subjects, keyed by the subject without any <tt>local:</tt> prefix. This mirrors
+   * {@link #subscriptions}, so that sending a message only takes a single lookup of its subject.
+   */
+  private final ConcurrentMap<String, SubjectRoute> routes = new ConcurrentHashMap<String, SubjectRoute>();
   private final Set<String> globalSubscriptions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   private final Map<String, RemoteMessageCallback> remoteSubscriptions = new ConcurrentHashMap<String, RemoteMessageCallback>();
 
+  /**
+   * The subjects each queue is remotely subscribed to. This is the reverse of {@link #remoteSubscriptions}, so that
+   * closing a queue only has to visit the subjects that queue actually subscribed to.
+   */
+  private final ConcurrentMap<MessageQueue, Set<String>> queueSubscriptions
+      = new ConcurrentHashMap<MessageQueue, Set<String>>();
+
+  /**
+   * The queues which have been closed, so that a remote subscription racing with the close of its queue is not left
+   * behind. Weakly held, as a closed queue is not referenced by the bus anywhere else.
+   */
+  private final Set<MessageQueue> closedQueues
+      = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<MessageQueue, Boolean>()));
+
+  /**
+   * Locks guarding changes to the remote subscriptions, striped by subject so that subscription traffic for
+   * different subjects does not contend.
+   */
+  private final Object[] remoteSubscriptionLocks = new Object[64];
+
   private final Map<QueueSession, MessageQueue> messageQueues = new ConcurrentHashMap<QueueSession, MessageQueue>();
 
   private final Map<MessageQueue, List<Message>> deferredQueue = new ConcurrentHashMap<MessageQueue, List<Message>>();
   private final Map<String, QueueSession> sessionLookup = new ConcurrentHashMap<String, QueueSession>();
-  private final Map<String, ClusterWaitEntry> deadLetter = new ConcurrentHashMap<String, ClusterWaitEntry>();
+  private final ConcurrentMap<String, ClusterWaitEntry> deadLetter = new ConcurrentHashMap<String, ClusterWaitEntry>();
+
+  /**
+   * The times at which the housekeeper next needs to look at each queue and at each dead letter. A queue is checked
+   * when it would time out or should be paged out if nothing happened to it in the meantime; if something did, it is
+   * simply scheduled again. So the housekeeper only visits the queues and dead letters whose time has come, rather
+   * than scanning them all on every run.
+   */
+  private final TimerWheel<MessageQueue> queueExpiry
+      = new TimerWheel<MessageQueue>(HOUSEKEEPING_TICK_MILLIS, 512, System.currentTimeMillis());
+  private final TimerWheel<String> deadLetterExpiry
+      = new TimerWheel<String>(HOUSEKEEPING_TICK_MILLIS, 32, System.currentTimeMillis());
 
   private final List<SubscribeListener> subscribeListeners = new ArrayList<SubscribeListener>();
   private final List<UnsubscribeListener> unsubscribeListeners = new ArrayList<UnsubscribeListener>();
   private final List<QueueClosedListener> queueClosedListeners = new ArrayList<QueueClosedListener>();
 
   private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+  private final ExecutorService asyncRpcExecutor;
+
+  /**
+   * How often the housekeeper runs, and the resolution of the queue and dead letter timeouts.
+   */
+  private static final long HOUSEKEEPING_TICK_MILLIS = 1000;
+
+  /**
+   * The number of housekeeper runs between reports of the buffer status.
+   */
+  private static final int HOUSEKEEPING_STATUS_INTERVAL = 8;
+
+  {
+    for (int i = 0; i < remoteSubscriptionLocks.length; i++) {
+      remoteSubscriptionLocks[i] = new Object();
+    }
+  }
 
   private static final Logger log = getLogger(ServerMessageBus.class);
 
@@ -122,8 +190,10 @@ public class ServerMessageBusImpl implements ServerMessageBus {
   private final boolean doLongPolling;
   private final int messageQueueTimeoutSecs;
   private final boolean sseEnabled;
+  private final boolean compactTypeEncoding;
   private final boolean webSocketServlet;
   private final boolean webSocketServer;
+  private final boolean webSocketBinaryFrames;
 
   private final boolean clustering;
   private final ClusteringProvider clusteringProvider;
@@ -141,13 +211,20 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     this.doLongPolling = !hostedModeTesting && ErraiConfigAttribs.DO_LONG_POLL.getBoolean(config);
     this.messageQueueTimeoutSecs = ErraiConfigAttribs.MESSAGE_QUEUE_TIMEOUT_SECS.getInt(config);
     this.sseEnabled = ErraiConfigAttribs.ENABLE_SSE_SUPPORT.getBoolean(config);
+    this.compactTypeEncoding = ErraiConfigAttribs.COMPACT_TYPE_ENCODING.getBoolean(config);
     this.webSocketServer = ErraiConfigAttribs.ENABLE_WEB_SOCKET_SERVER.getBoolean(config);
+    this.asyncRpcExecutor = Executors.newFixedThreadPool(ErraiConfigAttribs.ASYNC_RPC_THREADS.getInt(config),
+        new NamedThreadFactory("Errai Async RPC"));
 
     final int webSocketPort;
     final String webSocketPath;
 
     webSocketServlet = ErraiConfigAttribs.WEBSOCKET_SERVLET_ENABLED.getBoolean(config);
 
+    // only the standalone server understands binary frames.
+    webSocketBinaryFrames = webSocketServer && !webSocketServlet
+        && ErraiConfigAttribs.WEB_SOCKET_BINARY_FRAMES.getBoolean(config);
+
     if (webSocketServlet) {
       webSocketPath = ErraiConfigAttribs.WEBSOCKET_SERVLET_CONTEXT_PATH.get(config);
       webSocketPort = -1;
@@ -211,6 +288,14 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
     transmissionbuffer = buffer;
 
+    final String pagingDirectory = ErraiConfigAttribs.BUS_PAGING_DIRECTORY.get(config);
+    final Integer pagingMaxSize = ErraiConfigAttribs.BUS_PAGING_MAX_SIZE.getInt(config);
+    pageStore = new PageStore(
+        pagingDirectory == null ? PageUtil.getDefaultPageDirectory() : new File(pagingDirectory),
+        pagingMaxSize * 1024L * 1024L);
+
+    MessageFactory.setPullParserEnabled("pull".equalsIgnoreCase(ErraiConfigAttribs.BUS_JSON_DECODER.get(config)));
+
     /**
      * Define the default ServerBus service used for intrabus communication.
      */
@@ -219,7 +304,8 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     addSubscribeListener(new DefaultSubscribeListener());
     addUnsubscribeListener(new DefaultUnsubscribeListener());
 
-    scheduler.scheduleAtFixedRate(new HousekeeeperRunnable(), 8, 8, TimeUnit.SECONDS);
+    scheduler.scheduleAtFixedRate(new HousekeeeperRunnable(),
+        HOUSEKEEPING_TICK_MILLIS, HOUSEKEEPING_TICK_MILLIS, TimeUnit.MILLISECONDS);
 
     try {
       clustering = ErraiConfigAttribs.ENABLE_CLUSTERING.getBoolean(config);
@@ -239,9 +325,34 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     }
   }
 
-  private void addQueue(final QueueSession session, final MessageQueue queue) {
+  void addQueue(final QueueSession session, final MessageQueue queue) {
     messageQueues.put(session, queue);
     sessionLookup.put(session.getSessionId(), session);
+    queueExpiry.schedule(queue, getNextQueueCheckTime(queue, System.currentTimeMillis()));
+
+    if (clustering) {
+      clusteringProvider.localSessionAttached(session.getSessionId());
+    }
+  }
+
+  /**
+   * Returns the next time at which the specified queue could be stale, or could need to be paged out, assuming
+   * nothing is transmitted to it in the meantime.
+   */
+  private static long getNextQueueCheckTime(final MessageQueue queue, final long now) {
+    final long lastTransmission = queue.getLastTransmissionTime();
+
+    long next = lastTransmission + queue.getTimeout();
+    if (next <= now) {
+      // an open direct channel keeps an idle queue alive, so look again after another timeout.
+      next = now + queue.getTimeout();
+    }
+
+    if (queue.getDeliveryHandler() instanceof Pageable) {
+      final long downgrade = lastTransmission + PageUtil.getDowngradeThreshold();
+      next = Math.min(next, downgrade > now ? downgrade : now + PageUtil.getDowngradeThreshold());
+    }
+    return next;
   }
 
   /**
@@ -264,8 +375,23 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     message.commit();
     final String subject = message.getSubject();
 
-    if (!subscriptions.containsKey(subject) && !subscriptions.containsKey("local:".concat(subject))
-            && !remoteSubscriptions.containsKey(subject)) {
+    final SubjectRoute route = routes.get(subject);
+    final boolean subscribed;
+    DeliveryPlan plan;
+    if (route != null) {
+      plan = route.getPlan();
+      subscribed = plan != null;
+      if (!subscribed) {
+        plan = route.getLocalPlan();
+      }
+    }
+    else {
+      // the message may be addressed to a local subscription by its full name.
+      plan = subscriptions.get(subject);
+      subscribed = plan != null;
+    }
+
+    if (plan == null && !remoteSubscriptions.containsKey(subject)) {
 
       delayOrFail(message, new Runnable() {
         @Override
@@ -283,17 +409,14 @@ public class ServerMessageBusImpl implements ServerMessageBus {
             message.getResource(QueueSession.class, Resources.Session.name()).getSessionId(), message);
       }
       else {
-        if (subscriptions.containsKey(subject)) {
+        if (subscribed) {
           busMonitor.notifyInBusMessage(message);
         }
       }
     }
 
-    if (subscriptions.containsKey(subject)) {
-      subscriptions.get(subject).deliver(message);
-    }
-    else if (subscriptions.containsKey("local:".concat(subject))) {
-      subscriptions.get("local:".concat(subject)).deliver(message);
+    if (plan != null) {
+      plan.deliver(message);
     }
   }
 
@@ -379,6 +502,99 @@ public class ServerMessageBusImpl implements ServerMessageBus {
         getQueueByMessage(message), message, fireListeners);
   }
 
+  /**
+   * Sends the <tt>message</tt> to each of the specified sessions, encoding it only once. Sessions which cannot
+   * accept the encoded payload right away (because they are not yet initialized, are not listening to the subject or
+   * are not local to this node) receive their own copy of the message through the regular routing path.
+   *
+   * @param message
+   *     - the message to send
+   * @param sessionIds
+   *     - the ids of the sessions to deliver the message to
+   */
+  @Override
+  public void sendToSessions(final Message message, final Collection<String> sessionIds) {
+    message.commit();
+    message.setFlag(RoutingFlag.NonGlobalRouting);
+
+    final String subject = message.getSubject();
+    byte[] payload = null;
+
+    for (final String sessionId : sessionIds) {
+      final QueueSession session = sessionLookup.get(sessionId);
+      final MessageQueue queue = session == null ? null : messageQueues.get(session);
+
+      if (queue == null || !queue.isInitialized() || !isAnyoneListening(queue, subject)) {
+        send(copyForSession(message, sessionId));
+        continue;
+      }
+
+      if (payload == null) {
+        payload = BufferHelper.encode(message);
+      }
+
+      if (isMonitor()) {
+        busMonitor.notifyOutgoingMessageToRemote(sessionId, message);
+      }
+
+      try {
+        queue.offerEncoded(message, payload);
+      }
+      catch (QueueUnavailableException e) {
+        closeQueue(queue);
+      }
+      catch (IOException e) {
+        throw new RuntimeException("failed to enqueue message for delivery", e);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the remote bus listed the specified capability in its association request.
+   */
+  private static boolean hasCapability(final Message message, final Capabilities capability) {
+    final String flags = message.get(String.class, MessageParts.CapabilitiesFlags);
+    if (flags == null) {
+      return false;
+    }
+
+    for (final String flag : flags.split(",")) {
+      if (capability.name().equals(flag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Copies the committed parts, the resources and the routing flags of the message for delivery to one session. The
+   * session resources are left out, as they refer to the session the message came from.
+   */
+  private static Message copyForSession(final Message message, final String sessionId) {
+    final Message copy = CommandMessage.createWithParts(new HashMap<String, Object>(message.getParts()));
+    copy.set(MessageParts.SessionID, sessionId);
+
+    if (message instanceof CommandMessage) {
+      for (final Map.Entry<String, Object> resource : ((CommandMessage) message).getResources().entrySet()) {
+        if (!Resources.Session.name().equals(resource.getKey())
+            && !Resources.SessionID.name().equals(resource.getKey())) {
+          copy.setResource(resource.getKey(), resource.getValue());
+        }
+      }
+    }
+
+    for (final RoutingFlag flag : RoutingFlag.values()) {
+      if (message.isFlagSet(flag)) {
+        copy.setFlag(flag);
+      }
+    }
+
+    if (message.getErrorCallback() != null) {
+      copy.errorsCall(message.getErrorCallback());
+    }
+    return copy;
+  }
+
   private void send(final MessageQueue queue, final Message message, final boolean fireListeners) {
     try {
       if (isMonitor()) {
@@ -403,7 +619,9 @@ public class ServerMessageBusImpl implements ServerMessageBus {
         random.nextBytes(hashBytes);
         final String messageId = message.getSubject() + SecureHashUtil.hashToHexString(hashBytes);
 
-        deadLetter.put(messageId, new ClusterWaitEntry(System.currentTimeMillis(), message, timeoutCallback));
+        final ClusterWaitEntry entry = new ClusterWaitEntry(System.currentTimeMillis(), message, timeoutCallback);
+        deadLetter.put(messageId, entry);
+        deadLetterExpiry.schedule(messageId, entry.getExpiryTime());
 
         clusteringProvider.clusterTransmit(sessionId, message.getSubject(), messageId);
         message.setFlag(RoutingFlag.ClusterWait);
@@ -513,11 +731,26 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     messageQueues.values().remove(queue);
     sessionLookup.values().remove(queue.getSession());
 
-    for (Iterator<RemoteMessageCallback> iterator = remoteSubscriptions.values().iterator(); iterator.hasNext(); ) {
-      final RemoteMessageCallback cb = iterator.next();
-      cb.removeQueue(queue);
-      if (cb.getQueueCount() == 0) {
-        iterator.remove();
+    if (clustering) {
+      clusteringProvider.localSessionDetached(queue.getSession().getSessionId());
+    }
+
+    // a subscription made after this point backs itself out again (see remoteSubscribe()), and one made before it
+    // is in the subjects removed here.
+    closedQueues.add(queue);
+
+    final Set<String> subjects = queueSubscriptions.remove(queue);
+    if (subjects != null) {
+      for (final String subject : subjects) {
+        synchronized (getRemoteSubscriptionLock(subject)) {
+          final RemoteMessageCallback cb = remoteSubscriptions.get(subject);
+          if (cb != null) {
+            cb.removeQueue(queue);
+            if (cb.getQueueCount() == 0) {
+              removeRemoteSubscription(subject, cb);
+            }
+          }
+        }
       }
     }
 
@@ -551,7 +784,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     if (reservedNames.contains(subject))
       throw new IllegalArgumentException("cannot modify or subscribe to reserved service: " + subject);
 
-    final String toSubscribe = "local:".concat(subject);
+    final String toSubscribe = LOCAL_PREFIX.concat(subject);
 
     final DeliveryPlan plan = createOrAddDeliveryPlan(toSubscribe, receiver);
 
@@ -570,20 +803,74 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     DeliveryPlan plan = subscriptions.get(subject);
 
     if (plan == null) {
-      subscriptions.put(subject, plan = DeliveryPlan.newDeliveryPlan(receiver));
+      putDeliveryPlan(subject, plan = DeliveryPlan.newDeliveryPlan(receiver));
     }
     else {
-      subscriptions.put(subject, plan.newDeliveryPlanWith(receiver));
+      putDeliveryPlan(subject, plan.newDeliveryPlanWith(receiver));
     }
 
     return plan;
   }
 
+  /**
+   * Sets the delivery plan of the specified subscription, which may be a <tt>local:</tt> subscription, in both
+   * {@link #subscriptions} and the route of its subject.
+   */
+  private void putDeliveryPlan(final String subscription, final DeliveryPlan plan) {
+    final boolean local = subscription.startsWith(LOCAL_PREFIX);
+    final String subject = local ? subscription.substring(LOCAL_PREFIX.length()) : subscription;
+
+    for (; ; ) {
+      SubjectRoute route = routes.get(subject);
+      if (route == null) {
+        final SubjectRoute newRoute = new SubjectRoute();
+        route = routes.putIfAbsent(subject, newRoute);
+        if (route == null) {
+          route = newRoute;
+        }
+      }
+
+      synchronized (route) {
+        // the route was removed in the meantime, so try again with a new one.
+        if (route.retired) continue;
+
+        subscriptions.put(subscription, plan);
+        route.setPlan(local, plan);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes the delivery plan of the specified subscription from both {@link #subscriptions} and the route of its
+   * subject, and removes the route once it has no plans left.
+   */
+  private void removeDeliveryPlan(final String subscription) {
+    final boolean local = subscription.startsWith(LOCAL_PREFIX);
+    final String subject = local ? subscription.substring(LOCAL_PREFIX.length()) : subscription;
+
+    final SubjectRoute route = routes.get(subject);
+    if (route == null) {
+      subscriptions.remove(subscription);
+      return;
+    }
+
+    synchronized (route) {
+      subscriptions.remove(subscription);
+      route.setPlan(local, null);
+
+      if (route.isEmpty()) {
+        route.retired = true;
+        routes.remove(subject, route);
+      }
+    }
+  }
+
   private DeliveryPlan removeFromDeliveryPlan(final String subject, final MessageCallback receiver) {
     final DeliveryPlan plan = subscriptions.get(subject);
 
     if (plan != null) {
-      subscriptions.put(subject, plan.newDeliveryPlanWithOut(receiver));
+      putDeliveryPlan(subject, plan.newDeliveryPlanWithOut(receiver));
       fireUnsubscribeListeners(
           new SubscriptionEvent(false, "InBus", plan.getTotalReceivers(), false, subject));
     }
@@ -614,7 +901,19 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     boolean isNew = false;
 
     RemoteMessageCallback rmc;
-    synchronized (remoteSubscriptions) {
+    synchronized (getRemoteSubscriptionLock(subject)) {
+      final Set<String> subjects = getOrCreateQueueSubscriptions(queue);
+      subjects.add(subject);
+
+      if (closedQueues.contains(queue)) {
+        // the queue was closed concurrently. it may not have seen the subject just added, so back it out here.
+        subjects.remove(subject);
+        if (subjects.isEmpty()) {
+          queueSubscriptions.remove(queue, subjects);
+        }
+        return;
+      }
+
       rmc = remoteSubscriptions.get(subject);
       if (rmc == null) {
         rmc = new RemoteMessageCallback(!broadcastExclusionSet.contains(subject), subject);
@@ -635,6 +934,69 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     );
   }
 
+  /**
+   * Drops the remote subscription to the specified subject once its last queue has gone, taking its callback out of
+   * the delivery plan of the subject as well. The caller must hold the remote subscription lock of the subject.
+   * <p/>
+   * No listeners are fired from here: the callback only stands for the remote subscribers, so this is not an in-bus
+   * unsubscribe (which would tell every client to drop the subject), and the callers fire the remote event once the
+   * lock is released.
+   */
+  private void removeRemoteSubscription(final String subject, final RemoteMessageCallback rmc) {
+    remoteSubscriptions.remove(subject);
+
+    final DeliveryPlan plan = subscriptions.get(subject);
+    if (plan != null && plan.getDeliverTo().contains(rmc)) {
+      if (plan.getTotalReceivers() == 1) {
+        removeDeliveryPlan(subject);
+      }
+      else {
+        putDeliveryPlan(subject, plan.newDeliveryPlanWithOut(rmc));
+      }
+    }
+  }
+
+  /**
+   * Returns the delivery plan of the specified subject, or null if nothing is subscribed to it.
+   */
+  DeliveryPlan getDeliveryPlan(final String subject) {
+    return subscriptions.get(subject);
+  }
+
+  private Object getRemoteSubscriptionLock(final String subject) {
+    int hash = subject.hashCode();
+    hash ^= (hash >>> 16);
+    return remoteSubscriptionLocks[hash & (remoteSubscriptionLocks.length - 1)];
+  }
+
+  private Set<String> getOrCreateQueueSubscriptions(final MessageQueue queue) {
+    Set<String> subjects = queueSubscriptions.get(queue);
+    if (subjects == null) {
+      final Set<String> newSubjects = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+      subjects = queueSubscriptions.putIfAbsent(queue, newSubjects);
+      if (subjects == null) {
+        subjects = newSubjects;
+      }
+    }
+    return subjects;
+  }
+
+  /**
+   * Returns the subjects the specified queue is remotely subscribed to.
+   *
+   * @param queue
+   *     - the message queue
+   *
+   * @return an unmodifiable view of the subjects. Never null.
+   */
+  public Set<String> getRemoteSubscriptions(final MessageQueue queue) {
+    final Set<String> subjects = queueSubscriptions.get(queue);
+    if (subjects == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(subjects);
+  }
+
   public class RemoteMessageCallback implements MessageCallback {
 
     private final String svc;
@@ -719,12 +1081,23 @@ public class ServerMessageBusImpl implements ServerMessageBus {
    *     - the subject to unsubscribe from
    */
   public void remoteUnsubscribe(final QueueSession sessionContext, final MessageQueue queue, final String subject) {
-    if (!remoteSubscriptions.containsKey(subject)) {
-      return;
-    }
+    final RemoteMessageCallback rmc;
+    synchronized (getRemoteSubscriptionLock(subject)) {
+      rmc = remoteSubscriptions.get(subject);
+      if (rmc == null) {
+        return;
+      }
 
-    final RemoteMessageCallback rmc = remoteSubscriptions.get(subject);
-    rmc.removeQueue(queue);
+      rmc.removeQueue(queue);
+      if (rmc.getQueueCount() == 0) {
+        removeRemoteSubscription(subject, rmc);
+      }
+
+      final Set<String> subjects = queueSubscriptions.get(queue);
+      if (subjects != null) {
+        subjects.remove(subject);
+      }
+    }
 
     try {
       fireUnsubscribeListeners(new SubscriptionEvent(true, rmc.getQueueCount() == 0, false, false, rmc.getQueueCount(),
@@ -746,7 +1119,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     if (reservedNames.contains(subject))
       throw new IllegalArgumentException("Attempt to modify lockdown service: " + subject);
 
-    subscriptions.remove(subject);
+    removeDeliveryPlan(subject);
     globalSubscriptions.remove(subject);
 
     fireUnsubscribeListeners(new SubscriptionEvent(false, null, 0, false, subject));
@@ -918,6 +1291,26 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     return scheduler;
   }
 
+  /**
+   * Gets the executor running the tasks which asynchronous RPC endpoints submit, so that long-running work does not
+   * hold up the threads delivering messages.
+   *
+   * @return the executor for asynchronous RPC tasks
+   */
+  @Override
+  public ExecutorService getAsyncRpcExecutor() {
+    return asyncRpcExecutor;
+  }
+
+  /**
+   * Gets the provider this bus uses to reach the other buses of the cluster.
+   *
+   * @return the clustering provider
+   */
+  public ClusteringProvider getClusteringProvider() {
+    return clusteringProvider;
+  }
+
   @Override
   public void addQueueClosedListener(final QueueClosedListener listener) {
     synchronized (queueClosedListeners) {
@@ -980,10 +1373,16 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     }
 
     scheduler.shutdown();
+    asyncRpcExecutor.shutdown();
+    queueExpiry.clear();
+    deadLetterExpiry.clear();
 
     transmissionbuffer.clear();
+    pageStore.clear();
     subscriptions.clear();
+    routes.clear();
     remoteSubscriptions.clear();
+    queueSubscriptions.clear();
     deferredQueue.clear();
     sessionLookup.clear();
   }
@@ -1069,7 +1468,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
                 messageQueues.get(session).stopQueue();
               }
 
-              queue = new MessageQueueImpl(transmissionbuffer, session, messageQueueTimeoutSecs);
+              queue = new MessageQueueImpl(transmissionbuffer, session, messageQueueTimeoutSecs, pageStore);
 
               addQueue(session, queue);
 
@@ -1137,12 +1536,22 @@ public class ServerMessageBusImpl implements ServerMessageBus {
               }
               msg.set(MessageParts.WebSocketURL, webSocketURL);
               msg.set(MessageParts.WebSocketToken, WebSocketTokenManager.getNewOneTimeToken(session));
+
+              if (webSocketBinaryFrames) {
+                msg.set(MessageParts.WebSocketFrameFormat, BinaryFrameCodec.FRAME_FORMAT_BINARY);
+              }
             }
 
             if (sseEnabled && !session.hasAttribute("NoSSE")) {
               capabilitiesBuffer.append(",").append(Capabilities.SSE.name());
             }
 
+            if (compactTypeEncoding && hasCapability(message, Capabilities.CompactTypeEncoding)) {
+              // the reply itself is the first message in the compact encoding.
+              queue.setCompactTypeEncoding(true);
+              capabilitiesBuffer.append(",").append(Capabilities.CompactTypeEncoding.name());
+            }
+
             msg.set(MessageParts.CapabilitiesFlags, capabilitiesBuffer.toString());
 
             msg.set(ConnectionSessionKey, queue.getSession().getSessionId());
@@ -1262,32 +1671,28 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     @Override
     public void run() {
       runCount++;
-      boolean houseKeepingPerformed = false;
+      final long now = System.currentTimeMillis();
       final List<MessageQueue> endSessions = new LinkedList<MessageQueue>();
 
       int paged = 0, killed = 0;
 
-      while (!houseKeepingPerformed) {
-        try {
-          final Iterator<MessageQueue> iter = ServerMessageBusImpl.this.messageQueues.values().iterator();
-          MessageQueue q;
-          while (iter.hasNext()) {
-            if ((q = iter.next()).isStale()) {
-              iter.remove();
-              endSessions.add(q);
-              killed++;
-            }
-
-            if (PageUtil.pageIfStraddling(q)) {
-              paged++;
-            }
-          }
+      for (final MessageQueue q : queueExpiry.expire(now)) {
+        if (getQueue(q.getSession()) != q) {
+          // the queue was closed since it was scheduled.
+          continue;
+        }
 
-          houseKeepingPerformed = true;
+        if (q.isStale()) {
+          messageQueues.values().remove(q);
+          endSessions.add(q);
+          killed++;
+          continue;
         }
-        catch (ConcurrentModificationException cme) {
-          // fall-through and try again.
+
+        if (PageUtil.pageIfStraddling(q)) {
+          paged++;
         }
+        queueExpiry.schedule(q, getNextQueueCheckTime(q, now));
       }
 
       if (paged > 0 || killed > 0) {
@@ -1295,7 +1700,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       }
 
       for (final MessageQueue ref : endSessions) {
-        for (final String subject : new HashSet<String>(ServerMessageBusImpl.this.remoteSubscriptions.keySet())) {
+        for (final String subject : new ArrayList<String>(getRemoteSubscriptions(ref))) {
           ServerMessageBusImpl.this.remoteUnsubscribe(ref.getSession(), ref, subject);
         }
 
@@ -1305,12 +1710,10 @@ public class ServerMessageBusImpl implements ServerMessageBus {
         ref.discard();
       }
 
-      final Iterator<ClusterWaitEntry> entryIterator = deadLetter.values().iterator();
-
-      while (entryIterator.hasNext()) {
-        final ClusterWaitEntry entry = entryIterator.next();
-        if (entry.isStale()) {
-          entryIterator.remove();
+      for (final String messageId : deadLetterExpiry.expire(now)) {
+        final ClusterWaitEntry entry = deadLetter.get(messageId);
+        // the entry is gone if another node claimed the message in the meantime.
+        if (entry != null && deadLetter.remove(messageId, entry)) {
           try {
             entry.notifyTimeout();
           }
@@ -1320,6 +1723,10 @@ public class ServerMessageBusImpl implements ServerMessageBus {
         }
       }
 
+      if (runCount % HOUSEKEEPING_STATUS_INTERVAL != 0) {
+        return;
+      }
+
       final BufferStatus stat = bufferStatus();
       if (stat.getFree() == 1.0f) {
         if (lastWasEmpty) {
@@ -1340,6 +1747,13 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       if (stat.getFree() < 0.50f) {
         log.debug("[bus] high load condition detected!");
       }
+
+      if (pageStore.getPageOutCount() > 0) {
+        log.debug("[bus] paging status [pages: " + pageStore.getPageCount() + "; stored bytes: "
+            + pageStore.getStoredBytes() + "; paged bytes: " + pageStore.getPagedBytes() + "; page-ins: "
+            + pageStore.getPageInCount() + " (avg " + pageStore.getAveragePageInLatencyNanos() + "ns); evictions: "
+            + pageStore.getEvictionCount() + "]");
+      }
     }
 
     @Override
@@ -1378,7 +1792,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     public void remove() {
       if (removeFromDeliveryPlan(subject, receiver).getTotalReceivers() == 0) {
         globalSubscriptions.remove(subject);
-        subscriptions.remove(subject);
+        removeDeliveryPlan(subject);
       }
       else {
         boolean nonRemote = true;
@@ -1390,7 +1804,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
         }
         if (nonRemote) {
           globalSubscriptions.remove(subject);
-          subscriptions.remove(subject);
+          removeDeliveryPlan(subject);
         }
       }
     }
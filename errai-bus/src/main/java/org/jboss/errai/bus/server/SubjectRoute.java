@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+/**
+ * The delivery plans of a subject, for both its global and its local-only subscriptions. There is one route per
+ * subscribed subject, so a message can be routed with a single lookup of its subject.
+ * <p/>
+ * The plans are replaced, never modified, so they can be read without locking. Changes to a route are made holding
+ * the lock on the route.
+ */
+final class SubjectRoute {
+  private volatile DeliveryPlan plan;
+  private volatile DeliveryPlan localPlan;
+
+  /**
+   * Set once the route has been removed from the routing table, after which it must not be changed.
+   */
+  boolean retired;
+
+  /**
+   * Returns the plan of the global subscriptions to the subject, or null if there are none.
+   */
+  DeliveryPlan getPlan() {
+    return plan;
+  }
+
+  /**
+   * Returns the plan of the local-only subscriptions to the subject, or null if there are none.
+   */
+  DeliveryPlan getLocalPlan() {
+    return localPlan;
+  }
+
+  void setPlan(final boolean local, final DeliveryPlan plan) {
+    if (local) {
+      this.localPlan = plan;
+    }
+    else {
+      this.plan = plan;
+    }
+  }
+
+  boolean isEmpty() {
+    return plan == null && localPlan == null;
+  }
+}
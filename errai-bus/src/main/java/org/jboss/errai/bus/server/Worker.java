@@ -22,8 +22,10 @@ import org.jboss.errai.bus.client.api.RoutingFlag;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.slf4j.Logger;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import static java.lang.System.currentTimeMillis;
 import static org.jboss.errai.bus.client.util.ErrorHelper.handleMessageDeliveryFailure;
@@ -31,14 +33,23 @@ import static org.jboss.errai.bus.client.util.ErrorHelper.sendClientError;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
- * A <tt>Worker</tt> is a specialized thread made to work with the messages and services of Errai
+ * A <tt>Worker</tt> is a specialized thread made to work with the messages and services of Errai.
+ * <p/>
+ * Each worker owns two queues. The <em>affine</em> queue holds messages from the sessions hashed to this worker, and
+ * is only ever drained by this worker, so that the messages of a session are processed in order. The <em>shared</em>
+ * queue holds messages which have no session, and which idle workers are free to steal.
  */
 public class Worker extends Thread {
-  private MessageBus bus;
-  private BlockingQueue<Message> messages;
-  private long timeout;
+  private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final WorkerFactory factory;
+  private final MessageBus bus;
+  private final BlockingQueue<Message> affineMessages;
+  private final BlockingQueue<Message> sharedMessages;
+  private final long timeout;
 
   private volatile boolean active = true;
+  private volatile boolean idle = false;
   private volatile boolean exited = false;
   private volatile long workExpiry;
   private volatile Message message;
@@ -53,8 +64,10 @@ public class Worker extends Thread {
    */
   public Worker(WorkerFactory factory, ErraiService svc) {
     super("Dispatch Worker Thread");
+    this.factory = factory;
     this.timeout = factory.getWorkerTimeout();
-    this.messages = factory.getMessages();
+    this.affineMessages = new ArrayBlockingQueue<Message>(factory.getWorkerQueueSize());
+    this.sharedMessages = new ArrayBlockingQueue<Message>(factory.getWorkerQueueSize());
     this.bus = svc.getBus();
     setPriority(Thread.MIN_PRIORITY);
     setDaemon(true);
@@ -106,7 +119,7 @@ public class Worker extends Thread {
         // looping inside a catch block is cheaper than entering and leaving it
         // every time.
         while (true) {
-          if ((message = messages.poll(60, TimeUnit.SECONDS)) != null) {
+          if ((message = nextMessage()) != null) {
             workExpiry = currentTimeMillis() + timeout;
             deliverToBus(bus, message);
             workExpiry = 0;
@@ -138,6 +151,58 @@ public class Worker extends Thread {
   }
 
 
+  /**
+   * Takes the next message from this worker's own queues, or steals one from another worker. If there is no work
+   * at all, the worker parks until it is woken by a producer, or until the idle timeout elapses.
+   *
+   * @return the next message, or null if there was none.
+   */
+  private Message nextMessage() throws InterruptedException {
+    Message next;
+    if ((next = affineMessages.poll()) != null
+        || (next = sharedMessages.poll()) != null
+        || (next = factory.steal(this)) != null) {
+      return next;
+    }
+
+    idle = true;
+    try {
+      // check again now that producers can see we're idle, so a wake-up can't be missed.
+      if ((next = affineMessages.poll()) != null || (next = sharedMessages.poll()) != null) {
+        return next;
+      }
+
+      LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      return null;
+    }
+    finally {
+      idle = false;
+    }
+  }
+
+  /**
+   * Wakes this worker if it is parked waiting for work.
+   */
+  void wake() {
+    LockSupport.unpark(this);
+  }
+
+  boolean isIdle() {
+    return idle;
+  }
+
+  BlockingQueue<Message> getAffineMessages() {
+    return affineMessages;
+  }
+
+  BlockingQueue<Message> getSharedMessages() {
+    return sharedMessages;
+  }
+
   public static void deliverToBus(MessageBus bus, Message message) {
     if (message.isFlagSet(RoutingFlag.NonGlobalRouting)) {
       bus.send(message);
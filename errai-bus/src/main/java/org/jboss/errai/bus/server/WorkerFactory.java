@@ -25,13 +25,29 @@ import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
 /**
- * The <tt>WorkerFactory</tt> maintains a pool of <tt>Worker</tt>s, and takes care of running and terminating them
+ * The <tt>WorkerFactory</tt> maintains a pool of <tt>Worker</tt>s, and takes care of running and terminating them.
+ * <p/>
+ * Messages which belong to a session are always handed to the same worker, chosen by hashing the session id, so the
+ * messages of any one session are processed in the order they arrived. Messages without a session are spread across
+ * the workers, and may be stolen by any worker which runs out of work of its own.
+ * <p/>
+ * When the queue of the chosen worker is full, the message is handled according to the saturation policy, after
+ * waiting for at most the configured offer timeout (by default, not at all). Under the <tt>CallerRuns</tt> policy, a
+ * message without a session is delivered on the calling thread. A message with a session is rejected with a delivery
+ * failure instead, as running it on the caller could overtake earlier messages of the same session; raise the offer
+ * timeout to have such messages wait longer for room. The one exception is a message sent by the session's own
+ * worker, which is delivered on the worker's thread, ahead of the messages still queued for the session.
+ * <p/>
+ * Messages still queued when the pool is stopped are not delivered. Their senders are notified through the error
+ * callback of the message, if it has one.
  */
 public class WorkerFactory {
   private static final int DEFAULT_DELIVERY_QUEUE_SIZE = 100;
@@ -40,6 +56,10 @@ public class WorkerFactory {
   private static final String CONFIG_ASYNC_THREAD_POOL_SIZE = "errai.async.thread_pool_size";
   private static final String CONFIG_ASYNC_WORKER_TIMEOUT = "errai.async.worker.timeout";
   private static final String CONFIG_ASYNC_DELIVERY_QUEUE_SIZE = "errai.async.delivery.queue_size";
+  private static final String CONFIG_ASYNC_DELIVERY_OFFER_TIMEOUT = "errai.async.delivery.offer_timeout";
+  private static final String CONFIG_ASYNC_SATURATION_POLICY = "errai.async.saturation_policy";
+
+  private static final String SESSION_ID_RESOURCE = "SessionID";
 
   private Worker[] workerPool;
 
@@ -47,9 +67,11 @@ public class WorkerFactory {
 
   private SaturationPolicy saturationPolicy = SaturationPolicy.CallerRuns;
 
-  private BlockingQueue<Message> messages;
+  private final AtomicInteger nextSharedWorker = new AtomicInteger();
 
   private int poolSize = DEFAULT_THREAD_POOL_SIZE;
+  private int workerQueueSize = DEFAULT_DELIVERY_QUEUE_SIZE;
+  private long offerTimeout = 0;
   private long workerTimeout = Boolean.getBoolean("org.jboss.errai.debugmode") ? seconds(360) : seconds(30);
 
   private Logger log = LoggerFactory.getLogger(this.getClass());
@@ -65,10 +87,16 @@ public class WorkerFactory {
 
     ErraiServiceConfigurator cfg = svc.getConfiguration();
 
-    int deliveryQueueSize = DEFAULT_DELIVERY_QUEUE_SIZE;
-
     if (cfg.hasProperty(CONFIG_ASYNC_DELIVERY_QUEUE_SIZE)) {
-      deliveryQueueSize = Integer.parseInt(cfg.getProperty(CONFIG_ASYNC_DELIVERY_QUEUE_SIZE));
+      workerQueueSize = Integer.parseInt(cfg.getProperty(CONFIG_ASYNC_DELIVERY_QUEUE_SIZE));
+    }
+
+    if (cfg.hasProperty(CONFIG_ASYNC_DELIVERY_OFFER_TIMEOUT)) {
+      offerTimeout = Long.parseLong(cfg.getProperty(CONFIG_ASYNC_DELIVERY_OFFER_TIMEOUT));
+    }
+
+    if (cfg.hasProperty(CONFIG_ASYNC_SATURATION_POLICY)) {
+      saturationPolicy = SaturationPolicy.valueOf(cfg.getProperty(CONFIG_ASYNC_SATURATION_POLICY));
     }
 
     if (cfg.hasProperty(CONFIG_ASYNC_THREAD_POOL_SIZE)) {
@@ -79,9 +107,8 @@ public class WorkerFactory {
       workerTimeout = seconds(Integer.parseInt(cfg.getProperty(CONFIG_ASYNC_WORKER_TIMEOUT)));
     }
 
-    this.messages = new ArrayBlockingQueue<Message>(deliveryQueueSize);
-
-    log.debug("initializing async worker pools (poolSize: " + poolSize + "; workerTimeout: " + workerTimeout + ")");
+    log.debug("initializing async worker pools (poolSize: " + poolSize + "; workerTimeout: " + workerTimeout
+        + "; workerQueueSize: " + workerQueueSize + "; saturationPolicy: " + saturationPolicy + ")");
 
     this.workerPool = new Worker[poolSize];
 
@@ -122,13 +149,18 @@ public class WorkerFactory {
    * @param m - message to be delivered
    */
   public void deliverGlobal(Message m) throws InterruptedException {
-    if (messages.offer(m, 30, java.util.concurrent.TimeUnit.SECONDS)) {
+    if (enqueue(m)) {
       return;
     }
     else {
       switch (saturationPolicy) {
         case CallerRuns:
-          svc.getBus().sendGlobal(m);
+          if (isOrderedByOtherWorker(m)) {
+            sendDeliveryFailure(m);
+          }
+          else {
+            svc.getBus().sendGlobal(m);
+          }
           break;
         case Fail:
           sendDeliveryFailure(m);
@@ -144,13 +176,18 @@ public class WorkerFactory {
    */
   public void deliver(Message m) throws InterruptedException {
     m.setFlag(RoutingFlag.NonGlobalRouting);
-    if (messages.offer(m, 30, java.util.concurrent.TimeUnit.SECONDS)) {
+    if (enqueue(m)) {
       return;
     }
     else {
       switch (saturationPolicy) {
         case CallerRuns:
-          svc.getBus().send(m);
+          if (isOrderedByOtherWorker(m)) {
+            sendDeliveryFailure(m);
+          }
+          else {
+            svc.getBus().send(m);
+          }
           break;
         case Fail:
           sendDeliveryFailure(m);
@@ -159,6 +196,82 @@ public class WorkerFactory {
     }
   }
 
+  /**
+   * Hands the message to a worker: the worker its session hashes to if it has one, otherwise the next worker in turn.
+   *
+   * @return false if the worker's queue was full.
+   */
+  private boolean enqueue(final Message m) throws InterruptedException {
+    final String sessionId = m.getResource(String.class, SESSION_ID_RESOURCE);
+
+    if (sessionId != null) {
+      final Worker worker = workerPool[indexFor(sessionId.hashCode())];
+      if (!offer(worker.getAffineMessages(), m)) {
+        return false;
+      }
+      worker.wake();
+    }
+    else {
+      final Worker worker = workerPool[indexFor(nextSharedWorker.getAndIncrement())];
+      if (!offer(worker.getSharedMessages(), m)) {
+        return false;
+      }
+      worker.wake();
+
+      // if the worker is busy, let an idle one steal the message.
+      if (!worker.isIdle()) {
+        for (final Worker w : workerPool) {
+          if (w.isIdle()) {
+            w.wake();
+            break;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the message belongs to a session whose messages are processed by a worker other than the calling
+   * thread, so running it on the caller could overtake earlier messages of the session.
+   */
+  private boolean isOrderedByOtherWorker(final Message m) {
+    final String sessionId = m.getResource(String.class, SESSION_ID_RESOURCE);
+    return sessionId != null && workerPool[indexFor(sessionId.hashCode())] != Thread.currentThread();
+  }
+
+  private boolean offer(final BlockingQueue<Message> queue, final Message m) throws InterruptedException {
+    if (offerTimeout <= 0) {
+      return queue.offer(m);
+    }
+    else {
+      return queue.offer(m, offerTimeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private int indexFor(int hash) {
+    hash ^= (hash >>> 16);
+    return (hash & Integer.MAX_VALUE) % poolSize;
+  }
+
+  /**
+   * Steals a message without a session from the shared queue of some worker other than the thief.
+   *
+   * @param thief - the worker looking for work
+   * @return a message, or null if no other worker has any shared messages waiting
+   */
+  Message steal(final Worker thief) {
+    for (final Worker victim : workerPool) {
+      if (victim != thief) {
+        final Message m = victim.getSharedMessages().poll();
+        if (m != null) {
+          return m;
+        }
+      }
+    }
+    return null;
+  }
+
   private void sendDeliveryFailure(Message m) {
     MessageDeliveryFailure mdf
             = new MessageDeliveryFailure("could not deliver message because the outgoing queue is full");
@@ -170,12 +283,12 @@ public class WorkerFactory {
   }
 
   /**
-   * Gets the messages in the queue
+   * Gets the capacity of each of the queues of a worker
    *
-   * @return the messages in the queue
+   * @return the capacity of a worker queue
    */
-  protected BlockingQueue<Message> getMessages() {
-    return messages;
+  protected int getWorkerQueueSize() {
+    return workerQueueSize;
   }
 
   /**
@@ -238,10 +351,43 @@ public class WorkerFactory {
         System.err.println("was interrupted waiting to shutdown async worker pool");
         e.printStackTrace();
       }
+
+      failUndeliveredMessages();
     }
 
   }
 
+  /**
+   * Notifies the senders of the messages left in the queues of the stopped workers that they will not be delivered.
+   * The bus is already stopped at this point, so the failures are only reported to the error callbacks.
+   */
+  private void failUndeliveredMessages() {
+    final List<Message> undelivered = new ArrayList<Message>();
+    for (final Worker worker : workerPool) {
+      worker.getAffineMessages().drainTo(undelivered);
+      worker.getSharedMessages().drainTo(undelivered);
+    }
+
+    if (undelivered.isEmpty()) {
+      return;
+    }
+
+    log.warn("worker pool stopped with " + undelivered.size() + " undelivered message(s)");
+
+    final MessageDeliveryFailure mdf
+        = new MessageDeliveryFailure("could not deliver message because the worker pool was stopped");
+    for (final Message m : undelivered) {
+      if (m.getErrorCallback() != null) {
+        try {
+          m.getErrorCallback().error(m, mdf);
+        }
+        catch (Throwable t) {
+          log.debug("error callback failed for undelivered message", t);
+        }
+      }
+    }
+  }
+
   private long seconds(int seconds) {
     return seconds * 1000;
   }
@@ -1,6 +1,9 @@
 package org.jboss.errai.bus.server.api;
 
+import java.util.concurrent.Callable;
+
 import org.jboss.errai.bus.client.api.CallableFuture;
+import org.jboss.errai.common.client.api.Assert;
 
 /**
  * Used for obtaining instances of {@link org.jboss.errai.bus.client.api.CallableFuture} for use in asynchronous RPC methods.
@@ -29,4 +32,18 @@ public class CallableFutureFactory {
   public <T> CallableFuture<T> createFuture() {
     return new ServerCallableFuture<T>();
   }
+
+  /**
+   * Creates a new {@code CallableFuture} which is completed by running the specified task on the bus' executor for
+   * asynchronous RPC tasks, once the RPC method which returns it is done. This keeps long-running work off the
+   * threads delivering messages, without the endpoint having to manage threads of its own.
+   *
+   * @param task the task computing the value to be returned. If it throws, the client receives the exception.
+   * @param <T> The type of value to be returned.
+   * @return
+   *          an instance of the {@link org.jboss.errai.bus.client.api.CallableFuture}.
+   */
+  public <T> CallableFuture<T> submit(final Callable<T> task) {
+    return new ServerCallableFuture<T>(Assert.notNull(task));
+  }
 }
@@ -20,6 +20,7 @@ import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.server.io.ByteWriteAdapter;
 import org.jboss.errai.bus.server.io.MessageDeliveryHandler;
+import org.jboss.errai.bus.server.io.PageStore;
 import org.jboss.errai.bus.server.io.buffers.Buffer;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
 
@@ -35,6 +36,8 @@ public interface MessageQueue {
 
   boolean offer(Message message) throws IOException;
 
+  boolean offerEncoded(Message message, byte[] payload) throws IOException;
+
   long getCurrentBufferSequenceNumber();
 
   void wake();
@@ -79,11 +82,45 @@ public interface MessageQueue {
 
   Buffer getBuffer();
 
+  /**
+   * Returns the store this queue is paged out to. This is normally shared by all the queues of the same bus.
+   */
+  PageStore getPageStore();
+
   int incrementMessageCount();
 
   void resetMessageCount();
 
+  /**
+   * Records that the given amount of data was buffered for this queue. The count is cleared along with the message
+   * count, when the queue is drained.
+   */
+  void addBytesWaiting(long bytes);
+
+  /**
+   * Returns the amount of data buffered for this queue since it was last drained.
+   */
+  long getBytesWaiting();
+
+  /**
+   * Marks the arrivals of messages to this queue as tracked, so that they are recorded as they are delivered. This is
+   * set once the queue has been polled with a {@link org.jboss.errai.bus.server.io.CoalescingActivationCallback}.
+   */
+  void setArrivalsTracked(boolean arrivalsTracked);
+
+  boolean isArrivalsTracked();
+
   long getLastTransmissionTime();
 
+  long getTimeout();
+
   void setTimeout(long timeout);
+
+  /**
+   * Returns true if messages to this queue are encoded with the compact type encoding, which the remote bus has agreed
+   * to when it associated.
+   */
+  boolean isCompactTypeEncoding();
+
+  void setCompactTypeEncoding(boolean compactTypeEncoding);
 }
@@ -1,25 +1,151 @@
 package org.jboss.errai.bus.server.api;
 
 import static org.jboss.errai.bus.client.api.base.MessageBuilder.createConversation;
+import static org.jboss.errai.bus.client.util.ErrorHelper.handleMessageDeliveryFailure;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.jboss.errai.bus.client.api.CallableFuture;
+import org.jboss.errai.bus.client.api.base.MessageDeliveryFailure;
 import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.common.client.api.Assert;
 
 /**
+ * The server side of a {@link CallableFuture} returned by an asynchronous RPC endpoint. The reply is sent once the
+ * future is completed, which may happen long after the endpoint has returned and the thread which delivered the call
+ * has moved on to other messages.
+ * <p/>
+ * A future which is completed before the endpoint returns holds on to its value until the bus takes the future over,
+ * and a future created by {@link CallableFutureFactory#submit(Callable)} runs its task on the bus' executor for
+ * asynchronous RPC tasks once it has been taken over.
+ *
  * @author Mike Brock
  */
 public class ServerCallableFuture<T> implements CallableFuture<T> {
-  private Message incomingMessage;
+  private final Message incomingMessage;
+  private final Callable<T> task;
+
+  /**
+   * Guarded by this.
+   */
+  private boolean completed;
+  private T value;
+  private Throwable error;
+  private MessageBus bus;
 
   public ServerCallableFuture() {
-    incomingMessage = RpcContext.getMessage();
+    this(null);
+  }
+
+  ServerCallableFuture(final Callable<T> task) {
+    this.incomingMessage = RpcContext.getMessage();
+    this.task = task;
   }
 
   @Override
   public void setValue(final T responseValue) {
-    createConversation(incomingMessage)
-        .subjectProvided()
-        .with("MethodReply", responseValue)
-        .noErrorHandling().reply();
+    complete(responseValue, null);
+  }
+
+  /**
+   * Completes the call exceptionally. The client receives the error the same way as an exception thrown by a
+   * synchronous endpoint.
+   *
+   * @param error
+   *     the cause of the failure. Must not be null.
+   */
+  public void setError(final Throwable error) {
+    complete(null, Assert.notNull(error));
+  }
+
+  private void complete(final T value, final Throwable error) {
+    final MessageBus replyBus;
+    synchronized (this) {
+      if (completed) {
+        throw new IllegalStateException("the call has already been completed");
+      }
+      this.completed = true;
+      this.value = value;
+      this.error = error;
+      replyBus = bus;
+    }
+
+    if (replyBus != null) {
+      reply(replyBus);
+    }
+  }
+
+  /**
+   * Hands this future over to the bus once the endpoint which returned it is done. Sends the reply straight away if
+   * the future has already been completed, and otherwise starts its task, if it has one. Called by the bus only.
+   *
+   * @param bus
+   *     the bus to send the reply with.
+   */
+  public void bind(final MessageBus bus) {
+    final boolean done;
+    synchronized (this) {
+      if (this.bus != null) {
+        throw new IllegalStateException("the future has already been bound");
+      }
+      this.bus = Assert.notNull(bus);
+      done = completed;
+    }
+
+    if (done) {
+      reply(bus);
+    }
+    else if (task != null) {
+      final Runnable runnable = new Runnable() {
+        @Override
+        public void run() {
+          runTask();
+        }
+      };
+
+      if (bus instanceof ServerMessageBus) {
+        try {
+          ((ServerMessageBus) bus).getAsyncRpcExecutor().execute(runnable);
+        }
+        catch (RejectedExecutionException e) {
+          setError(e);
+        }
+      }
+      else {
+        runnable.run();
+      }
+    }
+  }
+
+  private void runTask() {
+    final T result;
+    try {
+      RpcContext.set(incomingMessage);
+      result = task.call();
+    }
+    catch (Throwable t) {
+      setError(t);
+      return;
+    }
+    finally {
+      RpcContext.remove();
+    }
+    setValue(result);
+  }
+
+  private void reply(final MessageBus bus) {
+    if (error == null) {
+      createConversation(incomingMessage)
+          .subjectProvided()
+          .with("MethodReply", value)
+          .noErrorHandling().sendNowWith(bus);
+    }
+    else {
+      incomingMessage.setResource("Exception", error);
+      handleMessageDeliveryFailure(bus, incomingMessage, "Error calling remote service: " + incomingMessage.getSubject(),
+          new MessageDeliveryFailure("error invoking RPC endpoint", error, true), false);
+    }
   }
 }
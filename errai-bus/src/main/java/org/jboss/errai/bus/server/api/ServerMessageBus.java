@@ -64,6 +64,13 @@ public interface ServerMessageBus extends MessageBus {
    */
   public ExecutorService getScheduler();
 
+  /**
+   * Returns the executor which runs the tasks submitted by asynchronous RPC endpoints.
+   *
+   * @return the <tt>ExecutorService</tt> for long-running RPC tasks
+   */
+  public ExecutorService getAsyncRpcExecutor();
+
   /**
    * Register a {@link org.jboss.errai.bus.server.api.QueueClosedListener} with the bus.
    *
@@ -88,6 +95,15 @@ public interface ServerMessageBus extends MessageBus {
    */
   public Collection<MessageCallback> getReceivers(String subject);
 
+  /**
+   * Sends the message to each of the specified sessions. Unlike sending a copy of the message to each session, the
+   * message is only encoded once and the encoded payload is shared by all recipient queues.
+   *
+   * @param message the message to send. It must not contain a session id.
+   * @param sessionIds the ids of the sessions to deliver the message to.
+   */
+  public void sendToSessions(Message message, Collection<String> sessionIds);
+
   public boolean hasRemoteSubscriptions(String subject);
 
   public boolean hasRemoteSubscription(String sessionId, String subject);
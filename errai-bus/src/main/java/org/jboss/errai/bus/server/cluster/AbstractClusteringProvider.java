@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.cluster;
+
+/**
+ * A base class for {@link ClusteringProvider} implementations, which provides no-op implementations of the
+ * notifications that a provider may not care about. Extending this class, rather than implementing the interface
+ * directly, keeps a provider source compatible when notifications are added to the interface.
+ */
+public abstract class AbstractClusteringProvider implements ClusteringProvider {
+  @Override
+  public void localSessionAttached(final String sessionId) {
+  }
+
+  @Override
+  public void localSessionDetached(final String sessionId) {
+  }
+}
@@ -43,5 +43,17 @@ public enum ClusterCommands {
    * The <tt>InvalidRoute</tt> verb is used in a point-to-point message to indicate that the bus was
    * forwarded a message which it is not or no longer responsible for.
    */
-  InvalidRoute
+  InvalidRoute,
+
+  /**
+   * The <tt>RegisterSession</tt> verb is used in a point-to-point message to tell the bus which a session hashes to
+   * that the sender is responsible for handling the session. Only used when sessions are routed by consistent hashing.
+   */
+  RegisterSession,
+
+  /**
+   * The <tt>UnregisterSession</tt> verb is used in a point-to-point message to tell the bus which a session hashes to
+   * that the sender is no longer responsible for handling the session.
+   */
+  UnregisterSession
 }
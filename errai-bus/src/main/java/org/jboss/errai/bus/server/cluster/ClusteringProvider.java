@@ -19,6 +19,11 @@ package org.jboss.errai.bus.server.cluster;
 import org.jboss.errai.bus.client.api.messaging.Message;
 
 /**
+ * Implementations should extend {@link AbstractClusteringProvider} where possible. Providers written against an
+ * earlier version of this interface must implement {@link #localSessionAttached(String)} and
+ * {@link #localSessionDetached(String)}, which were added for session routing by consistent hashing, or extend that
+ * class instead.
+ *
  * @author Mike Brock
  */
 public interface ClusteringProvider {
@@ -39,5 +44,21 @@ public interface ClusteringProvider {
    * @param message
    */
   public void clusterTransmitGlobal(final Message message);
+
+  /**
+   * Notifies the provider that a client session has been attached to the local bus.
+   *
+   * @param sessionId
+   *        the ID of the session.
+   */
+  public void localSessionAttached(final String sessionId);
+
+  /**
+   * Notifies the provider that a client session is no longer attached to the local bus.
+   *
+   * @param sessionId
+   *        the ID of the session.
+   */
+  public void localSessionDetached(final String sessionId);
 }
 
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.cluster;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable consistent-hash ring, which maps keys to the nodes of a cluster. Every node is placed on the ring at a
+ * number of points derived from its name, and a key belongs to the node at the first point at or after the hash of
+ * the key. When a node joins or leaves, only the keys between its points and those of its neighbours change hands.
+ * <p/>
+ * The points only depend on the names of the nodes, so every node of the cluster builds the same ring from the same
+ * membership.
+ *
+ * @param <T>
+ *     the type of the nodes. Their <tt>toString()</tt> must be their name, which is the same on every node.
+ */
+public final class ConsistentHashRing<T> {
+  private final int[] points;
+  private final Object[] nodes;
+
+  /**
+   * @param members
+   *     the nodes of the cluster.
+   * @param pointsPerNode
+   *     the number of points of each node on the ring. More points spread the keys more evenly.
+   */
+  public ConsistentHashRing(final Collection<? extends T> members, final int pointsPerNode) {
+    final long[] entries = new long[members.size() * pointsPerNode];
+    final Object[] memberArray = members.toArray();
+
+    int i = 0;
+    for (int m = 0; m < memberArray.length; m++) {
+      final String name = String.valueOf(memberArray[m]);
+      for (int p = 0; p < pointsPerNode; p++) {
+        // the point in the high bits and the member in the low bits, so sorting keeps them together.
+        entries[i++] = ((long) hash(name + "#" + p) << 32) | m;
+      }
+    }
+    Arrays.sort(entries);
+
+    points = new int[entries.length];
+    nodes = new Object[entries.length];
+    for (i = 0; i < entries.length; i++) {
+      points[i] = (int) (entries[i] >> 32);
+      nodes[i] = memberArray[(int) entries[i]];
+    }
+  }
+
+  /**
+   * Returns the node which owns the specified key, or null if the ring has no nodes.
+   */
+  @SuppressWarnings("unchecked")
+  public T get(final String key) {
+    if (points.length == 0) {
+      return null;
+    }
+
+    int i = Arrays.binarySearch(points, hash(key));
+    if (i < 0) {
+      i = -i - 1;
+    }
+    return (T) nodes[i == points.length ? 0 : i];
+  }
+
+  public boolean isEmpty() {
+    return points.length == 0;
+  }
+
+  /**
+   * Spreads the bits of the string hash code, which is specified by the language and so the same on every node.
+   */
+  private static int hash(final String key) {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
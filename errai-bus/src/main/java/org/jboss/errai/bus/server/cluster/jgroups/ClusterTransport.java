@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.cluster.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jboss.errai.bus.server.util.NamedThreadFactory;
+import org.jgroups.Address;
+import org.jgroups.JChannel;
+import org.jgroups.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the payloads of the JGroups clustering provider to the other nodes. Rather than sending each payload as a
+ * JGroups message of its own, the payloads for the same destination are collected for a short window and sent
+ * together, so a burst of messages costs one set of headers, acknowledgements and packets instead of one per message.
+ * Batches above a configurable size are deflated as well.
+ * <p/>
+ * A batch is encoded as a flags byte, followed by the number of payloads and, for each payload, its length and its
+ * UTF-8 bytes. If the compressed flag is set, everything after the flags byte is deflated.
+ */
+public class ClusterTransport {
+  private static final Logger log = LoggerFactory.getLogger(ClusterTransport.class);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int FLAG_COMPRESSED = 1;
+
+  private final JChannel channel;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final int compressionThreshold;
+  private final ScheduledExecutorService scheduler;
+
+  private final Batch broadcast = new Batch(null);
+  private final ConcurrentMap<Address, Batch> unicast = new ConcurrentHashMap<Address, Batch>();
+
+  /**
+   * @param channel
+   *     the connected channel to send the batches with.
+   * @param windowMillis
+   *     how long a payload may wait for others to the same destination, in milliseconds. If zero, every payload is
+   *     sent straight away on its own.
+   * @param maxBatchSize
+   *     the number of characters at which a batch is sent without waiting for the end of the window.
+   * @param compressionThreshold
+   *     the encoded size in bytes from which batches are deflated. If zero, batches are never deflated.
+   */
+  public ClusterTransport(final JChannel channel, final long windowMillis, final int maxBatchSize,
+                          final int compressionThreshold) {
+    this.channel = channel;
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.compressionThreshold = compressionThreshold;
+    this.scheduler = windowMillis > 0
+        ? Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Errai Cluster Batcher")) : null;
+  }
+
+  /**
+   * Sends the specified payload to a node of the cluster, or to all of them. Payloads sent to the same destination
+   * are received in the order in which they were sent.
+   *
+   * @param destination
+   *     the node to send the payload to, or null to send it to every node.
+   * @param payload
+   *     the encoded message.
+   */
+  public void send(final Address destination, final String payload) {
+    if (scheduler == null) {
+      transmit(destination, Collections.singletonList(payload));
+    }
+    else {
+      batchFor(destination).add(payload);
+    }
+  }
+
+  private Batch batchFor(final Address destination) {
+    if (destination == null) {
+      return broadcast;
+    }
+
+    Batch batch = unicast.get(destination);
+    if (batch == null) {
+      final Batch newBatch = new Batch(destination);
+      batch = unicast.putIfAbsent(destination, newBatch);
+      if (batch == null) {
+        batch = newBatch;
+      }
+    }
+    return batch;
+  }
+
+  /**
+   * Forgets the batches for nodes which have left the cluster, after sending what is left in them.
+   *
+   * @param members
+   *     the current members of the cluster.
+   */
+  public void retainMembers(final Collection<Address> members) {
+    for (final Address address : unicast.keySet()) {
+      if (!members.contains(address)) {
+        final Batch batch = unicast.remove(address);
+        if (batch != null) {
+          batch.flush();
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends all payloads which are waiting for the end of their window.
+   */
+  public void flush() {
+    broadcast.flush();
+    for (final Batch batch : unicast.values()) {
+      batch.flush();
+    }
+  }
+
+  /**
+   * Sends all waiting payloads and stops the timer. The channel is left open.
+   */
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    flush();
+  }
+
+  private void transmit(final Address destination, final List<String> payloads) {
+    try {
+      channel.send(new Message(destination, null, encode(payloads, compressionThreshold)));
+    }
+    catch (Exception e) {
+      log.error("could not send " + payloads.size() + " message(s) to "
+          + (destination == null ? "the cluster" : destination), e);
+    }
+  }
+
+  /**
+   * Encodes the specified payloads into a batch.
+   *
+   * @param payloads
+   *     the payloads to encode.
+   * @param compressionThreshold
+   *     the encoded size in bytes from which the batch is deflated, or zero to never deflate it.
+   *
+   * @return the encoded batch.
+   */
+  public static byte[] encode(final List<String> payloads, final int compressionThreshold) {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      bytes.write(0);
+
+      final DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(payloads.size());
+      for (final String payload : payloads) {
+        final byte[] encoded = payload.getBytes(UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+      }
+      out.flush();
+
+      if (compressionThreshold <= 0 || bytes.size() < compressionThreshold) {
+        return bytes.toByteArray();
+      }
+
+      final byte[] uncompressed = bytes.toByteArray();
+      final ByteArrayOutputStream compressed = new ByteArrayOutputStream(uncompressed.length / 4 + 16);
+      compressed.write(FLAG_COMPRESSED);
+
+      final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        final DeflaterOutputStream deflaterOut = new DeflaterOutputStream(compressed, deflater);
+        deflaterOut.write(uncompressed, 1, uncompressed.length - 1);
+        deflaterOut.finish();
+      }
+      finally {
+        deflater.end();
+      }
+      return compressed.toByteArray();
+    }
+    catch (IOException e) {
+      // writing to memory does not fail.
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Decodes the payloads of a batch.
+   *
+   * @throws RuntimeException
+   *     if the batch is malformed.
+   */
+  public static List<String> decode(final byte[] buffer, final int offset, final int length) {
+    if (length < 1) {
+      throw new RuntimeException("bad cluster batch: empty");
+    }
+
+    final Inflater inflater = (buffer[offset] & FLAG_COMPRESSED) != 0 ? new Inflater() : null;
+    try {
+      InputStream stream = new ByteArrayInputStream(buffer, offset + 1, length - 1);
+      if (inflater != null) {
+        stream = new InflaterInputStream(stream, inflater);
+      }
+
+      final DataInputStream in = new DataInputStream(stream);
+      final int count = in.readInt();
+      if (count < 0) {
+        throw new RuntimeException("bad cluster batch: negative payload count " + count);
+      }
+
+      final List<String> payloads = new ArrayList<String>(Math.min(count, 1024));
+      for (int i = 0; i < count; i++) {
+        final int payloadLength = in.readInt();
+        if (payloadLength < 0) {
+          throw new RuntimeException("bad cluster batch: negative payload length " + payloadLength);
+        }
+
+        final byte[] payload = new byte[payloadLength];
+        in.readFully(payload);
+        payloads.add(new String(payload, UTF_8));
+      }
+      return payloads;
+    }
+    catch (IOException e) {
+      throw new RuntimeException("bad cluster batch", e);
+    }
+    finally {
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  /**
+   * The payloads waiting to be sent to one destination.
+   */
+  private class Batch implements Runnable {
+    private final Address destination;
+
+    /**
+     * Held while a batch is taken and sent, so batches for the same destination go out in order.
+     */
+    private final Object sendLock = new Object();
+
+    /**
+     * Guarded by this.
+     */
+    private List<String> payloads = new ArrayList<String>();
+    private int size;
+    private boolean scheduled;
+
+    private Batch(final Address destination) {
+      this.destination = destination;
+    }
+
+    private void add(final String payload) {
+      boolean full;
+      synchronized (this) {
+        payloads.add(payload);
+        size += payload.length();
+        full = size >= maxBatchSize;
+
+        if (!full && !scheduled) {
+          try {
+            scheduler.schedule(this, windowMillis, TimeUnit.MILLISECONDS);
+            scheduled = true;
+          }
+          catch (RejectedExecutionException e) {
+            // the transport is closed, so nothing waits for the window anymore.
+            full = true;
+          }
+        }
+      }
+
+      if (full) {
+        flush();
+      }
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        scheduled = false;
+      }
+      flush();
+    }
+
+    private void flush() {
+      synchronized (sendLock) {
+        final List<String> taken;
+        synchronized (this) {
+          if (payloads.isEmpty()) {
+            return;
+          }
+          taken = payloads;
+          payloads = new ArrayList<String>();
+          size = 0;
+        }
+        transmit(destination, taken);
+      }
+    }
+  }
+}
@@ -19,12 +19,23 @@ package org.jboss.errai.bus.server.cluster.jgroups;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.BusId;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.MessageId;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.Payload;
+import static org.jboss.errai.bus.server.cluster.ClusterParts.Relayed;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.SessId;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.Subject;
 import static org.jboss.errai.common.client.protocols.MessageParts.CommandType;
 import static org.jboss.errai.common.client.protocols.MessageParts.SessionID;
 import static org.jboss.errai.common.client.protocols.MessageParts.ToSubject;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
@@ -33,12 +44,14 @@ import org.jboss.errai.bus.client.api.RoutingFlag;
 import org.jboss.errai.bus.client.api.base.CommandMessage;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.ClusterWaitEntry;
 import org.jboss.errai.bus.server.QueueUnavailableException;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.api.ServerMessageBus;
 import org.jboss.errai.bus.server.cluster.ClusterCommands;
 import org.jboss.errai.bus.server.cluster.ClusterParts;
 import org.jboss.errai.bus.server.cluster.ClusteringProvider;
+import org.jboss.errai.bus.server.cluster.ConsistentHashRing;
 import org.jboss.errai.bus.server.cluster.IntrabusQueueSession;
 import org.jboss.errai.bus.server.io.MessageFactory;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
@@ -46,10 +59,12 @@ import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
 import org.jboss.errai.bus.server.util.SecureHashUtil;
 import org.jboss.errai.common.client.protocols.Resources;
+import org.jboss.errai.common.server.api.ErraiBootstrapFailure;
 import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
 import org.jgroups.Address;
 import org.jgroups.JChannel;
 import org.jgroups.ReceiverAdapter;
+import org.jgroups.View;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,10 +78,48 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
   private final String busId = SecureHashUtil.nextSecureHash();
 
   private final JChannel jchannel;
+  private final ClusterTransport transport;
   private final ServerMessageBus serverMessageBus;
 
   final Cache<String, Address> sessionToNodeCache;
 
+  /**
+   * The sessions whose owner is being asked for, with the messages waiting for the answer. Only the first message for
+   * a session asks the cluster, the others just wait for the same answer.
+   */
+  private final Cache<String, OwnerLookup> ownerLookups;
+
+  /**
+   * The encoded forwards this node relayed to the owner registered with it, by message id. The sender of such a
+   * message has already let go of it, so if the owner turns out to be stale, this node has to find the real owner and
+   * relay the message again. Only used with hash routing.
+   */
+  private final Cache<String, String> pendingRelays;
+
+  private static final int RING_POINTS_PER_NODE = 64;
+
+  /**
+   * Whether messages to sessions on other nodes are sent to the node the session hashes to, which knows the owner,
+   * instead of asking the whole cluster who owns the session.
+   */
+  private final boolean hashRouting;
+
+  /**
+   * Maps sessions to the node which keeps track of their owner. Rebuilt from the view whenever it changes. Only used
+   * with hash routing.
+   */
+  private volatile ConsistentHashRing<Address> sessionRing;
+
+  /**
+   * The sessions attached to the local bus. Only tracked with hash routing.
+   */
+  private final Set<String> localSessions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * The owners of the sessions which hash to this node. Only used with hash routing.
+   */
+  private final ConcurrentMap<String, Address> sessionDirectory = new ConcurrentHashMap<String, Address>();
+
   private final static String JGROUPS_MESSAGE_RESOURCE = "JGroupsMessage";
 
   private static Logger log = LoggerFactory.getLogger(JGroupsClusteringProvider.class);
@@ -88,42 +141,150 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
       throw new RuntimeException(e);
     }
 
+    transport = new ClusterTransport(jchannel,
+        JGroupsConfigAttribs.JGROUPS_BATCH_WINDOW_MILLIS.getInt(config),
+        JGroupsConfigAttribs.JGROUPS_BATCH_MAX_SIZE.getInt(config),
+        JGroupsConfigAttribs.JGROUPS_COMPRESSION_THRESHOLD.getInt(config));
+
+    sessionToNodeCache = CacheBuilder.newBuilder()
+        .maximumSize(JGroupsConfigAttribs.JGROUPS_SESSION_CACHE_SIZE.getInt(config))
+        .build();
+
+    ownerLookups = CacheBuilder.newBuilder()
+        .expireAfterWrite(ClusterWaitEntry.TIMEOUT, TimeUnit.MILLISECONDS)
+        .build();
+
+    pendingRelays = CacheBuilder.newBuilder()
+        .maximumSize(JGroupsConfigAttribs.JGROUPS_SESSION_CACHE_SIZE.getInt(config))
+        .expireAfterWrite(ClusterWaitEntry.TIMEOUT, TimeUnit.MILLISECONDS)
+        .build();
+
+    final String sessionRouting = JGroupsConfigAttribs.JGROUPS_SESSION_ROUTING.get(config);
+    if ("consistent_hash".equals(sessionRouting)) {
+      hashRouting = true;
+    }
+    else if ("broadcast".equals(sessionRouting)) {
+      hashRouting = false;
+    }
+    else {
+      throw new ErraiBootstrapFailure("unrecognized option for property "
+          + JGroupsConfigAttribs.JGROUPS_SESSION_ROUTING.getAttributeName() + ": " + sessionRouting);
+    }
+
     serverMessageBus.subscribe(CLUSTER_SERVICE, this);
     jchannel.setReceiver(this);
 
+    if (hashRouting) {
+      // the view may have changed before the receiver was set.
+      rebalance(jchannel.getView());
+    }
+
     erraiService.addShutdownHook(new Runnable() {
       @Override
       public void run() {
+        transport.close();
         jchannel.close();
         log.info("shut down jgroups clustering service");
       }
     });
 
-    sessionToNodeCache = CacheBuilder.newBuilder()
-        .maximumSize(100)
-        .build();
-
     log.info("starting errai clustering service.");
   }
 
   @Override
   public void receive(final org.jgroups.Message msg) {
     try {
-      final Message erraiMessage = getErraiMessage(msg);
-      erraiMessage.setResource(JGROUPS_MESSAGE_RESOURCE, msg);
+      for (final Message erraiMessage : getErraiMessages(msg)) {
+        erraiMessage.setResource(JGROUPS_MESSAGE_RESOURCE, msg);
 
-      if (busId.equals(erraiMessage.get(String.class, BusId))) {
-        return;
-      }
-      erraiMessage.setFlag(RoutingFlag.FromPeer);
+        if (busId.equals(erraiMessage.get(String.class, BusId))) {
+          continue;
+        }
+        erraiMessage.setFlag(RoutingFlag.FromPeer);
 
-      serverMessageBus.sendGlobal(erraiMessage);
+        serverMessageBus.sendGlobal(erraiMessage);
+      }
     }
     catch (Exception e) {
       e.printStackTrace();
     }
   }
 
+  @Override
+  public void viewAccepted(final View view) {
+    transport.retainMembers(view.getMembers());
+
+    if (hashRouting) {
+      rebalance(view);
+    }
+  }
+
+  /**
+   * Rebuilds the ring for the specified view, registers the local sessions which hash to a different node now with
+   * that node, and forgets the registrations which belong to other nodes now.
+   */
+  private synchronized void rebalance(final View view) {
+    final ConsistentHashRing<Address> oldRing = sessionRing;
+    final ConsistentHashRing<Address> newRing = new ConsistentHashRing<Address>(view.getMembers(), RING_POINTS_PER_NODE);
+    sessionRing = newRing;
+
+    for (final String sessionId : localSessions) {
+      final Address home = newRing.get(sessionId);
+      if (oldRing == null || !home.equals(oldRing.get(sessionId))) {
+        sendSessionRegistration(ClusterCommands.RegisterSession, sessionId, home);
+      }
+    }
+
+    final Address self = jchannel.getAddress();
+    final Iterator<Map.Entry<String, Address>> iterator = sessionDirectory.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<String, Address> entry = iterator.next();
+      if (!view.containsMember(entry.getValue()) || !self.equals(newRing.get(entry.getKey()))) {
+        iterator.remove();
+      }
+    }
+  }
+
+  @Override
+  public void localSessionAttached(final String sessionId) {
+    if (hashRouting) {
+      localSessions.add(sessionId);
+      sendSessionRegistration(ClusterCommands.RegisterSession, sessionId, sessionRing.get(sessionId));
+    }
+  }
+
+  @Override
+  public void localSessionDetached(final String sessionId) {
+    if (hashRouting && localSessions.remove(sessionId)) {
+      sendSessionRegistration(ClusterCommands.UnregisterSession, sessionId, sessionRing.get(sessionId));
+    }
+  }
+
+  private void sendSessionRegistration(final ClusterCommands command, final String sessionId, final Address home) {
+    if (home == null) {
+      return;
+    }
+
+    final Address self = jchannel.getAddress();
+    if (home.equals(self)) {
+      if (command == ClusterCommands.RegisterSession) {
+        sessionDirectory.put(sessionId, self);
+      }
+      else {
+        sessionDirectory.remove(sessionId, self);
+      }
+    }
+    else {
+      final Message registration = CommandMessage.create()
+          .set(ToSubject, CLUSTER_SERVICE)
+          .set(CommandType, command.name())
+          .set(BusId, busId)
+          .set(SessId, sessionId);
+
+      transport.send(home, ErraiProtocol.encodePayload(registration.getParts()));
+    }
+  }
+
   @Override
   public void callback(final Message message) {
     final QueueSession queueSession = message.getResource(QueueSession.class, "Session");
@@ -157,12 +318,7 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
               .copy(MessageId, message)
               .set(ClusterParts.SessId, sessionIdRequested);
 
-          try {
-            jchannel.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(replyMsg.getParts()));
-          }
-          catch (Exception e) {
-            e.printStackTrace();
-          }
+          transport.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(replyMsg.getParts()));
         }
       }
       break;
@@ -170,43 +326,75 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
       case NotifyOwner: {
         final String messageId = message.get(String.class, MessageId);
         final String sessId = message.get(String.class, SessId);
-        final Message deferredMessage = serverMessageBus.getDeadLetterMessage(messageId);
-        serverMessageBus.removeDeadLetterMessage(messageId);
 
         final org.jgroups.Message jgroupsMessage
             = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
 
         sessionToNodeCache.put(sessId, jgroupsMessage.getSrc());
 
-        if (deferredMessage != null) {
-          final Message dMessage = createForwardMessageFor(deferredMessage, messageId);
+        // forward every message which was waiting for this answer, not just the one which asked.
+        final OwnerLookup lookup = ownerLookups.asMap().remove(sessId);
+        final List<String> messageIds;
+        if (lookup == null) {
+          messageIds = Collections.singletonList(messageId);
+        }
+        else {
+          lookup.complete();
+          messageIds = lookup.messageIds;
 
-          try {
-            jchannel.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(dMessage.getParts()));
+          for (final String relayPayload : lookup.relayPayloads) {
+            transport.send(jgroupsMessage.getSrc(), relayPayload);
           }
-          catch (Exception e) {
-            e.printStackTrace();
+        }
+
+        for (final String deferredId : messageIds) {
+          final Message deferredMessage = serverMessageBus.getDeadLetterMessage(deferredId);
+          serverMessageBus.removeDeadLetterMessage(deferredId);
+
+          if (deferredMessage != null) {
+            final Message dMessage = createForwardMessageFor(deferredMessage, deferredId);
+            transport.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(dMessage.getParts()));
           }
         }
       }
       break;
 
+      case RegisterSession: {
+        final org.jgroups.Message jgroupsMessage
+            = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
+        sessionDirectory.put(message.get(String.class, SessId), jgroupsMessage.getSrc());
+      }
+      break;
+
+      case UnregisterSession: {
+        final org.jgroups.Message jgroupsMessage
+            = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
+        // the session may have moved to another node in the meantime.
+        sessionDirectory.remove(message.get(String.class, SessId), jgroupsMessage.getSrc());
+      }
+      break;
+
       case InvalidRoute: {
         final String sessionId = message.get(String.class, SessId);
         sessionToNodeCache.invalidate(sessionId);
 
+        if (hashRouting) {
+          final org.jgroups.Message jgroupsMessage
+              = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
+          sessionDirectory.remove(sessionId, jgroupsMessage.getSrc());
+        }
+
         final String messageId = message.get(String.class, MessageId);
         final String subject = message.get(String.class, Subject);
 
-        final Message whoMessage = createWhoHandlesMessage(sessionId, subject, messageId);
-
-        try {
-          jchannel.send(getJGroupsMessage(whoMessage));
+        final String relayPayload = messageId == null ? null : pendingRelays.asMap().remove(messageId);
+        if (relayPayload != null) {
+          // this node relayed the message to a stale owner, and the sender no longer has it.
+          sendToOwner(sessionId, subject, messageId, relayPayload);
         }
-        catch (Exception e) {
-          e.printStackTrace();
+        else {
+          clusterTransmit(sessionId, subject, messageId);
         }
-
         break;
       }
 
@@ -226,18 +414,19 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
             messageQueue = serverMessageBus.getQueueBySession(sessId);
           }
           catch (QueueUnavailableException e) {
+            if (hashRouting && !message.hasPart(Relayed)) {
+              // the session hashes to this node, but is attached to another one.
+              relayToOwner(sessId, forwardMessage.getSubject(), message);
+              return;
+            }
+
             final org.jgroups.Message jgroupsMessage
                 = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
 
             final String messageId = message.get(String.class, MessageId);
             final Message invalidRoute = createInvalidRouteMessage(sessId, forwardMessage.getSubject(), messageId);
 
-            try {
-              jchannel.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(invalidRoute.getParts()));
-            }
-            catch (Exception e2) {
-              e2.printStackTrace();
-            }
+            transport.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(invalidRoute.getParts()));
             return;
           }
 
@@ -252,24 +441,115 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
 
   @Override
   public void clusterTransmit(final String sessionId, final String subject, final String messageId) {
-    final Address knownAddress = sessionToNodeCache.getIfPresent(sessionId);
-    if (knownAddress != null) {
-      final Message forwardMessage = createForwardMessageFor(serverMessageBus.getDeadLetterMessage(messageId), messageId);
-      try {
-        jchannel.send(knownAddress, ErraiProtocol.encodePayload(forwardMessage.getParts()));
+    if (hashRouting && sessionToNodeCache.getIfPresent(sessionId) == null && forwardByHash(sessionId, messageId)) {
+      return;
+    }
+    sendToOwner(sessionId, subject, messageId, null);
+  }
+
+  /**
+   * Forwards a dead letter to the node its session hashes to, or, if that is this node, to the owner registered
+   * here. The dead letter is not kept, since no answer is expected. If the owner registered here turns out to be
+   * stale, the message is relayed again from {@link #pendingRelays}; if it is registered on the home node, the home
+   * node takes care of that.
+   *
+   * @return false if the owner of the session is not known, and the cluster has to be asked for it.
+   */
+  private boolean forwardByHash(final String sessionId, final String messageId) {
+    final Address home = sessionRing.get(sessionId);
+    if (home == null) {
+      return false;
+    }
+
+    final boolean isHome = home.equals(jchannel.getAddress());
+    final Address destination = isHome ? sessionDirectory.get(sessionId) : home;
+    if (destination == null) {
+      return false;
+    }
+
+    final Message deadLetter = serverMessageBus.getDeadLetterMessage(messageId);
+    if (deadLetter != null) {
+      serverMessageBus.removeDeadLetterMessage(messageId);
+
+      final Message forwardMessage = createForwardMessageFor(deadLetter, messageId);
+      if (isHome) {
+        forwardMessage.set(Relayed, Boolean.TRUE);
       }
-      catch (Exception e) {
-        e.printStackTrace();
+
+      final String payload = ErraiProtocol.encodePayload(forwardMessage.getParts());
+      if (isHome) {
+        pendingRelays.put(messageId, payload);
       }
+      transport.send(destination, payload);
+    }
+    return true;
+  }
+
+  /**
+   * Passes on a forwarded message for a session which hashes to this node to the owner registered here, or, if no
+   * owner is registered (yet), asks the cluster for it on behalf of the sender.
+   */
+  private void relayToOwner(final String sessionId, final String subject, final Message forward) {
+    final Message relay = CommandMessage.create()
+        .set(ToSubject, CLUSTER_SERVICE)
+        .set(CommandType, ClusterCommands.MessageForward.name())
+        .copy(Payload, forward)
+        .set(BusId, busId)
+        .set(SessId, sessionId)
+        .set(Relayed, Boolean.TRUE);
+
+    String messageId = forward.get(String.class, MessageId);
+    if (messageId == null) {
+      messageId = SecureHashUtil.nextSecureHash();
+    }
+    relay.set(MessageId, messageId);
+
+    final String relayPayload = ErraiProtocol.encodePayload(relay.getParts());
+    pendingRelays.put(messageId, relayPayload);
+
+    final Address owner = sessionDirectory.get(sessionId);
+    if (owner != null && !owner.equals(jchannel.getAddress())) {
+      transport.send(owner, relayPayload);
     }
     else {
-      final Message whoHandlesMessage = createWhoHandlesMessage(sessionId, subject, messageId);
-      try {
-        jchannel.send(getJGroupsMessage(whoHandlesMessage));
+      sendToOwner(sessionId, subject, messageId, relayPayload);
+    }
+  }
+
+  /**
+   * Sends a dead letter, or an encoded forward of a message received from another node, to the owner of the session
+   * if it is known, or asks the cluster who owns the session otherwise.
+   */
+  private void sendToOwner(final String sessionId, final String subject, final String messageId,
+                           final String relayPayload) {
+    while (true) {
+      final Address knownAddress = sessionToNodeCache.getIfPresent(sessionId);
+      if (knownAddress != null) {
+        if (relayPayload != null) {
+          transport.send(knownAddress, relayPayload);
+        }
+        else {
+          final Message deadLetter = serverMessageBus.getDeadLetterMessage(messageId);
+          if (deadLetter != null) {
+            final Message forwardMessage = createForwardMessageFor(deadLetter, messageId);
+            transport.send(knownAddress, ErraiProtocol.encodePayload(forwardMessage.getParts()));
+          }
+        }
+        return;
+      }
+
+      final OwnerLookup lookup = new OwnerLookup();
+      lookup.add(messageId, relayPayload);
+      final OwnerLookup pending = ownerLookups.asMap().putIfAbsent(sessionId, lookup);
+      if (pending == null) {
+        final Message whoHandlesMessage = createWhoHandlesMessage(sessionId, subject, messageId);
+        transport.send(null, ErraiProtocol.encodePayload(whoHandlesMessage.getParts()));
+        return;
       }
-      catch (Exception e) {
-        e.printStackTrace();
+      else if (pending.add(messageId, relayPayload)) {
+        return;
       }
+      // the lookup was answered in the meantime, so the owner is known now.
     }
   }
 
@@ -314,21 +594,70 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
         .set(MessageId, messageId);
   }
 
+  /**
+   * Returns the node the specified session hashes to, or null if sessions are not routed by hash.
+   */
+  public Address getSessionHome(final String sessionId) {
+    final ConsistentHashRing<Address> ring = sessionRing;
+    return ring == null ? null : ring.get(sessionId);
+  }
+
+  /**
+   * Returns the owner registered with this node for a session which hashes to it, or null if none is registered.
+   */
+  public Address getRegisteredOwner(final String sessionId) {
+    return sessionDirectory.get(sessionId);
+  }
+
+  public Address getAddress() {
+    return jchannel.getAddress();
+  }
+
   @Override
   public void clusterTransmitGlobal(final Message message) {
-    try {
-      jchannel.send(getJGroupsMessage(createForwardMessageFor(message, null)));
-    }
-    catch (Exception e) {
-      e.printStackTrace();
-    }
+    transport.send(null, ErraiProtocol.encodePayload(createForwardMessageFor(message, null).getParts()));
   }
 
-  public static Message getErraiMessage(final org.jgroups.Message message) {
-    return MessageFactory.createCommandMessage(IntrabusQueueSession.INSTANCE, String.valueOf(message.getObject()));
+  public static List<Message> getErraiMessages(final org.jgroups.Message message) {
+    final List<String> payloads
+        = ClusterTransport.decode(message.getRawBuffer(), message.getOffset(), message.getLength());
+
+    final List<Message> messages = new ArrayList<Message>(payloads.size());
+    for (final String payload : payloads) {
+      messages.add(MessageFactory.createCommandMessage(IntrabusQueueSession.INSTANCE, payload));
+    }
+    return messages;
   }
 
-  private static org.jgroups.Message getJGroupsMessage(final Message message) {
-    return new org.jgroups.Message(null, null, ErraiProtocol.encodePayload(message.getParts()));
+  /**
+   * The messages waiting for the cluster to tell who owns their session: the ids of local dead letters, and the
+   * encoded forwards of messages which other nodes sent to this one because the session hashes to it. The lists are
+   * no longer changed once the lookup is complete.
+   */
+  private static class OwnerLookup {
+    private final List<String> messageIds = new ArrayList<String>(2);
+    private final List<String> relayPayloads = new ArrayList<String>(0);
+    private boolean completed;
+
+    /**
+     * @return false if the lookup has already been answered, and the message should be sent on its own.
+     */
+    private synchronized boolean add(final String messageId, final String relayPayload) {
+      if (completed) {
+        return false;
+      }
+
+      if (relayPayload != null) {
+        relayPayloads.add(relayPayload);
+      }
+      else {
+        messageIds.add(messageId);
+      }
+      return true;
+    }
+
+    private synchronized void complete() {
+      completed = true;
+    }
   }
 }
@@ -23,7 +23,47 @@ import org.jgroups.JChannel;
  * @author Mike Brock
  */
 public enum JGroupsConfigAttribs {
-  JGROUPS_PROTOCOL_STACK("errai.jgroups.protocol_stack", JChannel.DEFAULT_PROTOCOL_STACK);
+  JGROUPS_PROTOCOL_STACK("errai.jgroups.protocol_stack", JChannel.DEFAULT_PROTOCOL_STACK),
+
+  /**
+   * How long, in milliseconds, a message to another node may wait for further messages to the same node, so they can
+   * be sent as one batch. Zero sends every message on its own.
+   * <p/>
+   * Default value: 2
+   */
+  JGROUPS_BATCH_WINDOW_MILLIS("errai.jgroups.batch_window_millis", "2"),
+
+  /**
+   * The size, in characters, at which a batch is sent without waiting for the end of its window.
+   * <p/>
+   * Default value: 65536
+   */
+  JGROUPS_BATCH_MAX_SIZE("errai.jgroups.batch_max_size", "65536"),
+
+  /**
+   * The size, in bytes, from which batches are compressed. Zero disables compression.
+   * <p/>
+   * Default value: 0
+   */
+  JGROUPS_COMPRESSION_THRESHOLD("errai.jgroups.compression_threshold", "0"),
+
+  /**
+   * The number of sessions whose owning node is remembered, so messages to them can be forwarded without asking the
+   * cluster first. The least recently used sessions are forgotten first.
+   * <p/>
+   * Default value: 10000
+   */
+  JGROUPS_SESSION_CACHE_SIZE("errai.jgroups.session_cache_size", "10000"),
+
+  /**
+   * How a message to a session on another node finds that node. With <tt>broadcast</tt>, the whole cluster is asked
+   * who owns the session. With <tt>consistent_hash</tt>, every node registers its sessions with the node they hash to
+   * on a ring built from the cluster view, and messages are sent to that node, which passes them on to the owner.
+   * All nodes of a cluster must use the same setting.
+   * <p/>
+   * Default value: broadcast
+   */
+  JGROUPS_SESSION_ROUTING("errai.jgroups.session_routing", "broadcast");
 
   protected final String attributeName;
   protected final String defaultValue;
@@ -17,14 +17,14 @@
 package org.jboss.errai.bus.server.cluster.noop;
 
 import org.jboss.errai.bus.client.api.messaging.Message;
-import org.jboss.errai.bus.server.cluster.ClusteringProvider;
+import org.jboss.errai.bus.server.cluster.AbstractClusteringProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * @author Mike Brock
  */
-public class NoopClusteringProvider implements ClusteringProvider {
+public class NoopClusteringProvider extends AbstractClusteringProvider {
   private static Logger log = LoggerFactory.getLogger(NoopClusteringProvider.class);
 
   public NoopClusteringProvider() {
@@ -32,4 +32,11 @@ public abstract class AbstractByteWriteAdapter implements ByteWriteAdapter {
     for (byte a : b)
       write(a);
   }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    final int end = off + len;
+    for (int i = off; i < end; i++)
+      write(b[i]);
+  }
 }
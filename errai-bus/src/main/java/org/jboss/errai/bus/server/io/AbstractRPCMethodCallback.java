@@ -4,6 +4,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.List;
 
 import org.jboss.errai.bus.client.api.base.MessageDeliveryFailure;
@@ -23,6 +24,7 @@ public abstract class AbstractRPCMethodCallback implements MessageCallback {
   protected final ServiceInstanceProvider serviceProvider;
   protected final Class[] targetTypes;
   protected final Method method;
+  protected final MethodInvoker invoker;
   protected final MessageBus bus;
 
   protected AbstractRPCMethodCallback(final ServiceInstanceProvider genericSvc,
@@ -30,13 +32,14 @@ public abstract class AbstractRPCMethodCallback implements MessageCallback {
                                       final MessageBus bus) {
     this.serviceProvider = genericSvc;
     this.targetTypes = (this.method = method).getParameterTypes();
+    this.invoker = MethodInvokers.get(method);
     this.bus = bus;
   }
 
   public Object invokeMethodFromMessage(Message message) {
     final List<Object> parms = message.get(List.class, "MethodParms");
 
-    if ((parms == null && targetTypes.length != 0) || (parms.size() != targetTypes.length)) {
+    if (parms == null ? targetTypes.length != 0 : parms.size() != targetTypes.length) {
       throw new MessageDeliveryFailure(
           "wrong number of arguments sent to endpoint. (received: "
               + (parms == null ? 0 : parms.size())
@@ -45,7 +48,7 @@ public abstract class AbstractRPCMethodCallback implements MessageCallback {
 
     try {
       RpcContext.set(message);
-      return method.invoke(serviceProvider.get(message), parms.toArray(new Object[parms.size()]));
+      return invoker.invoke(serviceProvider.get(message), parms == null ? Collections.emptyList() : parms);
     }
     catch (QueueUnavailableException e) {
       throw e;
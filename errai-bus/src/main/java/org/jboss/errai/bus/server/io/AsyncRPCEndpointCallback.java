@@ -2,6 +2,7 @@ package org.jboss.errai.bus.server.io;
 
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.server.api.ServerCallableFuture;
 
 import java.lang.reflect.Method;
 
@@ -15,6 +16,9 @@ public class AsyncRPCEndpointCallback extends AbstractRPCMethodCallback {
 
   @Override
   public void callback(final Message message) {
-    invokeMethodFromMessage(message);
+    final Object result = invokeMethodFromMessage(message);
+    if (result instanceof ServerCallableFuture) {
+      ((ServerCallableFuture<?>) result).bind(bus);
+    }
   }
 }
@@ -34,7 +34,7 @@ import java.util.concurrent.TimeUnit;
  *
  * @author Mike Brock
  */
-public class BufferDeliveryHandler implements MessageDeliveryHandler, Buffered, Cleanable {
+public class BufferDeliveryHandler implements MessageDeliveryHandler, EncodedDeliveryHandler, Buffered, Cleanable {
   private static Logger log = LoggerFactory.getLogger(BufferDeliveryHandler.class);
   private static final BufferDeliveryHandler singleton = new BufferDeliveryHandler();
 
@@ -51,10 +51,30 @@ public class BufferDeliveryHandler implements MessageDeliveryHandler, Buffered,
       final Buffer buffer = queue.getBuffer();
       final BufferColor bufferColor = queue.getBufferColor();
 
-      BufferHelper.encodeAndWrite(buffer, bufferColor, message);
+      queue.addBytesWaiting(BufferHelper.encodeAndWrite(buffer, bufferColor, message, queue.isCompactTypeEncoding()));
     }
     finally {
       queue.incrementMessageCount();
+      if (queue.isArrivalsTracked()) {
+        CoalescingActivationCallback.recordArrival(queue);
+      }
+      queue.fireActivationCallback();
+    }
+
+    return true;
+  }
+
+  @Override
+  public boolean deliverEncoded(final MessageQueue queue, final byte[] payload) throws IOException {
+    try {
+      BufferHelper.writeEncoded(queue.getBuffer(), queue.getBufferColor(), payload);
+      queue.addBytesWaiting(payload.length);
+    }
+    finally {
+      queue.incrementMessageCount();
+      if (queue.isArrivalsTracked()) {
+        CoalescingActivationCallback.recordArrival(queue);
+      }
       queue.fireActivationCallback();
     }
 
@@ -68,7 +88,7 @@ public class BufferDeliveryHandler implements MessageDeliveryHandler, Buffered,
 
   @Override
   public void clean(final MessageQueue queue) {
-    //   discardPageData(queue);
+    PageUtil.discardPageData(queue);
   }
 
 
@@ -16,13 +16,15 @@
 
 package org.jboss.errai.bus.server.io;
 
-import static org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer.encodePayloadToByteArrayInputStream;
+import static org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer.encodePayloadToByteArray;
 
+import org.jboss.errai.bus.client.api.HasEncoded;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.server.io.buffers.Buffer;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.Utf8Encoder;
+import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 /**
@@ -35,7 +37,44 @@ public final class BufferHelper {
   public static void encodeAndWrite(final Buffer buffer, final BufferColor bufferColor, final Message message)
           throws IOException {
 
-    buffer.write(encodePayloadToByteArrayInputStream(message.getParts()), bufferColor);
+    encodeAndWrite(buffer, bufferColor, message, false);
+  }
+
+  /**
+   * @return the number of characters written, which is the size of the message in bytes for ASCII payloads.
+   */
+  public static int encodeAndWrite(final Buffer buffer, final BufferColor bufferColor, final Message message,
+                                   final boolean compactTypeEncoding) throws IOException {
+
+    // the encoded characters go straight into the buffer as UTF-8, without an intermediate byte array.
+    final CharSequence payload = ErraiProtocol.encodePayload(message.getParts(), compactTypeEncoding);
+    buffer.write(payload, bufferColor);
+    return payload.length();
+  }
+
+  /**
+   * Encodes the message straight to UTF-8 bytes, the same way {@link #encodeAndWrite} writes it into a buffer.
+   * Messages which are already encoded are passed on as they are.
+   */
+  public static byte[] encodeToUtf8(final Message message, final boolean compactTypeEncoding) {
+    final CharSequence payload;
+    if (message instanceof HasEncoded) {
+      payload = ((HasEncoded) message).getEncoded();
+    }
+    else {
+      payload = ErraiProtocol.encodePayload(message.getParts(), compactTypeEncoding);
+    }
+    return Utf8Encoder.encode(payload);
+  }
+
+  public static byte[] encode(final Message message) {
+    return encodePayloadToByteArray(message.getParts());
+  }
+
+  public static void writeEncoded(final Buffer buffer, final BufferColor bufferColor, final byte[] payload)
+          throws IOException {
+
+    buffer.write(payload, bufferColor);
   }
 
   private static final byte[] NOOP_ARRAY = new byte[0];
@@ -43,6 +82,6 @@ public final class BufferHelper {
   public static void encodeAndWriteNoop(final Buffer buffer, final BufferColor bufferColor)
           throws IOException {
 
-    buffer.write(NOOP_ARRAY.length, new ByteArrayInputStream(NOOP_ARRAY), bufferColor);
+    buffer.write(NOOP_ARRAY, bufferColor);
   }
 }
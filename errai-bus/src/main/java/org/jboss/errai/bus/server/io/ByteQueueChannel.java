@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import io.netty.buffer.ChannelBuffer;
+
+import java.io.IOException;
+
+/**
+ * A {@link QueueChannel} which accepts data which is already UTF-8 encoded, so that messages can be delivered
+ * without being decoded into a <tt>String</tt> and encoded again.
+ */
+public interface ByteQueueChannel extends QueueChannel {
+
+  /**
+   * Writes the readable bytes of the specified buffer, which must hold UTF-8 encoded text, to the channel. The
+   * channel takes ownership of the buffer, and the caller must not modify it afterwards.
+   */
+  public void write(ChannelBuffer data) throws IOException;
+
+  /**
+   * Returns false while the channel has more data waiting to be sent than it is willing to accept, in which case the
+   * caller should hold back further writes until the channel becomes writable again.
+   */
+  public boolean isWritable();
+}
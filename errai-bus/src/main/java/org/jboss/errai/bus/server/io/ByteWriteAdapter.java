@@ -25,5 +25,6 @@ public interface ByteWriteAdapter {
   public void write(int b) throws IOException;
   public void write(byte b) throws IOException;
   public void write(byte[] b) throws IOException;
+  public void write(byte[] b, int off, int len) throws IOException;
   public void flush() throws IOException;
 }
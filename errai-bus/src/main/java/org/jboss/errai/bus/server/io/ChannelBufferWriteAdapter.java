@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import io.netty.buffer.ChannelBuffer;
+
+import java.io.IOException;
+
+/**
+ * A {@link ByteWriteAdapter} which appends all writes to a Netty {@link ChannelBuffer}.
+ */
+public class ChannelBufferWriteAdapter extends AbstractByteWriteAdapter {
+  private final ChannelBuffer buffer;
+
+  public ChannelBufferWriteAdapter(final ChannelBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void write(final byte b) throws IOException {
+    buffer.writeByte(b);
+  }
+
+  @Override
+  public void write(final byte[] b) throws IOException {
+    buffer.writeBytes(b);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    buffer.writeBytes(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+  }
+
+  public ChannelBuffer getBuffer() {
+    return buffer;
+  }
+}
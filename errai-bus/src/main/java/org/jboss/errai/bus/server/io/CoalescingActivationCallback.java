@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.api.QueueActivationCallback;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link QueueActivationCallback} which holds back the activation of a waiting poll for a short window, so that a
+ * burst of messages is sent to the client in one response rather than in one response (and one reconnect) per
+ * message.
+ * <p/>
+ * The window adapts to each session: it is derived from the recent rate of messages to the session, so a client that
+ * only receives the occasional message gets it immediately, while a client receiving a stream of messages has them
+ * batched. The activation is never held back longer than the maximum window, and is released early once the data
+ * waiting for the queue reaches the byte threshold.
+ */
+public class CoalescingActivationCallback implements QueueActivationCallback {
+  private static final String ARRIVAL_RATE_ATTRIBUTE = CoalescingActivationCallback.class.getName() + ".arrivalRate";
+
+  private final QueueActivationCallback delegate;
+  private final ScheduledExecutorService scheduler;
+  private final Executor drainExecutor;
+  private final long maxWindowNanos;
+  private final long maxBytes;
+
+  /**
+   * The pending delayed activation. Guarded by the queue's activation lock.
+   */
+  private ScheduledFuture<?> pendingActivation;
+
+  /**
+   * @param delegate
+   *     the callback which actually drains the queue to the client.
+   * @param scheduler
+   *     the scheduler on which delayed activations are run.
+   * @param maxWindowMillis
+   *     the longest time an activation may be held back, in milliseconds.
+   * @param maxBytes
+   *     the amount of waiting data which causes the activation to be released immediately.
+   */
+  public CoalescingActivationCallback(final QueueActivationCallback delegate,
+                                      final ScheduledExecutorService scheduler,
+                                      final long maxWindowMillis,
+                                      final long maxBytes) {
+    this(delegate, scheduler, scheduler, maxWindowMillis, maxBytes);
+  }
+
+  /**
+   * @param delegate
+   *     the callback which actually drains the queue to the client.
+   * @param scheduler
+   *     the scheduler which times the delayed activations. Only the wakeup runs on it.
+   * @param drainExecutor
+   *     the executor on which a delayed activation drains the queue, such as the container thread of the request.
+   * @param maxWindowMillis
+   *     the longest time an activation may be held back, in milliseconds.
+   * @param maxBytes
+   *     the amount of waiting data which causes the activation to be released immediately.
+   */
+  public CoalescingActivationCallback(final QueueActivationCallback delegate,
+                                      final ScheduledExecutorService scheduler,
+                                      final Executor drainExecutor,
+                                      final long maxWindowMillis,
+                                      final long maxBytes) {
+    this.delegate = delegate;
+    this.scheduler = scheduler;
+    this.drainExecutor = drainExecutor;
+    this.maxWindowNanos = TimeUnit.MILLISECONDS.toNanos(maxWindowMillis);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Called with the activation lock of the queue held, every time a message is delivered to the queue.
+   */
+  @Override
+  public void activate(final MessageQueue queue) {
+    final long window = getArrivalRate(queue, maxWindowNanos).getWindow();
+
+    if (window == 0 || queue.getBytesWaiting() >= maxBytes) {
+      if (pendingActivation != null) {
+        pendingActivation.cancel(false);
+      }
+      delegate.activate(queue);
+    }
+    else if (pendingActivation == null) {
+      final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+          synchronized (queue.getActivationLock()) {
+            // the poll may have been activated or completed in the meantime.
+            if (queue.getActivationCallback() == CoalescingActivationCallback.this) {
+              delegate.activate(queue);
+            }
+          }
+        }
+      };
+
+      pendingActivation = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          drainExecutor.execute(drain);
+        }
+      }, window, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Records the delivery of a message to the queue. This is called for every message to a queue which is
+   * {@link MessageQueue#isArrivalsTracked() tracked}, whether or not a poll is waiting, so the arrival rate reflects all
+   * the traffic to the session. Queues which have never been polled with coalescing enabled are not tracked, and
+   * skip this altogether.
+   */
+  public static void recordArrival(final MessageQueue queue) {
+    final ArrivalRate rate = queue.getSession().getAttribute(ArrivalRate.class, ARRIVAL_RATE_ATTRIBUTE);
+    if (rate != null) {
+      rate.arrival(System.nanoTime());
+    }
+  }
+
+  private static ArrivalRate getArrivalRate(final MessageQueue queue, final long maxWindowNanos) {
+    if (!queue.isArrivalsTracked()) {
+      queue.setArrivalsTracked(true);
+    }
+
+    final QueueSession session = queue.getSession();
+    ArrivalRate rate = session.getAttribute(ArrivalRate.class, ARRIVAL_RATE_ATTRIBUTE);
+    if (rate == null) {
+      session.setAttribute(ARRIVAL_RATE_ATTRIBUTE, rate = new ArrivalRate(maxWindowNanos));
+      // the message which caused this activation arrived before the session was tracked.
+      rate.arrival(System.nanoTime());
+    }
+    return rate;
+  }
+
+  /**
+   * Tracks an exponentially weighted moving average of the time between messages to a session.
+   */
+  static class ArrivalRate {
+    private static final double WEIGHT = 0.25;
+
+    private final long maxWindow;
+    private long lastArrival;
+    private double meanInterval = -1;
+
+    /**
+     * @param maxWindow
+     *     the maximum window, in nanoseconds.
+     */
+    ArrivalRate(final long maxWindow) {
+      this.maxWindow = maxWindow;
+    }
+
+    /**
+     * Records the arrival of a message.
+     *
+     * @param now
+     *     the time of the arrival, in nanoseconds.
+     */
+    synchronized void arrival(final long now) {
+      // clamp the interval, so that a single long pause does not hide a new burst for many messages.
+      final long idle = maxWindow * 2;
+      final long interval = lastArrival == 0 ? idle : Math.min(now - lastArrival, idle);
+      lastArrival = now;
+
+      meanInterval = meanInterval < 0 ? interval : meanInterval + WEIGHT * (interval - meanInterval);
+    }
+
+    /**
+     * @return the time to hold back the activation for, in nanoseconds. The more frequent the messages, the longer
+     *         the window, up to the maximum. Zero if the session is receiving messages too infrequently to be worth
+     *         batching.
+     */
+    synchronized long getWindow() {
+      if (meanInterval < 0 || meanInterval >= maxWindow) {
+        return 0;
+      }
+      return maxWindow - (long) meanInterval;
+    }
+  }
+}
@@ -23,8 +23,8 @@ import org.jboss.errai.bus.client.util.ErrorHelper;
 import org.jboss.errai.common.client.api.Assert;
 import org.slf4j.Logger;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -53,12 +53,12 @@ public class CommandBindingsCallback implements MessageCallback {
             + "(" + Message.class.getName() + ")");
       }
       
-      entry.getValue().setAccessible(true);
+      final MethodInvoker invoker = MethodInvokers.get(entry.getValue());
 
       methodDispatchers.put(entry.getKey(),
           parmTypes.length == 0 ?
-              new NoParamMethodDispatcher(delegate, entry.getValue()) :
-              new DefaultMethodDispatcher(delegate, entry.getValue()));
+              new NoParamMethodDispatcher(delegate, invoker) :
+              new DefaultMethodDispatcher(delegate, invoker));
     }
   }
 
@@ -85,36 +85,36 @@ public class CommandBindingsCallback implements MessageCallback {
   }
 
   private abstract class MethodDispatcher {
-    protected Object delegate;
-    protected Method method;
+    protected final Object delegate;
+    protected final MethodInvoker invoker;
 
-    protected MethodDispatcher(final Object delegate, final Method method) {
+    protected MethodDispatcher(final Object delegate, final MethodInvoker invoker) {
       this.delegate = delegate;
-      this.method = method;
+      this.invoker = invoker;
     }
 
     abstract void dispatch(Message m) throws Exception;
   }
 
   private class NoParamMethodDispatcher extends MethodDispatcher {
-    NoParamMethodDispatcher(final Object delegate, final Method method) {
-      super(delegate, method);
+    NoParamMethodDispatcher(final Object delegate, final MethodInvoker invoker) {
+      super(delegate, invoker);
     }
 
     @Override
     void dispatch(final Message m) throws Exception {
-      method.invoke(delegate);
+      invoker.invoke(delegate, Collections.emptyList());
     }
   }
 
   private class DefaultMethodDispatcher extends MethodDispatcher {
-    DefaultMethodDispatcher(final Object delegate, final Method method) {
-      super(delegate, method);
+    DefaultMethodDispatcher(final Object delegate, final MethodInvoker invoker) {
+      super(delegate, invoker);
     }
 
     @Override
-    void dispatch(final Message m) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-      method.invoke(delegate, m);
+    void dispatch(final Message m) throws Exception {
+      invoker.invoke(delegate, Collections.singletonList(m));
     }
   }
 }
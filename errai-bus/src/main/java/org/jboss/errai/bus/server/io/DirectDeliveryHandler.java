@@ -16,6 +16,8 @@
 
 package org.jboss.errai.bus.server.io;
 
+import io.netty.buffer.ChannelBuffer;
+import io.netty.buffer.ChannelBuffers;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.util.BusToolsCli;
 import org.jboss.errai.bus.server.api.MessageQueue;
@@ -25,39 +27,132 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * Delivers messages straight to a connected channel, such as a WebSocket, rather than buffering them for a poll.
+ * <p/>
+ * If the channel is a {@link ByteQueueChannel}, messages are handed to it as UTF-8 encoded bytes: already encoded
+ * payloads are wrapped without being copied, and data waiting in the transmission buffer is copied directly into the
+ * channel buffer, so no intermediate <tt>String</tt> is created.
+ * <p/>
+ * A <tt>ByteQueueChannel</tt> may also refuse writes while its outbound buffer is full. Messages for a slow client
+ * are then held back by this handler, and paged out to the queue's page store once they exceed a bound, rather than
+ * piling up in the channel. Paging out and sending the backlog is done outside of the handler's lock, while other
+ * messages for the queue keep being held back behind it. Once the channel becomes writable again, the whole backlog
+ * is sent, in order and as a single frame, before the next message written or when the queue is woken.
+ *
  * @author Mike Brock
  */
-public class DirectDeliveryHandler implements MessageDeliveryHandler, Wakeable, DirectChannel {
+public class DirectDeliveryHandler implements MessageDeliveryHandler, EncodedDeliveryHandler, Wakeable, DirectChannel,
+    Cleanable {
   private static final Logger log = LoggerFactory.getLogger(DirectDeliveryHandler.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final byte[] OPEN_BRACKET = {'['};
+  private static final byte[] CLOSE_BRACKET = {']'};
+
+  /**
+   * The default number of bytes held back in memory for a slow client before they are paged out.
+   */
+  public static final int DEFAULT_MAX_BACKLOG = 64 * 1024;
+
   private final QueueChannel directSocketChannel;
+  private final ByteQueueChannel byteChannel;
+  private final int maxBacklog;
+
+  // the held back messages, oldest first. Guarded by this handler.
+  private final List<byte[]> backlog = new ArrayList<byte[]>();
+  private int backlogBytes;
+
+  /**
+   * True if held back messages, older than those in {@link #backlog}, have been paged out. Guarded by this handler.
+   */
+  private boolean paged;
+
+  /**
+   * True while a thread is paging out or sending the backlog outside of the lock. Other threads only add to the
+   * backlog in the meantime, and leave it to that thread to deal with. Guarded by this handler.
+   */
+  private boolean transferring;
+
+  /**
+   * True if the queue was woken while a transfer was in progress, and the thread doing it must also send the data left
+   * in the transmission buffer. Guarded by this handler.
+   */
+  private boolean wakePending;
+
+  /**
+   * The last payload framed for a channel which only accepts text. A fan-out hands the same payload array to every
+   * session, so it is only decoded once per fan-out rather than once per session.
+   */
+  private static volatile FramedText lastFramedText;
 
   public static MessageDeliveryHandler createFor(final QueueChannel channel) {
-    return new DirectDeliveryHandler(channel);
+    return new DirectDeliveryHandler(channel, DEFAULT_MAX_BACKLOG);
+  }
+
+  /**
+   * @param maxBacklog
+   *     the number of bytes held back in memory while the channel is not writable, before they are paged out.
+   */
+  public static MessageDeliveryHandler createFor(final QueueChannel channel, final int maxBacklog) {
+    return new DirectDeliveryHandler(channel, maxBacklog);
   }
 
-  private DirectDeliveryHandler(final QueueChannel directSocketChannel) {
+  private DirectDeliveryHandler(final QueueChannel directSocketChannel, final int maxBacklog) {
     this.directSocketChannel = directSocketChannel;
+    this.byteChannel = directSocketChannel instanceof ByteQueueChannel ? (ByteQueueChannel) directSocketChannel : null;
+    this.maxBacklog = maxBacklog;
   }
 
   @Override
   public boolean deliver(final MessageQueue queue, final Message message) throws IOException {
     try {
-      directSocketChannel.write("[" + BusToolsCli.encodeMessage(message) + "]");
+      if (byteChannel != null) {
+        writeOrHoldBack(queue, BufferHelper.encodeToUtf8(message, queue.isCompactTypeEncoding()));
+      }
+      else {
+        directSocketChannel.write("[" + BusToolsCli.encodeMessage(message, queue.isCompactTypeEncoding()) + "]");
+      }
       return true;
     }
     catch (Throwable e) {
-      log.info("error writing to socket for queue " + queue.getSession().getSessionId());
+      log.info("error writing to socket for queue " + queue.getSession().getSessionId(), e);
+      LocalContext.get(queue.getSession()).destroy();
+      queue.stopQueue();
+      return false;
+    }
+  }
+
+  @Override
+  public boolean deliverEncoded(final MessageQueue queue, final byte[] payload) throws IOException {
+    try {
+      if (byteChannel != null) {
+        writeOrHoldBack(queue, payload);
+      }
+      else {
+        directSocketChannel.write(frameAsText(payload));
+      }
+      return true;
+    }
+    catch (Throwable e) {
+      log.info("error writing to socket for queue " + queue.getSession().getSessionId(), e);
       LocalContext.get(queue.getSession()).destroy();
       queue.stopQueue();
-      e.printStackTrace();
       return false;
     }
   }
 
   @Override
   public void onWake(MessageQueue queue) throws IOException {
+    if (byteChannel != null) {
+      processBacklog(queue, true);
+      return;
+    }
+
     UnwrappedByteArrayOutputStream outputStream = new UnwrappedByteArrayOutputStream();
     ByteWriteAdapter adapter = new OutputStreamWriteAdapter(outputStream);
     queue.getBuffer().read(adapter, queue.getBufferColor(), new MultiMessageFilter());
@@ -65,6 +160,209 @@ public class DirectDeliveryHandler implements MessageDeliveryHandler, Wakeable,
     directSocketChannel.write(new String(outputStream.toByteArray(), 0, outputStream.size()));
   }
 
+  private static String frameAsText(final byte[] payload) {
+    FramedText framed = lastFramedText;
+    if (framed == null || framed.payload != payload) {
+      lastFramedText = framed = new FramedText(payload, "[" + new String(payload, UTF_8) + "]");
+    }
+    return framed.text;
+  }
+
+  private static final class FramedText {
+    private final byte[] payload;
+    private final String text;
+
+    private FramedText(final byte[] payload, final String text) {
+      this.payload = payload;
+      this.text = text;
+    }
+  }
+
+  /**
+   * Writes the payload to the channel, unless the channel is not writable or earlier messages are still held back, in
+   * which case the payload is added to the backlog.
+   */
+  private void writeOrHoldBack(final MessageQueue queue, final byte[] payload) throws IOException {
+    synchronized (this) {
+      if (!transferring && !paged && backlog.isEmpty() && byteChannel.isWritable()) {
+        byteChannel.write(ChannelBuffers.wrappedBuffer(OPEN_BRACKET, payload, CLOSE_BRACKET));
+        return;
+      }
+
+      backlog.add(payload);
+      backlogBytes += payload.length;
+    }
+
+    processBacklog(queue, false);
+  }
+
+  /**
+   * Sends the backlog if the channel is writable, or pages it out if it has grown beyond the bound. The transfer is
+   * done outside of the lock, and repeated for any messages held back while it was in progress.
+   *
+   * @param wake
+   *     true to also send any data left in the transmission buffer from before the queue switched to this handler.
+   */
+  private void processBacklog(final MessageQueue queue, boolean wake) throws IOException {
+    while (true) {
+      final List<byte[]> batch;
+      final boolean send;
+      final boolean sendPage;
+
+      synchronized (this) {
+        if (transferring) {
+          wakePending |= wake;
+          return;
+        }
+        wake |= wakePending;
+        wakePending = false;
+
+        if (byteChannel.isWritable() && (wake || paged || !backlog.isEmpty())) {
+          send = true;
+          sendPage = paged;
+        }
+        else if (backlogBytes > maxBacklog) {
+          send = false;
+          sendPage = false;
+        }
+        else {
+          return;
+        }
+
+        batch = new ArrayList<byte[]>(backlog);
+        backlog.clear();
+        backlogBytes = 0;
+        transferring = true;
+      }
+
+      boolean nowPaged = !send;
+      try {
+        if (send) {
+          sendBacklog(queue, sendPage, batch, wake);
+        }
+        else {
+          nowPaged = pageOut(queue, batch);
+        }
+      }
+      finally {
+        synchronized (this) {
+          if (send) {
+            paged = false;
+          }
+          else {
+            paged = nowPaged;
+          }
+          transferring = false;
+        }
+      }
+      wake = false;
+    }
+  }
+
+  /**
+   * Sends the held back messages to the channel as a single frame: first any data left for the queue from before it
+   * switched to this handler, then the paged out backlog, then the backlog still held in memory.
+   */
+  private void sendBacklog(final MessageQueue queue, final boolean sendPage, final List<byte[]> batch,
+                           final boolean wake) throws IOException {
+
+    final ChannelBuffer frame = ChannelBuffers.dynamicBuffer(256);
+    final ChannelBufferWriteAdapter adapter = new ChannelBufferWriteAdapter(frame);
+    frame.writeBytes(OPEN_BRACKET);
+
+    if (wake) {
+      final int mark = frame.writerIndex();
+      if (queue.isPaged()) {
+        PageUtil.readInPageFile(queue, adapter, new PageUtil.PagingFilter(false));
+      }
+      queue.getBuffer().read(adapter, queue.getBufferColor(), new PageUtil.PagingFilter(frame.writerIndex() > mark));
+    }
+
+    if (sendPage) {
+      final int mark = frame.writerIndex();
+      if (mark > OPEN_BRACKET.length) {
+        frame.writeByte(',');
+      }
+      queue.getPageStore().transferTo(getPageId(queue), new PageUtil.ByteWriteAdapterChannel(adapter));
+      if (frame.writerIndex() == mark + 1) {
+        // the page was evicted, so there was nothing to separate.
+        frame.writerIndex(mark);
+      }
+    }
+
+    for (final byte[] payload : batch) {
+      if (frame.writerIndex() > OPEN_BRACKET.length) {
+        frame.writeByte(',');
+      }
+      frame.writeBytes(payload);
+    }
+
+    if (frame.writerIndex() > OPEN_BRACKET.length) {
+      frame.writeBytes(CLOSE_BRACKET);
+      byteChannel.write(frame);
+    }
+  }
+
+  /**
+   * Appends the held back messages to this handler's page, after any messages paged out earlier.
+   *
+   * @return true if the page holds data afterwards. It may have been evicted by the page store to make room.
+   */
+  private boolean pageOut(final MessageQueue queue, final List<byte[]> batch) throws IOException {
+    final PageStore pageStore = queue.getPageStore();
+    final String pageId = getPageId(queue);
+
+    boolean separate = pageStore.hasMessages(pageId);
+    final OutputStream outputStream = pageStore.openForAppend(pageId);
+    try {
+      for (final byte[] payload : batch) {
+        if (separate) {
+          outputStream.write(',');
+        }
+        outputStream.write(payload);
+        separate = true;
+      }
+    }
+    finally {
+      outputStream.close();
+    }
+
+    pageStore.setHasMessages(pageId);
+    return pageStore.hasPage(pageId);
+  }
+
+  /**
+   * The page of this handler is kept apart from the one the queue is paged out to while it is buffered.
+   */
+  private static String getPageId(final MessageQueue queue) {
+    return queue.getSession().getSessionId() + "-direct";
+  }
+
+  /**
+   * Returns true if messages are being held back for a slow client.
+   */
+  public synchronized boolean isBacklogged() {
+    return transferring || paged || !backlog.isEmpty();
+  }
+
+  /**
+   * Returns true if held back messages have been paged out.
+   */
+  public synchronized boolean isPaged() {
+    return paged;
+  }
+
+  @Override
+  public void clean(final MessageQueue queue) {
+    synchronized (this) {
+      backlog.clear();
+      backlogBytes = 0;
+      paged = false;
+    }
+    queue.getPageStore().discard(getPageId(queue));
+    PageUtil.discardPageData(queue);
+  }
+
   @Override
   public void noop(MessageQueue queue) throws IOException {
   }
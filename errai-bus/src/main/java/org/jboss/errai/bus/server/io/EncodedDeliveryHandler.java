@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import org.jboss.errai.bus.server.api.MessageQueue;
+
+import java.io.IOException;
+
+/**
+ * Implementing this interface on a {@link MessageDeliveryHandler} indicates that the transport can accept a message
+ * which has already been encoded to its wire format. This allows the bus to encode a message once and fan it out to
+ * many queues without marshalling it again for each of them.
+ */
+public interface EncodedDeliveryHandler {
+  /**
+   * Delivers an already encoded message into the transport layer.
+   *
+   * @param queue
+   *     the {@link MessageQueue} to deliver from.
+   * @param payload
+   *     the UTF-8 encoded message. The array is shared between all recipients and must not be modified.
+   *
+   * @return true if the message was successfully accepted.
+   *
+   * @throws IOException
+   *     an IOException may be thrown if there is a problem interacting with the underlying transport.
+   */
+  public boolean deliverEncoded(MessageQueue queue, byte[] payload) throws IOException;
+}
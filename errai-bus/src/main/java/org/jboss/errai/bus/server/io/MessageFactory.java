@@ -25,8 +25,10 @@ import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.marshallers.ErraiProtocolEnvelopeMarshaller;
 import org.jboss.errai.marshalling.server.DecodingSession;
 import org.jboss.errai.marshalling.server.JSONDecoder;
+import org.jboss.errai.marshalling.server.JSONPullParser;
 import org.jboss.errai.marshalling.server.JSONStreamDecoder;
 import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
@@ -43,6 +45,22 @@ import static org.jboss.errai.bus.client.api.base.CommandMessage.createWithParts
  * The <tt>MessageFactory</tt> facilitates the building of a command message using a JSON string
  */
 public class MessageFactory {
+  private static volatile boolean pullParserEnabled = false;
+
+  /**
+   * Selects the decoder used for inbound payloads read from a stream. When enabled, payloads are decoded by the
+   * {@link JSONPullParser} straight from the UTF-8 bytes of the stream, instead of by the {@link JSONStreamDecoder}.
+   *
+   * @param enabled
+   *     true to use the pull parser.
+   */
+  public static void setPullParserEnabled(final boolean enabled) {
+    pullParserEnabled = enabled;
+  }
+
+  public static boolean isPullParserEnabled() {
+    return pullParserEnabled;
+  }
 
   /**
    * Decodes a JSON string to a map (string name -> object)
@@ -89,6 +107,14 @@ public class MessageFactory {
 
 
   public static List<Message> createCommandMessage(QueueSession session, HttpServletRequest request) throws IOException {
+    if (pullParserEnabled) {
+      final Object raw = JSONPullParser.parse(request.getInputStream());
+      if (raw == null) {
+        return Collections.<Message>emptyList();
+      }
+      return fromRaw(raw, session, request);
+    }
+
     EJValue value = JSONStreamDecoder.decode(request.getInputStream());
     if (value.isObject() != null) {
       return Collections.singletonList(from(getParts(value), session, request));
@@ -111,6 +137,10 @@ public class MessageFactory {
 
 
   public static List<Message> createCommandMessage(QueueSession session, InputStream inputStream) throws IOException {
+    if (pullParserEnabled) {
+      return fromRaw(JSONPullParser.parse(inputStream), session, null);
+    }
+
     EJValue value = JSONStreamDecoder.decode(inputStream);
     if (value.isObject() != null) {
       return Collections.singletonList(from(getParts(value), session, null));
@@ -147,6 +177,26 @@ public class MessageFactory {
 
 
 
+  private static List<Message> fromRaw(Object raw, QueueSession session, HttpServletRequest request) {
+    if (raw instanceof Map) {
+      return Collections.singletonList(from(ErraiProtocolServer.decodePayload((Map) raw), session, request));
+    }
+    else if (raw instanceof List) {
+      List<?> list = (List<?>) raw;
+      List<Message> messages = new ArrayList<Message>(list.size());
+      for (Object o : list) {
+        if (!(o instanceof Map)) {
+          throw new RuntimeException("bad payload");
+        }
+        messages.add(from(ErraiProtocolServer.decodePayload((Map) o), session, request));
+      }
+      return messages;
+    }
+    else {
+      throw new RuntimeException("bad payload");
+    }
+  }
+
   private static Map getParts(EJValue value) {
     return ErraiProtocolEnvelopeMarshaller.INSTANCE.demarshall(value,
             new DecodingSession(MappingContextSingleton.get()));
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * Invokes one particular method on its target. Obtained from {@link MethodInvokers#get(java.lang.reflect.Method)}.
+ */
+public interface MethodInvoker {
+
+  /**
+   * Invokes the method.
+   *
+   * @param target
+   *     the instance to invoke the method on. Ignored for static methods.
+   * @param arguments
+   *     the arguments of the method, in order.
+   *
+   * @return the value returned by the method, with primitives boxed, or null for a void method.
+   *
+   * @throws InvocationTargetException
+   *     if the method itself threw an exception.
+   * @throws Exception
+   *     if the method could not be invoked with the specified target and arguments.
+   */
+  Object invoke(Object target, List<?> arguments) throws Exception;
+}
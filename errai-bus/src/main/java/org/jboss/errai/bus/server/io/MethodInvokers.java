@@ -0,0 +1,246 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import org.slf4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Creates {@link MethodInvoker}s for the methods of services and RPC endpoints.
+ * <p/>
+ * Where possible, a class calling the method directly is generated, so that the call does not go through reflection
+ * and can be inlined like any other call. The generated class is defined in the package and class loader of the class
+ * declaring the method, so it can also call package-private methods. Methods which cannot be called from there, such
+ * as private methods, are invoked through reflection as before.
+ */
+public final class MethodInvokers {
+  private static final Logger log = getLogger(MethodInvokers.class);
+
+  private static final String INVOKER_SUFFIX = "$$ErraiInvoker$";
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  private static final ClassPool classPool = new ClassPool(true);
+  private static final Set<ClassLoader> knownLoaders
+      = Collections.newSetFromMap(new WeakHashMap<ClassLoader, Boolean>());
+
+  static {
+    registerLoader(MethodInvoker.class.getClassLoader());
+  }
+
+  private MethodInvokers() {
+  }
+
+  /**
+   * Returns an invoker for the specified method: a generated one if the method can be called directly, and a
+   * reflective one otherwise.
+   */
+  public static MethodInvoker get(final Method method) {
+    if (isDirectlyCallable(method)) {
+      try {
+        return generate(method);
+      }
+      catch (Throwable t) {
+        log.debug("could not generate an invoker for " + method + ": falling back to reflection", t);
+      }
+    }
+    return reflective(method);
+  }
+
+  /**
+   * Returns an invoker which calls the specified method through reflection.
+   */
+  public static MethodInvoker reflective(final Method method) {
+    method.setAccessible(true);
+    return new ReflectiveInvoker(method);
+  }
+
+  private static synchronized MethodInvoker generate(final Method method) throws Exception {
+    final Class<?> declaringClass = method.getDeclaringClass();
+    final ClassLoader loader = declaringClass.getClassLoader();
+    registerLoader(loader);
+
+    final CtClass invokerClass = classPool.makeClass(declaringClass.getName() + INVOKER_SUFFIX + method.getName()
+        + "$" + counter.incrementAndGet());
+    try {
+      invokerClass.addInterface(classPool.get(MethodInvoker.class.getName()));
+      invokerClass.addConstructor(CtNewConstructor.defaultConstructor(invokerClass));
+      invokerClass.addMethod(CtNewMethod.make(createInvokeMethod(method), invokerClass));
+
+      return (MethodInvoker) invokerClass.toClass(loader, declaringClass.getProtectionDomain()).newInstance();
+    }
+    finally {
+      invokerClass.detach();
+    }
+  }
+
+  /**
+   * Generates the source of the invoke method. The arguments are cast and unboxed before the call, so that a
+   * mismatched argument is reported as a failure to invoke the method, rather than as an exception thrown by it.
+   */
+  private static String createInvokeMethod(final Method method) {
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    final StringBuilder src = new StringBuilder(256)
+        .append("public Object invoke(Object target, java.util.List arguments) throws Exception {\n");
+
+    for (int i = 0; i < parameterTypes.length; i++) {
+      src.append(getTypeName(parameterTypes[i])).append(" a").append(i).append(" = ")
+          .append(unbox(parameterTypes[i], "arguments.get(" + i + ")")).append(";\n");
+    }
+
+    final StringBuilder call = new StringBuilder();
+    if (Modifier.isStatic(method.getModifiers())) {
+      call.append(getTypeName(method.getDeclaringClass()));
+    }
+    else {
+      call.append("((").append(getTypeName(method.getDeclaringClass())).append(") target)");
+    }
+    call.append('.').append(method.getName()).append('(');
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i != 0) {
+        call.append(", ");
+      }
+      call.append('a').append(i);
+    }
+    call.append(')');
+
+    src.append("try {\n");
+    if (method.getReturnType() == void.class) {
+      src.append(call).append(";\nreturn null;\n");
+    }
+    else {
+      src.append("return ").append(box(method.getReturnType(), call.toString())).append(";\n");
+    }
+    src.append("}\ncatch (Throwable t) {\nthrow new java.lang.reflect.InvocationTargetException(t);\n}\n}");
+
+    return src.toString();
+  }
+
+  private static String unbox(final Class<?> type, final String value) {
+    if (!type.isPrimitive()) {
+      return type == Object.class ? value : "(" + getTypeName(type) + ") " + value;
+    }
+    return "((" + getWrapperType(type).getName() + ") " + value + ")." + type.getName() + "Value()";
+  }
+
+  private static String box(final Class<?> type, final String value) {
+    if (!type.isPrimitive()) {
+      return value;
+    }
+    return getWrapperType(type).getName() + ".valueOf(" + value + ")";
+  }
+
+  private static Class<?> getWrapperType(final Class<?> primitive) {
+    if (primitive == boolean.class) return Boolean.class;
+    if (primitive == byte.class) return Byte.class;
+    if (primitive == char.class) return Character.class;
+    if (primitive == short.class) return Short.class;
+    if (primitive == int.class) return Integer.class;
+    if (primitive == long.class) return Long.class;
+    if (primitive == float.class) return Float.class;
+    return Double.class;
+  }
+
+  private static String getTypeName(final Class<?> type) {
+    if (type.isArray()) {
+      return getTypeName(type.getComponentType()) + "[]";
+    }
+    return type.getName();
+  }
+
+  /**
+   * Returns true if a class in the package of the declaring class can call the method without reflection.
+   */
+  private static boolean isDirectlyCallable(final Method method) {
+    final Class<?> declaringClass = method.getDeclaringClass();
+    if (declaringClass.getClassLoader() == null || Modifier.isPrivate(method.getModifiers())
+        || declaringClass.getName().startsWith("java.")) {
+      return false;
+    }
+
+    final String packageName = getPackageName(declaringClass);
+    if (!isAccessibleFrom(declaringClass, packageName) || !isAccessibleFrom(method.getReturnType(), packageName)) {
+      return false;
+    }
+    for (final Class<?> type : method.getParameterTypes()) {
+      if (!isAccessibleFrom(type, packageName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAccessibleFrom(final Class<?> type, final String packageName) {
+    if (type.isArray()) {
+      return isAccessibleFrom(type.getComponentType(), packageName);
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+      final int modifiers = c.getModifiers();
+      if (Modifier.isPrivate(modifiers) || (!Modifier.isPublic(modifiers) && !getPackageName(c).equals(packageName))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String getPackageName(final Class<?> type) {
+    final String name = type.getName();
+    final int lastDot = name.lastIndexOf('.');
+    return lastDot == -1 ? "" : name.substring(0, lastDot);
+  }
+
+  private static void registerLoader(final ClassLoader loader) {
+    if (loader != null && knownLoaders.add(loader)) {
+      classPool.appendClassPath(new LoaderClassPath(loader));
+    }
+  }
+
+  private static class ReflectiveInvoker implements MethodInvoker {
+    private final Method method;
+
+    private ReflectiveInvoker(final Method method) {
+      this.method = method;
+    }
+
+    @Override
+    public Object invoke(final Object target, final List<?> arguments) throws Exception {
+      return method.invoke(target, arguments.toArray(new Object[arguments.size()]));
+    }
+
+    @Override
+    public String toString() {
+      return "ReflectiveInvoker{" + method + "}";
+    }
+  }
+}
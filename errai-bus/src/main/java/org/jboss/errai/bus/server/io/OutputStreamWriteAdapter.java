@@ -37,6 +37,16 @@ public class OutputStreamWriteAdapter extends AbstractByteWriteAdapter {
     outputStream.write(b);
   }
 
+  @Override
+  public void write(final byte[] b) throws IOException {
+    outputStream.write(b);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    outputStream.write(b, off, len);
+  }
+
   @Override
   public void flush() throws IOException {
     outputStream.flush();
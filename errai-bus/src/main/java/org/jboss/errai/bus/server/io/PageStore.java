@@ -0,0 +1,419 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A disk backed store for message data which has been paged out of the {@link org.jboss.errai.bus.server.io.buffers.TransmissionBuffer}
+ * on behalf of slow or stale queues.
+ * <p/>
+ * Each page is a file in the page directory which is only ever appended to, one paged out segment at a time. The
+ * data is stored already framed as a comma separated sequence of messages, so it can be transferred to a client
+ * with {@link FileChannel#transferTo(long, long, WritableByteChannel)} without being filtered again.
+ * <p/>
+ * The total size of all pages is capped. When an append would exceed the cap, the least recently used pages are
+ * evicted (and their data is lost) until the new data fits. Appends are accounted for one chunk at a time, so a
+ * segment of any size can be streamed into a page without being held in memory first.
+ */
+public class PageStore {
+  private static final Logger log = getLogger(PageStore.class);
+
+  private final File directory;
+  private final long maxSize;
+
+  /**
+   * All the pages in least recently used order. Guarded by <tt>this</tt>.
+   */
+  private final LinkedHashMap<String, Page> pages = new LinkedHashMap<String, Page>(16, 0.75f, true);
+  private long storedBytes;
+
+  private final AtomicLong pagedBytes = new AtomicLong();
+  private final AtomicLong pageOuts = new AtomicLong();
+  private final AtomicLong pageIns = new AtomicLong();
+  private final AtomicLong pageInNanos = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  private static final int CHUNK_SIZE = 1024 * 8;
+
+  private static class Page {
+    private final File file;
+    private long size;
+    private boolean hasMessages;
+
+    private Page(final File file) {
+      this.file = file;
+    }
+  }
+
+  /**
+   * @param directory
+   *     the directory to store pages in. It is created if it does not exist.
+   * @param maxSize
+   *     the maximum number of bytes to store across all pages.
+   */
+  public PageStore(final File directory, final long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public File getPageFile(final String pageId) {
+    return new File(directory, pageId.replaceAll("\\-", "_"));
+  }
+
+  /**
+   * Appends a segment of framed message data to the specified page.
+   *
+   * @param pageId
+   *     the id of the page (usually a session id).
+   * @param data
+   *     the data to append. Its position is advanced to its limit.
+   *
+   * @throws IOException
+   *     if the page could not be written.
+   */
+  public void append(final String pageId, final ByteBuffer data) throws IOException {
+    final OutputStream outputStream = openForAppend(pageId);
+    try {
+      if (data.hasArray()) {
+        outputStream.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        data.position(data.limit());
+      }
+      else {
+        final byte[] chunk = new byte[Math.min(data.remaining(), CHUNK_SIZE)];
+        while (data.hasRemaining()) {
+          final int length = Math.min(data.remaining(), chunk.length);
+          data.get(chunk, 0, length);
+          outputStream.write(chunk, 0, length);
+        }
+      }
+    }
+    finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Opens the specified page for appending a segment of framed message data. The page is only created once data is
+   * actually written to the returned stream, which must be closed when the segment is complete.
+   *
+   * @param pageId
+   *     the id of the page (usually a session id).
+   *
+   * @return an output stream which appends to the page.
+   */
+  public OutputStream openForAppend(final String pageId) {
+    return new PageOutputStream(pageId);
+  }
+
+  /**
+   * Returns true if the specified page already contains at least one message, meaning that the next message
+   * appended to it must be preceded by a separator.
+   */
+  public synchronized boolean hasMessages(final String pageId) {
+    final Page page = pages.get(pageId);
+    return page != null && page.hasMessages;
+  }
+
+  public synchronized void setHasMessages(final String pageId) {
+    final Page page = pages.get(pageId);
+    if (page != null) {
+      page.hasMessages = true;
+    }
+  }
+
+  public synchronized boolean hasPage(final String pageId) {
+    return pages.containsKey(pageId);
+  }
+
+  /**
+   * Transfers the entire contents of the specified page into the target channel, and discards the page.
+   *
+   * @param pageId
+   *     the id of the page.
+   * @param target
+   *     the channel to transfer the data to.
+   *
+   * @return the number of bytes transferred.
+   *
+   * @throws IOException
+   *     if the page could not be read or the target could not be written.
+   */
+  public long transferTo(final String pageId, final WritableByteChannel target) throws IOException {
+    final Page page;
+    synchronized (this) {
+      page = pages.get(pageId);
+    }
+
+    if (page == null) return 0;
+
+    final long start = System.nanoTime();
+    long transferred = 0;
+
+    final FileChannel channel = new RandomAccessFile(page.file, "r").getChannel();
+    try {
+      final long size = channel.size();
+      while (transferred < size) {
+        transferred += channel.transferTo(transferred, size - transferred, target);
+      }
+    }
+    finally {
+      channel.close();
+    }
+
+    discard(pageId);
+
+    pageIns.incrementAndGet();
+    pageInNanos.addAndGet(System.nanoTime() - start);
+
+    return transferred;
+  }
+
+  /**
+   * Discards the specified page and deletes its backing file.
+   */
+  public void discard(final String pageId) {
+    final Page page;
+    synchronized (this) {
+      page = pages.remove(pageId);
+      if (page != null) {
+        storedBytes -= page.size;
+      }
+    }
+
+    if (page != null && page.file.exists() && !page.file.delete()) {
+      log.warn("could not delete page file: " + page.file);
+    }
+  }
+
+  /**
+   * Discards all pages.
+   */
+  public void clear() {
+    final List<String> pageIds;
+    synchronized (this) {
+      pageIds = new ArrayList<String>(pages.keySet());
+    }
+
+    for (final String pageId : pageIds) {
+      discard(pageId);
+    }
+  }
+
+  private Page getOrCreatePage(final String pageId) throws IOException {
+    Page page = pages.get(pageId);
+    if (page == null) {
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("could not create page directory: " + directory);
+      }
+
+      final File file = getPageFile(pageId);
+      if (file.exists() && !file.delete()) {
+        throw new IOException("could not delete stale page file: " + file);
+      }
+
+      pages.put(pageId, page = new Page(file));
+    }
+    return page;
+  }
+
+  private void evictFor(final int length, final Page appendingTo) {
+    final Iterator<Map.Entry<String, Page>> iter = pages.entrySet().iterator();
+    while (storedBytes + length > maxSize && iter.hasNext()) {
+      final Map.Entry<String, Page> entry = iter.next();
+      final Page page = entry.getValue();
+      if (page == appendingTo) continue;
+
+      iter.remove();
+      storedBytes -= page.size;
+      evictions.incrementAndGet();
+
+      if (!page.file.delete()) {
+        log.warn("could not delete evicted page file: " + page.file);
+      }
+      log.warn("paged data for session " + entry.getKey() + " was evicted because the page store is full. "
+          + "(consider increasing the page store size with errai.bus.paging.max_size in ErraiService.properties)");
+    }
+  }
+
+  /**
+   * Appends to a page one chunk at a time. Room is made for each chunk, by evicting other pages if necessary, just
+   * before it is written.
+   */
+  private class PageOutputStream extends OutputStream {
+    private final String pageId;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int count;
+
+    private Page page;
+    private FileChannel channel;
+    private long written;
+    private boolean lost;
+
+    private PageOutputStream(final String pageId) {
+      this.pageId = pageId;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      if (count == chunk.length) {
+        flushChunk();
+      }
+      chunk[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (count == chunk.length) {
+          flushChunk();
+        }
+        final int n = Math.min(len, chunk.length - count);
+        System.arraycopy(b, off, chunk, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flushChunk();
+      }
+      finally {
+        if (channel != null) {
+          channel.close();
+
+          synchronized (PageStore.this) {
+            // the page may have been evicted or discarded while we were writing to it.
+            if (pages.get(pageId) != page && page.file.exists() && !page.file.delete()) {
+              log.warn("could not delete orphaned page file: " + page.file);
+            }
+          }
+
+          pagedBytes.addAndGet(written);
+          pageOuts.incrementAndGet();
+          channel = null;
+        }
+      }
+    }
+
+    private void flushChunk() throws IOException {
+      if (count == 0) return;
+
+      final int length = count;
+      count = 0;
+      if (lost) return;
+
+      synchronized (PageStore.this) {
+        if (page == null) {
+          page = getOrCreatePage(pageId);
+        }
+        else if (pages.get(pageId) != page) {
+          // the page was evicted or discarded part way through the segment. the rest of the segment is dropped.
+          lost = true;
+          return;
+        }
+
+        if (page.size + length <= maxSize) {
+          evictFor(length, page);
+          page.size += length;
+          storedBytes += length;
+        }
+        else {
+          lost = true;
+        }
+      }
+
+      if (lost) {
+        // a page can never hold more than the whole store, so the part of it already written is useless.
+        discard(pageId);
+        throw new IOException("page " + pageId + " exceeds the page store capacity of " + maxSize + " bytes");
+      }
+
+      if (channel == null) {
+        channel = new RandomAccessFile(page.file, "rw").getChannel();
+        channel.position(channel.size());
+      }
+
+      final ByteBuffer data = ByteBuffer.wrap(chunk, 0, length);
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+      written += length;
+    }
+  }
+
+  /**
+   * @return the total number of bytes which have ever been paged out.
+   */
+  public long getPagedBytes() {
+    return pagedBytes.get();
+  }
+
+  /**
+   * @return the number of bytes currently stored on disk.
+   */
+  public synchronized long getStoredBytes() {
+    return storedBytes;
+  }
+
+  public synchronized int getPageCount() {
+    return pages.size();
+  }
+
+  public long getPageOutCount() {
+    return pageOuts.get();
+  }
+
+  public long getPageInCount() {
+    return pageIns.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * @return the mean time in nanoseconds it took to transfer a page back to a client.
+   */
+  public long getAveragePageInLatencyNanos() {
+    final long count = pageIns.get();
+    return count == 0 ? 0 : pageInNanos.get() / count;
+  }
+}
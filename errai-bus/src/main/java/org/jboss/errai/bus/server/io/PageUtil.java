@@ -16,19 +16,15 @@
 
 package org.jboss.errai.bus.server.io;
 
-import static java.lang.System.nanoTime;
-
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.io.buffers.BufferFilter;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,55 +35,98 @@ public final class PageUtil {
   }
 
   private static final long DOWNGRADE_THRESHOLD = Boolean.getBoolean("org.jboss.errai.debugmode") ?
-      TimeUnit.SECONDS.toNanos(1600) : TimeUnit.SECONDS.toNanos(10);
+      TimeUnit.SECONDS.toMillis(1600) : TimeUnit.SECONDS.toMillis(10);
+
+  /**
+   * The default page store size in megabytes.
+   */
+  public static final int DEFAULT_PAGE_STORE_SIZE = 256;
+
+  public static File getDefaultPageDirectory() {
+    return new File(System.getProperty("java.io.tmpdir"), "queuecache");
+  }
 
-  private static final String tempDir = System.getProperty("java.io.tmpdir");
+  /**
+   * Returns the store in the default page directory, of the default size, which is shared by all the queues that are
+   * not given a store of their own, so that they are held to one size limit between them.
+   */
+  public static PageStore getDefaultPageStore() {
+    return DefaultPageStoreHolder.INSTANCE;
+  }
+
+  private static class DefaultPageStoreHolder {
+    private static final PageStore INSTANCE =
+        new PageStore(getDefaultPageDirectory(), DEFAULT_PAGE_STORE_SIZE * 1024L * 1024L);
+  }
 
   public static String getPageFileName(final MessageQueue queue) {
-    return tempDir + "/queuecache/" + queue.getSession().getSessionId().replaceAll("\\-", "_");
+    return queue.getPageStore().getPageFile(queue.getSession().getSessionId()).getPath();
   }
 
   public static File getOrCreatePageFile(final MessageQueue queue) throws IOException {
-    final File pageFile = new File(getPageFileName(queue));
+    final File pageFile = queue.getPageStore().getPageFile(queue.getSession().getSessionId());
     if (!pageFile.exists()) {
-      pageFile.getParentFile().mkdirs();
+      final File directory = pageFile.getParentFile();
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("could not create page directory: " + directory);
+      }
       pageFile.createNewFile();
-      pageFile.deleteOnExit();
     }
     return pageFile;
   }
 
   public static void writeToPageFile(final MessageQueue queue, final InputStream inputStream, final boolean append) {
-
     try {
-      final OutputStream outputStream
-          = new BufferedOutputStream(new FileOutputStream(getOrCreatePageFile(queue), append));
-
-      int read;
-      while ((read = inputStream.read()) != -1) outputStream.write(read);
-
-      outputStream.flush();
-      outputStream.close();
+      final PageStore pageStore = queue.getPageStore();
+      final String pageId = queue.getSession().getSessionId();
+      if (!append) {
+        pageStore.discard(pageId);
+      }
 
+      final OutputStream outputStream = pageStore.openForAppend(pageId);
+      try {
+        final byte[] buf = new byte[1024 * 8];
+        int read;
+        while ((read = inputStream.read(buf)) != -1) outputStream.write(buf, 0, read);
+      }
+      finally {
+        outputStream.close();
+      }
     }
     catch (IOException e) {
       throw new RuntimeException("paging error", e);
     }
   }
 
+  /**
+   * Moves all the data waiting in the buffer for the specified queue into its page. The messages are framed as they
+   * are paged out, so that they can later be transferred to the client without being filtered again. The data is
+   * streamed into the page as it is read from the buffer, rather than being collected in memory first.
+   *
+   * @return true if the queue was already paged before this call.
+   */
   public static boolean pageWaitingToDisk(final MessageQueue queue) {
     synchronized (queue.getPageLock()) {
       try {
         final boolean alreadyPaged = queue.isPaged();
+        final PageStore pageStore = queue.getPageStore();
+        final String pageId = queue.getSession().getSessionId();
 
-        final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(getOrCreatePageFile(queue), alreadyPaged));
-        final ByteWriteAdapter writeAdapter = new OutputStreamWriteAdapter(outputStream);
+        final PagingFilter filter = new PagingFilter(pageStore.hasMessages(pageId));
 
-        queue.getBuffer().read(writeAdapter, queue.getBufferColor());
-        outputStream.flush();
-        outputStream.close();
+        final OutputStream outputStream = pageStore.openForAppend(pageId);
+        try {
+          queue.getBuffer().read(new OutputStreamWriteAdapter(outputStream), queue.getBufferColor(), filter);
+        }
+        finally {
+          outputStream.close();
+        }
 
-        queue.setPaged(true);
+        if (filter.seg > 0) {
+          pageStore.setHasMessages(pageId);
+        }
+
+        queue.setPaged(pageStore.hasPage(pageId));
 
         return alreadyPaged;
       }
@@ -97,28 +136,18 @@ public final class PageUtil {
     }
   }
 
+  /**
+   * Writes the paged data for the specified queue, as a JSON array of messages, to the provided adapter and discards
+   * the page. The data was framed when it was paged out, so the callback is only used to open and close the array.
+   */
   public static void readInPageFile(final MessageQueue queue,
                                     final ByteWriteAdapter outputStream,
                                     final BufferFilter callback) {
     synchronized (queue.getPageLock()) {
       try {
         if (queue.isPaged()) {
-          final File pageFile = new File(getPageFileName(queue));
-          if (!pageFile.exists()) {
-            queue.setPaged(false);
-            return;
-          }
-
-          final InputStream inputStream = new BufferedInputStream(new FileInputStream(pageFile));
-
           callback.before(outputStream);
-
-          int read;
-          while ((read = inputStream.read()) != -1) {
-            outputStream.write(callback.each(read, outputStream));
-          }
-          inputStream.close();
-
+          queue.getPageStore().transferTo(queue.getSession().getSessionId(), new ByteWriteAdapterChannel(outputStream));
           callback.after(outputStream);
 
           queue.setPaged(false);
@@ -132,21 +161,84 @@ public final class PageUtil {
 
   public static void discardPageData(final MessageQueue queue) {
     if (queue.isPaged()) {
-      File pageFile = new File(getPageFileName(queue));
-      if (pageFile.exists()) {
-        pageFile.delete();
-      }
+      queue.getPageStore().discard(queue.getSession().getSessionId());
+      queue.setPaged(false);
     }
   }
 
+  /**
+   * Returns how long a queue with a {@link Pageable} delivery handler may go without a transmission before its data
+   * is paged out, in milliseconds.
+   */
+  public static long getDowngradeThreshold() {
+    return DOWNGRADE_THRESHOLD;
+  }
+
   public static boolean pageIfStraddling(final MessageQueue queue) {
     if (queue.getDeliveryHandler() instanceof Pageable) {
 
-      if (((nanoTime() - queue.getLastTransmissionTime()) > DOWNGRADE_THRESHOLD)) {
+      if (((System.currentTimeMillis() - queue.getLastTransmissionTime()) > DOWNGRADE_THRESHOLD)) {
         ((Pageable) queue.getDeliveryHandler()).pageOut(queue);
         return true;
       }
     }
     return false;
   }
+
+  /**
+   * A {@link MultiMessageFilter} which separates the messages being paged out, but leaves opening and closing the
+   * array to whoever reads the page back in.
+   */
+  static class PagingFilter extends MultiMessageFilter {
+    PagingFilter(final boolean continuesPage) {
+      if (continuesPage) {
+        seg = 1;
+      }
+    }
+
+    @Override
+    public void before(final ByteWriteAdapter outstream) throws IOException {
+    }
+
+    @Override
+    public void after(final ByteWriteAdapter outstream) throws IOException {
+      if (brackCount == 1) {
+        outstream.write('}');
+      }
+    }
+  }
+
+  static class ByteWriteAdapterChannel implements WritableByteChannel {
+    private final ByteWriteAdapter writeAdapter;
+    private boolean open = true;
+
+    ByteWriteAdapterChannel(final ByteWriteAdapter writeAdapter) {
+      this.writeAdapter = writeAdapter;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+      final int length = src.remaining();
+      if (src.hasArray()) {
+        writeAdapter.write(src.array(), src.arrayOffset() + src.position(), length);
+        src.position(src.limit());
+      }
+      else {
+        final byte[] bytes = new byte[length];
+        src.get(bytes);
+        writeAdapter.write(bytes);
+      }
+      return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+      open = false;
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package org.jboss.errai.bus.server.io;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 
 import org.jboss.errai.bus.client.api.base.MessageDeliveryFailure;
 import org.jboss.errai.bus.client.api.messaging.Message;
@@ -16,6 +17,7 @@ public class ServiceMethodCallback implements MessageCallback {
 
   private Object delegate;
   private Method service;
+  private MethodInvoker invoker;
   private boolean noArgs;
 
   /**
@@ -27,27 +29,27 @@ public class ServiceMethodCallback implements MessageCallback {
   public ServiceMethodCallback(Object delegate, Method service) {
     this.delegate = delegate;
     this.service = service;
-    this.service.setAccessible(true);
     if (service.getParameterTypes().length == 0) {
       noArgs = true;
     }
     else if (service.getParameterTypes().length != 1 || !service.getParameterTypes()[0].equals(Message.class)) {
       throw new RuntimeException(delegate.getClass().getName() + "#" + service.getName() + " has incorrect arguments");
     }
+    this.invoker = MethodInvokers.get(service);
   }
 
   @Override
   public void callback(Message message) {
     if (noArgs) {
       try {
-        service.invoke(delegate);
+        invoker.invoke(delegate, Collections.emptyList());
       } catch (Exception e) {
         throw new MessageDeliveryFailure(e);
       }
     }
     else {
       try {
-        service.invoke(delegate, message);
+        invoker.invoke(delegate, Collections.singletonList(message));
       } catch (Exception e) {
         throw new MessageDeliveryFailure(e);
       }
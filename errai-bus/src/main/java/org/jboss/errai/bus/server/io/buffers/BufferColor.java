@@ -42,7 +42,7 @@ public class BufferColor {
   final short color;
 
   /**
-   * Lock for reads and writes on this buffer color.
+   * Lock for reads on this buffer color. Writers only take it to signal waiting readers.
    */
   final ReentrantLock lock = new ReentrantLock(false);
 
@@ -51,6 +51,11 @@ public class BufferColor {
    */
   final Condition dataWaiting = lock.newCondition();
 
+  /**
+   * The number of readers holding the lock with the intent of waiting on {@link #dataWaiting}.
+   */
+  final AtomicInteger waiting = new AtomicInteger();
+
   public short getColor() {
     return color;
   }
@@ -66,6 +71,22 @@ public class BufferColor {
     dataWaiting.signal();
   }
 
+  /**
+   * Wake up a thread waiting for data of this color, if there is one. Unlike {@link #wake()}, this does not require
+   * the caller to hold the lock, and does not touch the lock at all when no reader is waiting.
+   */
+  void wakeIfWaiting() {
+    if (waiting.get() > 0) {
+      lock.lock();
+      try {
+        dataWaiting.signal();
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+  }
+
   /**
    * Return an instance to the lock for this color.
    *
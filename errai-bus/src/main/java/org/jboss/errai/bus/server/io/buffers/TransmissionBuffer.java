@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -104,6 +106,20 @@ public class TransmissionBuffer implements Buffer {
    */
   private volatile long headSequence = STARTING_SEQUENCE;
 
+  private static final AtomicLongFieldUpdater<TransmissionBuffer> headSequenceUpdater
+      = AtomicLongFieldUpdater.newUpdater(TransmissionBuffer.class, "headSequence");
+
+  /**
+   * For each segment which starts a write, the sequence number following the end of that write, set once the writer
+   * has finished filling its segments.
+   */
+  private final AtomicLongArray completedWrites;
+
+  /**
+   * For each segment which starts a write, the color of that write.
+   */
+  private final BufferColor[] writeColors;
+
   private TransmissionBuffer(final boolean directBuffer, final int segmentSize, final int segments) {
     this.segmentSize = segmentSize;
     this.bufferSize = segmentSize * segments;
@@ -120,6 +136,9 @@ public class TransmissionBuffer implements Buffer {
 
     segmentMap = new short[segments];
     segmentMap[0] = (short) 0;
+
+    completedWrites = new AtomicLongArray(segments);
+    writeColors = new BufferColor[segments];
   }
 
   /**
@@ -208,29 +227,15 @@ public class TransmissionBuffer implements Buffer {
       throw new IOException("write size larger than buffer can fit");
     }
 
-    final ReentrantLock lock = bufferColor.lock;
-    lock.lock();
-    try {
-      final int allocSize = ((writeSize + SEGMENT_HEADER_SIZE) / segmentSize) + 1;
-      final long writeHead = writeSequenceNumber.getAndAdd(allocSize);
-      final int seq = (int) writeHead % segments;
-
-      int writeCursor = seq * segmentSize;
+    final int allocSize = ((writeSize + SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+    final long writeHead = writeSequenceNumber.getAndAdd(allocSize);
 
-      // write the chunk size header for the data we're about to write
-      writeChunkSize(writeCursor, writeSize);
+    try {
+      int writeCursor = allocate(writeHead, allocSize, writeSize, bufferColor);
 
-      final int end = (writeCursor += SEGMENT_HEADER_SIZE) + writeSize;
+      final int end = writeCursor + writeSize;
       final int initialRead = end > bufferSize ? bufferSize : end;
 
-      /*
-      * Allocate the segments to the this color
-      */
-      final short color = bufferColor.color;
-      for (int i = 0; i < allocSize; i++) {
-        segmentMap[((seq + i) % segments)] = color;
-      }
-
       for (; writeCursor < initialRead; writeCursor++) {
         _buffer.put(writeCursor, (byte) inputStream.read());
       }
@@ -240,12 +245,202 @@ public class TransmissionBuffer implements Buffer {
           _buffer.put(i, (byte) inputStream.read());
         }
       }
+    }
+    finally {
+      publish(writeHead, allocSize, bufferColor);
+    }
+  }
+
+  /**
+   * Writes the specified byte array into the buffer. The data is copied into the buffer with bulk puts rather than
+   * byte-by-byte.
+   *
+   * @param bytes
+   *     the data to be written into the buffer.
+   * @param bufferColor
+   *     the color of the data to be inserted.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void write(final byte[] bytes, final BufferColor bufferColor) throws IOException {
+    write(ByteBuffer.wrap(bytes), bufferColor);
+  }
+
+  /**
+   * Writes the remaining contents of the specified {@link ByteBuffer} into the buffer. The data is copied with at
+   * most two bulk puts: one up to the physical end of the buffer, and one from the start of the buffer if the write
+   * wraps around. The position of the specified <tt>ByteBuffer</tt> is advanced to its limit.
+   *
+   * @param byteBuffer
+   *     the data to be written into the buffer.
+   * @param bufferColor
+   *     the color of the data to be inserted.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void write(final ByteBuffer byteBuffer, final BufferColor bufferColor) throws IOException {
+    final int writeSize = byteBuffer.remaining();
+
+    if (writeSize > bufferSize) {
+      throw new IOException("write size larger than buffer can fit");
+    }
+
+    final int allocSize = ((writeSize + SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+    final long writeHead = writeSequenceNumber.getAndAdd(allocSize);
+
+    try {
+      final int writeCursor = allocate(writeHead, allocSize, writeSize, bufferColor);
+      final ByteBuffer target = _buffer.duplicate();
+
+      if (writeCursor + writeSize <= bufferSize) {
+        target.position(writeCursor);
+        target.put(byteBuffer);
+      }
+      else {
+        final int limit = byteBuffer.limit();
+
+        byteBuffer.limit(byteBuffer.position() + (bufferSize - writeCursor));
+        target.position(writeCursor);
+        target.put(byteBuffer);
 
-      headSequence = writeHead + allocSize;
+        byteBuffer.limit(limit);
+        target.position(0);
+        target.put(byteBuffer);
+      }
     }
     finally {
-      bufferColor.wake();
-      lock.unlock();
+      publish(writeHead, allocSize, bufferColor);
+    }
+  }
+
+  /**
+   * Writes the specified characters into the buffer, encoded as UTF-8. The characters are encoded directly into the
+   * allocated segments, so no intermediate byte array is needed. Unpaired surrogates are written as '<tt>?</tt>', as
+   * {@link String#getBytes(String)} does.
+   *
+   * @param chars
+   *     the characters to be written into the buffer.
+   * @param bufferColor
+   *     the color of the data to be inserted.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void write(final CharSequence chars, final BufferColor bufferColor) throws IOException {
+    final int writeSize = Utf8Encoder.length(chars);
+
+    if (writeSize > bufferSize) {
+      throw new IOException("write size larger than buffer can fit");
+    }
+
+    final int allocSize = ((writeSize + SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+    final long writeHead = writeSequenceNumber.getAndAdd(allocSize);
+
+    try {
+      int writeCursor = allocate(writeHead, allocSize, writeSize, bufferColor);
+      if (writeCursor == bufferSize) {
+        writeCursor = 0;
+      }
+
+      final int length = chars.length();
+      for (int i = 0; i < length; i++) {
+        final char c = chars.charAt(i);
+
+        if (c < 0x80) {
+          writeCursor = put(writeCursor, c);
+        }
+        else if (c < 0x800) {
+          writeCursor = put(writeCursor, 0xC0 | (c >> 6));
+          writeCursor = put(writeCursor, 0x80 | (c & 0x3F));
+        }
+        else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+          if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+            final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+            writeCursor = put(writeCursor, 0xF0 | (codePoint >> 18));
+            writeCursor = put(writeCursor, 0x80 | ((codePoint >> 12) & 0x3F));
+            writeCursor = put(writeCursor, 0x80 | ((codePoint >> 6) & 0x3F));
+            writeCursor = put(writeCursor, 0x80 | (codePoint & 0x3F));
+          }
+          else {
+            writeCursor = put(writeCursor, '?');
+          }
+        }
+        else {
+          writeCursor = put(writeCursor, 0xE0 | (c >> 12));
+          writeCursor = put(writeCursor, 0x80 | ((c >> 6) & 0x3F));
+          writeCursor = put(writeCursor, 0x80 | (c & 0x3F));
+        }
+      }
+    }
+    finally {
+      publish(writeHead, allocSize, bufferColor);
+    }
+  }
+
+  /**
+   * Puts a byte at the specified position in the buffer.
+   *
+   * @return the position following the byte, wrapped around to the start of the buffer if necessary.
+   */
+  private int put(final int position, final int b) {
+    _buffer.put(position, (byte) b);
+    return position + 1 == bufferSize ? 0 : position + 1;
+  }
+
+  /**
+   * Allocates the segments starting at the specified {@param writeHead} to the specified color and writes the chunk
+   * size header.
+   *
+   * @return the position in the buffer at which the data should be written.
+   */
+  private int allocate(final long writeHead, final int allocSize, final int writeSize, final BufferColor bufferColor) {
+    final int seq = (int) writeHead % segments;
+    final int writeCursor = seq * segmentSize;
+
+    // write the chunk size header for the data we're about to write
+    writeChunkSize(writeCursor, writeSize);
+
+    /*
+    * Allocate the segments to the this color
+    */
+    final short color = bufferColor.color;
+    for (int i = 0; i < allocSize; i++) {
+      segmentMap[((seq + i) % segments)] = color;
+    }
+
+    return writeCursor + SEGMENT_HEADER_SIZE;
+  }
+
+  /**
+   * Marks the write claimed at the specified {@param writeHead} as complete, and advances the head sequence as far
+   * as the completed writes allow, waking up any reader waiting on the colors of the writes which became visible.
+   * <p/>
+   * Writers claim their segments with an atomic increment of the write sequence and fill them without holding any
+   * lock, so several writers may be filling segments at the same time and may finish in any order. The head is only
+   * ever advanced over a contiguous run of completed writes, so a reader never sees a head sequence beyond a segment
+   * which is still being filled. A writer never waits for the writers claiming before it: if an earlier write is not
+   * complete yet, the writer of that earlier write will advance the head over this one when it publishes.
+   */
+  private void publish(final long writeHead, final int allocSize, final BufferColor bufferColor) {
+    final int seq = (int) (writeHead % segments);
+    writeColors[seq] = bufferColor;
+    completedWrites.set(seq, writeHead + allocSize);
+
+    for (; ; ) {
+      final long head = headSequence;
+      final int headSeq = (int) (head % segments);
+      final long end = completedWrites.get(headSeq);
+
+      // the write starting at the head has not been completed yet (or the buffer is empty up to the head).
+      if (end <= head) {
+        return;
+      }
+
+      if (headSequenceUpdater.compareAndSet(this, head, end)) {
+        writeColors[headSeq].wakeIfWaiting();
+      }
     }
   }
 
@@ -393,6 +588,7 @@ public class TransmissionBuffer implements Buffer {
   public boolean readWait(final ByteWriteAdapter outputStream,
                           final BufferColor bufferColor) throws InterruptedException, IOException {
     bufferColor.lock.lockInterruptibly();
+    bufferColor.waiting.incrementAndGet();
 
     try {
       for (; ; ) {
@@ -421,6 +617,7 @@ public class TransmissionBuffer implements Buffer {
       }
     }
     finally {
+      bufferColor.waiting.decrementAndGet();
       bufferColor.lock.unlock();
     }
   }
@@ -454,6 +651,7 @@ public class TransmissionBuffer implements Buffer {
                           final BufferColor bufferColor) throws IOException, InterruptedException {
     final ReentrantLock lock = bufferColor.getLock();
     lock.lockInterruptibly();
+    bufferColor.waiting.incrementAndGet();
 
     long nanos = unit.toNanos(time);
 
@@ -486,6 +684,7 @@ public class TransmissionBuffer implements Buffer {
       }
     }
     finally {
+      bufferColor.waiting.decrementAndGet();
       bufferColor.lock.unlock();
     }
   }
@@ -540,6 +739,7 @@ public class TransmissionBuffer implements Buffer {
                           final BufferFilter callback) throws IOException, InterruptedException {
     final ReentrantLock lock = bufferColor.lock;
     lock.lockInterruptibly();
+    bufferColor.waiting.incrementAndGet();
 
     long nanos = time == -1 ? 1 : unit.toNanos(time);
 
@@ -573,6 +773,7 @@ public class TransmissionBuffer implements Buffer {
       }
     }
     finally {
+      bufferColor.waiting.decrementAndGet();
       lock.unlock();
     }
   }
@@ -663,43 +864,75 @@ public class TransmissionBuffer implements Buffer {
       readCursor += SEGMENT_HEADER_SIZE;
 
       final int endRead = readCursor + readSize;
-      final int maxInitialRead;
 
-      if (endRead < bufferSize) {
-        maxInitialRead = endRead;
+      if (endRead <= bufferSize) {
+        copyOut(readCursor, readSize, outputStream, callback);
       }
       else {
-        maxInitialRead = bufferSize;
+        copyOut(readCursor, bufferSize - readCursor, outputStream, callback);
+        copyOut(0, endRead - bufferSize, outputStream, callback);
       }
 
-      if (callback == null) {
-        for (; readCursor < maxInitialRead; readCursor++) {
-          outputStream.write(_buffer.get(readCursor));
-        }
+      return sequenceToRead + ((readSize + SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+    }
+    else {
+      return -1;
+    }
+  }
 
-        if (readCursor < endRead) {
-          final int remaining = endRead - bufferSize;
-          for (int i = 0; i < remaining; i++) {
-            outputStream.write(_buffer.get(i));
-          }
-        }
+  /**
+   * Copies a contiguous region of the buffer into the provided <tt>ByteWriteAdapter</tt>. Heap buffers are written
+   * directly from their backing array, while direct buffers are copied out in bulk through a scratch array.
+   *
+   * @param position
+   *     the position in the buffer to start copying from.
+   * @param length
+   *     the number of bytes to copy.
+   * @param outputStream
+   *     the <tt>ByteWriteAdapter</tt> to copy into.
+   * @param callback
+   *     an optional {@link BufferFilter}.
+   *
+   * @throws IOException
+   *     thrown if data cannot be written to the ByteWriteAdapter.
+   */
+  private void copyOut(final int position,
+                       final int length,
+                       final ByteWriteAdapter outputStream,
+                       final BufferFilter callback) throws IOException {
+    if (length <= 0) return;
+
+    if (_buffer.hasArray()) {
+      copyOut(_buffer.array(), _buffer.arrayOffset() + position, length, outputStream, callback);
+    }
+    else {
+      final ByteBuffer source = _buffer.duplicate();
+      source.position(position);
+
+      final byte[] scratch = new byte[length < segmentSize ? length : segmentSize];
+      int remaining = length;
+      while (remaining > 0) {
+        final int toCopy = remaining < scratch.length ? remaining : scratch.length;
+        source.get(scratch, 0, toCopy);
+        copyOut(scratch, 0, toCopy, outputStream, callback);
+        remaining -= toCopy;
       }
-      else {
-        for (; readCursor < maxInitialRead; readCursor++) {
-          outputStream.write(callback.each(_buffer.get(readCursor), outputStream));
-        }
+    }
+  }
 
-        if (readCursor < endRead) {
-          final int remaining = endRead - bufferSize;
-          for (int i = 0; i < remaining; i++) {
-            outputStream.write(callback.each(_buffer.get(i), outputStream));
-          }
-        }
-      }
-      return sequenceToRead + ((readSize + SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+  private static void copyOut(final byte[] bytes,
+                              final int offset,
+                              final int length,
+                              final ByteWriteAdapter outputStream,
+                              final BufferFilter callback) throws IOException {
+    if (callback == null) {
+      outputStream.write(bytes, offset, length);
     }
     else {
-      return -1;
+      final int end = offset + length;
+      for (int i = offset; i < end; i++) {
+        outputStream.write(callback.each(bytes[i], outputStream));
+      }
     }
   }
 
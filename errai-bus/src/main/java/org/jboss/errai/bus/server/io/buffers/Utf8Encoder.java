@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io.buffers;
+
+/**
+ * Encodes characters as UTF-8 the same way the {@link TransmissionBuffer} does, for callers which need the bytes in
+ * an array rather than in the buffer. Unpaired surrogates are encoded as '<tt>?</tt>', as
+ * {@link String#getBytes(String)} does.
+ *
+ * @author Mike Brock
+ */
+public final class Utf8Encoder {
+  private Utf8Encoder() {
+  }
+
+  /**
+   * Returns the number of bytes needed to encode the specified characters as UTF-8.
+   */
+  public static int length(final CharSequence chars) {
+    final int length = chars.length();
+    int size = 0;
+
+    for (int i = 0; i < length; i++) {
+      final char c = chars.charAt(i);
+
+      if (c < 0x80) {
+        size++;
+      }
+      else if (c < 0x800) {
+        size += 2;
+      }
+      else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+          size += 4;
+          i++;
+        }
+        else {
+          size++;
+        }
+      }
+      else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Encodes the specified characters as UTF-8 into an array of exactly the encoded size.
+   */
+  public static byte[] encode(final CharSequence chars) {
+    final byte[] bytes = new byte[length(chars)];
+    final int length = chars.length();
+    int pos = 0;
+
+    for (int i = 0; i < length; i++) {
+      final char c = chars.charAt(i);
+
+      if (c < 0x80) {
+        bytes[pos++] = (byte) c;
+      }
+      else if (c < 0x800) {
+        bytes[pos++] = (byte) (0xC0 | (c >> 6));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+      else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+          bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+          bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+        else {
+          bytes[pos++] = '?';
+        }
+      }
+      else {
+        bytes[pos++] = (byte) (0xE0 | (c >> 12));
+        bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return bytes;
+  }
+}
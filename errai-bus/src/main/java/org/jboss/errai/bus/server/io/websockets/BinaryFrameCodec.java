@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io.websockets;
+
+import io.netty.buffer.ChannelBuffer;
+import io.netty.buffer.ChannelBuffers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encodes and decodes the payload of binary web socket frames. A binary frame carries a batch of records, each of
+ * which is a 4 byte big-endian length followed by that many bytes of UTF-8 encoded JSON: either a single message, or
+ * an array of messages.
+ * <p/>
+ * This is the server half of the format; the client half is implemented in
+ * {@link org.jboss.errai.bus.client.framework.transports.WebsocketHandler}.
+ */
+public final class BinaryFrameCodec {
+  public static final String FRAME_FORMAT_BINARY = "Binary";
+
+  private static final int LENGTH_PREFIX_SIZE = 4;
+
+  private BinaryFrameCodec() {
+  }
+
+  /**
+   * Wraps the readable bytes of the specified payloads into a single frame of records, without copying them.
+   */
+  public static ChannelBuffer encode(final ChannelBuffer... payloads) {
+    final ChannelBuffer[] parts = new ChannelBuffer[payloads.length * 2];
+    for (int i = 0; i < payloads.length; i++) {
+      final ChannelBuffer length = ChannelBuffers.buffer(LENGTH_PREFIX_SIZE);
+      length.writeInt(payloads[i].readableBytes());
+      parts[i * 2] = length;
+      parts[i * 2 + 1] = payloads[i];
+    }
+    return ChannelBuffers.wrappedBuffer(parts);
+  }
+
+  /**
+   * Splits the readable bytes of the specified frame into its records. The records are slices of the frame, and are
+   * only valid for as long as the frame is.
+   *
+   * @throws RuntimeException
+   *     if the frame ends part way through a record.
+   */
+  public static List<ChannelBuffer> decode(final ChannelBuffer frame) {
+    if (!frame.readable()) {
+      return Collections.emptyList();
+    }
+
+    final List<ChannelBuffer> records = new ArrayList<ChannelBuffer>();
+    while (frame.readable()) {
+      if (frame.readableBytes() < LENGTH_PREFIX_SIZE) {
+        throw new RuntimeException("bad payload: truncated record length");
+      }
+
+      final int length = frame.readInt();
+      if (length < 0 || length > frame.readableBytes()) {
+        throw new RuntimeException("bad payload: record length " + length + " exceeds the remaining "
+            + frame.readableBytes() + " bytes of the frame");
+      }
+
+      records.add(frame.readSlice(length));
+    }
+    return records;
+  }
+}
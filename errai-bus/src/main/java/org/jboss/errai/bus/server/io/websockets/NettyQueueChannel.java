@@ -16,18 +16,30 @@
 
 package org.jboss.errai.bus.server.io.websockets;
 
+import io.netty.buffer.ChannelBuffer;
 import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
-import org.jboss.errai.bus.server.io.QueueChannel;
+import org.jboss.errai.bus.server.io.ByteQueueChannel;
 
 /**
  * @author Mike Brock
  */
-public class NettyQueueChannel implements QueueChannel {
+public class NettyQueueChannel implements ByteQueueChannel {
   final Channel channel;
+  final boolean binaryFrames;
 
   public NettyQueueChannel(Channel channel) {
+    this(channel, false);
+  }
+
+  /**
+   * @param binaryFrames
+   *     if true, data is sent in binary frames as described by {@link BinaryFrameCodec}, rather than in text frames.
+   */
+  public NettyQueueChannel(Channel channel, boolean binaryFrames) {
     this.channel = channel;
+    this.binaryFrames = binaryFrames;
   }
 
   @Override
@@ -40,6 +52,21 @@ public class NettyQueueChannel implements QueueChannel {
     channel.write(new TextWebSocketFrame(data));
   }
 
+  @Override
+  public void write(final ChannelBuffer data) {
+    if (binaryFrames) {
+      channel.write(new BinaryWebSocketFrame(BinaryFrameCodec.encode(data)));
+    }
+    else {
+      channel.write(new TextWebSocketFrame(data));
+    }
+  }
+
+  @Override
+  public boolean isWritable() {
+    return channel.isWritable();
+  }
+
   @Override
   public String getId() {
     return String.valueOf(channel.getId());
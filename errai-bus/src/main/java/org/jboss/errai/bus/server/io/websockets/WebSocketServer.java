@@ -24,6 +24,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.bus.server.util.NamedThreadFactory;
 import org.slf4j.Logger;
 
 import java.net.InetSocketAddress;
@@ -35,19 +37,33 @@ import java.util.concurrent.Executors;
 public class WebSocketServer {
   private ErraiService svc;
   private Logger log = getLogger(getClass());
+  private WebSocketServerHandler handler;
 
   public WebSocketServer(ErraiService svc) {
     this.svc = svc;
   }
 
   public void start() {
-    int port = ErraiConfigAttribs.WEB_SOCKET_PORT.getInt(svc.getConfiguration());
+    final ErraiServiceConfigurator config = svc.getConfiguration();
+    int port = ErraiConfigAttribs.WEB_SOCKET_PORT.getInt(config);
+    final int bossThreads = ErraiConfigAttribs.WEB_SOCKET_BOSS_THREADS.getInt(config);
+    final int workerThreads = ErraiConfigAttribs.WEB_SOCKET_WORKER_THREADS.getInt(config);
 
-    // Configure the server.
+    // Configure the server. the worker pool needs exactly one thread per I/O worker, so it is sized to match.
     final ServerBootstrap bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(
-            Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+        Executors.newFixedThreadPool(bossThreads, new NamedThreadFactory("Errai WebSocket Boss")),
+        Executors.newFixedThreadPool(workerThreads, new NamedThreadFactory("Errai WebSocket Worker")),
+        workerThreads));
+
+    // once a connection has more data waiting than the high water mark, it stops being writable until the data
+    // drops below the low water mark. see WebSocketServerHandler.channelInterestChanged()
+    bootstrap.setOption("child.writeBufferHighWaterMark",
+        ErraiConfigAttribs.WEB_SOCKET_WRITE_BUFFER_HIGH_WATER_MARK.getInt(config));
+    bootstrap.setOption("child.writeBufferLowWaterMark",
+        ErraiConfigAttribs.WEB_SOCKET_WRITE_BUFFER_LOW_WATER_MARK.getInt(config));
 
     final WebSocketServerPipelineFactory factory = new WebSocketServerPipelineFactory(svc);
+    handler = factory.getWebSocketServerHandler();
 
     // Set up the event pipeline factory.
     bootstrap.setPipelineFactory(factory);
@@ -62,10 +78,20 @@ public class WebSocketServer {
         factory.getWebSocketServerHandler().stop();
         server.close();
         svc = null;
-        log.info("web socket server stopped.");
+        log.info("web socket server stopped. (slow consumer events: " + handler.getSlowConsumerEventCount()
+            + "; slow consumers closed: " + handler.getSlowConsumersClosedCount() + ")");
       }
     });
 
-    log.info("started web socket server on port: " + port);
+    log.info("started web socket server on port: " + port + " (boss threads: " + bossThreads
+        + "; worker threads: " + workerThreads + ")");
+  }
+
+  /**
+   * Returns the handler of the running server, which exposes its connection and slow consumer metrics, or null if the
+   * server has not been started.
+   */
+  public WebSocketServerHandler getHandler() {
+    return handler;
   }
 }
@@ -21,11 +21,14 @@ import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
+import io.netty.buffer.ChannelBuffer;
+import io.netty.buffer.ChannelBufferInputStream;
 import io.netty.buffer.ChannelBuffers;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelStateEvent;
 import io.netty.channel.ExceptionEvent;
 import io.netty.channel.MessageEvent;
 import io.netty.channel.SimpleChannelUpstreamHandler;
@@ -33,6 +36,7 @@ import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
@@ -47,6 +51,7 @@ import org.jboss.errai.bus.client.protocols.BusCommand;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.io.DirectDeliveryHandler;
 import org.jboss.errai.bus.server.io.MessageFactory;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.util.LocalContext;
 import org.jboss.errai.common.client.protocols.MessageParts;
@@ -54,6 +59,8 @@ import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJString;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.server.JSONDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.DispatcherType;
@@ -79,9 +86,15 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The working prototype ErraiBus Websocket Server.
+ * <p/>
+ * A connection whose outbound data exceeds the write buffer high water mark is a slow consumer. Depending on the
+ * configured {@link ErraiConfigAttribs#WEB_SOCKET_SLOW_CONSUMER_POLICY}, its messages are either held back by the
+ * {@link DirectDeliveryHandler} until the connection drops below the low water mark again, or the connection is closed.
  */
 public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
   public static final String SESSION_ATTR_WS_STATUS = "WebSocketStatus";
@@ -89,13 +102,79 @@ public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
   public static final String WEBSOCKET_ACTIVE = "Active";
   public static final String WEBSOCKET_PATH = "/websocket.bus";
 
+  private static final Logger log = LoggerFactory.getLogger(WebSocketServerHandler.class);
+
   private final Map<Channel, QueueSession> activeChannels = new ConcurrentHashMap<Channel, QueueSession>();
 
+  private final AtomicInteger openConnections = new AtomicInteger();
+  private final AtomicInteger slowConsumers = new AtomicInteger();
+  private final AtomicLong slowConsumerEvents = new AtomicLong();
+  private final AtomicLong slowConsumersClosed = new AtomicLong();
+
+  private final boolean closeSlowConsumers;
+  private final boolean binaryFramesEnabled;
+
   private WebSocketServerHandshaker handshaker = null;
   private ErraiService svc;
 
   public WebSocketServerHandler(final ErraiService bus) {
     this.svc = bus;
+    this.closeSlowConsumers =
+        "close".equalsIgnoreCase(ErraiConfigAttribs.WEB_SOCKET_SLOW_CONSUMER_POLICY.get(bus.getConfiguration()));
+    this.binaryFramesEnabled = ErraiConfigAttribs.WEB_SOCKET_BINARY_FRAMES.getBoolean(bus.getConfiguration());
+  }
+
+  @Override
+  public void channelConnected(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    openConnections.incrementAndGet();
+    super.channelConnected(ctx, e);
+  }
+
+  @Override
+  public void channelClosed(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    if (ctx.getAttachment() != null) {
+      ctx.setAttachment(null);
+      slowConsumers.decrementAndGet();
+    }
+    openConnections.decrementAndGet();
+    super.channelClosed(ctx, e);
+  }
+
+  /**
+   * Called by Netty when the channel crosses the write buffer high or low water mark.
+   */
+  @Override
+  public void channelInterestChanged(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    final Channel channel = ctx.getChannel();
+    final QueueSession session = activeChannels.get(channel);
+
+    if (session != null) {
+      if (!channel.isWritable()) {
+        if (ctx.getAttachment() == null) {
+          ctx.setAttachment(Boolean.TRUE);
+          slowConsumers.incrementAndGet();
+          slowConsumerEvents.incrementAndGet();
+
+          if (closeSlowConsumers) {
+            log.debug("closing web socket for slow consumer: " + session.getSessionId());
+            slowConsumersClosed.incrementAndGet();
+            channel.close();
+          }
+        }
+      }
+      else if (ctx.getAttachment() != null) {
+        ctx.setAttachment(null);
+        slowConsumers.decrementAndGet();
+
+        // send the messages which were held back while the channel was not writable.
+        final MessageQueue queue = svc.getBus().getQueue(session);
+        if (queue != null) {
+          queue.wake();
+        }
+      }
+    }
+
+    super.channelInterestChanged(ctx, e);
   }
 
   @Override
@@ -128,7 +207,7 @@ public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
-  private void handleWebSocketFrame(final ChannelHandlerContext ctx, final WebSocketFrame frame) {
+  private void handleWebSocketFrame(final ChannelHandlerContext ctx, final WebSocketFrame frame) throws IOException {
     // Check for closing frame
     if (frame instanceof CloseWebSocketFrame) {
       activeChannels.remove(ctx.getChannel());
@@ -140,6 +219,10 @@ public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
       ctx.getChannel().write(new PongWebSocketFrame(frame.getBinaryData()));
       return;
     }
+    if (frame instanceof BinaryWebSocketFrame) {
+      handleBinaryFrame(ctx, frame.getBinaryData());
+      return;
+    }
     if (!(frame instanceof TextWebSocketFrame)) {
       throw new UnsupportedOperationException(String.format("%s frame types not supported", frame.getClass()
           .getName()));
@@ -181,8 +264,13 @@ public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
           if (localContext.hasAttribute(SESSION_ATTR_WS_STATUS) &&
               WEBSOCKET_ACTIVE.equals(localContext.getAttribute(String.class, SESSION_ATTR_WS_STATUS))) {
 
+            final EJValue frameFormat = ejObject.get(MessageParts.WebSocketFrameFormat.name());
+            final boolean binaryFrames = binaryFramesEnabled && !frameFormat.isNull()
+                && BinaryFrameCodec.FRAME_FORMAT_BINARY.equals(frameFormat.isString().stringValue());
+
             final MessageQueue queueBySession = svc.getBus().getQueueBySession(sessionKey);
-            queueBySession.setDeliveryHandler(DirectDeliveryHandler.createFor(new NettyQueueChannel(ctx.getChannel())));
+            queueBySession.setDeliveryHandler(
+                DirectDeliveryHandler.createFor(new NettyQueueChannel(ctx.getChannel(), binaryFrames)));
 
             // open the channel
             activeChannels.put(ctx.getChannel(), session);
@@ -248,6 +336,25 @@ public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
+  /**
+   * Handles a binary frame, which carries a batch of records as described by {@link BinaryFrameCodec}. Binary frames
+   * are only accepted on channels which have completed the negotiation, which is always done with text frames.
+   */
+  private void handleBinaryFrame(final ChannelHandlerContext ctx, final ChannelBuffer frame) throws IOException {
+    final QueueSession session = activeChannels.get(ctx.getChannel());
+    if (session == null) {
+      sendMessage(ctx, getFailedNegotiation("illegal handshake"));
+      return;
+    }
+
+    for (final ChannelBuffer record : BinaryFrameCodec.decode(frame)) {
+      for (final Message msg : MessageFactory.createCommandMessage(session, new ChannelBufferInputStream(record))) {
+        msg.setResource(HttpServletRequest.class.getName(), new SyntheticHttpServletRequest());
+        svc.store(msg);
+      }
+    }
+  }
+
   private void sendHttpResponse(final ChannelHandlerContext ctx, final HttpRequest req, final HttpResponse res) {
     // Generate an error page if response status code is not OK (200).
     if (res.getStatus().getCode() != 200) {
@@ -294,6 +401,42 @@ public class WebSocketServerHandler extends SimpleChannelUpstreamHandler {
         token + "\"}]";
   }
 
+  /**
+   * Returns the number of connections currently open to the server, including those which have not completed the
+   * WebSocket negotiation yet.
+   */
+  public int getOpenConnectionCount() {
+    return openConnections.get();
+  }
+
+  /**
+   * Returns the number of connections which are currently bound to a bus session.
+   */
+  public int getActiveChannelCount() {
+    return activeChannels.size();
+  }
+
+  /**
+   * Returns the number of connections which are currently above the write buffer high water mark.
+   */
+  public int getSlowConsumerCount() {
+    return slowConsumers.get();
+  }
+
+  /**
+   * Returns the number of times a connection has gone above the write buffer high water mark.
+   */
+  public long getSlowConsumerEventCount() {
+    return slowConsumerEvents.get();
+  }
+
+  /**
+   * Returns the number of connections which were closed for being slow consumers.
+   */
+  public long getSlowConsumersClosedCount() {
+    return slowConsumersClosed.get();
+  }
+
   public void stop() {
     for (final Channel channel : activeChannels.keySet()) {
       channel.close();
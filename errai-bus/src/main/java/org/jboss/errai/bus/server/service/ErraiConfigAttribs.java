@@ -25,6 +25,14 @@ import org.jboss.errai.bus.server.SimpleDispatcher;
 public enum ErraiConfigAttribs {
 
   ERRAI_DISPATCHER_IMPLEMENTATION("errai.dispatcher_implementation", SimpleDispatcher.class.getName()),
+
+  /**
+   * The {@link org.jboss.errai.bus.server.api.SessionProvider} which creates the queue sessions. Servers holding a
+   * large number of sessions can use {@link org.jboss.errai.bus.server.CompactSessionProvider}, which keeps them in a
+   * more compact form than the default.
+   * <p/>
+   * Default value: {@link HttpSessionProvider}
+   */
   ERRAI_SESSION_PROVIDER_IMPLEMENTATION("errai.session_provider_implementation", HttpSessionProvider.class.getName()),
 
   /**
@@ -64,10 +72,50 @@ public enum ErraiConfigAttribs {
    */
   BUS_BUFFER_ALLOCATION_MODE("errai.bus.buffer_allocation_mode", "direct"),
 
+  /**
+   * The directory in which the message data of slow or stale queues is paged out to disk.
+   * <p/>
+   * Default value: <tt>${java.io.tmpdir}/queuecache</tt>
+   */
+  BUS_PAGING_DIRECTORY("errai.bus.paging.directory"),
+
+  /**
+   * The maximum amount of paged out message data to hold on disk, in megabytes. Once this is exceeded the pages of
+   * the least recently active queues are discarded.
+   * <p/>
+   * Default value: 256
+   */
+  BUS_PAGING_MAX_SIZE("errai.bus.paging.max_size", "256"),
+
+  /**
+   * The decoder used for inbound messages ('stream' or 'pull'). The 'pull' decoder parses the UTF-8 bytes of the
+   * request directly into message parts, without building an intermediate tree of JSON values, which produces
+   * considerably less garbage for large or frequent payloads.
+   * <p/>
+   * Default value: 'stream'
+   */
+  BUS_JSON_DECODER("errai.bus.json_decoder", "stream"),
+
   HOSTED_MODE_TESTING("errai.hosted_mode_testing", "false"),
   DO_LONG_POLL("org.jboss.errai.bus.do_long_poll", "true"),
   LONG_POLL_TIMEOUT("errai.bus.long_poll_timeout", "45000"),
 
+  /**
+   * The longest time, in milliseconds, a waiting long poll may be held back after a message arrives, so that further
+   * messages can be sent to the client in the same response. The actual window adapts to the rate of messages to
+   * each session, and is zero for sessions which only receive the occasional message. Zero disables coalescing.
+   * <p/>
+   * Default value: 0
+   */
+  LONG_POLL_COALESCE_WINDOW("errai.bus.long_poll.coalesce_window", "0"),
+
+  /**
+   * The amount of data waiting for a session, in bytes, at which a held back long poll is released immediately.
+   * <p/>
+   * Default value: 65536
+   */
+  LONG_POLL_COALESCE_MAX_BYTES("errai.bus.long_poll.coalesce_max_bytes", "65536"),
+
   ENABLE_SSE_SUPPORT("errai.bus.enable_sse_support", "true"),
   SSE_TIMEOUT("errai.bus.servlet_sse_timeout", "45000"),
 
@@ -75,11 +123,78 @@ public enum ErraiConfigAttribs {
   WEB_SOCKET_URL("errai.bus.web_socket_url", "/websocket.bus"),
   WEB_SOCKET_PORT("errai.bus.web_socket_port", "8085"),
 
+  /**
+   * The number of threads accepting connections to the standalone WebSocket server.
+   * <p/>
+   * Default value: 1
+   */
+  WEB_SOCKET_BOSS_THREADS("errai.bus.web_socket_server.boss_threads", "1"),
+
+  /**
+   * The number of I/O threads of the standalone WebSocket server. These threads are shared by all connections.
+   * <p/>
+   * Default value: twice the number of available processors
+   */
+  WEB_SOCKET_WORKER_THREADS("errai.bus.web_socket_server.worker_threads",
+      String.valueOf(Runtime.getRuntime().availableProcessors() * 2)),
+
+  /**
+   * The amount of outbound data, in bytes, waiting to be sent to a WebSocket client at which the connection is
+   * considered to be a slow consumer, and the slow consumer policy is applied.
+   * <p/>
+   * Default value: 65536
+   */
+  WEB_SOCKET_WRITE_BUFFER_HIGH_WATER_MARK("errai.bus.web_socket_server.write_buffer_high_water_mark", "65536"),
+
+  /**
+   * The amount of outbound data, in bytes, waiting to be sent to a slow consumer below which messages are written to
+   * it directly again.
+   * <p/>
+   * Default value: 32768
+   */
+  WEB_SOCKET_WRITE_BUFFER_LOW_WATER_MARK("errai.bus.web_socket_server.write_buffer_low_water_mark", "32768"),
+
+  /**
+   * What to do with a WebSocket client which exceeds the high water mark. Either <tt>buffer</tt>, to hold back its
+   * messages in the transmission buffer (and page them out if need be) until it has caught up, or <tt>close</tt>, to
+   * close the connection so that the client falls back to polling.
+   * <p/>
+   * Default value: buffer
+   */
+  WEB_SOCKET_SLOW_CONSUMER_POLICY("errai.bus.web_socket_server.slow_consumer_policy", "buffer"),
+
+  /**
+   * Whether the standalone WebSocket server offers clients binary frames, which carry batches of length-prefixed
+   * UTF-8 payloads, instead of text frames. Clients which don't ask for binary frames keep using text frames.
+   * <p/>
+   * Default value: false
+   */
+  WEB_SOCKET_BINARY_FRAMES("errai.bus.web_socket_server.binary_frames", "false"),
+
   WEBSOCKET_SERVLET_ENABLED("errai.bus.websocket.servlet.enabled", "false"),
   WEBSOCKET_SERVLET_CONTEXT_PATH("errai.bus.websocket.servlet.path", "in.erraiBusWebSocket"),
 
   AUTO_DISCOVER_SERVICES("errai.bus.auto_discover_services", "false"),
 
+  /**
+   * Whether the server offers the compact type encoding to clients which support it. In this encoding, the types of
+   * the objects in a message are listed once in a type table, and referred to by index, and object ids are written as
+   * numbers, which makes messages carrying many objects of the same types considerably smaller. Clients which don't
+   * support it keep receiving the regular encoding.
+   * <p/>
+   * Default value: false
+   */
+  COMPACT_TYPE_ENCODING("errai.bus.compact_type_encoding", "false"),
+
+  /**
+   * The number of threads running the tasks which asynchronous RPC endpoints submit through
+   * {@link org.jboss.errai.bus.server.api.CallableFutureFactory#submit(java.util.concurrent.Callable)}. These threads
+   * are meant for long-running work, so that it does not hold up the threads delivering messages.
+   * <p/>
+   * Default value: 16
+   */
+  ASYNC_RPC_THREADS("errai.bus.async_rpc_threads", "16"),
+
   CLUSTER_PORT("errai.clustering.port", "6446"),
   CLUSTER_NAME("errai.bus.cluster_name", "errai"),
   ENABLE_CLUSTERING("errai.bus.enable_clustering", "false"),
@@ -45,6 +45,7 @@ public class MessageBusProxy implements ServerMessageBus {
   private List<Message> heldGlobalMessages = new ArrayList<Message>();
   private List<Message> heldMessages = new ArrayList<Message>();
   private Map<Message, Boolean> heldMessageFireListener = new LinkedHashMap<Message, Boolean>();
+  private Map<Message, Collection<String>> heldSessionMessages = new LinkedHashMap<Message, Collection<String>>();
   private Multimap<String, MessageCallback> heldSubscribe = LinkedHashMultimap.create();
   private Multimap<String, MessageCallback> heldLocalSubscribe = LinkedHashMultimap.create();
 //  private List<MessageListener> heldGlobalListener = new ArrayList<MessageListener>();
@@ -91,6 +92,18 @@ public class MessageBusProxy implements ServerMessageBus {
     }
   }
 
+  @Override
+  public synchronized void sendToSessions(Message message, Collection<String> sessionIds) {
+    Assert.notNull("message cannot be null", message);
+
+    if (proxyClosed) {
+      proxied.sendToSessions(message, sessionIds);
+    }
+    else {
+      heldSessionMessages.put(message, new ArrayList<String>(sessionIds));
+    }
+  }
+
   @Override
   public synchronized Subscription subscribe(String subject, MessageCallback receiver) {
     Assert.notNull("message callback cannot be null", receiver);
@@ -185,6 +198,11 @@ public class MessageBusProxy implements ServerMessageBus {
     return proxied.getScheduler();
   }
 
+  @Override
+  public ExecutorService getAsyncRpcExecutor() {
+    return proxied.getAsyncRpcExecutor();
+  }
+
   @Override
   public void addQueueClosedListener(QueueClosedListener listener) {
     proxied.addQueueClosedListener(listener);
@@ -297,6 +315,10 @@ public class MessageBusProxy implements ServerMessageBus {
       bus.send(entry.getKey(), entry.getValue());
     }
 
+    for (Map.Entry<Message, Collection<String>> entry : heldSessionMessages.entrySet()) {
+      bus.sendToSessions(entry.getKey(), entry.getValue());
+    }
+
     this.heldBusMonitor = null;
     this.heldSubscribe = null;
     this.heldLocalSubscribe = null;
@@ -306,5 +328,6 @@ public class MessageBusProxy implements ServerMessageBus {
     this.heldMessages = null;
     this.heldGlobalMessages = null;
     this.heldMessageFireListener = null;
+    this.heldSessionMessages = null;
   }
 }
@@ -20,10 +20,15 @@ import static org.jboss.errai.bus.server.io.MessageFactory.createCommandMessage;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -32,7 +37,10 @@ import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.server.QueueUnavailableException;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.api.QueueActivationCallback;
+import org.jboss.errai.bus.server.io.CoalescingActivationCallback;
 import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
 import org.slf4j.Logger;
 
 /**
@@ -45,6 +53,38 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
   private static final Logger log = getLogger(StandardAsyncServlet.class);
   private static final long serialVersionUID = 1L;
 
+  private int coalesceWindow;
+  private int coalesceMaxBytes;
+  private ScheduledExecutorService coalesceScheduler;
+
+  @Override
+  public void init(final ServletConfig config) throws ServletException {
+    super.init(config);
+
+    final ErraiServiceConfigurator cfg = service.getConfiguration();
+    coalesceWindow = ErraiConfigAttribs.LONG_POLL_COALESCE_WINDOW.getInt(cfg);
+    coalesceMaxBytes = ErraiConfigAttribs.LONG_POLL_COALESCE_MAX_BYTES.getInt(cfg);
+
+    if (coalesceWindow > 0) {
+      coalesceScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread thread = new Thread(r, "Errai Long Poll Coalescer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (coalesceScheduler != null) {
+      coalesceScheduler.shutdownNow();
+    }
+    super.destroy();
+  }
+
   @Override
   protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException,
       IOException {
@@ -103,7 +143,7 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
         return;
       }
 
-      queue.setActivationCallback(new QueueActivationCallback() {
+      final QueueActivationCallback activationCallback = new QueueActivationCallback() {
         @Override
         public void activate(final MessageQueue queue) {
           try {
@@ -129,7 +169,22 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
             asyncContext.complete();
           }
         }
-      });
+      };
+
+      if (coalesceScheduler != null) {
+        // the scheduler thread only times the window; the response is written on a container thread.
+        final Executor containerExecutor = new Executor() {
+          @Override
+          public void execute(final Runnable command) {
+            asyncContext.start(command);
+          }
+        };
+        queue.setActivationCallback(new CoalescingActivationCallback(activationCallback, coalesceScheduler,
+            containerExecutor, coalesceWindow, coalesceMaxBytes));
+      }
+      else {
+        queue.setActivationCallback(activationCallback);
+      }
       writer.flush();
     }
   }
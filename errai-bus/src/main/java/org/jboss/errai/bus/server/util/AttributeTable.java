@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A small, thread-safe table of named attributes, kept as a flat array of alternating names and values. Sessions and
+ * contexts usually hold only a handful of attributes, for which a linear search is as fast as hashing, and the table
+ * takes a fraction of the memory of a <tt>HashMap</tt> and its entries. The array is only allocated once the first
+ * attribute is set.
+ */
+public final class AttributeTable {
+  private static final int INITIAL_CAPACITY = 4;
+
+  private Object[] table;
+  private int size;
+
+  public synchronized Object get(final String name) {
+    final int i = indexOf(name);
+    return i == -1 ? null : table[i + 1];
+  }
+
+  public synchronized boolean containsKey(final String name) {
+    return indexOf(name) != -1;
+  }
+
+  /**
+   * @return the previous value of the attribute, or null if it was not set.
+   */
+  public synchronized Object put(final String name, final Object value) {
+    final int i = indexOf(name);
+    if (i != -1) {
+      final Object old = table[i + 1];
+      table[i + 1] = value;
+      return old;
+    }
+
+    if (table == null) {
+      table = new Object[INITIAL_CAPACITY * 2];
+    }
+    else if (size * 2 == table.length) {
+      final Object[] newTable = new Object[table.length * 2];
+      System.arraycopy(table, 0, newTable, 0, table.length);
+      table = newTable;
+    }
+
+    table[size * 2] = name;
+    table[size * 2 + 1] = value;
+    size++;
+    return null;
+  }
+
+  /**
+   * @return the value of the removed attribute, or null if it was not set.
+   */
+  public synchronized Object remove(final String name) {
+    final int i = indexOf(name);
+    if (i == -1) {
+      return null;
+    }
+
+    final Object old = table[i + 1];
+    // move the last attribute into the gap.
+    final int last = (size - 1) * 2;
+    table[i] = table[last];
+    table[i + 1] = table[last + 1];
+    table[last] = null;
+    table[last + 1] = null;
+    size--;
+    return old;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns a snapshot of the names of the attributes.
+   */
+  public synchronized Collection<String> names() {
+    if (size == 0) {
+      return Collections.emptyList();
+    }
+
+    final List<String> names = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      names.add((String) table[i * 2]);
+    }
+    return names;
+  }
+
+  public synchronized void clear() {
+    table = null;
+    size = 0;
+  }
+
+  private int indexOf(final String name) {
+    for (int i = 0; i < size * 2; i += 2) {
+      if (name.equals(table[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -17,8 +17,7 @@
 package org.jboss.errai.bus.server.util;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
 
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.QueueSession;
@@ -26,9 +25,13 @@ import org.jboss.errai.bus.client.api.QueueSession;
 
 public class LocalContext implements Context {
   private final String context;
-  private final SubContext ctx;
   private final QueueSession session;
 
+  /**
+   * The attributes of this context, which are only created in the session once the first attribute is set.
+   */
+  private SubContext ctx;
+
   public static LocalContext get(QueueSession session) {
     return new LocalContext("<NoSession>", session);
   }
@@ -43,16 +46,16 @@ public class LocalContext implements Context {
     }
     this.context = createContextString(session.getSessionId() + "/" + context);
     this.session = session;
-    this.ctx = getLocalContext();
   }
 
   @Override
   public void setAttribute(Enum<?> key, Object value) {
-    ctx.setAttribute(key.toString(), value);
+    getOrCreateLocalContext().setAttribute(key.toString(), value);
   }
 
   @Override
   public void setAttribute(Class<?> typeIndexed, Object value) {
+    final SubContext ctx = getOrCreateLocalContext();
     if (ctx.hasAttribute(typeIndexed.getName())) {
       throw new IllegalStateException("The type-indexed property already exists: " + typeIndexed.getName());
     }
@@ -62,17 +65,17 @@ public class LocalContext implements Context {
 
   @Override
   public void setAttribute(String param, Object value) {
-    ctx.setAttribute(param, value);
+    getOrCreateLocalContext().setAttribute(param, value);
   }
 
   @Override
   public <T> T getAttribute(Class<T> type, Enum<?> key) {
-    return ctx.getAttribute(type, key.toString());
+    return getAttribute(type, key.toString());
   }
 
   @Override
   public <T> T getAttribute(Class<T> type, Class<?> typeIndexed) {
-    return ctx.getAttribute(type, typeIndexed.getName());
+    return getAttribute(type, typeIndexed.getName());
   }
 
   @Override
@@ -82,32 +85,36 @@ public class LocalContext implements Context {
 
   @Override
   public <T> T getAttribute(Class<T> type, String param) {
-    return ctx.getAttribute(type, param);
+    final SubContext ctx = getLocalContext();
+    return ctx == null ? null : ctx.getAttribute(type, param);
   }
 
   @Override
   public boolean hasAttribute(String param) {
-    return ctx.hasAttribute(param);
+    final SubContext ctx = getLocalContext();
+    return ctx != null && ctx.hasAttribute(param);
   }
 
   @Override
   public Collection<String> getAttributeNames() {
-    return ctx.getAttributeNames();
+    final SubContext ctx = getLocalContext();
+    return ctx == null ? Collections.<String>emptyList() : ctx.getAttributeNames();
   }
 
   @Override
   public Object removeAttribute(Enum<?> key) {
-    return ctx.removeAttribute(key.toString());
+    return removeAttribute(key.toString());
   }
 
   @Override
   public Object removeAttribute(Class<?> typeIndexed) {
-    return ctx.removeAttribute(typeIndexed.getName());
+    return removeAttribute(typeIndexed.getName());
   }
 
   @Override
   public Object removeAttribute(String param) {
-    return ctx.removeAttribute(param);
+    final SubContext ctx = getLocalContext();
+    return ctx != null && ctx.removeAttribute(param);
   }
 
   public QueueSession getSession() {
@@ -116,16 +123,27 @@ public class LocalContext implements Context {
 
   public void destroy() {
     session.removeAttribute(context);
+    ctx = null;
   }
 
   private SubContext getLocalContext() {
-    synchronized (this) {
-      SubContext ctx = session.getAttribute(SubContext.class, context);
-      if (ctx == null) {
-        session.setAttribute(context, ctx = new SubContext());
+    if (ctx == null) {
+      ctx = session.getAttribute(SubContext.class, context);
+    }
+    return ctx;
+  }
+
+  @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+  private SubContext getOrCreateLocalContext() {
+    if (getLocalContext() == null) {
+      synchronized (session) {
+        ctx = session.getAttribute(SubContext.class, context);
+        if (ctx == null) {
+          session.setAttribute(context, ctx = new SubContext());
+        }
       }
-      return ctx;
     }
+    return ctx;
   }
 
   private static String createContextString(String context) {
@@ -133,7 +151,7 @@ public class LocalContext implements Context {
   }
 
   private static final class SubContext {
-    private final Map<String, Object> contextAttributes = new HashMap<String, Object>();
+    private final AttributeTable contextAttributes = new AttributeTable();
 
     public void setAttribute(String attribute, Object value) {
       contextAttributes.put(attribute, value);
@@ -152,7 +170,7 @@ public class LocalContext implements Context {
     }
 
     public Collection<String> getAttributeNames() {
-      return contextAttributes.keySet();
+      return contextAttributes.names();
     }
   }
 }
@@ -41,9 +41,16 @@ public class MarkedByteWriteAdapter extends AbstractByteWriteAdapter {
 
   @Override
   public void write(byte[] b) throws IOException {
+    read += b.length;
     writeAdapter.write(b);
   }
 
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    read += len;
+    writeAdapter.write(b, off, len);
+  }
+
   @Override
   public void flush() throws IOException {
     writeAdapter.flush();
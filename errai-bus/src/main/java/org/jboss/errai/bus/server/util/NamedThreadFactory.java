@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named after the pool they belong to, so they can be told apart in thread dumps.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+  private final String name;
+  private final AtomicInteger counter = new AtomicInteger();
+
+  public NamedThreadFactory(final String name) {
+    this.name = name;
+  }
+
+  @Override
+  public Thread newThread(final Runnable r) {
+    final Thread thread = new Thread(r, name + " " + counter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
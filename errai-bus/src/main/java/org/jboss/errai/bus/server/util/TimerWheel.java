@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A hashed timer wheel of deadlines. Scheduling an item and expiring it are constant time, and advancing the wheel
+ * only visits the slots for the ticks which have passed, so the cost of finding what has expired depends on how many
+ * items expire rather than on how many are scheduled.
+ * <p/>
+ * Deadlines further away than one revolution of the wheel share a slot with earlier ones, and are kept until the wheel
+ * comes around to them again. Items cannot be cancelled: whoever expires an item is expected to check whether it is
+ * still relevant, which keeps scheduling cheap for things like session timeouts which are pushed back constantly.
+ *
+ * @param <T>
+ *     the type of the scheduled items.
+ */
+public class TimerWheel<T> {
+  private final long tickMillis;
+  private final List<Timeout<T>>[] slots;
+  private final int mask;
+
+  /**
+   * The last tick which has been expired. Guarded by this.
+   */
+  private long currentTick;
+  private int size;
+
+  /**
+   * @param tickMillis
+   *     the resolution of the wheel, in milliseconds. Items expire up to one tick after their deadline.
+   * @param slotCount
+   *     the number of slots, rounded up to a power of two. Ideally one revolution covers the usual deadlines.
+   * @param now
+   *     the current time, in milliseconds.
+   */
+  @SuppressWarnings("unchecked")
+  public TimerWheel(final long tickMillis, final int slotCount, final long now) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("tick must be positive: " + tickMillis);
+    }
+
+    int size = 1;
+    while (size < slotCount) {
+      size <<= 1;
+    }
+
+    this.tickMillis = tickMillis;
+    this.slots = new List[size];
+    this.mask = size - 1;
+    this.currentTick = now / tickMillis;
+  }
+
+  /**
+   * Schedules the specified item to expire at the specified time. Deadlines which have already passed expire on the
+   * next call to {@link #expire(long)}.
+   *
+   * @param item
+   *     the item to schedule.
+   * @param deadline
+   *     the time at which the item expires, in milliseconds.
+   */
+  public synchronized void schedule(final T item, final long deadline) {
+    // round up, so an item never expires before its deadline.
+    final long tick = Math.max((deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+    final int index = (int) (tick & mask);
+
+    List<Timeout<T>> slot = slots[index];
+    if (slot == null) {
+      slots[index] = slot = new ArrayList<Timeout<T>>();
+    }
+    slot.add(new Timeout<T>(item, tick));
+    size++;
+  }
+
+  /**
+   * Advances the wheel to the specified time and removes the items which have expired.
+   *
+   * @param now
+   *     the current time, in milliseconds.
+   *
+   * @return the expired items, in no particular order.
+   */
+  public synchronized List<T> expire(final long now) {
+    final long nowTick = now / tickMillis;
+    if (nowTick <= currentTick) {
+      return Collections.emptyList();
+    }
+
+    // visiting every slot once is enough, however long it has been since the last call.
+    final long first = Math.max(currentTick + 1, nowTick - mask);
+    currentTick = nowTick;
+
+    List<T> expired = null;
+    for (long tick = first; tick <= nowTick; tick++) {
+      final List<Timeout<T>> slot = slots[(int) (tick & mask)];
+      if (slot == null || slot.isEmpty()) {
+        continue;
+      }
+
+      // compact the slot in place, keeping the items which are due in a later revolution.
+      int kept = 0;
+      for (int i = 0; i < slot.size(); i++) {
+        final Timeout<T> entry = slot.get(i);
+        if (entry.tick <= nowTick) {
+          if (expired == null) {
+            expired = new ArrayList<T>();
+          }
+          expired.add(entry.item);
+        }
+        else {
+          slot.set(kept++, entry);
+        }
+      }
+      size -= slot.size() - kept;
+      slot.subList(kept, slot.size()).clear();
+    }
+
+    return expired == null ? Collections.<T>emptyList() : expired;
+  }
+
+  /**
+   * Returns the number of items which are scheduled and have not expired yet.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = null;
+    }
+    size = 0;
+  }
+
+  private static class Timeout<T> {
+    private final T item;
+    private final long tick;
+
+    private Timeout(final T item, final long tick) {
+      this.item = item;
+      this.tick = tick;
+    }
+  }
+}
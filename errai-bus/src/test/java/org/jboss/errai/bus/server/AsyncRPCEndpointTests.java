@@ -0,0 +1,200 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.CallableFuture;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.api.CallableFutureFactory;
+import org.jboss.errai.bus.server.io.AsyncRPCEndpointCallback;
+import org.jboss.errai.bus.server.io.ServiceInstanceProvider;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.bus.server.service.ErraiServiceConfiguratorImpl;
+import org.jboss.errai.common.client.api.ErrorCallback;
+import org.jboss.errai.common.client.protocols.MessageParts;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncRPCEndpointTests extends TestCase {
+  private ReplyRecordingBus bus;
+  private final AsyncService service = new AsyncService();
+
+  @Override
+  protected void setUp() throws Exception {
+    final ErraiServiceConfigurator config = new ErraiServiceConfiguratorImpl();
+    ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(config, "false");
+    ErraiConfigAttribs.ENABLE_CLUSTERING.set(config, "false");
+    ErraiConfigAttribs.BUS_BUFFER_SIZE.set(config, "2");
+    ErraiConfigAttribs.BUS_BUFFER_ALLOCATION_MODE.set(config, "heap");
+    ErraiConfigAttribs.ASYNC_RPC_THREADS.set(config, "2");
+
+    bus = new ReplyRecordingBus(config);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    bus.stop();
+  }
+
+  public static class AsyncService {
+    private volatile CallableFuture<String> pending;
+    private volatile Thread taskThread;
+
+    public CallableFuture<String> later() {
+      return pending = CallableFutureFactory.get().createFuture();
+    }
+
+    public CallableFuture<String> immediately(final String value) {
+      final CallableFuture<String> future = CallableFutureFactory.get().createFuture();
+      future.setValue(value);
+      return future;
+    }
+
+    public CallableFuture<String> submitted(final String value) {
+      return CallableFutureFactory.get().submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          taskThread = Thread.currentThread();
+          return value.toUpperCase();
+        }
+      });
+    }
+
+    public CallableFuture<String> failing() {
+      return CallableFutureFactory.get().submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          throw new IllegalStateException("endpoint failed");
+        }
+      });
+    }
+  }
+
+  /**
+   * Captures the replies instead of sending them to the queue of the client.
+   */
+  private static class ReplyRecordingBus extends ServerMessageBusImpl {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile Message reply;
+
+    private ReplyRecordingBus(final ErraiServiceConfigurator config) {
+      super(new MockErraiService(), config);
+    }
+
+    @Override
+    public void send(final Message message) {
+      message.commit();
+      reply = message;
+      latch.countDown();
+    }
+
+    private Object awaitReply() throws InterruptedException {
+      assertTrue("no reply received", latch.await(5, TimeUnit.SECONDS));
+      assertEquals("AsyncReply", reply.getSubject());
+      return reply.get(Object.class, "MethodReply");
+    }
+  }
+
+  private Message call(final String method, final Object... parms) throws Exception {
+    final Class<?>[] types = new Class<?>[parms.length];
+    Arrays.fill(types, String.class);
+
+    final AsyncRPCEndpointCallback callback = new AsyncRPCEndpointCallback(new ServiceInstanceProvider() {
+      @Override
+      public Object get(final Message message) {
+        return service;
+      }
+    }, AsyncService.class.getMethod(method, types), bus);
+
+    final Message message = CommandMessage.create()
+        .toSubject("AsyncService:RPC")
+        .set(MessageParts.ReplyTo, "AsyncReply")
+        .set("MethodParms", Arrays.asList(parms))
+        .setResource("Session", new Object());
+    callback.callback(message);
+    return message;
+  }
+
+  public void testValueSetAfterTheEndpointReturnedIsSent() throws Exception {
+    call("later");
+    assertNull(bus.reply);
+
+    service.pending.setValue("done");
+    assertEquals("done", bus.awaitReply());
+  }
+
+  public void testValueSetBeforeTheEndpointReturnedIsSent() throws Exception {
+    call("immediately", "early");
+    assertEquals("early", bus.awaitReply());
+  }
+
+  public void testSubmittedTaskRunsOnTheAsyncRpcExecutor() throws Exception {
+    call("submitted", "value");
+    assertEquals("VALUE", bus.awaitReply());
+    assertTrue(service.taskThread.getName().startsWith("Errai Async RPC"));
+  }
+
+  public void testFailingTaskReportsTheErrorToTheCaller() throws Exception {
+    final CountDownLatch failed = new CountDownLatch(1);
+    final Throwable[] error = new Throwable[1];
+
+    final Message message = CommandMessage.create()
+        .toSubject("AsyncService:RPC")
+        .set(MessageParts.ReplyTo, "AsyncReply")
+        .set("MethodParms", Arrays.asList())
+        .setResource("Session", new Object())
+        .errorsCall(new ErrorCallback<Message>() {
+          @Override
+          public boolean error(final Message message, final Throwable throwable) {
+            error[0] = throwable;
+            failed.countDown();
+            return false;
+          }
+        });
+
+    new AsyncRPCEndpointCallback(new ServiceInstanceProvider() {
+      @Override
+      public Object get(final Message message) {
+        return service;
+      }
+    }, AsyncService.class.getMethod("failing"), bus).callback(message);
+
+    assertTrue(failed.await(5, TimeUnit.SECONDS));
+    assertTrue(error[0].getCause() instanceof IllegalStateException);
+    assertTrue(message.getResource(Throwable.class, "Exception") instanceof IllegalStateException);
+    assertNull(bus.reply);
+  }
+
+  public void testFutureCanOnlyBeCompletedOnce() throws Exception {
+    call("later");
+    service.pending.setValue("first");
+    try {
+      service.pending.setValue("second");
+      fail("expected the second value to be rejected");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals("first", bus.awaitReply());
+  }
+}
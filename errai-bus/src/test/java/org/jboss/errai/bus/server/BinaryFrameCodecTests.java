@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import io.netty.buffer.ChannelBuffer;
+import io.netty.buffer.ChannelBufferInputStream;
+import io.netty.buffer.ChannelBuffers;
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.io.MessageFactory;
+import org.jboss.errai.bus.server.io.websockets.BinaryFrameCodec;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryFrameCodecTests extends TestCase {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static ChannelBuffer utf8(final String text) {
+    return ChannelBuffers.wrappedBuffer(text.getBytes(UTF_8));
+  }
+
+  public void testRecordsRoundTrip() {
+    final ChannelBuffer frame = BinaryFrameCodec.encode(utf8("[{\"A\":1}]"), utf8(""), utf8("{\"B\":\"café 😀\"}"));
+
+    final List<String> records = new ArrayList<String>();
+    for (final ChannelBuffer record : BinaryFrameCodec.decode(frame)) {
+      records.add(record.toString(UTF_8));
+    }
+
+    assertEquals(3, records.size());
+    assertEquals("[{\"A\":1}]", records.get(0));
+    assertEquals("", records.get(1));
+    assertEquals("{\"B\":\"café 😀\"}", records.get(2));
+  }
+
+  public void testLengthPrefixIsBigEndian() {
+    final ChannelBuffer frame = BinaryFrameCodec.encode(utf8("[]"));
+    assertEquals(6, frame.readableBytes());
+    assertEquals(0, frame.getByte(0));
+    assertEquals(0, frame.getByte(1));
+    assertEquals(0, frame.getByte(2));
+    assertEquals(2, frame.getByte(3));
+  }
+
+  public void testTruncatedFrameIsRejected() {
+    final ChannelBuffer frame = BinaryFrameCodec.encode(utf8("[{\"A\":1}]"));
+
+    try {
+      BinaryFrameCodec.decode(frame.slice(0, frame.readableBytes() - 1));
+      fail("expected the truncated record to be rejected");
+    }
+    catch (RuntimeException e) {
+      // expected
+    }
+
+    try {
+      BinaryFrameCodec.decode(frame.slice(0, 2));
+      fail("expected the truncated length to be rejected");
+    }
+    catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  public void testRecordsDecodeToMessages() throws Exception {
+    final QueueSession session = MockQueueSessionFactory.newSession();
+    final ChannelBuffer frame = BinaryFrameCodec.encode(
+        utf8("{\"ToSubject\":\"ServiceA\",\"Value\":\"café\"}"),
+        utf8("[{\"ToSubject\":\"ServiceB\"},{\"ToSubject\":\"ServiceC\"}]"));
+
+    final List<Message> messages = new ArrayList<Message>();
+    for (final ChannelBuffer record : BinaryFrameCodec.decode(frame)) {
+      messages.addAll(MessageFactory.createCommandMessage(session, new ChannelBufferInputStream(record)));
+    }
+
+    assertEquals(3, messages.size());
+    assertEquals("ServiceA", messages.get(0).getSubject());
+    assertEquals("café", messages.get(0).get(String.class, "Value"));
+    assertEquals("ServiceB", messages.get(1).getSubject());
+    assertEquals("ServiceC", messages.get(2).getSubject());
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.server.cluster.jgroups.ClusterTransport;
+import org.jgroups.JChannel;
+import org.jgroups.Message;
+import org.jgroups.ReceiverAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ClusterTransportTests extends TestCase {
+  private static final String LOOPBACK_STACK = "SHARED_LOOPBACK:PING(timeout=100):pbcast.NAKACK2:UNICAST2:"
+      + "pbcast.STABLE:pbcast.GMS:FRAG2";
+
+  private JChannel sender;
+  private JChannel receiver;
+  private final BlockingQueue<Message> received = new LinkedBlockingQueue<Message>();
+
+  @Override
+  protected void setUp() throws Exception {
+    final String cluster = "ClusterTransportTests-" + getName();
+
+    receiver = new JChannel(LOOPBACK_STACK);
+    receiver.setReceiver(new ReceiverAdapter() {
+      @Override
+      public void receive(final Message msg) {
+        received.add(msg);
+      }
+    });
+    receiver.connect(cluster);
+
+    sender = new JChannel(LOOPBACK_STACK);
+    sender.setDiscardOwnMessages(true);
+    sender.connect(cluster);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    sender.close();
+    receiver.close();
+  }
+
+  private List<String> nextBatch() throws InterruptedException {
+    final Message message = received.poll(5, TimeUnit.SECONDS);
+    assertNotNull("nothing received", message);
+    return ClusterTransport.decode(message.getRawBuffer(), message.getOffset(), message.getLength());
+  }
+
+  public void testEncodedBatchesDecodeToTheSamePayloads() {
+    final List<String> payloads = Arrays.asList("{\"ToSubject\":\"A\"}", "", "{\"Value\":\"é中\"}");
+
+    final byte[] plain = ClusterTransport.encode(payloads, 0);
+    assertEquals(payloads, ClusterTransport.decode(plain, 0, plain.length));
+
+    final byte[] padded = new byte[plain.length + 3];
+    System.arraycopy(plain, 0, padded, 2, plain.length);
+    assertEquals(payloads, ClusterTransport.decode(padded, 2, plain.length));
+  }
+
+  public void testLargeBatchesAreCompressed() {
+    final List<String> payloads = new ArrayList<String>();
+    for (int i = 0; i < 100; i++) {
+      payloads.add("{\"ToSubject\":\"ClusterService\",\"CommandType\":\"MessageForward\",\"Value\":" + i + "}");
+    }
+
+    final byte[] plain = ClusterTransport.encode(payloads, 0);
+    final byte[] compressed = ClusterTransport.encode(payloads, 1024);
+    assertTrue(compressed.length < plain.length / 4);
+    assertEquals(payloads, ClusterTransport.decode(compressed, 0, compressed.length));
+
+    // below the threshold, the batch is left as it is.
+    assertTrue(Arrays.equals(plain, ClusterTransport.encode(payloads, plain.length + 1)));
+  }
+
+  public void testTruncatedBatchIsRejected() {
+    final byte[] encoded = ClusterTransport.encode(Collections.singletonList("{\"Value\":1}"), 0);
+    try {
+      ClusterTransport.decode(encoded, 0, encoded.length - 1);
+      fail("expected a truncated batch to be rejected");
+    }
+    catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  public void testPayloadsWithinTheWindowAreSentAsOneBatch() throws Exception {
+    final ClusterTransport transport = new ClusterTransport(sender, 50, 65536, 0);
+    try {
+      transport.send(null, "a");
+      transport.send(null, "b");
+      transport.send(receiver.getAddress(), "c");
+      transport.send(null, "d");
+
+      final List<List<String>> batches = Arrays.asList(nextBatch(), nextBatch());
+      assertTrue(batches.contains(Arrays.asList("a", "b", "d")));
+      assertTrue(batches.contains(Arrays.asList("c")));
+      assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+    finally {
+      transport.close();
+    }
+  }
+
+  public void testFullBatchIsSentWithoutWaitingForTheWindow() throws Exception {
+    final ClusterTransport transport = new ClusterTransport(sender, 60000, 4, 0);
+    try {
+      transport.send(null, "ab");
+      transport.send(null, "cd");
+      transport.send(null, "e");
+
+      assertEquals(Arrays.asList("ab", "cd"), nextBatch());
+      assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+
+      transport.close();
+      assertEquals(Arrays.asList("e"), nextBatch());
+    }
+    finally {
+      transport.close();
+    }
+  }
+
+  public void testZeroWindowSendsEveryPayloadOnItsOwn() throws Exception {
+    final ClusterTransport transport = new ClusterTransport(sender, 0, 65536, 0);
+    transport.send(null, "a");
+    transport.send(null, "b");
+
+    assertEquals(Arrays.asList("a"), nextBatch());
+    assertEquals(Arrays.asList("b"), nextBatch());
+    transport.close();
+  }
+}
@@ -25,8 +25,15 @@ public class ClusteringTests extends TestCase {
   private final List<ErraiService> startedInstances = new ArrayList<ErraiService>();
   private final AtomicInteger counter = new AtomicInteger(0);
 
-  private ErraiService startInstance() {
-    final ErraiService newService = InVMBusUtil.startService(counter.incrementAndGet());
+  /**
+   * How the nodes find the owner of a session. Overridden to run the same tests with another setting.
+   */
+  protected String getSessionRouting() {
+    return "broadcast";
+  }
+
+  protected ErraiService startInstance() {
+    final ErraiService newService = InVMBusUtil.startService(counter.incrementAndGet(), getSessionRouting());
     startedInstances.add(newService);
     return newService;
   }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.laundry.LaundryList;
+import org.jboss.errai.bus.client.api.laundry.LaundryListProvider;
+import org.jboss.errai.bus.client.api.laundry.LaundryListProviderFactory;
+import org.jboss.errai.bus.server.mock.MockHttpSession;
+import org.jboss.errai.bus.server.util.LocalContext;
+import org.jboss.errai.bus.server.util.ServerLaundryList;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class CompactSessionProviderTests extends TestCase {
+  private final CompactSessionProvider provider = new CompactSessionProvider();
+
+  @Override
+  protected void setUp() throws Exception {
+    LaundryListProviderFactory.setLaundryListProvider(new LaundryListProvider() {
+      @Override
+      public LaundryList getLaundryList(final Object ref) {
+        return ServerLaundryList.get((QueueSession) ref);
+      }
+    });
+  }
+
+  public void testQueueSessionsShareTheAttributesOfTheirHttpSession() {
+    final HttpSession httpSession = MockHttpSession.createMock();
+
+    final QueueSession a = provider.createOrGetSession(httpSession, "queueA");
+    final QueueSession b = provider.createOrGetSession(httpSession, "queueB");
+
+    assertSame(a, provider.createOrGetSession(httpSession, "queueA"));
+    assertNotSame(a, b);
+    assertFalse(a.getSessionId().equals(b.getSessionId()));
+    assertEquals(httpSession.getId(), a.getParentSessionId());
+    assertSame(httpSession, a.getAttribute(HttpSession.class, HttpSession.class.getName()));
+
+    a.setAttribute("foo", "bar");
+    assertEquals("bar", b.getAttribute(String.class, "foo"));
+    assertEquals(new HashSet<String>(Arrays.asList(HttpSession.class.getName(), "foo")),
+        new HashSet<String>(b.getAttributeNames()));
+
+    assertEquals("bar", b.removeAttribute("foo"));
+    assertFalse(a.hasAttribute("foo"));
+  }
+
+  public void testEndedSessionIsReplaced() {
+    final HttpSession httpSession = MockHttpSession.createMock();
+
+    final QueueSession session = provider.createOrGetSession(httpSession, "queue");
+    assertTrue(session.isValid());
+
+    session.endSession();
+    assertFalse(session.isValid());
+
+    final QueueSession replacement = provider.createOrGetSession(httpSession, "queue");
+    assertNotSame(session, replacement);
+    assertTrue(replacement.isValid());
+  }
+
+  public void testInvalidatingHttpSessionReleasesItsQueueSessions() {
+    final HttpSession first = MockHttpSession.createMock();
+    final HttpSession second = MockHttpSession.createMock();
+
+    provider.createOrGetSession(first, "queue");
+    provider.createOrGetSession(second, "queue");
+    assertEquals(2, provider.getHttpSessionCount());
+
+    first.invalidate();
+    assertEquals(1, provider.getHttpSessionCount());
+  }
+
+  public void testBindingSurvivesSerialization() throws Exception {
+    final HttpSession httpSession = MockHttpSession.createMock();
+    provider.createOrGetSession(httpSession, "queue");
+    assertEquals(1, provider.getHttpSessionCount());
+
+    HttpSessionBindingListener binding = null;
+    for (final String name : Collections.list(httpSession.getAttributeNames())) {
+      if (httpSession.getAttribute(name) instanceof HttpSessionBindingListener) {
+        binding = (HttpSessionBindingListener) httpSession.getAttribute(name);
+      }
+    }
+    assertNotNull("expected a binding marker in the HttpSession", binding);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(binding);
+    out.close();
+    final HttpSessionBindingListener restored = (HttpSessionBindingListener)
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+    // the restored marker still releases the queue sessions, without having been serialized with the provider.
+    restored.valueUnbound(new HttpSessionBindingEvent(httpSession, "binding"));
+    assertEquals(0, provider.getHttpSessionCount());
+  }
+
+  public void testLocalContextIsOnlyCreatedOnceWrittenTo() {
+    final QueueSession session = provider.createOrGetSession(MockHttpSession.createMock(), "queue");
+    final int attributes = session.getAttributeNames().size();
+
+    final LocalContext context = LocalContext.get(session);
+    assertNull(context.getAttribute(String.class, "foo"));
+    assertFalse(context.hasAttribute("foo"));
+    assertTrue(context.getAttributeNames().isEmpty());
+    assertEquals(attributes, session.getAttributeNames().size());
+
+    context.setAttribute("foo", "bar");
+    assertEquals(attributes + 1, session.getAttributeNames().size());
+    assertEquals("bar", LocalContext.get(session).getAttribute(String.class, "foo"));
+
+    context.destroy();
+    assertEquals(attributes, session.getAttributeNames().size());
+    assertNull(LocalContext.get(session).getAttribute(String.class, "foo"));
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.cluster.jgroups.JGroupsClusteringProvider;
+import org.jboss.errai.bus.server.service.ErraiService;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jgroups.Address;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the clustering tests with sessions routed through the consistent-hash ring instead of broadcast lookups.
+ */
+public class ConsistentHashClusteringTests extends ClusteringTests {
+  @Override
+  protected String getSessionRouting() {
+    return "consistent_hash";
+  }
+
+  public void testMessageIsRelayedAgainPastStaleOwner() throws Exception {
+    final ErraiService serverA = startInstance();
+    final ErraiService serverB = startInstance();
+    final ErraiService serverC = startInstance();
+
+    final JGroupsClusteringProvider providerA = getProvider(serverA);
+    final JGroupsClusteringProvider providerB = getProvider(serverB);
+    final JGroupsClusteringProvider providerC = getProvider(serverC);
+
+    // find a session on B which hashes to one of the other nodes.
+    BusTestClient clientB = null;
+    Address home = null;
+    for (int i = 0; i < 20 && (home == null || home.equals(providerB.getAddress())); i++) {
+      clientB = BusTestClient.create(serverB);
+      home = awaitAgreedHome(clientB.getServerSession().getSessionId(), providerA, providerB, providerC);
+    }
+    assertFalse("no session hashing to another node", home.equals(providerB.getAddress()));
+
+    final QueueSession clientBSession = clientB.getServerSession();
+    final String sessionId = clientBSession.getSessionId();
+
+    final JGroupsClusteringProvider homeProvider = home.equals(providerA.getAddress()) ? providerA : providerC;
+    final JGroupsClusteringProvider staleProvider = homeProvider == providerA ? providerC : providerA;
+    final ErraiService homeServer = homeProvider == providerA ? serverA : serverC;
+    final ErraiService staleServer = homeProvider == providerA ? serverC : serverA;
+
+    final Set<String> resultsSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final CountDownLatch[] latch = new CountDownLatch[1];
+
+    final String localService = "localTest";
+    clientB.subscribe(localService, new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        resultsSet.add(message.getValue(String.class));
+        latch[0].countDown();
+      }
+    });
+
+    final CountDownLatch initLatch = new CountDownLatch(1);
+    clientB.addInitCallback(new Runnable() {
+      @Override
+      public void run() {
+        initLatch.countDown();
+      }
+    });
+    clientB.connect();
+    assertTrue(initLatch.await(5, TimeUnit.SECONDS));
+    awaitRegisteredOwner(homeProvider, sessionId, providerB.getAddress());
+
+    // first from the home node, which relays dead letters itself, then from the stale node, whose message is relayed
+    // by the home node.
+    for (final ErraiService sender : new ErraiService[]{homeServer, staleServer}) {
+      // make the home node believe the session is attached to the stale node.
+      staleProvider.localSessionAttached(sessionId);
+      awaitRegisteredOwner(homeProvider, sessionId, staleProvider.getAddress());
+
+      latch[0] = new CountDownLatch(1);
+      final String value = sender == homeServer ? "Home" : "Stale";
+
+      MessageBuilder.createMessage()
+          .toSubject(localService)
+          .signalling()
+          .withValue(value)
+          .with(MessageParts.SessionID, sessionId)
+          .noErrorHandling()
+          .sendNowWith(sender.getBus());
+
+      assertTrue("timed out waiting for the message from the " + value + " node", latch[0].await(10, TimeUnit.SECONDS));
+      assertTrue("expected result missing", resultsSet.contains(value));
+    }
+  }
+
+  private static JGroupsClusteringProvider getProvider(final ErraiService service) {
+    return (JGroupsClusteringProvider) ((ServerMessageBusImpl) service.getBus()).getClusteringProvider();
+  }
+
+  private static Address awaitAgreedHome(final String sessionId, final JGroupsClusteringProvider... providers)
+      throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (true) {
+      final Address home = providers[0].getSessionHome(sessionId);
+      boolean agreed = home != null;
+      for (final JGroupsClusteringProvider provider : providers) {
+        agreed &= home != null && home.equals(provider.getSessionHome(sessionId));
+      }
+      if (agreed || System.currentTimeMillis() > deadline) {
+        return home;
+      }
+      Thread.sleep(50);
+    }
+  }
+
+  private static void awaitRegisteredOwner(final JGroupsClusteringProvider homeProvider, final String sessionId,
+                                           final Address owner) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (!owner.equals(homeProvider.getRegisteredOwner(sessionId))) {
+      assertTrue("timed out waiting for the session to be registered", System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.server.cluster.ConsistentHashRing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConsistentHashRingTests extends TestCase {
+  private static final int KEYS = 10000;
+
+  private static String key(final int i) {
+    return "session-" + i;
+  }
+
+  public void testEmptyRingHasNoOwners() {
+    final ConsistentHashRing<String> ring = new ConsistentHashRing<String>(Collections.<String>emptyList(), 64);
+    assertTrue(ring.isEmpty());
+    assertNull(ring.get(key(1)));
+  }
+
+  public void testRingOnlyDependsOnTheMembers() {
+    final ConsistentHashRing<String> ring = new ConsistentHashRing<String>(Arrays.asList("a", "b", "c"), 64);
+    final ConsistentHashRing<String> reordered = new ConsistentHashRing<String>(Arrays.asList("c", "a", "b"), 64);
+
+    for (int i = 0; i < KEYS; i++) {
+      assertEquals(ring.get(key(i)), reordered.get(key(i)));
+    }
+  }
+
+  public void testKeysAreSpreadOverAllMembers() {
+    final List<String> members = Arrays.asList("node-1", "node-2", "node-3", "node-4");
+    final ConsistentHashRing<String> ring = new ConsistentHashRing<String>(members, 64);
+
+    final Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (int i = 0; i < KEYS; i++) {
+      final String owner = ring.get(key(i));
+      final Integer count = counts.get(owner);
+      counts.put(owner, count == null ? 1 : count + 1);
+    }
+
+    for (final String member : members) {
+      final int count = counts.get(member);
+      assertTrue(member + " owns " + count + " keys", count > KEYS / 8 && count < KEYS / 2);
+    }
+  }
+
+  public void testJoiningMemberOnlyTakesKeysOver() {
+    final ConsistentHashRing<String> before = new ConsistentHashRing<String>(Arrays.asList("a", "b", "c"), 64);
+    final ConsistentHashRing<String> after = new ConsistentHashRing<String>(Arrays.asList("a", "b", "c", "d"), 64);
+
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      final String oldOwner = before.get(key(i));
+      final String newOwner = after.get(key(i));
+      if (!oldOwner.equals(newOwner)) {
+        assertEquals("d", newOwner);
+        moved++;
+      }
+    }
+    assertTrue("moved " + moved + " keys", moved > KEYS / 8 && moved < KEYS / 2);
+  }
+}
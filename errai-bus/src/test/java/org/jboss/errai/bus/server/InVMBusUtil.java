@@ -1,6 +1,7 @@
 package org.jboss.errai.bus.server;
 
 import org.jboss.errai.bus.server.cluster.jgroups.JGroupsClusteringProvider;
+import org.jboss.errai.bus.server.cluster.jgroups.JGroupsConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
@@ -13,6 +14,10 @@ import org.jboss.errai.bus.server.service.ErraiServiceFactory;
 public class InVMBusUtil {
 
   public static ErraiService startService(final int portOffset) {
+    return startService(portOffset, "broadcast");
+  }
+
+  public static ErraiService startService(final int portOffset, final String sessionRouting) {
     final ErraiServiceConfigurator configurator = new ErraiServiceConfiguratorImpl();
     final int port = ErraiConfigAttribs.CLUSTER_PORT.getInt(configurator) + portOffset;
     ErraiConfigAttribs.CLUSTER_PORT.set(configurator, String.valueOf(port));
@@ -20,6 +25,9 @@ public class InVMBusUtil {
     ErraiConfigAttribs.CLUSTERING_PROVIDER.set(configurator, JGroupsClusteringProvider.class.getName());
     ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(configurator, "false");
     ErraiConfigAttribs.BUS_BUFFER_SIZE.set(configurator, "2"); // 2 MB
+    // small enough for the larger batches between the nodes to be compressed.
+    JGroupsConfigAttribs.JGROUPS_COMPRESSION_THRESHOLD.set(configurator, "512");
+    JGroupsConfigAttribs.JGROUPS_SESSION_ROUTING.set(configurator, sessionRouting);
     return ErraiServiceFactory.create(configurator);
   }
 }
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import io.netty.buffer.ChannelBuffer;
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.api.QueueActivationCallback;
+import org.jboss.errai.bus.server.io.ByteQueueChannel;
+import org.jboss.errai.bus.server.io.CoalescingActivationCallback;
+import org.jboss.errai.bus.server.io.DirectDeliveryHandler;
+import org.jboss.errai.bus.server.io.MultiMessageFilter;
+import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.io.PageStore;
+import org.jboss.errai.bus.server.io.PageUtil;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MessageQueueTests extends TestCase {
+
+  public void testSharedEncodedPayloadIsDeliveredToEachQueue() throws Exception {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+
+    final MessageQueue queueA = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+    final MessageQueue queueB = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+
+    final Message message = CommandMessage.create().toSubject("FooService");
+    final String encoded = "{\"ToSubject\":\"FooService\"}";
+    final byte[] payload = encoded.getBytes("UTF-8");
+
+    assertTrue(queueA.offerEncoded(message, payload));
+    assertTrue(queueB.offerEncoded(message, payload));
+
+    final ByteArrayOutputStream outA = new ByteArrayOutputStream();
+    assertTrue(queueA.poll(new OutputStreamWriteAdapter(outA)));
+    assertEquals("[" + encoded + "]", new String(outA.toByteArray(), "UTF-8"));
+
+    final ByteArrayOutputStream outB = new ByteArrayOutputStream();
+    assertTrue(queueB.poll(new OutputStreamWriteAdapter(outB)));
+    assertEquals("[" + encoded + "]", new String(outB.toByteArray(), "UTF-8"));
+
+    assertEquals(encoded, new String(payload, "UTF-8"));
+  }
+
+  public void testPagedMessagesAreTransferredAsSinglePayload() throws Exception {
+    final File pageDir = new File(System.getProperty("java.io.tmpdir"), "errai_page_test_" + System.nanoTime());
+    final PageStore store = new PageStore(pageDir, 1024 * 1024);
+    try {
+      final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+      final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30, store);
+      final Message message = CommandMessage.create().toSubject("FooService");
+
+      assertTrue(queue.offerEncoded(message, "{\"A\":\"{\\\"\"}".getBytes("UTF-8")));
+      assertTrue(queue.offerEncoded(message, "{\"B\":2}".getBytes("UTF-8")));
+      assertFalse(PageUtil.pageWaitingToDisk(queue));
+      assertTrue(queue.isPaged());
+
+      assertTrue(queue.offerEncoded(message, "{\"C\":3}".getBytes("UTF-8")));
+      assertTrue(PageUtil.pageWaitingToDisk(queue));
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      PageUtil.readInPageFile(queue, new OutputStreamWriteAdapter(out), new MultiMessageFilter());
+      assertEquals("[{\"A\":\"{\\\"\"},{\"B\":2},{\"C\":3}]", new String(out.toByteArray(), "UTF-8"));
+
+      assertFalse(queue.isPaged());
+      assertEquals(0, store.getPageCount());
+      assertEquals(1, store.getPageInCount());
+    }
+    finally {
+      store.clear();
+      pageDir.delete();
+    }
+  }
+
+  public void testPageStoreEvictsLeastRecentlyUsedPages() throws Exception {
+    final File pageDir = new File(System.getProperty("java.io.tmpdir"), "errai_page_test_" + System.nanoTime());
+    final PageStore store = new PageStore(pageDir, 16);
+    try {
+      store.append("a", ByteBuffer.wrap("aaaaaa".getBytes()));
+      store.append("b", ByteBuffer.wrap("bbbbbb".getBytes()));
+      store.hasMessages("a");
+      store.append("c", ByteBuffer.wrap("cccccc".getBytes()));
+
+      assertTrue(store.hasPage("a"));
+      assertFalse(store.hasPage("b"));
+      assertTrue(store.hasPage("c"));
+      assertFalse(store.getPageFile("b").exists());
+      assertEquals(12, store.getStoredBytes());
+      assertEquals(1, store.getEvictionCount());
+    }
+    finally {
+      store.clear();
+      pageDir.delete();
+    }
+  }
+
+  public void testLargeSegmentIsStreamedIntoPage() throws Exception {
+    final File pageDir = new File(System.getProperty("java.io.tmpdir"), "errai_page_test_" + System.nanoTime());
+    final PageStore store = new PageStore(pageDir, 64 * 1024);
+    try {
+      final byte[] segment = new byte[40 * 1024];
+      for (int i = 0; i < segment.length; i++) {
+        segment[i] = (byte) ('a' + (i % 26));
+      }
+
+      final OutputStream outputStream = store.openForAppend("a");
+      assertFalse(store.hasPage("a"));
+      for (int i = 0; i < segment.length; i += 1000) {
+        outputStream.write(segment, i, Math.min(1000, segment.length - i));
+      }
+      outputStream.close();
+
+      assertEquals(segment.length, store.getStoredBytes());
+      assertEquals(1, store.getPageOutCount());
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(segment.length, store.transferTo("a", Channels.newChannel(out)));
+      assertTrue(Arrays.equals(segment, out.toByteArray()));
+      assertEquals(0, store.getStoredBytes());
+
+      try {
+        store.append("b", ByteBuffer.wrap(new byte[128 * 1024]));
+        fail("expected a page larger than the store to be rejected");
+      }
+      catch (IOException e) {
+        // expected
+      }
+      assertTrue(store.getStoredBytes() <= 64 * 1024);
+    }
+    finally {
+      store.clear();
+      pageDir.delete();
+    }
+  }
+
+  public void testPageStoresAreNotShared() throws Exception {
+    final File pageDirA = new File(System.getProperty("java.io.tmpdir"), "errai_page_test_a_" + System.nanoTime());
+    final File pageDirB = new File(System.getProperty("java.io.tmpdir"), "errai_page_test_b_" + System.nanoTime());
+    final PageStore storeA = new PageStore(pageDirA, 1024 * 1024);
+    final PageStore storeB = new PageStore(pageDirB, 1024 * 1024);
+    try {
+      final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+      final MessageQueue queueA = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30, storeA);
+      final MessageQueue queueB = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30, storeB);
+      final Message message = CommandMessage.create().toSubject("FooService");
+
+      assertTrue(queueA.offerEncoded(message, "{\"A\":1}".getBytes("UTF-8")));
+      assertTrue(queueB.offerEncoded(message, "{\"B\":1}".getBytes("UTF-8")));
+      PageUtil.pageWaitingToDisk(queueA);
+      PageUtil.pageWaitingToDisk(queueB);
+
+      storeA.clear();
+      assertEquals(0, storeA.getPageCount());
+      assertEquals(1, storeB.getPageCount());
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      PageUtil.readInPageFile(queueB, new OutputStreamWriteAdapter(out), new MultiMessageFilter());
+      assertEquals("[{\"B\":1}]", new String(out.toByteArray(), "UTF-8"));
+    }
+    finally {
+      storeA.clear();
+      storeB.clear();
+      pageDirA.delete();
+      pageDirB.delete();
+    }
+  }
+
+  public void testQueuesWithoutStoreShareDefaultPageStore() throws Exception {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final MessageQueue queueA = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+    final MessageQueue queueB = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+
+    assertSame(PageUtil.getDefaultPageStore(), queueA.getPageStore());
+    assertSame(queueA.getPageStore(), queueB.getPageStore());
+  }
+
+  private static class CountingActivationCallback implements QueueActivationCallback {
+    private final AtomicInteger activations = new AtomicInteger();
+
+    @Override
+    public void activate(final MessageQueue queue) {
+      activations.incrementAndGet();
+      queue.setActivationCallback(null);
+    }
+  }
+
+  public void testCoalescingActivationReleasesIdleSessionImmediately() throws Exception {
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+      final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+      final CountingActivationCallback delegate = new CountingActivationCallback();
+
+      queue.setActivationCallback(new CoalescingActivationCallback(delegate, scheduler, 500, 65536));
+      assertTrue(queue.offerEncoded(CommandMessage.create().toSubject("FooService"), "{\"A\":1}".getBytes("UTF-8")));
+
+      assertEquals(1, delegate.activations.get());
+      assertNull(queue.getActivationCallback());
+    }
+    finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public void testCoalescingActivationBatchesBursts() throws Exception {
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      final TransmissionBuffer buffer = TransmissionBuffer.create(64, 4096);
+      final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+      final CountingActivationCallback delegate = new CountingActivationCallback();
+      final Message message = CommandMessage.create().toSubject("FooService");
+      final byte[] payload = "{\"A\":1}".getBytes("UTF-8");
+
+      final int messages = 100;
+      for (int i = 0; i < messages; i++) {
+        synchronized (queue.getActivationLock()) {
+          if (queue.getActivationCallback() == null) {
+            // the client reconnects as soon as its previous poll was answered.
+            queue.setActivationCallback(new CoalescingActivationCallback(delegate, scheduler, 500, 65536));
+          }
+        }
+        assertTrue(queue.offerEncoded(message, payload));
+      }
+
+      final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+      while (queue.getActivationCallback() != null && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertNull("the held back poll was never released", queue.getActivationCallback());
+      assertTrue("expected the burst to be coalesced, but there were " + delegate.activations.get() + " activations",
+          delegate.activations.get() < 10);
+    }
+    finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public void testCoalescingTracksArrivalsAndBytesPerQueue() throws Exception {
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      final TransmissionBuffer buffer = TransmissionBuffer.create(64, 4096);
+      final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+      final MessageQueue other = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+      final CountingActivationCallback delegate = new CountingActivationCallback();
+      final AtomicInteger drains = new AtomicInteger();
+      final Executor drainExecutor = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+          drains.incrementAndGet();
+          command.run();
+        }
+      };
+      final Message message = CommandMessage.create().toSubject("FooService");
+      final byte[] payload = "{\"A\":1}".getBytes("UTF-8");
+
+      // queues which have never been polled with coalescing do not record their arrivals.
+      assertTrue(other.offerEncoded(message, payload));
+      assertFalse(other.isArrivalsTracked());
+      other.resetMessageCount();
+
+      // the first poll starts tracking the session, and is released immediately as it has no history.
+      queue.setActivationCallback(new CoalescingActivationCallback(delegate, scheduler, drainExecutor, 500, 64));
+      assertTrue(queue.offerEncoded(message, payload));
+      assertEquals(1, delegate.activations.get());
+      assertTrue(queue.isArrivalsTracked());
+
+      // a burst while no poll is waiting still counts towards the arrival rate.
+      for (int i = 0; i < 20; i++) {
+        assertTrue(queue.offerEncoded(message, payload));
+      }
+      queue.resetMessageCount();
+      assertEquals(0, queue.getBytesWaiting());
+
+      // data buffered for another queue must not release this queue's poll early.
+      assertTrue(other.offerEncoded(message, new byte[1024]));
+      assertEquals(1024, other.getBytesWaiting());
+
+      queue.setActivationCallback(new CoalescingActivationCallback(delegate, scheduler, drainExecutor, 500, 64));
+      assertTrue(queue.offerEncoded(message, payload));
+      assertEquals(payload.length, queue.getBytesWaiting());
+      assertEquals("the poll should have been held back", 1, delegate.activations.get());
+
+      final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+      while (queue.getActivationCallback() != null && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertEquals(2, delegate.activations.get());
+      assertEquals("the delayed drain should run on the drain executor", 1, drains.get());
+    }
+    finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public void testDirectDeliveryWritesBytesToByteChannel() throws Exception {
+    final RecordingByteChannel channel = new RecordingByteChannel();
+
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+    final Message message = CommandMessage.create().toSubject("FooService");
+
+    // data buffered before the switch to the direct channel is flushed when the queue is woken.
+    assertTrue(queue.offerEncoded(message, "{\"A\":\"caf\u00e9\"}".getBytes("UTF-8")));
+    queue.setDeliveryHandler(DirectDeliveryHandler.createFor(channel));
+    queue.wake();
+
+    assertTrue(queue.offerEncoded(message, "{\"B\":2}".getBytes("UTF-8")));
+
+    assertEquals(2, channel.frames.size());
+    assertEquals("[{\"A\":\"caf\u00e9\"}]", channel.frames.get(0));
+    assertEquals("[{\"B\":2}]", channel.frames.get(1));
+  }
+
+  public void testDirectDeliveryHoldsBackWhileChannelNotWritable() throws Exception {
+    final RecordingByteChannel channel = new RecordingByteChannel();
+
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+    final Message message = CommandMessage.create().toSubject("FooService");
+    queue.setDeliveryHandler(DirectDeliveryHandler.createFor(channel));
+
+    channel.writable = false;
+    assertTrue(queue.offerEncoded(message, "{\"A\":1}".getBytes("UTF-8")));
+    assertTrue(queue.offerEncoded(message, "{\"B\":2}".getBytes("UTF-8")));
+    assertTrue("nothing should be written to a channel which is not writable", channel.frames.isEmpty());
+
+    // waking the queue while the channel is still not writable leaves the backlog in place.
+    queue.wake();
+    assertTrue(channel.frames.isEmpty());
+
+    channel.writable = true;
+    assertTrue(queue.offerEncoded(message, "{\"C\":3}".getBytes("UTF-8")));
+
+    // the backlog is sent together with the message which followed it.
+    assertEquals(1, channel.frames.size());
+    assertEquals("[{\"A\":1},{\"B\":2},{\"C\":3}]", channel.frames.get(0));
+
+    // the backlog was held by the handler, not in the transmission buffer shared with other queues.
+    assertEquals(0, buffer.getHeadSequence());
+
+    assertTrue(queue.offerEncoded(message, "{\"D\":4}".getBytes("UTF-8")));
+    assertEquals(2, channel.frames.size());
+    assertEquals("[{\"D\":4}]", channel.frames.get(1));
+  }
+
+  public void testDirectDeliveryPagesOutLargeBacklog() throws Exception {
+    final File pageDir = new File(System.getProperty("java.io.tmpdir"), "errai_page_test_" + System.nanoTime());
+    final PageStore store = new PageStore(pageDir, 1024 * 1024);
+    try {
+      final RecordingByteChannel channel = new RecordingByteChannel();
+
+      final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+      final MessageQueue queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30, store);
+      final Message message = CommandMessage.create().toSubject("FooService");
+      final DirectDeliveryHandler handler = (DirectDeliveryHandler) DirectDeliveryHandler.createFor(channel, 128);
+      queue.setDeliveryHandler(handler);
+
+      channel.writable = false;
+      final StringBuilder expected = new StringBuilder("[");
+      for (int i = 0; i < 40; i++) {
+        final String payload = "{\"Seq\":" + i + "}";
+        assertTrue(queue.offerEncoded(message, payload.getBytes("UTF-8")));
+        expected.append(i == 0 ? "" : ",").append(payload);
+      }
+      expected.append("]");
+      assertTrue("expected the backlog to be paged out", handler.isPaged());
+      assertEquals(1, store.getPageCount());
+
+      channel.writable = true;
+      queue.wake();
+
+      // the paged out and the buffered part of the backlog are sent as one frame.
+      assertEquals(1, channel.frames.size());
+      assertFalse(handler.isBacklogged());
+      assertEquals(0, store.getPageCount());
+
+      final StringBuilder received = new StringBuilder();
+      for (final String frame : channel.frames) {
+        received.append(received.length() == 0 ? "[" : ",").append(frame.substring(1, frame.length() - 1));
+      }
+      received.append("]");
+
+      assertFalse(handler.isPaged());
+      assertEquals(expected.toString(), received.toString());
+    }
+    finally {
+      store.clear();
+      pageDir.delete();
+    }
+  }
+
+  private static class RecordingByteChannel implements ByteQueueChannel {
+    private final List<String> frames = new ArrayList<String>();
+    private volatile boolean writable = true;
+
+    @Override
+    public void write(final ChannelBuffer data) {
+      frames.add(data.toString(Charset.forName("UTF-8")));
+    }
+
+    @Override
+    public boolean isWritable() {
+      return writable;
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public void write(final String data) {
+      fail("expected the bytes to be written directly");
+    }
+
+    @Override
+    public String getId() {
+      return "test";
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.server.io.MethodInvoker;
+import org.jboss.errai.bus.server.io.MethodInvokers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MethodInvokersTests extends TestCase {
+
+  public static class Endpoint {
+    public int add(final int a, final long b) {
+      return (int) (a + b);
+    }
+
+    public String join(final String[] parts, final char separator) {
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < parts.length; i++) {
+        if (i != 0) sb.append(separator);
+        sb.append(parts[i]);
+      }
+      return sb.toString();
+    }
+
+    boolean packagePrivate(final Boolean value) {
+      return !value;
+    }
+
+    public static double twice(final double value) {
+      return value * 2;
+    }
+
+    public void fail(final String message) {
+      throw new IllegalStateException(message);
+    }
+
+    private String hidden() {
+      return "hidden";
+    }
+  }
+
+  private static MethodInvoker invoker(final String name, final Class<?>... parameterTypes) throws Exception {
+    final Method method = Endpoint.class.getDeclaredMethod(name, parameterTypes);
+    return MethodInvokers.get(method);
+  }
+
+  private static boolean isGenerated(final MethodInvoker invoker) {
+    return invoker.getClass().getName().contains("$$ErraiInvoker$");
+  }
+
+  public void testGeneratedInvokerUnboxesArgumentsAndBoxesResult() throws Exception {
+    final MethodInvoker add = invoker("add", int.class, long.class);
+    assertTrue(isGenerated(add));
+    assertEquals(5, add.invoke(new Endpoint(), Arrays.<Object>asList(2, 3L)));
+
+    final MethodInvoker join = invoker("join", String[].class, char.class);
+    assertTrue(isGenerated(join));
+    assertEquals("a-b", join.invoke(new Endpoint(), Arrays.<Object>asList(new String[]{"a", "b"}, '-')));
+  }
+
+  public void testPackagePrivateAndStaticMethods() throws Exception {
+    final MethodInvoker packagePrivate = invoker("packagePrivate", Boolean.class);
+    assertTrue(isGenerated(packagePrivate));
+    assertEquals(Boolean.FALSE, packagePrivate.invoke(new Endpoint(), Collections.singletonList(true)));
+
+    final MethodInvoker twice = invoker("twice", double.class);
+    assertTrue(isGenerated(twice));
+    assertEquals(3.0, twice.invoke(null, Collections.singletonList(1.5)));
+  }
+
+  public void testVoidMethodExceptionIsWrapped() throws Exception {
+    final MethodInvoker fail = invoker("fail", String.class);
+    try {
+      fail.invoke(new Endpoint(), Collections.singletonList("boom"));
+      fail("expected an exception");
+    }
+    catch (InvocationTargetException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+      assertEquals("boom", e.getCause().getMessage());
+    }
+  }
+
+  public void testMismatchedArgumentIsNotReportedAsThrownByTheMethod() throws Exception {
+    try {
+      invoker("add", int.class, long.class).invoke(new Endpoint(), Arrays.<Object>asList("2", 3L));
+      fail("expected an exception");
+    }
+    catch (InvocationTargetException e) {
+      fail("argument mismatch reported as thrown by the method");
+    }
+    catch (ClassCastException e) {
+      // expected
+    }
+  }
+
+  public void testPrivateMethodFallsBackToReflection() throws Exception {
+    final MethodInvoker hidden = invoker("hidden");
+    assertFalse(isGenerated(hidden));
+    assertEquals("hidden", hidden.invoke(new Endpoint(), Collections.emptyList()));
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.Subscription;
+import org.jboss.errai.bus.client.api.UnsubscribeListener;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.client.framework.SubscriptionEvent;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.bus.server.service.ErraiServiceConfiguratorImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class RemoteSubscriptionTests extends TestCase {
+  private ServerMessageBusImpl bus;
+
+  @Override
+  protected void setUp() throws Exception {
+    final ErraiServiceConfigurator config = new ErraiServiceConfiguratorImpl();
+    ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(config, "false");
+    ErraiConfigAttribs.ENABLE_CLUSTERING.set(config, "false");
+    ErraiConfigAttribs.BUS_BUFFER_SIZE.set(config, "2");
+    ErraiConfigAttribs.BUS_BUFFER_ALLOCATION_MODE.set(config, "heap");
+
+    bus = new ServerMessageBusImpl(new MockErraiService(), config);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    bus.stop();
+  }
+
+  public void testClosingQueueOnlyRemovesItsOwnSubscriptions() {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final QueueSession sessionA = MockQueueSessionFactory.newSession();
+    final QueueSession sessionB = MockQueueSessionFactory.newSession();
+    final MessageQueue queueA = new MessageQueueImpl(buffer, sessionA, 30);
+    final MessageQueue queueB = new MessageQueueImpl(buffer, sessionB, 30);
+
+    bus.remoteSubscribe(sessionA, queueA, "SubjectOne");
+    bus.remoteSubscribe(sessionA, queueA, "SubjectTwo");
+    bus.remoteSubscribe(sessionB, queueB, "SubjectTwo");
+
+    assertEquals(new HashSet<String>(Arrays.asList("SubjectOne", "SubjectTwo")), bus.getRemoteSubscriptions(queueA));
+    assertEquals(new HashSet<String>(Arrays.asList("SubjectTwo")), bus.getRemoteSubscriptions(queueB));
+
+    bus.closeQueue(queueA);
+
+    assertTrue(bus.getRemoteSubscriptions(queueA).isEmpty());
+    assertFalse(bus.hasRemoteSubscriptions("SubjectOne"));
+    assertTrue(bus.hasRemoteSubscriptions("SubjectTwo"));
+
+    bus.remoteUnsubscribe(sessionB, queueB, "SubjectTwo");
+
+    assertTrue(bus.getRemoteSubscriptions(queueB).isEmpty());
+    assertFalse(bus.hasRemoteSubscriptions("SubjectTwo"));
+  }
+
+  public void testRepeatedSubscribeAndUnsubscribeKeepsDeliveryPlanBounded() {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final QueueSession sessionA = MockQueueSessionFactory.newSession();
+    final QueueSession sessionB = MockQueueSessionFactory.newSession();
+    final MessageQueue queueA = new MessageQueueImpl(buffer, sessionA, 30);
+    MessageQueue queueB = new MessageQueueImpl(buffer, sessionB, 30);
+
+    final Subscription local = bus.subscribe("SubjectOne", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+      }
+    });
+
+    for (int i = 0; i < 100; i++) {
+      bus.remoteSubscribe(sessionA, queueA, "SubjectOne");
+      bus.remoteSubscribe(sessionB, queueB, "SubjectOne");
+      assertEquals(2, bus.getDeliveryPlan("SubjectOne").getTotalReceivers());
+
+      bus.remoteUnsubscribe(sessionA, queueA, "SubjectOne");
+      assertEquals(2, bus.getDeliveryPlan("SubjectOne").getTotalReceivers());
+
+      if (i % 2 == 0) {
+        bus.remoteUnsubscribe(sessionB, queueB, "SubjectOne");
+      }
+      else {
+        bus.closeQueue(queueB);
+        queueB = new MessageQueueImpl(buffer, sessionB, 30);
+      }
+      assertEquals(1, bus.getDeliveryPlan("SubjectOne").getTotalReceivers());
+    }
+
+    local.remove();
+
+    bus.remoteSubscribe(sessionA, queueA, "SubjectTwo");
+    bus.remoteUnsubscribe(sessionA, queueA, "SubjectTwo");
+    assertNull(bus.getDeliveryPlan("SubjectTwo"));
+    assertFalse(bus.isSubscribed("SubjectTwo"));
+  }
+
+  public void testLastClientLeavingDoesNotUnsubscribeOtherClients() {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final QueueSession sessionA = MockQueueSessionFactory.newSession();
+    final QueueSession sessionB = MockQueueSessionFactory.newSession();
+    final MessageQueue queueA = new MessageQueueImpl(buffer, sessionA, 30);
+    final MessageQueue queueB = new MessageQueueImpl(buffer, sessionB, 30);
+
+    bus.subscribe("SubjectOne", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+      }
+    });
+
+    // the events the bus turns into a RemoteUnsubscribe command to all clients.
+    final List<String> remoteUnsubscribes = new ArrayList<String>();
+    bus.addUnsubscribeListener(new UnsubscribeListener() {
+      @Override
+      public void onUnsubscribe(final SubscriptionEvent event) {
+        if (!event.isLocalOnly() && !event.isRemote() && !event.getSubject().startsWith("local:")) {
+          remoteUnsubscribes.add(event.getSubject());
+        }
+      }
+    });
+
+    bus.remoteSubscribe(sessionA, queueA, "SubjectOne");
+    bus.remoteUnsubscribe(sessionA, queueA, "SubjectOne");
+
+    bus.remoteSubscribe(sessionB, queueB, "SubjectOne");
+    bus.closeQueue(queueB);
+
+    assertTrue("unexpected RemoteUnsubscribe for " + remoteUnsubscribes, remoteUnsubscribes.isEmpty());
+    assertEquals(1, bus.getDeliveryPlan("SubjectOne").getTotalReceivers());
+  }
+
+  public void testClosedQueueDoesNotResubscribe() {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final QueueSession session = MockQueueSessionFactory.newSession();
+    final MessageQueue queue = new MessageQueueImpl(buffer, session, 30);
+
+    bus.remoteSubscribe(session, queue, "SubjectOne");
+    bus.closeQueue(queue);
+    bus.remoteSubscribe(session, queue, "SubjectOne");
+
+    assertTrue(bus.getRemoteSubscriptions(queue).isEmpty());
+    assertFalse(bus.hasRemoteSubscriptions("SubjectOne"));
+    assertNull(bus.getDeliveryPlan("SubjectOne"));
+  }
+
+  public void testConcurrentSubscribeAndClose() throws Exception {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final int threadCount = 8;
+    final int subjects = 50;
+
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch doneLatch = new CountDownLatch(threadCount);
+    final Throwable[] failure = new Throwable[1];
+
+    for (int t = 0; t < threadCount; t++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+            for (int round = 0; round < 20; round++) {
+              final QueueSession session = MockQueueSessionFactory.newSession();
+              final MessageQueue queue = new MessageQueueImpl(buffer, session, 30);
+              for (int i = 0; i < subjects; i++) {
+                bus.remoteSubscribe(session, queue, "Subject" + i);
+              }
+              bus.closeQueue(queue);
+            }
+          }
+          catch (Throwable e) {
+            failure[0] = e;
+          }
+          finally {
+            doneLatch.countDown();
+          }
+        }
+      }.start();
+    }
+
+    startLatch.countDown();
+    doneLatch.await();
+
+    if (failure[0] != null) {
+      throw new AssertionError(failure[0]);
+    }
+
+    for (int i = 0; i < subjects; i++) {
+      assertFalse("Subject" + i + " still has remote subscribers", bus.hasRemoteSubscriptions("Subject" + i));
+    }
+  }
+}
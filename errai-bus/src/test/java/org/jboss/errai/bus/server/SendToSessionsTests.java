@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.io.BufferHelper;
+import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.bus.server.service.ErraiServiceConfiguratorImpl;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SendToSessionsTests extends TestCase {
+  private ServerMessageBusImpl bus;
+
+  @Override
+  protected void setUp() throws Exception {
+    MappingContextSingleton.get();
+
+    final ErraiServiceConfigurator config = new ErraiServiceConfiguratorImpl();
+    ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(config, "false");
+    ErraiConfigAttribs.ENABLE_CLUSTERING.set(config, "false");
+    ErraiConfigAttribs.BUS_BUFFER_SIZE.set(config, "2");
+    ErraiConfigAttribs.BUS_BUFFER_ALLOCATION_MODE.set(config, "heap");
+
+    bus = new ServerMessageBusImpl(new MockErraiService(), config);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    bus.stop();
+  }
+
+  public void testEachSessionReceivesTheSamePayload() throws Exception {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(64, 32);
+    final List<RecordingQueue> queues = new ArrayList<RecordingQueue>();
+    final List<String> sessionIds = new ArrayList<String>();
+
+    for (int i = 0; i < 4; i++) {
+      final QueueSession session = MockQueueSessionFactory.newSession();
+      final RecordingQueue queue = new RecordingQueue(buffer, session);
+      // initialized queues take the shared encoding, the others get their own copy of the message.
+      if (i % 2 == 0) {
+        queue.finishInit();
+      }
+      bus.addQueue(session, queue);
+      bus.remoteSubscribe(session, queue, "FanOutSubject");
+
+      queues.add(queue);
+      sessionIds.add(session.getSessionId());
+    }
+
+    final Message message = CommandMessage.create()
+        .toSubject("FanOutSubject")
+        .set("Greeting", "hello")
+        .set("Count", 42)
+        .setResource("Origin", "test")
+        .setFlag(RoutingFlag.PriorityProcessing);
+
+    bus.sendToSessions(message, sessionIds);
+
+    final String expected = "[" + new String(BufferHelper.encode(message), "UTF-8") + "]";
+
+    for (int i = 0; i < queues.size(); i++) {
+      final RecordingQueue queue = queues.get(i);
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertTrue(queue.poll(new OutputStreamWriteAdapter(out)));
+      assertEquals(expected, new String(out.toByteArray(), "UTF-8"));
+
+      if (i % 2 == 0) {
+        assertSame(message, queue.offered);
+      }
+      else {
+        assertNotSame(message, queue.offered);
+        assertEquals(sessionIds.get(i), queue.offered.get(String.class, "SessionID"));
+        assertEquals("test", queue.offered.getResource(String.class, "Origin"));
+        assertTrue(queue.offered.isFlagSet(RoutingFlag.PriorityProcessing));
+        assertTrue(queue.offered.isFlagSet(RoutingFlag.NonGlobalRouting));
+      }
+    }
+  }
+
+  private static class RecordingQueue extends MessageQueueImpl {
+    private Message offered;
+
+    private RecordingQueue(final TransmissionBuffer buffer, final QueueSession session) {
+      super(buffer, session, 30);
+    }
+
+    @Override
+    public boolean offer(final Message message) throws IOException {
+      offered = message;
+      return super.offer(message);
+    }
+
+    @Override
+    public boolean offerEncoded(final Message message, final byte[] payload) throws IOException {
+      offered = message;
+      return super.offerEncoded(message, payload);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.Subscription;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.bus.server.service.ErraiServiceConfiguratorImpl;
+import org.jboss.errai.common.client.protocols.MessageParts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class SubjectRoutingTests extends TestCase {
+  private ServerMessageBusImpl bus;
+
+  @Override
+  protected void setUp() throws Exception {
+    final ErraiServiceConfigurator config = new ErraiServiceConfiguratorImpl();
+    ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(config, "false");
+    ErraiConfigAttribs.ENABLE_CLUSTERING.set(config, "false");
+    ErraiConfigAttribs.BUS_BUFFER_SIZE.set(config, "2");
+    ErraiConfigAttribs.BUS_BUFFER_ALLOCATION_MODE.set(config, "heap");
+
+    bus = new ServerMessageBusImpl(new MockErraiService(), config);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    bus.stop();
+  }
+
+  private static class RecordingCallback implements MessageCallback {
+    private final List<Message> received = new ArrayList<Message>();
+
+    @Override
+    public void callback(final Message message) {
+      received.add(message);
+    }
+  }
+
+  public void testGlobalSubscriptionTakesPrecedenceOverLocal() {
+    final RecordingCallback global = new RecordingCallback();
+    final RecordingCallback local = new RecordingCallback();
+
+    final Subscription localSubscription = bus.subscribeLocal("RoutedService", local);
+    bus.sendGlobal(CommandMessage.create().toSubject("RoutedService"));
+    assertEquals(1, local.received.size());
+
+    bus.subscribe("RoutedService", global);
+    bus.sendGlobal(CommandMessage.create().toSubject("RoutedService"));
+    assertEquals(1, global.received.size());
+    assertEquals(1, local.received.size());
+
+    bus.unsubscribeAll("RoutedService");
+    assertFalse(bus.isSubscribed("RoutedService"));
+    bus.sendGlobal(CommandMessage.create().toSubject("RoutedService"));
+    assertEquals(1, global.received.size());
+    assertEquals(2, local.received.size());
+
+    localSubscription.remove();
+    assertEquals(2, local.received.size());
+  }
+
+  public void testLocalSubscriptionIsRoutableByItsFullName() {
+    final RecordingCallback local = new RecordingCallback();
+    bus.subscribeLocal("FullNameService", local);
+
+    bus.sendGlobal(CommandMessage.create().toSubject("local:FullNameService"));
+    assertEquals(1, local.received.size());
+  }
+
+  public void testResubscribingAfterUnsubscribeAllRoutesToNewCallback() {
+    final RecordingCallback first = new RecordingCallback();
+    final RecordingCallback second = new RecordingCallback();
+
+    bus.subscribe("ResubscribedService", first);
+    bus.unsubscribeAll("ResubscribedService");
+    assertFalse(bus.isSubscribed("ResubscribedService"));
+
+    bus.subscribe("ResubscribedService", second);
+    bus.sendGlobal(CommandMessage.create().toSubject("ResubscribedService"));
+
+    assertEquals(0, first.received.size());
+    assertEquals(1, second.received.size());
+  }
+
+  public void testStandardPartsBehaveAsMapEntries() {
+    final Message message = CommandMessage.create()
+        .toSubject("PartService")
+        .command("Go")
+        .set(MessageParts.Value, null)
+        .set("custom", 42);
+
+    final Map<String, Object> parts = message.getParts();
+    assertEquals(4, parts.size());
+    assertEquals("PartService", parts.get("ToSubject"));
+    assertEquals("Go", message.getCommandType());
+    assertTrue(message.hasPart(MessageParts.Value));
+    assertTrue(parts.containsKey(new String("Value")));
+    assertNull(parts.get("Value"));
+    assertEquals(Integer.valueOf(42), message.get(Integer.class, "custom"));
+
+    final Map<String, Object> expected = new HashMap<String, Object>();
+    expected.put("ToSubject", "PartService");
+    expected.put("CommandType", "Go");
+    expected.put("Value", null);
+    expected.put("custom", 42);
+    assertEquals(expected, parts);
+    assertEquals(expected.hashCode(), parts.hashCode());
+
+    message.remove(MessageParts.Value);
+    assertFalse(message.hasPart(MessageParts.Value));
+    assertEquals(3, parts.size());
+
+    for (final Iterator<Map.Entry<String, Object>> iter = parts.entrySet().iterator(); iter.hasNext(); ) {
+      if (iter.next().getKey().equals("CommandType")) {
+        iter.remove();
+      }
+    }
+    assertNull(message.getCommandType());
+    assertEquals(2, parts.size());
+  }
+}
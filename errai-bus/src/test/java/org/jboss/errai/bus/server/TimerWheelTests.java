@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.server.util.TimerWheel;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class TimerWheelTests extends TestCase {
+
+  public void testItemsExpireOnlyOnceTheirDeadlineHasPassed() {
+    final TimerWheel<String> wheel = new TimerWheel<String>(100, 8, 0);
+    wheel.schedule("a", 250);
+    wheel.schedule("b", 300);
+    wheel.schedule("c", 520);
+
+    assertTrue(wheel.expire(200).isEmpty());
+    assertEquals(new HashSet<String>(Arrays.asList("a", "b")), new HashSet<String>(wheel.expire(300)));
+    assertTrue(wheel.expire(500).isEmpty());
+    assertEquals(Arrays.asList("c"), wheel.expire(600));
+    assertEquals(0, wheel.size());
+  }
+
+  public void testDeadlinesBeyondOneRevolutionWaitForTheirTurn() {
+    final TimerWheel<String> wheel = new TimerWheel<String>(100, 4, 0);
+    wheel.schedule("near", 100);
+    // lands in the same slot as "near", two revolutions later.
+    wheel.schedule("far", 900);
+
+    assertEquals(Arrays.asList("near"), wheel.expire(100));
+    assertTrue(wheel.expire(500).isEmpty());
+    assertEquals(1, wheel.size());
+    assertEquals(Arrays.asList("far"), wheel.expire(900));
+  }
+
+  public void testLongPauseExpiresEverythingDue() {
+    final TimerWheel<Integer> wheel = new TimerWheel<Integer>(10, 16, 0);
+    for (int i = 0; i < 100; i++) {
+      wheel.schedule(i, i * 10);
+    }
+    wheel.schedule(1000, 100000);
+
+    assertEquals(100, new HashSet<Integer>(wheel.expire(50000)).size());
+    assertEquals(1, wheel.size());
+  }
+
+  public void testPastDeadlinesExpireOnNextAdvance() {
+    final TimerWheel<String> wheel = new TimerWheel<String>(100, 8, 1000);
+    wheel.schedule("late", 500);
+
+    assertTrue(wheel.expire(1050).isEmpty());
+    assertEquals(Arrays.asList("late"), wheel.expire(1100));
+  }
+}
@@ -21,6 +21,7 @@ import org.jboss.errai.bus.client.tests.support.RandomProvider;
 import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
 import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.jboss.errai.bus.server.io.buffers.Utf8Encoder;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
@@ -33,7 +34,9 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -80,6 +83,122 @@ public class TransmissionBufferTests extends TestCase {
     }
   }
 
+  public void testBulkWriteAndReadWrapsAround() throws IOException {
+    bulkWriteAndReadWrapsAround(TransmissionBuffer.create(10, 7));
+    bulkWriteAndReadWrapsAround(TransmissionBuffer.createDirect(10, 7));
+  }
+
+  private void bulkWriteAndReadWrapsAround(final TransmissionBuffer buffer) throws IOException {
+    final BufferColor color = BufferColor.getNewColor();
+    final String[] strings = {"1234567890ABC", "DEFGHIJKLMNOPQRSTUVWXYZ", "abcdefghijklmnopqrstuvwxyz0123"};
+
+    for (int i = 0; i < 100; i++) {
+      final String s = strings[i % strings.length];
+
+      if (i % 2 == 0) {
+        buffer.write(s.getBytes(), color);
+      }
+      else {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(s.getBytes());
+        buffer.write(byteBuffer, color);
+        assertEquals(0, byteBuffer.remaining());
+      }
+
+      final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+      buffer.read(new OutputStreamWriteAdapter(bOutputStream), color);
+      assertEquals(s, new String(bOutputStream.toByteArray()));
+    }
+  }
+
+  public void testCharSequenceWriteEncodesUtf8AndWrapsAround() throws IOException {
+    charSequenceWriteEncodesUtf8AndWrapsAround(TransmissionBuffer.create(10, 7));
+    charSequenceWriteEncodesUtf8AndWrapsAround(TransmissionBuffer.createDirect(10, 7));
+  }
+
+  private void charSequenceWriteEncodesUtf8AndWrapsAround(final TransmissionBuffer buffer) throws IOException {
+    final BufferColor color = BufferColor.getNewColor();
+    final String[] strings = {"{\"a\":\"caf\u00e9\"}", "\u20ac\u00a3$ \ud834\udd1e clef", "lone \ud834 surrogate",
+        "plain ascii text"};
+
+    for (int i = 0; i < 100; i++) {
+      final String s = strings[i % strings.length];
+      buffer.write(s, color);
+
+      final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+      buffer.read(new OutputStreamWriteAdapter(bOutputStream), color);
+      assertTrue(s, Arrays.equals(s.getBytes("UTF-8"), bOutputStream.toByteArray()));
+    }
+  }
+
+  public void testUtf8EncoderMatchesStringEncoding() throws IOException {
+    final String[] strings = {"", "{\"a\":\"caf\u00e9\"}", "\u20ac\u00a3$ \ud834\udd1e clef", "lone \ud834 surrogate",
+        "trailing \udd1e", "plain ascii text"};
+
+    for (final String s : strings) {
+      assertEquals(s, s.getBytes("UTF-8").length, Utf8Encoder.length(s));
+      assertTrue(s, Arrays.equals(s.getBytes("UTF-8"), Utf8Encoder.encode(s)));
+    }
+  }
+
+  public void testConcurrentWritersToSameColor() throws Exception {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(32, 20000);
+    final BufferColor color = BufferColor.getNewColor();
+
+    final int writerCount = 8;
+    final int writesPerWriter = 2000;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+
+    final Thread[] writers = new Thread[writerCount];
+    for (int t = 0; t < writerCount; t++) {
+      final int writer = t;
+      writers[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+            for (int i = 0; i < writesPerWriter; i++) {
+              buffer.write(("<" + writer + ":" + i + ">").getBytes(), color);
+            }
+          }
+          catch (Exception e) {
+            e.printStackTrace();
+          }
+        }
+      };
+      writers[t].start();
+    }
+
+    final Set<String> results = new HashSet<String>();
+    final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    final OutputStreamWriteAdapter adapter = new OutputStreamWriteAdapter(bOutputStream);
+
+    startLatch.countDown();
+
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+    while (results.size() < writerCount * writesPerWriter && System.currentTimeMillis() < deadline) {
+      bOutputStream.reset();
+      buffer.readWait(TimeUnit.MILLISECONDS, 100, adapter, color);
+
+      final String val = new String(bOutputStream.toByteArray());
+      int st = 0;
+      for (int c = 0; c < val.length(); c++) {
+        if (val.charAt(c) == '>') {
+          final String s = val.substring(st, st = (c + 1));
+          assertTrue("malformed data: " + s, s.startsWith("<"));
+          assertTrue("duplicate data: " + s, results.add(s));
+        }
+      }
+      assertEquals("malformed data: " + val, val.length(), st);
+    }
+
+    for (final Thread writer : writers) {
+      writer.join();
+    }
+
+    assertEquals(writerCount * writesPerWriter, results.size());
+    assertEquals(buffer.getHeadSequence(), color.getSequence().get());
+  }
+
   public void testBufferCycle() throws IOException {
     final TransmissionBuffer buffer = TransmissionBuffer.create(10, 10);
 
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import junit.framework.TestCase;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.bus.server.service.ErraiServiceConfiguratorImpl;
+import org.jboss.errai.common.client.api.ErrorCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkerFactoryTests extends TestCase {
+  private ServerMessageBusImpl bus;
+  private WorkerFactory workerFactory;
+
+  private WorkerFactory createWorkerFactory(final Map<String, String> properties) {
+    final ErraiServiceConfigurator config = new ErraiServiceConfiguratorImpl();
+    ErraiConfigAttribs.AUTO_DISCOVER_SERVICES.set(config, "false");
+    ErraiConfigAttribs.ENABLE_CLUSTERING.set(config, "false");
+    ErraiConfigAttribs.BUS_BUFFER_SIZE.set(config, "2");
+    ErraiConfigAttribs.BUS_BUFFER_ALLOCATION_MODE.set(config, "heap");
+    for (final Map.Entry<String, String> entry : properties.entrySet()) {
+      config.setProperty(entry.getKey(), entry.getValue());
+    }
+
+    final MockErraiService service = new MockErraiService() {
+      @Override
+      public ServerMessageBus getBus() {
+        return bus;
+      }
+
+      @Override
+      public ErraiServiceConfigurator getConfiguration() {
+        return config;
+      }
+    };
+
+    bus = new ServerMessageBusImpl(service, config);
+    return workerFactory = new WorkerFactory(service);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (workerFactory != null) {
+      workerFactory.stopPool();
+    }
+    if (bus != null) {
+      bus.stop();
+    }
+  }
+
+  public void testMessagesOfASessionAreProcessedInOrder() throws Exception {
+    final Map<String, String> properties = new HashMap<String, String>();
+    properties.put("errai.async.thread_pool_size", "4");
+    properties.put("errai.async.delivery.queue_size", "10000");
+    createWorkerFactory(properties);
+
+    final int sessions = 8;
+    final int messagesPerSession = 500;
+    final CountDownLatch latch = new CountDownLatch(sessions * messagesPerSession);
+    final Map<String, List<Integer>> received = new HashMap<String, List<Integer>>();
+
+    bus.subscribe("OrderedService", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        final String sessionId = message.getResource(String.class, "SessionID");
+        synchronized (received) {
+          List<Integer> list = received.get(sessionId);
+          if (list == null) {
+            received.put(sessionId, list = new ArrayList<Integer>());
+          }
+          list.add(message.get(Integer.class, "Seq"));
+        }
+        latch.countDown();
+      }
+    });
+
+    for (int i = 0; i < messagesPerSession; i++) {
+      for (int s = 0; s < sessions; s++) {
+        final Message message = CommandMessage.create().toSubject("OrderedService").set("Seq", i);
+        message.setResource("SessionID", "session" + s);
+        workerFactory.deliverGlobal(message);
+      }
+    }
+
+    assertTrue("not all messages were delivered", latch.await(30, TimeUnit.SECONDS));
+
+    assertEquals(sessions, received.size());
+    for (final Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+      final List<Integer> seqs = entry.getValue();
+      assertEquals(messagesPerSession, seqs.size());
+      for (int i = 0; i < messagesPerSession; i++) {
+        assertEquals("out of order for " + entry.getKey(), Integer.valueOf(i), seqs.get(i));
+      }
+    }
+  }
+
+  public void testFailPolicyRejectsWithoutBlocking() throws Exception {
+    final Map<String, String> properties = new HashMap<String, String>();
+    properties.put("errai.async.thread_pool_size", "1");
+    properties.put("errai.async.delivery.queue_size", "1");
+    properties.put("errai.async.saturation_policy", "Fail");
+    createWorkerFactory(properties);
+
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    bus.subscribe("SlowService", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        entered.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          // fall through
+        }
+      }
+    });
+
+    try {
+      workerFactory.deliverGlobal(CommandMessage.create().toSubject("SlowService"));
+      assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+      // fills the only slot in the queue.
+      workerFactory.deliverGlobal(CommandMessage.create().toSubject("SlowService"));
+
+      final long start = System.currentTimeMillis();
+      try {
+        workerFactory.deliverGlobal(CommandMessage.create().toSubject("SlowService"));
+        fail("expected the delivery to be rejected");
+      }
+      catch (RuntimeException e) {
+        // expected
+      }
+      assertTrue("rejection should not block", System.currentTimeMillis() - start < 1000);
+    }
+    finally {
+      release.countDown();
+    }
+  }
+
+  public void testCallerRunsKeepsSessionOrderWhenSaturated() throws Exception {
+    final Map<String, String> properties = new HashMap<String, String>();
+    properties.put("errai.async.thread_pool_size", "2");
+    properties.put("errai.async.delivery.queue_size", "2");
+    createWorkerFactory(properties);
+
+    final int sessions = 4;
+    final int messagesPerSession = 200;
+    final CountDownLatch latch = new CountDownLatch(sessions * messagesPerSession);
+    final Map<String, List<Integer>> received = new HashMap<String, List<Integer>>();
+    final AtomicInteger failures = new AtomicInteger();
+    final ErrorCallback<Message> errorCallback = new ErrorCallback<Message>() {
+      @Override
+      public boolean error(final Message message, final Throwable throwable) {
+        failures.incrementAndGet();
+        latch.countDown();
+        return false;
+      }
+    };
+
+    bus.subscribe("OrderedService", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        final String sessionId = message.getResource(String.class, "SessionID");
+        synchronized (received) {
+          List<Integer> list = received.get(sessionId);
+          if (list == null) {
+            received.put(sessionId, list = new ArrayList<Integer>());
+          }
+          list.add(message.get(Integer.class, "Seq"));
+        }
+        latch.countDown();
+      }
+    });
+
+    // the tiny queues are constantly full, so most deliveries hit the saturation policy.
+    for (int i = 0; i < messagesPerSession; i++) {
+      for (int s = 0; s < sessions; s++) {
+        final Message message = CommandMessage.create().toSubject("OrderedService").set("Seq", i)
+            .errorsCall(errorCallback);
+        message.setResource("SessionID", "session" + s);
+        workerFactory.deliverGlobal(message);
+      }
+    }
+
+    assertTrue("not all messages were delivered or failed", latch.await(30, TimeUnit.SECONDS));
+
+    // the messages which could not be queued were rejected, rather than run out of order on the caller.
+    int delivered = 0;
+    for (final Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+      final List<Integer> seqs = entry.getValue();
+      for (int i = 1; i < seqs.size(); i++) {
+        assertTrue("out of order for " + entry.getKey(), seqs.get(i - 1) < seqs.get(i));
+      }
+      delivered += seqs.size();
+    }
+    assertEquals(sessions * messagesPerSession, delivered + failures.get());
+  }
+
+  public void testCallerRunsDoesNotBlockOnBusySessionWorker() throws Exception {
+    final Map<String, String> properties = new HashMap<String, String>();
+    properties.put("errai.async.thread_pool_size", "1");
+    properties.put("errai.async.delivery.queue_size", "1");
+    properties.put("errai.async.delivery.offer_timeout", "100");
+    createWorkerFactory(properties);
+
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    bus.subscribe("SlowService", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        entered.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          // fall through
+        }
+      }
+    });
+
+    final AtomicInteger failures = new AtomicInteger();
+    final ErrorCallback<Message> errorCallback = new ErrorCallback<Message>() {
+      @Override
+      public boolean error(final Message message, final Throwable throwable) {
+        failures.incrementAndGet();
+        return false;
+      }
+    };
+
+    try {
+      for (int i = 0; i < 3; i++) {
+        final Message message = CommandMessage.create().toSubject("SlowService").errorsCall(errorCallback);
+        message.setResource("SessionID", "session");
+        if (i == 0) {
+          workerFactory.deliverGlobal(message);
+          assertTrue(entered.await(10, TimeUnit.SECONDS));
+        }
+        else {
+          // the first fills the only slot in the queue; the second finds the worker saturated.
+          final long start = System.currentTimeMillis();
+          workerFactory.deliverGlobal(message);
+          assertTrue("the caller should not wait beyond the offer timeout",
+              System.currentTimeMillis() - start < 1000);
+        }
+      }
+
+      assertEquals(1, failures.get());
+    }
+    finally {
+      release.countDown();
+    }
+  }
+
+  public void testStopPoolFailsQueuedMessages() throws Exception {
+    final Map<String, String> properties = new HashMap<String, String>();
+    properties.put("errai.async.thread_pool_size", "1");
+    properties.put("errai.async.delivery.queue_size", "10");
+    createWorkerFactory(properties);
+
+    final CountDownLatch entered = new CountDownLatch(1);
+    bus.subscribe("SlowService", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        entered.countDown();
+        try {
+          new CountDownLatch(1).await();
+        }
+        catch (InterruptedException e) {
+          // released by stopping the pool.
+        }
+      }
+    });
+
+    final AtomicInteger failures = new AtomicInteger();
+    final ErrorCallback<Message> errorCallback = new ErrorCallback<Message>() {
+      @Override
+      public boolean error(final Message message, final Throwable throwable) {
+        failures.incrementAndGet();
+        return false;
+      }
+    };
+
+    workerFactory.deliverGlobal(CommandMessage.create().toSubject("SlowService"));
+    assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+    for (int i = 0; i < 3; i++) {
+      workerFactory.deliverGlobal(CommandMessage.create().toSubject("SlowService").errorsCall(errorCallback));
+    }
+
+    workerFactory.stopPool();
+    workerFactory = null;
+
+    assertEquals(3, failures.get());
+  }
+}
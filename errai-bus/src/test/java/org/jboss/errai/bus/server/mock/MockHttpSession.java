@@ -20,7 +20,10 @@ import org.jboss.errai.bus.server.util.SecureHashUtil;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
 import javax.servlet.http.HttpSessionContext;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -129,7 +132,10 @@ public class MockHttpSession implements HttpSession{
 
   @Override
   public void removeAttribute(String s) {
-    attributeMap.remove(s);
+    final Object o = attributeMap.remove(s);
+    if (o instanceof HttpSessionBindingListener) {
+      ((HttpSessionBindingListener) o).valueUnbound(new HttpSessionBindingEvent(this, s, o));
+    }
   }
 
   @Override
@@ -140,6 +146,9 @@ public class MockHttpSession implements HttpSession{
   @Override
   public void invalidate() {
     valid = false;
+    for (final String s : new ArrayList<String>(attributeMap.keySet())) {
+      removeAttribute(s);
+    }
   }
 
   @Override
@@ -18,6 +18,7 @@ package org.jboss.errai.cdi.server.events;
 import static org.jboss.errai.enterprise.client.cdi.api.CDI.getSubjectNameByType;
 
 import java.lang.annotation.Annotation;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -30,6 +31,7 @@ import javax.inject.Qualifier;
 
 import org.jboss.errai.bus.client.api.base.CommandMessage;
 import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.enterprise.client.cdi.CDICommands;
 import org.jboss.errai.enterprise.client.cdi.CDIProtocol;
@@ -131,8 +133,16 @@ public class DynamicEventObserverMethod implements ObserverMethod {
       bus.send(CommandMessage.createWithParts(messageParts));
     }
     else {
-      for (final String id : eventRoutingTable.getQueueIdsForRoute(event.getClass().getName(), annotationTypes)) {
-        bus.send(CommandMessage.createWithParts(new RoutingMap(messageParts, id)));
+      final Collection<String> queueIds = eventRoutingTable.getQueueIdsForRoute(aClass.getName(), annotationTypes);
+
+      if (queueIds.size() > 1 && bus instanceof ServerMessageBus) {
+        // encode the event once and share the payload between all the target queues.
+        ((ServerMessageBus) bus).sendToSessions(CommandMessage.createWithParts(messageParts), queueIds);
+      }
+      else {
+        for (final String id : queueIds) {
+          bus.send(CommandMessage.createWithParts(new RoutingMap(messageParts, id)));
+        }
       }
     }
   }
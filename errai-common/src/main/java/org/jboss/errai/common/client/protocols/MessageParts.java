@@ -123,5 +123,11 @@ public enum MessageParts {
 
   WebSocketURL,
 
-  WebSocketToken
+  WebSocketToken,
+
+  /**
+   * The format of the frames on a web socket channel. The server advertises <tt>Binary</tt> if it accepts batched
+   * binary frames, and the client asks for them by echoing the value when it associates the channel.
+   */
+  WebSocketFrameFormat
 }
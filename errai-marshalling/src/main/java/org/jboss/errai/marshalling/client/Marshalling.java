@@ -107,10 +107,28 @@ public abstract class Marshalling {
    * @return The JSON representation of the given object and all nested properties reachable from
    *         it.
    */
-  public static String toJSON(Object obj) {
+  public static String toJSON(final Object obj) {
+    final StringBuilder buf = new StringBuilder();
+    toJSON(buf, obj);
+    return buf.toString();
+  }
+
+  /**
+   * Appends a JSON representation of the given object to the given buffer, recursively including
+   * all of its nested attributes. Marshallers which support streaming write directly into the
+   * buffer.
+   * 
+   * @param buf
+   *          the buffer to append the JSON representation to.
+   * @param obj
+   *          The object to marshall. Should be of a type for which {@link #canHandle(Class)}
+   *          returns true. Null is permitted.
+   */
+  public static void toJSON(final StringBuilder buf, Object obj) {
     if (obj == null) {
-      return "{\"" + SerializationParts.ENCODED_TYPE + "\":\"java.lang.Object\",\""
-              + SerializationParts.QUALIFIED_VALUE + "\":null}";
+      buf.append("{\"").append(SerializationParts.ENCODED_TYPE).append("\":\"java.lang.Object\",\"")
+              .append(SerializationParts.QUALIFIED_VALUE).append("\":null}");
+      return;
     }
 
     final MarshallingSession session = MarshallingSessionProviderFactory.getEncoding();
@@ -118,14 +136,14 @@ public abstract class Marshalling {
     obj = MarshallUtil.maybeUnwrap(obj);
 
     if (needsQualification(obj)) {
-      return NumbersUtils.qualifiedNumericEncoding(obj);
+      buf.append(NumbersUtils.qualifiedNumericEncoding(obj));
     }
     else {
       final Marshaller<Object> marshaller = MarshallUtil.getMarshaller(obj, session);
       if (marshaller == null) {
         throw new RuntimeException("No marshaller for type: " + obj.getClass().getName());
       }
-      return marshaller.marshall(obj, session);
+      MarshallUtil.marshall(marshaller, obj, buf, session);
     }
   }
 
@@ -141,7 +159,12 @@ public abstract class Marshalling {
    * 
    */
   public static void toJSON(final Appendable appendTo, final Object obj) throws IOException {
-    appendTo.append(toJSON(obj));
+    if (appendTo instanceof StringBuilder) {
+      toJSON((StringBuilder) appendTo, obj);
+    }
+    else {
+      appendTo.append(toJSON(obj));
+    }
   }
 
   /**
@@ -16,8 +16,11 @@
 
 package org.jboss.errai.marshalling.client.api;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.jboss.errai.common.client.api.Assert;
@@ -36,6 +39,10 @@ public abstract class AbstractMarshallingSession implements MarshallingSession {
   private String assumedMapKeyType = null;
   private String assumedMapValueType = null;
 
+  private boolean compactTypeEncoding;
+  private List<String> typeTable;
+  private Map<String, Integer> typeIndexes;
+
   protected AbstractMarshallingSession(final MappingContext context) {
     this.context = Assert.notNull(context);
   }
@@ -115,6 +122,54 @@ public abstract class AbstractMarshallingSession implements MarshallingSession {
     return i.toString();
   }
 
+  @Override
+  public boolean isCompactTypeEncoding() {
+    return compactTypeEncoding;
+  }
+
+  @Override
+  public void setCompactTypeEncoding(final boolean compactTypeEncoding) {
+    this.compactTypeEncoding = compactTypeEncoding;
+  }
+
+  @Override
+  public int getTypeIndex(final String fqcn) {
+    if (typeIndexes == null) {
+      typeIndexes = new HashMap<String, Integer>();
+    }
+
+    Integer i = typeIndexes.get(fqcn);
+    if (i == null) {
+      addToTypeTable(fqcn);
+      i = typeTable.size() - 1;
+    }
+    return i;
+  }
+
+  @Override
+  public String getTypeName(final int index) {
+    if (typeTable == null || index < 0 || index >= typeTable.size()) {
+      throw new IllegalArgumentException("no type with index " + index + " in the type table");
+    }
+    return typeTable.get(index);
+  }
+
+  @Override
+  public List<String> getTypeTable() {
+    return typeTable == null ? Collections.<String>emptyList() : typeTable;
+  }
+
+  @Override
+  public void addToTypeTable(final String fqcn) {
+    if (typeTable == null) {
+      typeTable = new ArrayList<String>();
+    }
+    if (typeIndexes != null) {
+      typeIndexes.put(fqcn, typeTable.size());
+    }
+    typeTable.add(fqcn);
+  }
+
   @Override
   public String getAssumedElementType() {
     return this.assumedElementType;
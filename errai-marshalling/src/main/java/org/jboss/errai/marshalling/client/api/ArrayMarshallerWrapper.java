@@ -32,6 +32,11 @@ public class ArrayMarshallerWrapper extends AbstractNullableMarshaller<Object> {
         o.getClass().getName(), ctx);
   }
 
+  @Override
+  public void doNotNullMarshall(final Object o, final StringBuilder buf, final MarshallingSession ctx) {
+    ListMarshaller.INSTANCE.marshall(Arrays.asList((Object[]) o), o.getClass().getName(), buf, ctx);
+  }
+
   @Override
   public Object[] getEmptyArray() {
     throw new UnsupportedOperationException("Not implemented, but should create an array with n+1 dimensions");
@@ -18,12 +18,12 @@ package org.jboss.errai.marshalling.client.api;
 
 /**
  * Represents a marshaller that is generated at rebind time (i.e. all marshallers for custom
- * portable types) as opposed to the built-in marshallers.
+ * portable types) as opposed to the built-in marshallers. Generated marshallers always support streaming.
  * 
  * @author Christian Sadilek <csadilek@redhat.com>
  * 
  * @param <T>
  */
-public interface GeneratedMarshaller<T> extends Marshaller<T> {
+public interface GeneratedMarshaller<T> extends StreamingMarshaller<T> {
 
 }
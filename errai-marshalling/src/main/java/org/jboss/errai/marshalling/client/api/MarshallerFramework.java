@@ -26,6 +26,7 @@ import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.api.json.impl.gwt.GWTJSON;
 import org.jboss.errai.marshalling.client.protocols.MarshallingSessionProvider;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 
 import com.google.gwt.core.client.EntryPoint;
 import com.google.gwt.core.client.GWT;
@@ -111,7 +112,7 @@ public class MarshallerFramework implements EntryPoint {
       if (((EJValue) o).isObject() != null) {
         final EJObject jsonObject = ((EJValue) o).isObject();
         if (jsonObject.containsKey(SerializationParts.ENCODED_TYPE)) {
-          return jsonObject.get(SerializationParts.ENCODED_TYPE).isString().stringValue();
+          return MarshallUtil.getEncodedType(jsonObject, this);
         }
         else {
           return Map.class.getName();
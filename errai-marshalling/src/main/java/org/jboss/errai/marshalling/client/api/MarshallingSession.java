@@ -16,6 +16,8 @@
 
 package org.jboss.errai.marshalling.client.api;
 
+import java.util.List;
+
 /**
  * @author Mike Brock <cbrock@redhat.com>
  */
@@ -91,6 +93,42 @@ public interface MarshallingSession {
    */
   public <T> T getObject(Class<T> type, String hashCode);
 
+  /**
+   * Returns true if this session writes the compact encoding, in which the types of the marshalled objects are
+   * referred to by their index in the type table of the payload, and object ids are written as numbers.
+   */
+  public boolean isCompactTypeEncoding();
+
+  public void setCompactTypeEncoding(boolean compactTypeEncoding);
+
+  /**
+   * Returns the index of the specified type in the type table of this session, adding it to the table if it is not
+   * in it yet.
+   *
+   * @param fqcn
+   *          fully qualified class name of the type
+   * @return the index of the type within this session
+   */
+  public int getTypeIndex(String fqcn);
+
+  /**
+   * Looks up a type by its index in the type table of this session.
+   *
+   * @param index
+   *          the index of the type
+   * @return the fully qualified class name of the type
+   * @throws IllegalArgumentException
+   *           if there is no type with the specified index in the table
+   */
+  public String getTypeName(int index);
+
+  /**
+   * Returns the types referred to by index within this session, in the order of their indexes.
+   */
+  public List<String> getTypeTable();
+
+  public void addToTypeTable(String fqcn);
+
   public String getAssumedElementType();
 
   public void setAssumedElementType(String assumedElementType);
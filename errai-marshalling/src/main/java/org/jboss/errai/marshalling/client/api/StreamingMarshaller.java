@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.client.api;
+
+/**
+ * A {@link Marshaller} which can write its JSON representation directly into a buffer shared with the rest of the
+ * payload. Composite marshallers stream their elements into the same buffer when the element marshallers support it
+ * (see {@link org.jboss.errai.marshalling.client.util.MarshallUtil#marshall(Marshaller, Object, StringBuilder,
+ * MarshallingSession)}), so encoding a whole object graph appends to one buffer rather than building and copying an
+ * intermediate string for every nested object.
+ * <p/>
+ * {@link #marshall(Object, MarshallingSession)} remains available and is expected to produce the same output.
+ *
+ * @param <T>
+ *     the type handled by this marshaller.
+ */
+public interface StreamingMarshaller<T> extends Marshaller<T> {
+
+  /**
+   * Appends the JSON representation of the specified object to the specified buffer.
+   *
+   * @param o
+   *     the object to marshall, may be null.
+   * @param buf
+   *     the buffer to append to.
+   * @param ctx
+   *     the marshalling session.
+   */
+  void marshall(T o, StringBuilder buf, MarshallingSession ctx);
+}
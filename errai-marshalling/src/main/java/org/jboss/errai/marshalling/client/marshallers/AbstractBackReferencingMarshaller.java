@@ -17,15 +17,16 @@
 package org.jboss.errai.marshalling.client.marshallers;
 
 import org.jboss.errai.common.client.protocols.SerializationParts;
-import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 
 /**
  * @author Mike Brock
  */
-public abstract class AbstractBackReferencingMarshaller<C> implements Marshaller<C> {
+public abstract class AbstractBackReferencingMarshaller<C> implements StreamingMarshaller<C> {
 
   @Override
   public final String marshall(final C o, final MarshallingSession ctx) {
@@ -41,20 +42,37 @@ public abstract class AbstractBackReferencingMarshaller<C> implements Marshaller
       return "null";
     }
 
+    final StringBuilder buf = new StringBuilder();
+    marshall(o, encodedType, buf, ctx);
+    return buf.toString();
+  }
+
+  @Override
+  public final void marshall(final C o, final StringBuilder buf, final MarshallingSession ctx) {
+    if (o == null) {
+      buf.append("null");
+      return;
+    }
+
+    marshall(o, o.getClass().getName(), buf, ctx);
+  }
+
+  public final void marshall(final C o, final String encodedType, final StringBuilder buf,
+                             final MarshallingSession ctx) {
+    if (o == null) {
+      buf.append("null");
+      return;
+    }
+
     final boolean isNew = !ctx.hasObject(o);
     final String objId = ctx.getObject(o);
 
-    final StringBuilder buf = new StringBuilder("{\"").append(SerializationParts.ENCODED_TYPE).append("\":\"")
-            .append(encodedType).append("\",\"").append(SerializationParts.OBJECT_ID).append("\":\"")
-            .append(objId).append("\"");
+    MarshallUtil.appendObjectHeader(buf, encodedType, objId, ctx);
 
-    if (!isNew) {
-      return buf.append("}").toString();
-    }
-    else {
+    if (isNew) {
       doMarshall(buf.append(",\"").append(SerializationParts.QUALIFIED_VALUE).append("\":"), o, ctx);
-      return buf.append("}").toString();
     }
+    buf.append("}");
   }
 
   public abstract void doMarshall(StringBuilder buf, C o, MarshallingSession ctx);
@@ -68,7 +86,7 @@ public abstract class AbstractBackReferencingMarshaller<C> implements Marshaller
 
     final EJObject obj = o.isObject();
 
-    final String objId = obj.get(SerializationParts.OBJECT_ID).isString().stringValue();
+    final String objId = MarshallUtil.getObjectId(obj);
     if (ctx.hasObject(objId)) {
       return (C) ctx.getObject(Object.class, objId);
     }
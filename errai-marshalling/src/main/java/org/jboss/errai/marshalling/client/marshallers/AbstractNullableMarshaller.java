@@ -1,7 +1,7 @@
 package org.jboss.errai.marshalling.client.marshallers;
 
-import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 
 /**
@@ -9,7 +9,7 @@ import org.jboss.errai.marshalling.client.api.json.EJValue;
  *
  * @author Mike Brock
  */
-public abstract class AbstractNullableMarshaller<T> implements Marshaller<T> {
+public abstract class AbstractNullableMarshaller<T> implements StreamingMarshaller<T> {
   @Override
   public final T demarshall(final EJValue o, final MarshallingSession ctx) {
     if (o.isNull()) {
@@ -30,7 +30,25 @@ public abstract class AbstractNullableMarshaller<T> implements Marshaller<T> {
     }
   }
 
+  @Override
+  public final void marshall(final T o, final StringBuilder buf, final MarshallingSession ctx) {
+    if (o == null) {
+      buf.append("null");
+    }
+    else {
+      doNotNullMarshall(o, buf, ctx);
+    }
+  }
+
   public abstract T doNotNullDemarshall(EJValue o, MarshallingSession ctx);
 
   public abstract String doNotNullMarshall(T o, MarshallingSession ctx);
+
+  /**
+   * Appends the encoding of a non-null object to the buffer. Marshallers which nest other objects override this to
+   * stream them into the same buffer.
+   */
+  public void doNotNullMarshall(final T o, final StringBuilder buf, final MarshallingSession ctx) {
+    buf.append(doNotNullMarshall(o, ctx));
+  }
 }
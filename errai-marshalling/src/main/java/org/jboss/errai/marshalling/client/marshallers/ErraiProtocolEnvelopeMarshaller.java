@@ -20,9 +20,11 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.common.client.protocols.SerializationParts;
 import org.jboss.errai.marshalling.client.Marshalling;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.util.MarshallUtil;
@@ -31,7 +33,7 @@ import org.jboss.errai.marshalling.client.util.MarshallUtil;
  * @author Mike Brock
  * @author Christian Sadilek <csadilek@redhat.com>
  */
-public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, Object>> {
+public class ErraiProtocolEnvelopeMarshaller implements StreamingMarshaller<Map<String, Object>> {
   public static final ErraiProtocolEnvelopeMarshaller INSTANCE = new ErraiProtocolEnvelopeMarshaller();
 
   @Override
@@ -43,9 +45,10 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
                                              final EJValue o,
                                              final MarshallingSession ctx) {
     final EJObject jsonObject = o.isObject();
+    MarshallUtil.readTypeTable(jsonObject, ctx);
 
     for (final String key : jsonObject.keySet()) {
-      if (MessageParts.SessionID.name().equals(key))
+      if (MessageParts.SessionID.name().equals(key) || SerializationParts.TYPE_TABLE.equals(key))
         continue;
       final EJValue v = jsonObject.get(key);
       if (!v.isNull()) {
@@ -71,7 +74,12 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
   @Override
   public String marshall(final Map<String, Object> o, final MarshallingSession ctx) {
     final StringBuilder buf = new StringBuilder();
+    marshall(o, buf, ctx);
+    return buf.toString();
+  }
 
+  @Override
+  public void marshall(final Map<String, Object> o, final StringBuilder buf, final MarshallingSession ctx) {
     buf.append("{");
     Object key, val;
     int i = 0;
@@ -100,11 +108,12 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
           valueMarshaller = MarshallUtil.getMarshaller(val, ctx);
         }
         
-        buf.append(valueMarshaller.marshall(MarshallUtil.maybeUnwrap(val), ctx));
+        MarshallUtil.marshall(valueMarshaller, MarshallUtil.maybeUnwrap(val), buf, ctx);
       }
     }
 
-    return buf.append("}").toString();
+    MarshallUtil.appendTypeTable(buf, ctx);
+    buf.append("}");
   }
 
   @Override
@@ -22,8 +22,10 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jboss.errai.common.client.api.WrappedPortable;
+import org.jboss.errai.common.client.protocols.SerializationParts;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.util.MarshallUtil;
@@ -32,7 +34,7 @@ import org.jboss.errai.marshalling.client.util.MarshallUtil;
  * @author Mike Brock
  * @author Christian Sadilek <csadilek@redhat.com>
  */
-public class ErraiProtocolEnvelopeNoAutoMarshaller implements Marshaller<Map<String, Object>> {
+public class ErraiProtocolEnvelopeNoAutoMarshaller implements StreamingMarshaller<Map<String, Object>> {
   public static final ErraiProtocolEnvelopeNoAutoMarshaller INSTANCE = new ErraiProtocolEnvelopeNoAutoMarshaller();
 
   @Override
@@ -45,7 +47,11 @@ public class ErraiProtocolEnvelopeNoAutoMarshaller implements Marshaller<Map<Str
     if (jsonObject == null)
       return null;
 
+    MarshallUtil.readTypeTable(jsonObject, ctx);
+
     for (final String key : jsonObject.keySet()) {
+      if (SerializationParts.TYPE_TABLE.equals(key))
+        continue;
       final EJValue v = jsonObject.get(key);
       if (!v.isNull()) {
         final String type = ctx.determineTypeFor(null, v);
@@ -68,7 +74,12 @@ public class ErraiProtocolEnvelopeNoAutoMarshaller implements Marshaller<Map<Str
   @Override
   public String marshall(final Map<String, Object> o, final MarshallingSession ctx) {
     final StringBuilder buf = new StringBuilder();
+    marshall(o, buf, ctx);
+    return buf.toString();
+  }
 
+  @Override
+  public void marshall(final Map<String, Object> o, final StringBuilder buf, final MarshallingSession ctx) {
     buf.append("{");
     Object key, val;
     int i = 0;
@@ -105,11 +116,12 @@ public class ErraiProtocolEnvelopeNoAutoMarshaller implements Marshaller<Map<Str
         if (val instanceof WrappedPortable) {
           val = ((WrappedPortable) val).unwrap();
         }
-        buf.append(valueMarshaller.marshall(val, ctx));
+        MarshallUtil.marshall(valueMarshaller, val, buf, ctx);
       }
     }
 
-    return buf.append("}").toString();
+    MarshallUtil.appendTypeTable(buf, ctx);
+    buf.append("}");
   }
 
   @Override
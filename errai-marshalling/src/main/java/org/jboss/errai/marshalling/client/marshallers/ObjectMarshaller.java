@@ -17,6 +17,7 @@
 package org.jboss.errai.marshalling.client.marshallers;
 
 import org.jboss.errai.common.client.protocols.SerializationParts;
+import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
 import org.jboss.errai.marshalling.client.api.annotations.ClientMarshaller;
 import org.jboss.errai.marshalling.client.api.annotations.ServerMarshaller;
@@ -48,11 +49,7 @@ public class ObjectMarshaller extends AbstractNullableMarshaller<Object> {
 
     if (o.isObject() != null) {
       final EJObject jsObject = o.isObject();
-      final EJValue ejEncType = jsObject.get(SerializationParts.ENCODED_TYPE);
-      String encodedType = null;
-      if (!ejEncType.isNull() && ejEncType.isString() != null) {
-        encodedType = ejEncType.isString().stringValue();
-      }
+      final String encodedType = MarshallUtil.getEncodedType(jsObject, ctx);
 
       if (encodedType == null) {
         if (targetType == null) {
@@ -106,14 +103,23 @@ public class ObjectMarshaller extends AbstractNullableMarshaller<Object> {
 
   @Override
   public String doNotNullMarshall(final Object o, final MarshallingSession ctx) {
+    final StringBuilder buf = new StringBuilder();
+    doNotNullMarshall(o, buf, ctx);
+    return buf.toString();
+  }
+
+  @Override
+  public void doNotNullMarshall(final Object o, final StringBuilder buf, final MarshallingSession ctx) {
     if ((o instanceof Number && !o.getClass().getName().startsWith("java.math.Big")) || o instanceof Boolean) {
-      return NumbersUtils.qualifiedNumericEncoding(o);
+      buf.append(NumbersUtils.qualifiedNumericEncoding(o));
+      return;
     }
 
-    if (MarshallUtil.getMarshaller(o, ctx) == null) {
+    final Marshaller<Object> marshaller = MarshallUtil.getMarshaller(o, ctx);
+    if (marshaller == null) {
       throw new RuntimeException("marshalled type is unknown to the marshalling framework: " + o.getClass().getName());
     }
 
-    return MarshallUtil.getMarshaller(o, ctx).marshall(o, ctx);
+    MarshallUtil.marshall(marshaller, o, buf, ctx);
   }
 }
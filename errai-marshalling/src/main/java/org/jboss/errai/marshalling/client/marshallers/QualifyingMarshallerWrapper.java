@@ -22,6 +22,7 @@ import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 
 /**
  * Used to wrap marshallers annotated with {@link org.jboss.errai.marshalling.client.api.annotations.AlwaysQualify}
@@ -48,7 +49,7 @@ public class QualifyingMarshallerWrapper<T> extends AbstractNullableMarshaller<T
     final EJObject obj = o.isObject();
 
     if (obj != null) {
-      final String objId = obj.get(SerializationParts.OBJECT_ID).isString().stringValue();
+      final String objId = MarshallUtil.getObjectId(obj);
       if (ctx.hasObject(objId)) {
         // noinspection unchecked
         return (T) ctx.getObject(Object.class, objId);
@@ -78,19 +79,21 @@ public class QualifyingMarshallerWrapper<T> extends AbstractNullableMarshaller<T
 
   @Override
   public String doNotNullMarshall(final T o, final MarshallingSession ctx) {
+    final StringBuilder buf = new StringBuilder();
+    doNotNullMarshall(o, buf, ctx);
+    return buf.toString();
+  }
+
+  @Override
+  public void doNotNullMarshall(final T o, final StringBuilder buf, final MarshallingSession ctx) {
     final boolean isNew = !ctx.hasObject(o);
 
-    final StringBuilder buf = new StringBuilder("{\"").append(SerializationParts.ENCODED_TYPE).append("\":\"")
-            .append(o.getClass().getName()).append("\",\"").append(SerializationParts.OBJECT_ID).append("\":\"")
-            .append(ctx.getObject(o)).append("\"");
+    MarshallUtil.appendObjectHeader(buf, o.getClass().getName(), ctx.getObject(o), ctx);
 
-    if (!isNew) {
-      return buf.append("}").toString();
-    }
-    else {
-      return buf.append(",\"").append(SerializationParts.QUALIFIED_VALUE).append("\":").append(
-          delegate.marshall(o, ctx))
-              .append("}").toString();
+    if (isNew) {
+      buf.append(",\"").append(SerializationParts.QUALIFIED_VALUE).append("\":");
+      MarshallUtil.marshall(delegate, o, buf, ctx);
     }
+    buf.append("}");
   }
 }
@@ -44,4 +44,11 @@ public class StringMarshaller extends AbstractNullableMarshaller<String> {
   public String doNotNullMarshall(final String o, final MarshallingSession ctx) {
     return "\"" + MarshallUtil.jsonStringEscape(o) + "\"";
   }
+
+  @Override
+  public void doNotNullMarshall(final String o, final StringBuilder buf, final MarshallingSession ctx) {
+    buf.append('"');
+    MarshallUtil.jsonStringEscape(buf, o);
+    buf.append('"');
+  }
 }
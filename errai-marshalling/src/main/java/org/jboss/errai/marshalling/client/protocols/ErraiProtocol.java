@@ -17,6 +17,7 @@
 package org.jboss.errai.marshalling.client.protocols;
 
 import org.jboss.errai.marshalling.client.MarshallingSessionProviderFactory;
+import org.jboss.errai.marshalling.client.api.MarshallingSession;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.marshallers.ErraiProtocolEnvelopeMarshaller;
 
@@ -37,7 +38,50 @@ public class ErraiProtocol {
    * @return The encoded JSON
    */
   public static String encodePayload(final Map<String, Object> message) {
-    return protocolMarshaller.marshall(message, MarshallingSessionProviderFactory.getEncoding());
+    return encodePayload(message, false);
+  }
+
+  /**
+   * Encode a standard Errai Protocol payload of the key-value pairs to be sent across the wire, optionally using the
+   * compact type encoding. In the compact encoding, the types of the marshalled objects are listed once in a type
+   * table of the payload and referred to by index, and object ids are written as numbers. It may only be used if the
+   * receiving end is known to support it.
+   *
+   * @param message A map of the key-value pairs to be encoded.
+   * @param compactTypeEncoding true if the compact type encoding should be used.
+   * @return The encoded JSON
+   */
+  public static String encodePayload(final Map<String, Object> message, final boolean compactTypeEncoding) {
+    final StringBuilder buf = new StringBuilder();
+    encodePayload(buf, message, compactTypeEncoding);
+    return buf.toString();
+  }
+
+  /**
+   * Encode a standard Errai Protocol payload of the key-value pairs to be sent across the wire, appending it to the
+   * specified buffer. All nested objects are written into the same buffer.
+   *
+   * @param buf The buffer to append the encoded JSON to.
+   * @param message A map of the key-value pairs to be encoded.
+   */
+  public static void encodePayload(final StringBuilder buf, final Map<String, Object> message) {
+    encodePayload(buf, message, false);
+  }
+
+  /**
+   * Encode a standard Errai Protocol payload of the key-value pairs to be sent across the wire, appending it to the
+   * specified buffer, and optionally using the compact type encoding.
+   *
+   * @param buf The buffer to append the encoded JSON to.
+   * @param message A map of the key-value pairs to be encoded.
+   * @param compactTypeEncoding true if the compact type encoding should be used.
+   * @see #encodePayload(Map, boolean)
+   */
+  public static void encodePayload(final StringBuilder buf, final Map<String, Object> message,
+                                   final boolean compactTypeEncoding) {
+    final MarshallingSession session = MarshallingSessionProviderFactory.getEncoding();
+    session.setCompactTypeEncoding(compactTypeEncoding);
+    protocolMarshaller.marshall(message, buf, session);
   }
 
   /**
@@ -20,6 +20,8 @@ import org.jboss.errai.common.client.api.WrappedPortable;
 import org.jboss.errai.common.client.protocols.SerializationParts;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
+import org.jboss.errai.marshalling.client.api.json.EJArray;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.marshallers.FallbackExceptionMarshaller;
@@ -52,12 +54,31 @@ public class MarshallUtil {
     };
   }
 
+  /**
+   * Appends the JSON representation of the specified object to the buffer, streaming it if the marshaller supports
+   * it, and falling back to appending the string returned by {@link Marshaller#marshall(Object, MarshallingSession)}
+   * otherwise.
+   */
+  public static <T> void marshall(final Marshaller<T> marshaller, final T o, final StringBuilder buf,
+                                  final MarshallingSession ctx) {
+    if (marshaller instanceof StreamingMarshaller) {
+      ((StreamingMarshaller<T>) marshaller).marshall(o, buf, ctx);
+    }
+    else {
+      buf.append(marshaller.marshall(o, ctx));
+    }
+  }
+
   public static String jsonStringEscape(final String s) {
     final StringBuilder sb = new StringBuilder(s.length());
+    jsonStringEscape(sb, s);
+    return sb.toString();
+  }
+
+  public static void jsonStringEscape(final StringBuilder sb, final String s) {
     for (int i = 0; i < s.length(); i++) {
       jsonStringEscape(sb, s.charAt(i));
     }
-    return sb.toString();
   }
 
   public static String jsonStringEscape(final char ch) {
@@ -145,6 +166,108 @@ public class MarshallUtil {
     return value.containsKey(SerializationParts.NUMERIC_VALUE);
   }
 
+  /**
+   * Appends the opening brace of an encoded object, followed by its type and object id. In a session using the
+   * compact type encoding, the type is written as its index in the type table of the payload, and the id as a number.
+   */
+  public static void appendObjectHeader(final StringBuilder buf, final String encodedType, final String objId,
+                                        final MarshallingSession ctx) {
+    buf.append('{');
+    appendEncodedType(buf, encodedType, ctx);
+    buf.append(",\"").append(SerializationParts.OBJECT_ID).append("\":");
+    if (ctx.isCompactTypeEncoding()) {
+      buf.append(objId);
+    }
+    else {
+      buf.append('"').append(objId).append('"');
+    }
+  }
+
+  public static void appendEncodedType(final StringBuilder buf, final String encodedType,
+                                       final MarshallingSession ctx) {
+    buf.append('"').append(SerializationParts.ENCODED_TYPE).append("\":");
+    if (ctx.isCompactTypeEncoding()) {
+      buf.append(ctx.getTypeIndex(encodedType));
+    }
+    else {
+      buf.append('"').append(encodedType).append('"');
+    }
+  }
+
+  public static void appendEnum(final StringBuilder buf, final Enum<?> value, final String encodedType,
+                                final MarshallingSession ctx) {
+    if (value == null) {
+      buf.append("null");
+      return;
+    }
+
+    buf.append('{');
+    appendEncodedType(buf, encodedType, ctx);
+    buf.append(",\"").append(SerializationParts.ENUM_STRING_VALUE).append("\":\"").append(value.name()).append("\"}");
+  }
+
+  /**
+   * Appends the type table of a payload encoded with the compact type encoding, as a member of the enclosing object.
+   * Nothing is appended if no types were referred to by index.
+   */
+  public static void appendTypeTable(final StringBuilder buf, final MarshallingSession ctx) {
+    if (!ctx.isCompactTypeEncoding() || ctx.getTypeTable().isEmpty()) {
+      return;
+    }
+
+    buf.append(",\"").append(SerializationParts.TYPE_TABLE).append("\":[");
+    boolean first = true;
+    for (final String type : ctx.getTypeTable()) {
+      if (!first) {
+        buf.append(',');
+      }
+      buf.append('"').append(type).append('"');
+      first = false;
+    }
+    buf.append(']');
+  }
+
+  /**
+   * Reads the type table of a payload into the session, so the types referred to by index can be resolved.
+   */
+  public static void readTypeTable(final EJObject payload, final MarshallingSession ctx) {
+    if (!payload.containsKey(SerializationParts.TYPE_TABLE)) {
+      return;
+    }
+
+    final EJArray types = payload.get(SerializationParts.TYPE_TABLE).isArray();
+    for (int i = 0; i < types.size(); i++) {
+      ctx.addToTypeTable(types.get(i).isString().stringValue());
+    }
+  }
+
+  /**
+   * Returns the type of an encoded object, which is either spelled out or refers to the type table of the session.
+   *
+   * @return the fully qualified class name of the type, or null if the object has none.
+   */
+  public static String getEncodedType(final EJObject value, final MarshallingSession ctx) {
+    final EJValue type = value.get(SerializationParts.ENCODED_TYPE);
+    if (type.isString() != null) {
+      return type.isString().stringValue();
+    }
+    else if (type.isNumber() != null) {
+      return ctx.getTypeName(type.isNumber().intValue());
+    }
+    return null;
+  }
+
+  /**
+   * Returns the object id of an encoded object, which is written either as a string or as a number.
+   */
+  public static String getObjectId(final EJObject value) {
+    final EJValue id = value.get(SerializationParts.OBJECT_ID);
+    if (id.isNumber() != null) {
+      return String.valueOf(id.isNumber().intValue());
+    }
+    return id.isString().stringValue();
+  }
+
   /**
    * Returns the canonical class name of the component type of the given array type.
    *
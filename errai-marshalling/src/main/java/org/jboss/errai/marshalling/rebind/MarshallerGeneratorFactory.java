@@ -58,10 +58,12 @@ import org.jboss.errai.marshalling.client.api.GeneratedMarshaller;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallerFactory;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.annotations.AlwaysQualify;
 import org.jboss.errai.marshalling.client.api.json.EJArray;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.marshallers.QualifyingMarshallerWrapper;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 import org.jboss.errai.marshalling.rebind.api.ArrayMarshallerCallback;
 import org.jboss.errai.marshalling.rebind.api.GeneratorMappingContext;
 import org.jboss.errai.marshalling.rebind.api.GeneratorMappingContextFactory;
@@ -455,7 +457,7 @@ public class MarshallerGeneratorFactory {
 
     final ClassStructureBuilder<?> classStructureBuilder =
         ClassBuilder.define(marshallerClassName).publicScope().
-            implementsInterface(parameterizedAs(Marshaller.class, typeParametersOf(arrayType))).body();
+            implementsInterface(parameterizedAs(StreamingMarshaller.class, typeParametersOf(arrayType))).body();
 
     BlockBuilder<?> initMethod = null;
     if (gwtTarget) {
@@ -484,6 +486,22 @@ public class MarshallerGeneratorFactory {
 
     arrayDemarshallCode(toMap, dimensions, classStructureBuilder, initMethod);
 
+    final BlockBuilder<?> streamingMethodBlock = classStructureBuilder.publicMethod(void.class, "marshall",
+        Parameter.of(toMap.asArrayOf(dimensions), "a0"), Parameter.of(StringBuilder.class, "sb"),
+        Parameter.of(MarshallingSession.class, "a1"));
+
+    streamingMethodBlock.append(
+        If.isNull(loadVariable("a0"))
+            .append(Stmt.loadVariable("sb").invoke("append", "null"))
+            .finish()
+            .else_()
+            .append(Stmt.nestedCall(Stmt.loadVariable("this")).invoke("_marshall" + dimensions,
+                loadVariable("a0"), loadVariable("sb"), loadVariable("a1")))
+            .finish()
+        );
+
+    streamingMethodBlock.finish();
+
     final BlockBuilder<?> marshallMethodBlock = classStructureBuilder.publicMethod(String.class, "marshall",
         Parameter.of(toMap.asArrayOf(dimensions), "a0"), Parameter.of(MarshallingSession.class, "a1"));
 
@@ -491,11 +509,12 @@ public class MarshallerGeneratorFactory {
         If.isNull(loadVariable("a0"))
             .append(Stmt.load(null).returnValue())
             .finish()
-            .else_()
-            .append(Stmt.nestedCall(Stmt.loadVariable("this")).invoke("_marshall" + dimensions,
-                loadVariable("a0"), loadVariable("a1")).returnValue())
-            .finish()
         );
+    marshallMethodBlock.append(Stmt.declareFinalVariable("sb", StringBuilder.class,
+        Stmt.newObject(StringBuilder.class)));
+    marshallMethodBlock.append(Stmt.nestedCall(Stmt.loadVariable("this")).invoke("_marshall" + dimensions,
+        loadVariable("a0"), loadVariable("sb"), loadVariable("a1")));
+    marshallMethodBlock.append(Stmt.loadVariable("sb").invoke("toString").returnValue());
 
     marshallMethodBlock.finish();
     
@@ -559,8 +578,8 @@ public class MarshallerGeneratorFactory {
 
     dmBuilder.finish();
 
-    final BlockBuilder<?> mBuilder = classBuilder.privateMethod(String.class, "_marshall" + dim)
-        .parameters(arrayType, MarshallingSession.class).body();
+    final BlockBuilder<?> mBuilder = classBuilder.privateMethod(void.class, "_marshall" + dim)
+        .parameters(arrayType, StringBuilder.class, MarshallingSession.class).body();
 
     MarshallingGenUtil.ensureMarshallerFieldCreated(classBuilder, null, MetaClassFactory.get(Object.class), initMethod);
    
@@ -568,21 +587,22 @@ public class MarshallerGeneratorFactory {
       mBuilder.append(Stmt.loadVariable("this").invoke("lazyInit"));
     }
     
-    mBuilder.append(Stmt.declareVariable(StringBuilder.class).named("sb")
-        .initializeWith(Stmt.newObject(StringBuilder.class, "[")))
+    mBuilder.append(Stmt.loadVariable("a1").invoke("append", "["))
         .append(autoForLoop("i", Stmt.loadVariable("a0").loadField("length"))
             .append(Stmt.if_(Bool.greaterThan(Stmt.loadVariable("i"), 0))
-                .append(Stmt.loadVariable("sb").invoke("append", ",")).finish())
-            .append(Stmt.loadVariable("sb").invoke("append", dim == 1 ?
-                Stmt.loadVariable(MarshallingGenUtil.getVarName(MetaClassFactory.get(Object.class)))
-                    .invoke("marshall",
-                        Stmt.loadVariable("a0", Stmt.loadVariable("i")),
-                        Stmt.loadVariable("a1"))
+                .append(Stmt.loadVariable("a1").invoke("append", ",")).finish())
+            .append(dim == 1 ?
+                Stmt.invokeStatic(MarshallUtil.class, "marshall",
+                    Stmt.loadVariable(MarshallingGenUtil.getVarName(MetaClassFactory.get(Object.class))),
+                    Stmt.loadVariable("a0", Stmt.loadVariable("i")),
+                    Stmt.loadVariable("a1"),
+                    Stmt.loadVariable("a2"))
                 :
                 Stmt.loadVariable("this").invoke(
-                    "_marshall" + (dim - 1), Stmt.loadVariable("a0", Stmt.loadVariable("i")), loadVariable("a1"))))
+                    "_marshall" + (dim - 1), Stmt.loadVariable("a0", Stmt.loadVariable("i")), loadVariable("a1"),
+                    loadVariable("a2")))
             .finish())
-        .append(Stmt.loadVariable("sb").invoke("append", "]").invoke("toString").returnValue())
+        .append(Stmt.loadVariable("a1").invoke("append", "]"))
         .finish();
 
     if (dim > 1) {
@@ -44,7 +44,6 @@ import org.jboss.errai.codegen.meta.impl.build.BuildMetaClass;
 import org.jboss.errai.codegen.util.Bool;
 import org.jboss.errai.codegen.util.GenUtil;
 import org.jboss.errai.codegen.util.If;
-import org.jboss.errai.codegen.util.Implementations;
 import org.jboss.errai.codegen.util.PrivateAccessUtil;
 import org.jboss.errai.codegen.util.Refs;
 import org.jboss.errai.codegen.util.Stmt;
@@ -57,6 +56,7 @@ import org.jboss.errai.marshalling.client.api.exceptions.NoAvailableMarshallerEx
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.marshallers.ObjectMarshaller;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 import org.jboss.errai.marshalling.rebind.MarshallerGeneratorFactory;
 import org.jboss.errai.marshalling.rebind.api.GeneratorMappingContext;
 import org.jboss.errai.marshalling.rebind.api.MappingStrategy;
@@ -149,9 +149,7 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
           builder.append(If.cond(Bool.isNull(Refs.get("obj"))).append(Stmt.load(null).returnValue()).finish());
 
           builder.append(Stmt.declareVariable(String.class).named("objId")
-              .initializeWith(loadVariable("obj")
-                  .invoke("get", SerializationParts.OBJECT_ID)
-                  .invoke("isString").invoke("stringValue")));
+              .initializeWith(Stmt.invokeStatic(MarshallUtil.class, "getObjectId", loadVariable("obj"))));
 
           builder.append(
               Stmt.if_(Bool.expr(loadVariable("a1").invoke("hasObject", loadVariable("objId"))))
@@ -369,11 +367,27 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
          * MARSHAL METHOD
          * 
          */
+        final BlockBuilder<?> streamingMethodBlock = classStructureBuilder.publicMethod(void.class, "marshall",
+            Parameter.of(toMap, "a0"), Parameter.of(StringBuilder.class, "json"),
+            Parameter.of(MarshallingSession.class, "a1"));
+
+        streamingMethodBlock.append(Stmt.loadVariable("this").invoke("lazyInit"));
+        marshallToJSON(streamingMethodBlock, toMap, mappingDefinition, classStructureBuilder, initMethod);
+
+        streamingMethodBlock.finish();
+
         final BlockBuilder<?> marshallMethodBlock = classStructureBuilder.publicMethod(String.class, "marshall",
             Parameter.of(toMap, "a0"), Parameter.of(MarshallingSession.class, "a1"));
 
-        marshallMethodBlock.append(Stmt.loadVariable("this").invoke("lazyInit"));
-        marshallToJSON(marshallMethodBlock, toMap, mappingDefinition, classStructureBuilder, initMethod);
+        marshallMethodBlock.append(
+            If.isNull(loadVariable("a0"))
+                .append(Stmt.load("null").returnValue()).finish());
+        marshallMethodBlock.append(Stmt.declareFinalVariable("json", StringBuilder.class,
+            Stmt.newObject(StringBuilder.class,
+                calcBufferSize(new ArrayList<MappingDefinition>(), mappingDefinition))));
+        marshallMethodBlock.append(Stmt.loadVariable("this")
+            .invoke("marshall", loadVariable("a0"), loadVariable("json"), loadVariable("a1")));
+        marshallMethodBlock.append(Stmt.loadVariable("json").invoke("toString").returnValue());
 
         marshallMethodBlock.finish();
 
@@ -469,6 +483,10 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
     return bufSize;
   }
 
+  /**
+   * Generates the body of the streaming marshall method, which appends the JSON representation of <tt>a0</tt> to the
+   * <tt>json</tt> buffer. Nested objects are streamed into the same buffer.
+   */
   public void marshallToJSON(final BlockBuilder<?> builder,
                              final MetaClass toType,
                              final MappingDefinition definition,
@@ -481,53 +499,28 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
 
     builder.append(
         If.isNull(loadVariable("a0"))
-            .append(Stmt.load("null").returnValue()).finish()
+            .append(Stmt.loadVariable("json").invoke("append", "null"))
+            .append(Stmt.returnVoid()).finish()
         );
 
-    final int bufSize = calcBufferSize(new ArrayList<MappingDefinition>(), definition);
-
     if (toMap.isEnum()) {
-      builder.append(
-          Stmt.declareFinalVariable(
-              "json",
-              StringBuilder.class,
-              Stmt.newObject(StringBuilder.class)
-              )
-          );
-      final ContextualStatementBuilder csb = Stmt.loadVariable("json");
-      marshallEnum(csb, Stmt.loadVariable("a0"), toMap);
-      builder.append(csb.invoke("toString").returnValue());
+      builder.append(marshallEnum(Stmt.loadVariable("a0"), toMap));
       return;
     }
 
     builder.append(Stmt.declareFinalVariable("ref", boolean.class,
         Stmt.loadVariable("a1").invoke("hasObject", Refs.get("a0"))));
 
-    builder.append(
-        Stmt.declareFinalVariable(
-            "json",
-            StringBuilder.class,
-            Stmt.newObject(StringBuilder.class,
-                "{" + keyValue(SerializationParts.ENCODED_TYPE, string(toType.getFullyQualifiedName())) + ",\"" +
-                    SerializationParts.OBJECT_ID + "\"")
-            )
-        );
-
-    builder.append(Stmt.loadVariable("json")
-        .invoke("append", ":\"")
-        .invoke("append", loadVariable("a1").invoke("getObject", Stmt.loadVariable("a0")))
-        .invoke("append", "\"")
-        );
+    builder.append(Stmt.invokeStatic(MarshallUtil.class, "appendObjectHeader", loadVariable("json"),
+        toType.getFullyQualifiedName(), loadVariable("a1").invoke("getObject", Stmt.loadVariable("a0")),
+        loadVariable("a1")));
 
     builder.append(
         If.cond(loadVariable("ref"))
-            .append(Stmt.loadVariable("json").invoke("append", "}").invoke("toString").returnValue())
+            .append(Stmt.loadVariable("json").invoke("append", "}"))
+            .append(Stmt.returnVoid())
             .finish());
 
-    boolean hasEncoded = false;
-
-    ContextualStatementBuilder appendChain = null;
-
     int i = 0;
     for (final MemberMapping mapping : definition.getMemberMappings()) {
       if (!mapping.canRead()) {
@@ -538,14 +531,6 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
       MarshallingGenUtil.ensureMarshallerFieldCreated(classStructureBuilder, toMap, mapping.getType()
             .asBoxed(), lazyInitMethod);
 
-      if (!hasEncoded) {
-        appendChain = Stmt.loadVariable("json").invoke("append", ",");
-        hasEncoded = true;
-      }
-      else if (i > 0) {
-        appendChain.invoke("append", ",");
-      }
-
       final MetaClass targetType = GenUtil.getPrimitiveWrapper(mapping.getType());
 
       final MetaClass compType =
@@ -560,37 +545,28 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
       if (targetType.isArray()) {
         valueStatement = context.getArrayMarshallerCallback().marshal(targetType, valueStatement);
       }
-      appendChain.invoke("append", "\"" + mapping.getKey() + "\":");
 
+      final ContextualStatementBuilder appendChain =
+          Stmt.loadVariable("json").invoke("append", ",\"" + mapping.getKey() + "\":");
+
+      builder.append(appendChain);
       if (targetType.isEnum()) {
-        marshallEnum(appendChain, valueStatement, targetType);
+        builder.append(marshallEnum(valueStatement, targetType));
       }
       else {
-        appendChain.invoke("append",
-            loadVariable(MarshallingGenUtil.getVarName(targetType))
-                .invoke("marshall", valueStatement, loadVariable("a1")));
+        builder.append(Stmt.invokeStatic(MarshallUtil.class, "marshall",
+            loadVariable(MarshallingGenUtil.getVarName(targetType)), valueStatement,
+            loadVariable("json"), loadVariable("a1")));
       }
 
       i++;
     }
 
     if (i == 0) {
-      if (appendChain == null) {
-        appendChain = Stmt.loadVariable("json");
-      }
-
-      appendChain.invoke("append", ",\"" + SerializationParts.INSTANTIATE_ONLY + "\":true");
+      builder.append(Stmt.loadVariable("json").invoke("append", ",\"" + SerializationParts.INSTANTIATE_ONLY + "\":true"));
     }
 
-    builder.append(appendChain.invoke("append", "}").invoke("toString").returnValue());
-  }
-
-  private static String keyValue(final String key, final String value) {
-    return "\"" + key + "\":" + value + "";
-  }
-
-  private static String string(final String value) {
-    return "\"" + value + "\"";
+    builder.append(Stmt.loadVariable("json").invoke("append", "}"));
   }
 
   public Statement valueAccessorFor(final MetaClassMember member, ClassStructureBuilder<?> classStructureBuilder) {
@@ -654,19 +630,9 @@ public class DefaultJavaMappingStrategy implements MappingStrategy {
     return new TernaryStatement(Bool.isNotNull(objStatement), trueStatement, falseStatement);
   }
 
-  public void marshallEnum(final ContextualStatementBuilder bb,
-                           final Statement valueStatement,
-                           final MetaClass toType) {
-
-    final Implementations.StringBuilderBuilder internalSBB = Implementations.newStringBuilder()
-        .append("{\"" + SerializationParts.ENCODED_TYPE
-            + "\":\"" + toType.getFullyQualifiedName() + "\",\"" + SerializationParts.ENUM_STRING_VALUE + "\":\"")
-        .append(Stmt.nestedCall(valueStatement).invoke("name")).append("\"}");
-
-    final TernaryStatement ternaryStatement = new TernaryStatement(
-        Bool.isNotNull(valueStatement), internalSBB, Stmt.load("null"));
-
-    bb.invoke("append", ternaryStatement);
+  public Statement marshallEnum(final Statement valueStatement, final MetaClass toType) {
+    return Stmt.invokeStatic(MarshallUtil.class, "appendEnum", loadVariable("json"), valueStatement,
+        toType.getFullyQualifiedName(), loadVariable("a1"));
   }
 
   public Statement unwrapJSON(final Statement valueStatement, final MetaClass toType, final MetaClass targetType) {
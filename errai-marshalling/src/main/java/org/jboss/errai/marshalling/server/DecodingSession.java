@@ -7,6 +7,7 @@ import org.jboss.errai.common.client.protocols.SerializationParts;
 import org.jboss.errai.marshalling.client.api.AbstractMarshallingSession;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 
 /**
  * @author Mike Brock <cbrock@redhat.com>
@@ -24,7 +25,7 @@ public class DecodingSession extends AbstractMarshallingSession {
     if (jsonValue.isObject() != null) {
       final EJObject jsonObject = jsonValue.isObject();
       if (jsonObject.containsKey(SerializationParts.ENCODED_TYPE)) {
-        return jsonObject.get(SerializationParts.ENCODED_TYPE).isString().stringValue();
+        return MarshallUtil.getEncodedType(jsonObject, this);
       }
       else {
         return Map.class.getName();
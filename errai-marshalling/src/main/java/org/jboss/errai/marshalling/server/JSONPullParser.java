@@ -0,0 +1,420 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.server;
+
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.common.client.protocols.SerializationParts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JSON parser which pulls UTF-8 encoded bytes directly from an <tt>InputStream</tt>, without going through a
+ * <tt>Reader</tt>. It produces exactly the same structures as {@link JSONStreamDecoder}: a <tt>LinkedHashMap</tt> for
+ * each object, an <tt>ArrayList</tt> for each array, and <tt>String</tt>, <tt>Double</tt>, <tt>Boolean</tt> or
+ * <tt>null</tt> for each value. Unlike <tt>JSONStreamDecoder</tt>, the result is not wrapped in an
+ * {@link org.jboss.errai.marshalling.client.api.json.EJValue}.
+ * <p/>
+ * Strings are accumulated in a single reused character array, and object keys which are names of
+ * {@link MessageParts} or {@link SerializationParts} are returned as the same interned <tt>String</tt> instances
+ * rather than new copies.
+ */
+public class JSONPullParser {
+  private static final int BUFFER_SIZE = 1024 * 8;
+  private static final int NO_CHAR = -2;
+  private static final int EOF = -1;
+
+  private static final String[] KNOWN_KEYS = new String[512];
+
+  static {
+    for (final MessageParts part : MessageParts.values()) {
+      addKnownKey(part.name());
+    }
+
+    addKnownKey(SerializationParts.MARSHALLED_TYPES);
+    addKnownKey(SerializationParts.ENCODED_TYPE);
+    addKnownKey(SerializationParts.OBJECT_ID);
+    addKnownKey(SerializationParts.INSTANTIATE_ONLY);
+    addKnownKey(SerializationParts.NUMERIC_VALUE);
+    addKnownKey(SerializationParts.QUALIFIED_VALUE);
+    addKnownKey(SerializationParts.ENUM_STRING_VALUE);
+    addKnownKey(SerializationParts.TYPE_TABLE);
+  }
+
+  private final InputStream inputStream;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  private int pushback = NO_CHAR;
+  private int pendingLowSurrogate = NO_CHAR;
+
+  private char[] chars = new char[128];
+  private int length;
+
+  public JSONPullParser(final InputStream inputStream) {
+    this.inputStream = inputStream;
+  }
+
+  /**
+   * Parses the JSON payload from the specified stream of UTF-8 encoded characters.
+   *
+   * @return the parsed object (a <tt>Map</tt>), array (a <tt>List</tt>) or <tt>String</tt>, or null if the stream is
+   *         empty.
+   */
+  public static Object parse(final InputStream inputStream) throws IOException {
+    return new JSONPullParser(inputStream).parse();
+  }
+
+  public Object parse() throws IOException {
+    final int c = nextNonWhitespace();
+    if (c == EOF) {
+      return null;
+    }
+
+    final Object value = parseValue(c);
+    if (!(value instanceof Map || value instanceof List || value instanceof String)) {
+      throw new RuntimeException("expected list or map but found: "
+          + (value == null ? null : value.getClass().getName()));
+    }
+    return value;
+  }
+
+  private Object parseValue(final int c) throws IOException {
+    switch (c) {
+      case '{':
+        return parseObject();
+
+      case '[':
+        return parseArray();
+
+      case '"':
+      case '\'':
+        readString(c);
+        return new String(chars, 0, length);
+
+      default:
+        if (isNumberStart(c)) {
+          return parseNumber(c);
+        }
+        else if (c != EOF && Character.isJavaIdentifierPart((char) c)) {
+          return parseIdentifier(c);
+        }
+        else {
+          throw new RuntimeException("unexpected character: " + (c == EOF ? "<EOF>" : String.valueOf((char) c)));
+        }
+    }
+  }
+
+  private Map<Object, Object> parseObject() throws IOException {
+    final Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+
+    for (; ; ) {
+      int c = nextNonWhitespace();
+      switch (c) {
+        case EOF:
+        case '}':
+          return map;
+
+        case ',':
+          continue;
+      }
+
+      final Object key;
+      if (c == '"' || c == '\'') {
+        readString(c);
+        key = toKey();
+      }
+      else {
+        key = parseValue(c);
+      }
+
+      if ((c = nextNonWhitespace()) != ':') {
+        throw new RuntimeException("expected ':' after key " + key + " but found: "
+            + (c == EOF ? "<EOF>" : String.valueOf((char) c)));
+      }
+
+      map.put(key, parseValue(nextNonWhitespace()));
+    }
+  }
+
+  private List<Object> parseArray() throws IOException {
+    final List<Object> list = new ArrayList<Object>();
+
+    for (; ; ) {
+      final int c = nextNonWhitespace();
+      switch (c) {
+        case EOF:
+        case ']':
+          return list;
+
+        case ',':
+          continue;
+
+        default:
+          list.add(parseValue(c));
+      }
+    }
+  }
+
+  private void readString(final int quote) throws IOException {
+    length = 0;
+
+    int c;
+    while ((c = nextChar()) != EOF) {
+      if (c == quote) {
+        return;
+      }
+      else if (c == '\\') {
+        append(readEscapeSequence());
+      }
+      else {
+        append((char) c);
+      }
+    }
+
+    throw new RuntimeException("unterminated string literal");
+  }
+
+  private char readEscapeSequence() throws IOException {
+    final int c = nextChar();
+    switch (c) {
+      case '\\':
+        return '\\';
+      case '/':
+        return '/';
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 't':
+        return '\t';
+      case 'r':
+        return '\r';
+      case 'n':
+        return '\n';
+      case '\'':
+        return '\'';
+      case '"':
+        return '\"';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          final int digit = Character.digit(nextChar(), 16);
+          if (digit == -1) {
+            throw new RuntimeException("illegal unicode escape sequence: expected 4 hex characters after \\u");
+          }
+          value = (value << 4) | digit;
+        }
+        return (char) value;
+
+      default:
+        throw new RuntimeException("illegal escape sequence: " + (c == EOF ? "<EOF>" : String.valueOf((char) c)));
+    }
+  }
+
+  private Double parseNumber(final int first) throws IOException {
+    length = 0;
+
+    boolean integral = true;
+    int c = first;
+    do {
+      if (c < '0' || c > '9') {
+        if (c == '.' || c == 'e' || c == 'E' || (c == '+' && length > 0)) {
+          integral = false;
+        }
+        else if (c != '-' || length > 0 && chars[length - 1] != 'e' && chars[length - 1] != 'E') {
+          break;
+        }
+      }
+      append((char) c);
+    }
+    while ((c = nextChar()) != EOF);
+
+    pushback = c;
+
+    // integers which fit in a double's mantissa are the common case, and don't need a string.
+    if (integral && length < 16 && !(length == 1 && chars[0] == '-')) {
+      final boolean negative = chars[0] == '-';
+      long value = 0;
+      for (int i = negative ? 1 : 0; i < length; i++) {
+        value = value * 10 + (chars[i] - '0');
+      }
+      if (value != 0 || !negative) {
+        return (double) (negative ? -value : value);
+      }
+    }
+
+    final String literal = new String(chars, 0, length);
+    if (literal.charAt(0) == '.' || literal.endsWith("e") || literal.endsWith("E")) {
+      throw new NumberFormatException("The numeric literal \"" + literal + "\" is malformed");
+    }
+    return Double.parseDouble(literal);
+  }
+
+  private Object parseIdentifier(final int first) throws IOException {
+    length = 0;
+
+    int c = first;
+    do {
+      append((char) c);
+    }
+    while ((c = nextChar()) != EOF && Character.isJavaIdentifierPart((char) c));
+
+    pushback = c;
+
+    if (length == 4 && chars[0] == 'n' && chars[1] == 'u' && chars[2] == 'l' && chars[3] == 'l') {
+      return null;
+    }
+    else if (length == 4 && chars[0] == 't' && chars[1] == 'r' && chars[2] == 'u' && chars[3] == 'e') {
+      return Boolean.TRUE;
+    }
+    else if (length == 5 && chars[0] == 'f' && chars[1] == 'a' && chars[2] == 'l' && chars[3] == 's'
+        && chars[4] == 'e') {
+      return Boolean.FALSE;
+    }
+    return new String(chars, 0, length);
+  }
+
+  /**
+   * Returns the string in the character array, using the interned instance if it is a known key.
+   */
+  private String toKey() {
+    final int hash = hash(chars, 0, length);
+
+    for (int i = hash & (KNOWN_KEYS.length - 1); KNOWN_KEYS[i] != null; i = (i + 1) & (KNOWN_KEYS.length - 1)) {
+      final String candidate = KNOWN_KEYS[i];
+      if (candidate.length() == length && candidate.hashCode() == hash && matches(candidate)) {
+        return candidate;
+      }
+    }
+    return new String(chars, 0, length);
+  }
+
+  private boolean matches(final String candidate) {
+    for (int i = 0; i < length; i++) {
+      if (candidate.charAt(i) != chars[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void append(final char c) {
+    if (length == chars.length) {
+      final char[] newChars = new char[chars.length * 2];
+      System.arraycopy(chars, 0, newChars, 0, length);
+      chars = newChars;
+    }
+    chars[length++] = c;
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int c;
+    do {
+      c = nextChar();
+    }
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+    return c;
+  }
+
+  /**
+   * Decodes the next character from the stream.
+   *
+   * @return the next character, or {@link #EOF} at the end of the stream.
+   */
+  private int nextChar() throws IOException {
+    if (pushback != NO_CHAR) {
+      final int c = pushback;
+      pushback = NO_CHAR;
+      return c;
+    }
+
+    if (pendingLowSurrogate != NO_CHAR) {
+      final int c = pendingLowSurrogate;
+      pendingLowSurrogate = NO_CHAR;
+      return c;
+    }
+
+    final int b = nextByte();
+    if (b < 0x80) {
+      // ASCII or EOF
+      return b;
+    }
+    else if ((b & 0xE0) == 0xC0) {
+      return ((b & 0x1F) << 6) | nextContinuationByte();
+    }
+    else if ((b & 0xF0) == 0xE0) {
+      return ((b & 0x0F) << 12) | (nextContinuationByte() << 6) | nextContinuationByte();
+    }
+    else if ((b & 0xF8) == 0xF0) {
+      final int codePoint = ((b & 0x07) << 18) | (nextContinuationByte() << 12) | (nextContinuationByte() << 6)
+          | nextContinuationByte();
+      pendingLowSurrogate = 0xDC00 + ((codePoint - 0x10000) & 0x3FF);
+      return 0xD800 + ((codePoint - 0x10000) >> 10);
+    }
+    else {
+      return '\uFFFD';
+    }
+  }
+
+  private int nextContinuationByte() throws IOException {
+    final int b = nextByte();
+    if (b == EOF || (b & 0xC0) != 0x80) {
+      throw new RuntimeException("malformed UTF-8 input");
+    }
+    return b & 0x3F;
+  }
+
+  private int nextByte() throws IOException {
+    if (position == limit) {
+      limit = inputStream.read(buffer, 0, BUFFER_SIZE);
+      position = 0;
+
+      if (limit <= 0) {
+        limit = 0;
+        return EOF;
+      }
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  private static boolean isNumberStart(final int c) {
+    return (c >= '0' && c <= '9') || c == '-' || c == '.';
+  }
+
+  private static int hash(final char[] chars, final int offset, final int length) {
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + chars[i];
+    }
+    return hash;
+  }
+
+  private static void addKnownKey(final String key) {
+    int i = key.hashCode() & (KNOWN_KEYS.length - 1);
+    while (KNOWN_KEYS[i] != null) {
+      if (KNOWN_KEYS[i].equals(key)) return;
+      i = (i + 1) & (KNOWN_KEYS.length - 1);
+    }
+    KNOWN_KEYS[i] = key;
+  }
+}
@@ -22,13 +22,15 @@ import org.jboss.errai.codegen.meta.MetaClass;
 import org.jboss.errai.common.client.api.Assert;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJArray;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 
 /**
  * @author Mike Brock
  */
-public class DefaultArrayMarshaller implements Marshaller<Object> {
+public class DefaultArrayMarshaller implements StreamingMarshaller<Object> {
   private final MetaClass arrayType;
   private final Marshaller<Object> outerMarshaller;
   private final int dimensions;
@@ -76,7 +78,19 @@ public class DefaultArrayMarshaller implements Marshaller<Object> {
       return null;
     }
     else {
-      return _marshall(a0, a1);
+      final StringBuilder buf = new StringBuilder();
+      _marshall(a0, buf, a1);
+      return buf.toString();
+    }
+  }
+
+  @Override
+  public void marshall(final Object a0, final StringBuilder buf, final MarshallingSession a1) {
+    if (a0 == null) {
+      buf.append("null");
+    }
+    else {
+      _marshall(a0, buf, a1);
     }
   }
 
@@ -97,8 +111,8 @@ public class DefaultArrayMarshaller implements Marshaller<Object> {
     return arrayInstance;
   }
 
-  private String _marshall(final Object a0, final MarshallingSession a1) {
-    final StringBuilder builder = new StringBuilder("[");
+  private void _marshall(final Object a0, final StringBuilder builder, final MarshallingSession a1) {
+    builder.append('[');
 
     final int length = Array.getLength(a0);
 
@@ -107,10 +121,10 @@ public class DefaultArrayMarshaller implements Marshaller<Object> {
     for (int i = 0; i < length; i++) {
       element = Array.get(a0, i);
       if (element != null && element.getClass().isArray()) {
-        builder.append(_marshall(element, a1));
+        _marshall(element, builder, a1);
       }
       else {
-        builder.append(outerMarshaller.marshall(element, a1));
+        MarshallUtil.marshall(outerMarshaller, element, builder, a1);
       }
 
       if (i + 1 < length) {
@@ -118,7 +132,7 @@ public class DefaultArrayMarshaller implements Marshaller<Object> {
       }
     }
 
-    return builder.append(']').toString();
+    builder.append(']');
   }
 
   @Override
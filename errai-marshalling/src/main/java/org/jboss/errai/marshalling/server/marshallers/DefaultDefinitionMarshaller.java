@@ -16,11 +16,14 @@
 
 package org.jboss.errai.marshalling.server.marshallers;
 
+import org.jboss.errai.codegen.meta.MetaClassFactory;
+import org.jboss.errai.codegen.meta.MetaClassMember;
 import org.jboss.errai.codegen.meta.MetaField;
 import org.jboss.errai.codegen.meta.MetaMethod;
 import org.jboss.errai.common.client.protocols.SerializationParts;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.exceptions.MarshallingException;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
@@ -38,7 +41,6 @@ import org.jboss.errai.marshalling.server.MappingContextSingleton;
 import org.jboss.errai.marshalling.server.api.ServerMarshaller;
 import org.mvel2.DataConversion;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Array;
@@ -46,15 +48,22 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.util.List;
 
 /**
+ * A reflective marshaller for a {@link MappingDefinition}. The fields and methods of the mapping are resolved and made
+ * accessible the first time an object is marshalled or demarshalled, so each later call only reads and writes them.
+ *
  * @author Mike Brock
  */
-public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
+public class DefaultDefinitionMarshaller implements ServerMarshaller<Object>, StreamingMarshaller<Object> {
   static final Charset UTF_8 = Charset.forName("UTF-8");
 
   private final MappingDefinition definition;
 
+  private volatile MemberAccessor[] readers;
+  private volatile MemberAccessor[] writers;
+
   public DefaultDefinitionMarshaller(final MappingDefinition definition) {
     this.definition = definition;
   }
@@ -93,7 +102,7 @@ public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
             return NumbersUtils.getEncodedNumber(oMap);
           }
 
-          final String objID = oMap.get(SerializationParts.OBJECT_ID).isString().stringValue();
+          final String objID = MarshallUtil.getObjectId(oMap);
 
           if (ctx.hasObject(objID)) {
             newInstance = ctx.getObject(Object.class, objID);
@@ -139,33 +148,19 @@ public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
             ctx.recordObject(objID, newInstance);
           }
 
-          for (final MemberMapping mapping : definition.getWritableMemberMappings()) {
-            final EJValue o1 = oMap.get(mapping.getKey());
+          for (final MemberAccessor accessor : getWriters()) {
+            final EJValue o1 = oMap.get(accessor.key);
 
             if (!o1.isNull()) {
-              final Marshaller<Object> marshaller
-                      = ctx.getMarshallerInstance(mapping.getType().getFullyQualifiedName());
-
-              if (mapping.getBindingMember() instanceof MetaField) {
-                final MetaField f = (MetaField) mapping.getBindingMember();
-
-                setProperty(newInstance, f.asField(),
-                        marshaller.demarshall(o1, ctx));
-              }
-              else {
-                final Method m = ((MetaMethod) mapping.getBindingMember()).asMethod();
-
-                m.invoke(newInstance, DataConversion.convert(
-                        marshaller.demarshall(o1, ctx),
-                        m.getParameterTypes()[0]));
-              }
+              final Marshaller<Object> marshaller = ctx.getMarshallerInstance(accessor.typeName);
+              accessor.write(newInstance, marshaller.demarshall(o1, ctx));
             }
           }
 
           return newInstance;
         }
         else if (oMap.containsKey(SerializationParts.ENUM_STRING_VALUE)) {
-          return Enum.valueOf(getClassReference(oMap),
+          return Enum.valueOf(getClassReference(oMap, ctx),
                   oMap.get(SerializationParts.ENUM_STRING_VALUE).isString().stringValue());
         }
         else {
@@ -183,22 +178,20 @@ public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
 
   @Override
   public String marshall(final Object o, final MarshallingSession ctx) {
-    final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(1024);
-    try {
-      marshall(byteArrayOutputStream, o, ctx);
-      return new String(byteArrayOutputStream.toByteArray(), UTF_8);
-    }
-    catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+    final StringBuilder buf = new StringBuilder(128);
+    marshall(o, buf, ctx);
+    return buf.toString();
   }
 
-
   @Override
   public void marshall(final OutputStream outstream, final Object o, final MarshallingSession mSession) throws IOException {
+    outstream.write(marshall(o, mSession).getBytes(UTF_8));
+  }
 
+  @Override
+  public void marshall(final Object o, final StringBuilder buf, final MarshallingSession mSession) {
     if (o == null) {
-      outstream.write("null".getBytes(UTF_8));
+      buf.append("null");
       return;
     }
 
@@ -208,10 +201,7 @@ public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
     if (definition.getMappingClass().isEnum()) {
       final Enum enumer = (Enum) o;
 
-      outstream.write(("{\"" + SerializationParts.ENCODED_TYPE + "\":\""
-              + enumer.getDeclaringClass().getName() + "\""
-              + ",\"" + SerializationParts.ENUM_STRING_VALUE + "\":\"" + enumer.name() + "\"}")
-              .getBytes(UTF_8));
+      MarshallUtil.appendEnum(buf, enumer, enumer.getDeclaringClass().getName(), ctx);
 
       return;
     }
@@ -224,8 +214,8 @@ public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
        * If this object is referencing a duplicate object in the graph, we only provide an ID reference.
        */
 
-      outstream.write(("{\"" + SerializationParts.ENCODED_TYPE + "\":\"" + cls.getName()
-              + "\",\"" + SerializationParts.OBJECT_ID + "\":\"" + hash + "\"}").getBytes(UTF_8));
+      MarshallUtil.appendObjectHeader(buf, cls.getName(), hash, ctx);
+      buf.append('}');
 
       return;
     }
@@ -233,88 +223,175 @@ public class DefaultDefinitionMarshaller implements ServerMarshaller<Object> {
     int i = 0;
     boolean first = true;
 
-    outstream.write(("{\"" + SerializationParts.ENCODED_TYPE + "\":\"" + cls.getName() + "\",\""
-            + SerializationParts.OBJECT_ID + "\":\"" + hash + "\",").getBytes(UTF_8));
+    MarshallUtil.appendObjectHeader(buf, cls.getName(), hash, ctx);
+    buf.append(',');
 
-    for (final MemberMapping mapping : definition.getReadableMemberMappings()) {
+    for (final MemberAccessor accessor : getReaders()) {
       if (!first) {
-        outstream.write(',');
+        buf.append(',');
       }
 
       i++;
-      final Object v;
+      final Object v = accessor.read(o);
+
+      buf.append(accessor.keyPrefix);
+
+      if (v == null) {
+        buf.append("null");
+      }
+      else {
+        MarshallUtil.marshall(accessor.getValueMarshaller(), v, buf, ctx);
+      }
+
+      first = false;
+    }
+
+    if (i == 0) {
+      buf.append('"').append(SerializationParts.INSTANTIATE_ONLY).append("\":true");
+    }
+
+    buf.append('}');
+  }
+
+  private MemberAccessor[] getReaders() {
+    MemberAccessor[] accessors = readers;
+    if (accessors == null) {
+      readers = accessors = createAccessors(definition.getReadableMemberMappings(), true);
+    }
+    return accessors;
+  }
+
+  private MemberAccessor[] getWriters() {
+    MemberAccessor[] accessors = writers;
+    if (accessors == null) {
+      writers = accessors = createAccessors(definition.getWritableMemberMappings(), false);
+    }
+    return accessors;
+  }
 
-      if (mapping.getReadingMember() instanceof MetaField) {
-        final Field field = ((MetaField) mapping.getReadingMember()).asField();
+  private static MemberAccessor[] createAccessors(final List<MemberMapping> mappings, final boolean reading) {
+    final MemberAccessor[] accessors = new MemberAccessor[mappings.size()];
+    for (int i = 0; i < accessors.length; i++) {
+      accessors[i] = new MemberAccessor(mappings.get(i), reading);
+    }
+    return accessors;
+  }
+
+  public static Class getClassReference(final EJObject oMap) {
+    return getClassReference(oMap, null);
+  }
+
+  public static Class getClassReference(final EJObject oMap, final MarshallingSession ctx) {
+    try {
+      return Thread.currentThread().getContextClassLoader()
+              .loadClass(MarshallUtil.getEncodedType(oMap, ctx));
+    }
+    catch (ClassNotFoundException e) {
+      throw new RuntimeException("could not instantiate class", e);
+    }
+  }
+
+  /**
+   * A member of the mapping, resolved to the field or method which reads or writes it. Members are accessed
+   * reflectively: this marshaller only backs the dynamic marshallers, while the generated marshallers used in
+   * production access members directly.
+   */
+  private static class MemberAccessor {
+    private final MemberMapping mapping;
+    private final String key;
+    private final String keyPrefix;
+    private final String typeName;
+    private final Field field;
+    private final Method method;
+
+    /**
+     * The boxed type of the value which is written, for deciding whether a value has to be converted first.
+     */
+    private final Class<?> valueType;
+
+    private volatile Marshaller<Object> valueMarshaller;
+
+    private MemberAccessor(final MemberMapping mapping, final boolean reading) {
+      this.mapping = mapping;
+      this.key = mapping.getKey();
+      this.keyPrefix = "\"" + key + "\":";
+      this.typeName = mapping.getType().getFullyQualifiedName();
+
+      final MetaClassMember member = reading ? mapping.getReadingMember() : mapping.getBindingMember();
+      final Class<?> rawType;
+      if (member instanceof MetaField) {
+        field = ((MetaField) member).asField();
         field.setAccessible(true);
+        method = null;
+        rawType = field.getType();
+      }
+      else {
+        method = ((MetaMethod) member).asMethod();
+        method.setAccessible(true);
+        field = null;
+        rawType = reading ? method.getReturnType() : method.getParameterTypes()[0];
+      }
+      this.valueType = rawType.isPrimitive() ? MetaClassFactory.get(rawType).asBoxed().asClass() : rawType;
+    }
 
+    private Object read(final Object o) {
+      if (field != null) {
         try {
-          v = field.get(o);
+          return field.get(o);
         }
         catch (Exception e) {
           throw new RuntimeException("error accessing field: " + field, e);
         }
       }
       else {
-        final Method method = ((MetaMethod) mapping.getReadingMember()).asMethod();
-        method.setAccessible(true);
-
         try {
-          v = method.invoke(o);
+          return method.invoke(o);
         }
         catch (Exception e) {
           throw new RuntimeException("error calling getter: " + method, e);
         }
       }
+    }
 
-      outstream.write(("\"" + mapping.getKey() + "\"").getBytes(UTF_8));
-      outstream.write(':');
+    private void write(final Object o, final Object v) throws Exception {
+      final Object value = valueType.isInstance(v) ? v : DataConversion.convert(v, valueType);
 
-      if (v == null) {
-        outstream.write("null".getBytes(UTF_8));
+      if (field != null) {
+        try {
+          field.set(o, value);
+        }
+        catch (Exception e) {
+          throw new RuntimeException("could not set field (inst=" + o + "; field=" + field + "; val=" + v + ")", e);
+        }
       }
       else {
+        method.invoke(o, value);
+      }
+    }
+
+    private Marshaller<Object> getValueMarshaller() {
+      Marshaller<Object> marshaller = valueMarshaller;
+      if (marshaller == null) {
         final DefinitionsFactory definitionsFactory = MappingContextSingleton.get().getDefinitionsFactory();
 
         if (definitionsFactory == null) {
           throw new RuntimeException("definition factory is null!");
         }
 
-        final MappingDefinition definition1 = definitionsFactory.getDefinition(mapping.getType());
+        final MappingDefinition definition = definitionsFactory.getDefinition(mapping.getType());
 
-        if (definition1 == null) {
-          throw new RuntimeException("no mapping definition for: " + mapping.getType().getFullyQualifiedName());
+        if (definition == null) {
+          throw new RuntimeException("no mapping definition for: " + typeName);
         }
 
-        final Marshaller<Object> marshallerInstance = definition1.getMarshallerInstance();
+        marshaller = definition.getMarshallerInstance();
 
-        if (marshallerInstance == null) {
-          throw new RuntimeException("no marshaller instance for: " + mapping.getType().getFullyQualifiedName());
+        if (marshaller == null) {
+          throw new RuntimeException("no marshaller instance for: " + typeName);
         }
-
-        outstream.write(
-                marshallerInstance.marshall(v, ctx)
-                        .getBytes(UTF_8)
-        );
+        valueMarshaller = marshaller;
       }
-
-      first = false;
-    }
-
-    if (i == 0) {
-      outstream.write(("\"" + SerializationParts.INSTANTIATE_ONLY + "\":true").getBytes(UTF_8));
-    }
-
-    outstream.write('}');
-  }
-
-  public static Class getClassReference(final EJObject oMap) {
-    try {
-      return Thread.currentThread().getContextClassLoader()
-              .loadClass(oMap.get(SerializationParts.ENCODED_TYPE).isString().stringValue());
-    }
-    catch (ClassNotFoundException e) {
-      throw new RuntimeException("could not instantiate class", e);
+      return marshaller;
     }
   }
 }
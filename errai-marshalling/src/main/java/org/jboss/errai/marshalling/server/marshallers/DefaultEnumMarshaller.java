@@ -17,16 +17,17 @@
 package org.jboss.errai.marshalling.server.marshallers;
 
 import org.jboss.errai.common.client.protocols.SerializationParts;
-import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
 
 import java.lang.reflect.Array;
 
 /**
  * @author Mike Brock
  */
-public class DefaultEnumMarshaller implements Marshaller<Enum> {
+public class DefaultEnumMarshaller implements StreamingMarshaller<Enum> {
   private final Class enumType;
 
   public DefaultEnumMarshaller(final Class enumType) {
@@ -51,15 +52,25 @@ public class DefaultEnumMarshaller implements Marshaller<Enum> {
       return "null";
     }
 
-    if (a1.hasObject(a0)) {
-      return new StringBuilder().append("{\"" + SerializationParts.ENCODED_TYPE + "\":\"" + enumType.getName()
-              + "\",\"" + SerializationParts.OBJECT_ID + "\":\"").append(a1.getObject(a0)).append("\"}").toString();
+    final StringBuilder buf = new StringBuilder();
+    marshall(a0, buf, a1);
+    return buf.toString();
+  }
+
+  @Override
+  public void marshall(final Enum a0, final StringBuilder buf, final MarshallingSession a1) {
+    if (a0 == null) {
+      buf.append("null");
+      return;
     }
 
-    return new StringBuilder().append("{\"" + SerializationParts.ENCODED_TYPE + "\":\"" + enumType.getName()
-            + "\","
-            + "\"" + SerializationParts.OBJECT_ID + "\":\"" + a1.getObject(a0) + "\""
-            + ",\"" + SerializationParts.ENUM_STRING_VALUE + "\":\"").append(a0.name()).append("\"}").toString();
+    final boolean ref = a1.hasObject(a0);
+    MarshallUtil.appendObjectHeader(buf, enumType.getName(), a1.getObject(a0), a1);
+
+    if (!ref) {
+      buf.append(",\"" + SerializationParts.ENUM_STRING_VALUE + "\":\"").append(a0.name()).append('"');
+    }
+    buf.append('}');
   }
 
   @Override
@@ -18,19 +18,98 @@ package org.jboss.errai.marshalling.server.protocol;
 
 import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.common.client.protocols.SerializationParts;
+import org.jboss.errai.marshalling.client.api.Marshaller;
+import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.server.DecodingSession;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.json.impl.ErraiJSONValue;
 
 /**
  * @author Mike Brock
  */
 public class ErraiProtocolServer extends ErraiProtocol{
   public static ByteArrayInputStream encodePayloadToByteArrayInputStream(final Map<String, Object> payload) {
+    return new ByteArrayInputStream(encodePayloadToByteArray(payload));
+  }
+
+  /**
+   * Encodes the payload to its UTF-8 wire representation. The returned array is not retained anywhere, so callers
+   * may share it between several transmissions of the same payload as long as they do not modify it.
+   *
+   * @param payload A map of the key-value pairs to be encoded.
+   * @return the UTF-8 bytes of the encoded JSON.
+   */
+  public static byte[] encodePayloadToByteArray(final Map<String, Object> payload) {
+    return encodePayloadToByteArray(payload, false);
+  }
+
+  /**
+   * Encodes the payload to its UTF-8 wire representation, optionally using the compact type encoding.
+   *
+   * @param payload A map of the key-value pairs to be encoded.
+   * @param compactTypeEncoding true if the compact type encoding should be used.
+   * @return the UTF-8 bytes of the encoded JSON.
+   * @see #encodePayload(Map, boolean)
+   */
+  public static byte[] encodePayloadToByteArray(final Map<String, Object> payload, final boolean compactTypeEncoding) {
     try {
-      return new ByteArrayInputStream(encodePayload(payload).getBytes("UTF-8"));
+      return encodePayload(payload, compactTypeEncoding).getBytes("UTF-8");
     } catch (UnsupportedEncodingException e) {
       throw new AssertionError("UTF-8 appears not to be supported by this JRE, but that's impossible");
     }
   }
+
+  /**
+   * Decodes a standard Errai Protocol payload which has already been parsed into raw JSON structures (for instance by
+   * {@link org.jboss.errai.marshalling.server.JSONPullParser}) to a Map of key value pairs. Strings, booleans and
+   * nulls are taken as they are, and only the remaining values are handed to their marshallers.
+   *
+   * @param rawPayload the parsed JSON object.
+   * @return The decoded Map.
+   */
+  public static Map<String, Object> decodePayload(final Map<?, ?> rawPayload) {
+    final Map<String, Object> parts = new HashMap<String, Object>();
+    final MarshallingSession ctx = new DecodingSession(MappingContextSingleton.get());
+
+    final Object types = rawPayload.get(SerializationParts.TYPE_TABLE);
+    if (types instanceof List) {
+      for (final Object type : (List<?>) types) {
+        ctx.addToTypeTable(String.valueOf(type));
+      }
+    }
+
+    for (final Map.Entry<?, ?> entry : rawPayload.entrySet()) {
+      final String key = String.valueOf(entry.getKey());
+      if (MessageParts.SessionID.name().equals(key) || SerializationParts.TYPE_TABLE.equals(key))
+        continue;
+
+      final Object raw = entry.getValue();
+      if (raw == null || raw instanceof String || raw instanceof Boolean) {
+        parts.put(key, raw);
+        continue;
+      }
+
+      final EJValue v = new ErraiJSONValue(raw);
+      final Marshaller<Object> marshallerInstance = ctx.getMarshallerInstance(ctx.determineTypeFor(null, v));
+      if (marshallerInstance == null) {
+        if (MessageParts.Throwable.name().equals(key)) {
+          parts.put(key, new Throwable(v.isObject().get("message").isString().stringValue()));
+          continue;
+        }
+        else {
+          throw new RuntimeException("no marshaller for: " + ctx.determineTypeFor(null, v));
+        }
+      }
+      parts.put(key, marshallerInstance.demarshall(v, ctx));
+    }
+    return parts;
+  }
 }
@@ -22,18 +22,37 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 
+import org.jboss.errai.codegen.meta.MetaClass;
+import org.jboss.errai.codegen.meta.MetaClassMember;
+import org.jboss.errai.codegen.meta.MetaConstructor;
+import org.jboss.errai.codegen.meta.MetaField;
+import org.jboss.errai.codegen.meta.MetaMethod;
+import org.jboss.errai.codegen.meta.MetaParameter;
 import org.jboss.errai.codegen.util.ClassChangeUtil;
 import org.jboss.errai.common.metadata.RebindUtils;
+import org.jboss.errai.common.metadata.ScannerSingleton;
 import org.jboss.errai.marshalling.client.api.MarshallerFactory;
+import org.jboss.errai.marshalling.rebind.DefinitionsFactory;
+import org.jboss.errai.marshalling.rebind.DefinitionsFactorySingleton;
 import org.jboss.errai.marshalling.rebind.MarshallerGeneratorFactory;
 import org.jboss.errai.marshalling.rebind.MarshallerOutputTarget;
 import org.jboss.errai.marshalling.rebind.MarshallersGenerator;
+import org.jboss.errai.marshalling.rebind.api.MarshallingExtension;
+import org.jboss.errai.marshalling.rebind.api.model.InstantiationMapping;
+import org.jboss.errai.marshalling.rebind.api.model.Mapping;
+import org.jboss.errai.marshalling.rebind.api.model.MappingDefinition;
+import org.jboss.errai.marshalling.rebind.api.model.MemberMapping;
 import org.jboss.errai.marshalling.rebind.util.MarshallingGenUtil;
 import org.slf4j.Logger;
 
@@ -45,6 +64,13 @@ import org.slf4j.Logger;
 public abstract class ServerMarshallUtil {
   private static Logger log = getLogger("ErraiMarshalling");
 
+  private static final String CACHE_DIRECTORY_NAME = "server-marshallers";
+
+  /**
+   * Part of the hash of the cached marshallers. Changing it invalidates the marshallers cached by earlier versions.
+   */
+  private static final String GENERATOR_VERSION = "1";
+
   private static List<String> urlToFile(Enumeration<URL> urls) {
     final ArrayList<String> files = new ArrayList<String>();
     while (urls.hasMoreElements()) {
@@ -111,10 +137,18 @@ public abstract class ServerMarshallUtil {
       log.warn("could not read marshaller classes: " + e);
     }
 
+    final File cacheDirectory = getCacheDirectory();
+    if (cacheDirectory != null) {
+      final Class<? extends MarshallerFactory> cached = loadCachedMarshallerFactory(cacheDirectory);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     final String classStr = MarshallerGeneratorFactory.getFor(null, MarshallerOutputTarget.Java)
             .generate(packageName, className);
 
-    final File directory =
+    final File directory = cacheDirectory != null ? cacheDirectory :
             new File(RebindUtils.getTempDirectory()
                     + "/errai.gen/classes/" + packageName.replaceAll("\\.", "/"));
 
@@ -122,11 +156,7 @@ public abstract class ServerMarshallUtil {
 
     try {
       if (directory.exists()) {
-        for (File file : directory.listFiles()) {
-          file.delete();
-        }
-
-        directory.delete();
+        delete(directory);
       }
 
       directory.mkdirs();
@@ -146,4 +176,214 @@ public abstract class ServerMarshallUtil {
       throw new RuntimeException("failed to generate class ", e);
     }
   }
+
+  /**
+   * Loads the marshaller factory compiled into the specified cache directory. If the cached class cannot be loaded, for
+   * example because it was truncated or otherwise corrupted, the cached files are deleted, so that the marshallers
+   * are generated and cached again.
+   *
+   * @param cacheDirectory
+   *     the directory which holds the cached marshallers for the current mapping definitions.
+   *
+   * @return the marshaller factory class, or null if there is no usable one in the cache.
+   */
+  public static Class<? extends MarshallerFactory> loadCachedMarshallerFactory(final File cacheDirectory) {
+    final String packageName = MarshallersGenerator.SERVER_MARSHALLER_PACKAGE_NAME;
+    final String className = MarshallersGenerator.SERVER_MARSHALLER_CLASS_NAME;
+
+    final File cachedClass = new File(cacheDirectory, RebindUtils.packageNameToDirName(packageName)
+            + File.separator + className + ".class");
+
+    if (!cachedClass.exists()) {
+      return null;
+    }
+
+    try {
+      log.info("loading cached marshaller factory class from " + cacheDirectory);
+      final Class<?> cls = ClassChangeUtil.loadClassDefinition(cachedClass.getAbsolutePath(), packageName, className);
+      if (cls == null) {
+        throw new ClassNotFoundException(packageName + "." + className);
+      }
+      return cls.asSubclass(MarshallerFactory.class);
+    }
+    catch (Throwable t) {
+      log.warn("could not load cached marshaller factory class, regenerating it: " + t);
+      delete(cacheDirectory);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the directory in the errai cache which holds the marshallers generated for the current mapping
+   * definitions, and removes the ones generated for earlier definitions. A server which is restarted without changes
+   * to its portable types can load the compiled marshallers from there, rather than generating and compiling them
+   * again.
+   *
+   * @return the directory, or null if caching is disabled with <tt>errai.devel.nocache</tt>.
+   */
+  private static File getCacheDirectory() {
+    if (Boolean.getBoolean("errai.devel.nocache")) {
+      return null;
+    }
+
+    final File root = RebindUtils.getCacheFile(CACHE_DIRECTORY_NAME);
+    final String key;
+    try {
+      key = getDefinitionsHash();
+    }
+    catch (Exception e) {
+      log.warn("could not hash the mapping definitions, not caching marshallers: " + e);
+      return null;
+    }
+
+    final File[] stale = root.listFiles();
+    if (stale != null) {
+      for (final File file : stale) {
+        if (!file.getName().equals(key)) {
+          delete(file);
+        }
+      }
+    }
+
+    return new File(root, key);
+  }
+
+  /**
+   * Computes a hash of everything the generated marshaller factory depends on: the mapping definitions, the types
+   * exposed to marshalling, the marshalling extensions and the errai marshalling library which generates the code.
+   */
+  static String getDefinitionsHash() throws Exception {
+    final DefinitionsFactory factory = DefinitionsFactorySingleton.get();
+    final MessageDigest md = MessageDigest.getInstance("SHA-1");
+
+    updateDigest(md, GENERATOR_VERSION);
+
+    final URL library = ServerMarshallUtil.class.getProtectionDomain().getCodeSource().getLocation();
+    final File libraryFile = ClassChangeUtil.getFileIfExists(library.getFile());
+    updateDigest(md, library.toExternalForm());
+    if (libraryFile != null && libraryFile.isFile()) {
+      updateDigest(md, libraryFile.length() + ":" + libraryFile.lastModified());
+    }
+
+    updateDigest(md, hashMappingDefinitions(factory.getMappingDefinitions()));
+
+    updateDigest(md, sortedNames(factory.getExposedClasses()).toString());
+    updateDigest(md, sortedNames(factory.getArraySignatures()).toString());
+    updateDigest(md, new TreeMap<String, String>(factory.getMappingAliases()).toString());
+
+    final List<String> extensions = new ArrayList<String>();
+    for (final Class<?> extension : ScannerSingleton.getOrCreateInstance()
+            .getTypesAnnotatedWith(MarshallingExtension.class)) {
+      extensions.add(extension.getName());
+    }
+    Collections.sort(extensions);
+    updateDigest(md, extensions.toString());
+
+    return RebindUtils.hashToHexString(md.digest());
+  }
+
+  /**
+   * Computes a hash of the specified mapping definitions, covering everything about them which the generated
+   * marshallers depend on: the mapped types with their type parameters, and the type, modifiers and declaring type of
+   * every member used to instantiate, read or write them.
+   */
+  public static String hashMappingDefinitions(final Collection<MappingDefinition> mappingDefinitions) throws Exception {
+    final MessageDigest md = MessageDigest.getInstance("SHA-1");
+
+    final List<MappingDefinition> definitions = new ArrayList<MappingDefinition>(mappingDefinitions);
+    Collections.sort(definitions, new Comparator<MappingDefinition>() {
+      @Override
+      public int compare(final MappingDefinition a, final MappingDefinition b) {
+        return a.getMappingClass().getFullyQualifiedName().compareTo(b.getMappingClass().getFullyQualifiedName());
+      }
+    });
+
+    for (final MappingDefinition definition : definitions) {
+      updateDigest(md, definition.getMappingClass().getFullyQualifiedNameWithTypeParms());
+      updateDigest(md, String.valueOf(definition.getClientMarshallerClass()));
+      updateDigest(md, String.valueOf(definition.getServerMarshallerClass()));
+      updateDigest(md, definition.alreadyGenerated() + ":" + definition.isLazy());
+
+      final InstantiationMapping instantiationMapping = definition.getInstantiationMapping();
+      if (instantiationMapping != null) {
+        updateDigest(md, instantiationMapping.getClass().getName());
+        updateDigest(md, describeMember(instantiationMapping.getMember()));
+        for (final Class<?> parameterType : instantiationMapping.getSignature()) {
+          updateDigest(md, parameterType.getName());
+        }
+        for (final Mapping mapping : instantiationMapping.getMappings()) {
+          updateDigest(md, mapping.getKey() + ":" + mapping.getType().getFullyQualifiedNameWithTypeParms());
+        }
+      }
+
+      for (final MemberMapping mapping : definition.getMemberMappings()) {
+        updateDigest(md, mapping.getKey() + ":" + mapping.getType().getFullyQualifiedNameWithTypeParms());
+        updateDigest(md, mapping.canRead() ? describeMember(mapping.getReadingMember()) : "");
+        updateDigest(md, mapping.canWrite() ? describeMember(mapping.getBindingMember()) : "");
+      }
+    }
+
+    return RebindUtils.hashToHexString(md.digest());
+  }
+
+  private static void updateDigest(final MessageDigest md, final String value) throws IOException {
+    md.update(value.getBytes("UTF-8"));
+    md.update((byte) 0);
+  }
+
+  /**
+   * Describes a member by its declaring type, name, modifiers and (parameter) types, with all type parameters.
+   */
+  private static String describeMember(final MetaClassMember member) {
+    if (member == null) {
+      return "";
+    }
+
+    final StringBuilder buf = new StringBuilder(128)
+            .append(member.getDeclaringClass().getFullyQualifiedNameWithTypeParms())
+            .append('.').append(member.getName())
+            .append(':').append(member.isPublic() ? 'p' : '-')
+            .append(member.isProtected() ? 'r' : '-')
+            .append(member.isPrivate() ? 'i' : '-')
+            .append(member.isStatic() ? 's' : '-')
+            .append(member.isFinal() ? 'f' : '-')
+            .append(member.isTransient() ? 't' : '-')
+            .append(member.isAbstract() ? 'a' : '-');
+
+    if (member instanceof MetaField) {
+      buf.append(':').append(((MetaField) member).getType().getFullyQualifiedNameWithTypeParms());
+    }
+    else if (member instanceof MetaMethod) {
+      final MetaMethod method = (MetaMethod) member;
+      if (!(method instanceof MetaConstructor)) {
+        buf.append(':').append(method.getReturnType().getFullyQualifiedNameWithTypeParms());
+      }
+      buf.append('(');
+      for (final MetaParameter parameter : method.getParameters()) {
+        buf.append(parameter.getType().getFullyQualifiedNameWithTypeParms()).append(',');
+      }
+      buf.append(')');
+    }
+
+    return buf.toString();
+  }
+
+  private static List<String> sortedNames(final Collection<MetaClass> classes) {
+    final List<String> names = new ArrayList<String>(classes.size());
+    for (final MetaClass cls : classes) {
+      names.add(cls.getFullyQualifiedName());
+    }
+    Collections.sort(names);
+    return names;
+  }
+
+  private static void delete(final File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (final File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
 }
@@ -0,0 +1,118 @@
+package org.jboss.errai.marshalling.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.server.JSONPullParser;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.json.impl.ErraiJSONValue;
+import org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link JSONPullParser} produces the same structures as the {@link JSONStreamDecoder}.
+ */
+public class JSONPullParserTest {
+  static {
+    System.setProperty("errai.devel.nocache", "true");
+  }
+
+  private static InputStream utf8(final String json) throws Exception {
+    return new ByteArrayInputStream(json.getBytes("UTF-8"));
+  }
+
+  private static void assertSameAsStreamDecoder(final String json) throws Exception {
+    final Object expected = ((ErraiJSONValue) JSONStreamDecoder.decode(utf8(json))).getRawValue();
+    final Object actual = JSONPullParser.parse(utf8(json));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testMixedTypes() throws Exception {
+    assertSameAsStreamDecoder("{ \"myValue\": [ \"string\", 123.456, {}, [], true, false, null ] }");
+    assertSameAsStreamDecoder("[{\"a\":1},{\"b\":[1,2,[3,{\"c\":null}]]}]");
+    assertSameAsStreamDecoder("\"just a string\"");
+  }
+
+  @Test
+  public void testNumbers() throws Exception {
+    assertSameAsStreamDecoder("[0, -1, 42, 123456789012345, 1234567890123456789, 1.5, -0.25, 1e3, 2.5E-3, 6.02e+23]");
+  }
+
+  @Test
+  public void testStringEscapes() throws Exception {
+    assertSameAsStreamDecoder("{\"s\":\"tab\\there \\\"quoted\\\" \\\\ back\\/slash \\n\\r\\b\\f \\u00E9\\u4E2D\"}");
+    assertSameAsStreamDecoder("{'single':'quoted \\' string'}");
+  }
+
+  @Test
+  public void testLowerCaseUnicodeEscape() throws Exception {
+    final Map<?, ?> map = (Map<?, ?>) JSONPullParser.parse(utf8("{\"s\":\"\\u00e9\\u4e2d\"}"));
+    assertEquals("é中", map.get("s"));
+  }
+
+  @Test
+  public void testMultiByteCharacters() throws Exception {
+    assertSameAsStreamDecoder("{\"s\":\"café 中文 😀\"}");
+  }
+
+  @Test
+  public void testLongStringsAcrossBufferBoundaries() throws Exception {
+    final StringBuilder builder = new StringBuilder("[");
+    for (int i = 0; i < 2000; i++) {
+      if (i > 0) builder.append(',');
+      builder.append("{\"ToSubject\":\"Subject").append(i).append("\",\"Value\":\"中文😀").append(i)
+          .append("\"}");
+    }
+    builder.append(']');
+    assertSameAsStreamDecoder(builder.toString());
+  }
+
+  @Test
+  public void testKnownKeysAreInterned() throws Exception {
+    final Map<?, ?> map = (Map<?, ?>) JSONPullParser.parse(utf8("{\"ToSubject\":\"Foo\",\"^EncodedType\":\"x\"}"));
+    final List<Object> keys = new ArrayList<Object>(map.keySet());
+    assertSame(MessageParts.ToSubject.name(), keys.get(0));
+    assertSame("^EncodedType", keys.get(1));
+  }
+
+  @Test
+  public void testEmptyStream() throws Exception {
+    assertNull(JSONPullParser.parse(utf8("")));
+    assertNull(JSONPullParser.parse(utf8("  \n ")));
+  }
+
+  @Test
+  public void testDecodePayloadMatchesEnvelopeMarshaller() throws Exception {
+    MappingContextSingleton.get();
+
+    final Map<String, Object> parts = new LinkedHashMap<String, Object>();
+    parts.put(MessageParts.ToSubject.name(), "TestService");
+    parts.put(MessageParts.CommandType.name(), "Go");
+    parts.put("number", 42);
+    parts.put("flag", Boolean.TRUE);
+    parts.put("nothing", null);
+
+    final List<Object> list = new ArrayList<Object>();
+    list.add("a");
+    list.add(1L);
+    parts.put("list", list);
+
+    final String json = ErraiProtocol.encodePayload(parts);
+
+    final Map<String, Object> expected = ErraiProtocol.decodePayload(JSONStreamDecoder.decode(utf8(json)));
+    final Map<String, Object> actual = ErraiProtocolServer.decodePayload((Map<?, ?>) JSONPullParser.parse(utf8(json)));
+    assertEquals(expected, actual);
+  }
+}
@@ -0,0 +1,221 @@
+package org.jboss.errai.marshalling.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.errai.codegen.meta.MetaClass;
+import org.jboss.errai.codegen.meta.MetaClassFactory;
+import org.jboss.errai.codegen.meta.MetaClassMember;
+import org.jboss.errai.common.metadata.RebindUtils;
+import org.jboss.errai.marshalling.rebind.MarshallersGenerator;
+import org.jboss.errai.marshalling.rebind.api.model.MappingDefinition;
+import org.jboss.errai.marshalling.rebind.api.model.MemberMapping;
+import org.jboss.errai.marshalling.server.util.ServerMarshallUtil;
+import org.junit.Test;
+
+/**
+ * Tests the cache of the marshallers generated for the server.
+ */
+public class ServerMarshallerCacheTest {
+  public static class Holder {
+    public List<String> value;
+  }
+
+  @Test
+  public void testHashChangesWithTypeParameter() throws Exception {
+    final MetaClass strings = MetaClassFactory.get(Holder.class).getDeclaredField("value").getType();
+    final MetaClass integers = MetaClassFactory.parameterizedAs(List.class,
+        MetaClassFactory.typeParametersOf(Integer.class));
+    final MetaClassMember member = new StubMember(false);
+
+    assertEquals(hash(strings, member), hash(strings, member));
+    assertFalse(hash(strings, member).equals(hash(integers, member)));
+  }
+
+  @Test
+  public void testHashChangesWithModifier() throws Exception {
+    final MetaClass type = MetaClassFactory.get(Holder.class).getDeclaredField("value").getType();
+
+    assertFalse(hash(type, new StubMember(false)).equals(hash(type, new StubMember(true))));
+  }
+
+  @Test
+  public void testCorruptCachedFactoryIsDiscarded() throws Exception {
+    final File cacheDirectory = new File(RebindUtils.getTempDirectory(), "marshaller_cache_test_" + System.nanoTime());
+    final File classFile = new File(cacheDirectory,
+        RebindUtils.packageNameToDirName(MarshallersGenerator.SERVER_MARSHALLER_PACKAGE_NAME)
+            + File.separator + MarshallersGenerator.SERVER_MARSHALLER_CLASS_NAME + ".class");
+
+    assertNull(ServerMarshallUtil.loadCachedMarshallerFactory(cacheDirectory));
+
+    classFile.getParentFile().mkdirs();
+    final FileOutputStream outputStream = new FileOutputStream(classFile);
+    try {
+      // a class file which was cut short while it was being written.
+      outputStream.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0});
+    }
+    finally {
+      outputStream.close();
+    }
+
+    assertNull(ServerMarshallUtil.loadCachedMarshallerFactory(cacheDirectory));
+    assertFalse("the corrupt cache should have been deleted", classFile.exists());
+    assertFalse(cacheDirectory.exists());
+  }
+
+  private static String hash(final MetaClass type, final MetaClassMember member) throws Exception {
+    final MappingDefinition definition = new MappingDefinition(Holder.class, false);
+    definition.addMemberMapping(new StubMapping(type, member));
+    final String hash = ServerMarshallUtil.hashMappingDefinitions(Collections.singletonList(definition));
+    assertNotNull(hash);
+    return hash;
+  }
+
+  private static class StubMapping implements MemberMapping {
+    private MetaClass type;
+    private final MetaClassMember member;
+
+    private StubMapping(final MetaClass type, final MetaClassMember member) {
+      this.type = type;
+      this.member = member;
+    }
+
+    @Override
+    public MetaClassMember getBindingMember() {
+      return member;
+    }
+
+    @Override
+    public MetaClassMember getReadingMember() {
+      return member;
+    }
+
+    @Override
+    public boolean canRead() {
+      return true;
+    }
+
+    @Override
+    public boolean canWrite() {
+      return true;
+    }
+
+    @Override
+    public String getKey() {
+      return "value";
+    }
+
+    @Override
+    public MetaClass getTargetType() {
+      return type;
+    }
+
+    @Override
+    public MetaClass getType() {
+      return type;
+    }
+
+    @Override
+    public void setType(final MetaClass type) {
+      this.type = type;
+    }
+
+    @Override
+    public void setMappingClass(final MetaClass clazz) {
+    }
+  }
+
+  /**
+   * The <tt>value</tt> member of {@link Holder}, which is either public or private.
+   */
+  private static class StubMember implements MetaClassMember {
+    private final boolean isPrivate;
+
+    private StubMember(final boolean isPrivate) {
+      this.isPrivate = isPrivate;
+    }
+
+    @Override
+    public String getName() {
+      return "value";
+    }
+
+    @Override
+    public MetaClass getDeclaringClass() {
+      return MetaClassFactory.get(Holder.class);
+    }
+
+    @Override
+    public boolean isAbstract() {
+      return false;
+    }
+
+    @Override
+    public boolean isPublic() {
+      return !isPrivate;
+    }
+
+    @Override
+    public boolean isPrivate() {
+      return isPrivate;
+    }
+
+    @Override
+    public boolean isProtected() {
+      return false;
+    }
+
+    @Override
+    public boolean isFinal() {
+      return false;
+    }
+
+    @Override
+    public boolean isStatic() {
+      return false;
+    }
+
+    @Override
+    public boolean isTransient() {
+      return false;
+    }
+
+    @Override
+    public boolean isSynthetic() {
+      return false;
+    }
+
+    @Override
+    public boolean isVolatile() {
+      return false;
+    }
+
+    @Override
+    public boolean isSynchronized() {
+      return false;
+    }
+
+    @Override
+    public Annotation[] getAnnotations() {
+      return new Annotation[0];
+    }
+
+    @Override
+    public boolean isAnnotationPresent(final Class<? extends Annotation> annotation) {
+      return false;
+    }
+
+    @Override
+    public <A extends Annotation> A getAnnotation(final Class<A> annotation) {
+      return null;
+    }
+  }
+}
@@ -1,14 +1,17 @@
 package org.jboss.errai.marshalling.tests;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -17,13 +20,18 @@ import java.util.TreeSet;
 
 import junit.framework.Assert;
 
+import org.jboss.errai.common.client.protocols.SerializationParts;
 import org.jboss.errai.marshalling.client.MarshallingSessionProviderFactory;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
 import org.jboss.errai.marshalling.client.api.ParserFactory;
+import org.jboss.errai.marshalling.client.api.StreamingMarshaller;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.server.JSONPullParser;
 import org.jboss.errai.marshalling.server.MappingContextSingleton;
 import org.jboss.errai.marshalling.server.ServerMarshalling;
+import org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer;
 import org.jboss.errai.marshalling.tests.res.EntityWithInheritedTypeVariable;
 import org.jboss.errai.marshalling.tests.res.EnumContainer;
 import org.jboss.errai.marshalling.tests.res.EnumContainerContainer;
@@ -627,4 +635,60 @@ public class ServerMarshallingTest {
     Assert.assertEquals("Failed to marshall/demarshall immutable enum container with nulls",
             val, ServerMarshalling.fromJSON(json));
   }
-}
\ No newline at end of file
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testStreamingEncodeMatchesStringEncode() {
+    final SType sType = SType.create(new ServerRandomProvider());
+    final Marshaller<Object> marshaller = MappingContextSingleton.get().getMarshaller(SType.class.getName());
+    Assert.assertTrue("expected a streaming marshaller", marshaller instanceof StreamingMarshaller);
+
+    final String enc = marshaller.marshall(sType, MarshallingSessionProviderFactory.getEncoding());
+
+    final StringBuilder buf = new StringBuilder("[");
+    ((StreamingMarshaller<Object>) marshaller).marshall(sType, buf, MarshallingSessionProviderFactory.getEncoding());
+    buf.append("]");
+
+    Assert.assertEquals("[" + enc + "]", buf.toString());
+    Assert.assertEquals(sType, ServerMarshalling.fromJSON(enc));
+  }
+
+  @Test
+  public void testCompactTypeEncodingRoundTrip() throws Exception {
+    final List<SType> sTypes = new ArrayList<SType>();
+    for (int i = 0; i < 10; i++) {
+      sTypes.add(SType.create(new ServerRandomProvider()));
+    }
+    sTypes.add(sTypes.get(0));
+
+    final EnumContainer enumContainer = new EnumContainer();
+    enumContainer.setEnumA1(EnumTestA.SECOND);
+    final EnumContainerContainer enums = new EnumContainerContainer();
+    enums.setEnumContainer(enumContainer);
+    enums.setEnumA(EnumTestA.FIRST);
+
+    final Map<String, Object> parts = new HashMap<String, Object>();
+    parts.put("ToSubject", "Grid");
+    parts.put("Value", sTypes);
+    parts.put("Enums", enums);
+
+    final String verbose = ErraiProtocol.encodePayload(parts);
+    final String compact = ErraiProtocol.encodePayload(parts, true);
+
+    Assert.assertTrue(compact.contains("\"" + SerializationParts.TYPE_TABLE + "\":["));
+    Assert.assertFalse(compact.contains("\"" + SerializationParts.ENCODED_TYPE + "\":\"" + SType.class.getName()));
+    Assert.assertTrue("compact encoding is not smaller", compact.length() < verbose.length());
+
+    final Map<String, Object> decoded = ErraiProtocol.decodePayload(ParserFactory.get().parse(compact));
+    Assert.assertEquals(ErraiProtocol.decodePayload(ParserFactory.get().parse(verbose)), decoded);
+    Assert.assertEquals(sTypes, decoded.get("Value"));
+    Assert.assertFalse(decoded.containsKey(SerializationParts.TYPE_TABLE));
+
+    final List<?> decodedList = (List<?>) decoded.get("Value");
+    Assert.assertSame(decodedList.get(0), decodedList.get(10));
+
+    final Map<String, Object> pulled =
+        ErraiProtocolServer.decodePayload((Map<?, ?>) JSONPullParser.parse(new ByteArrayInputStream(compact.getBytes("UTF-8"))));
+    Assert.assertEquals(decoded, pulled);
+  }
+}
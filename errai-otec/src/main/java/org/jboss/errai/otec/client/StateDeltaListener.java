@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.otec.client;
+
+/**
+ * A {@link StateChangeListener} which is told what changed in a text state, rather than being handed the whole new
+ * value of the state after every change.
+ */
+public interface StateDeltaListener extends StateChangeListener {
+
+  /**
+   * Called instead of {@link #onStateChange(int, Object)} when the state changes.
+   *
+   * @param newCursorPos
+   *     the cursor position, adjusted for the change.
+   * @param pos
+   *     the position at which the state changed.
+   * @param deletedLength
+   *     the number of characters removed at the position, or 0.
+   * @param insertedText
+   *     the text inserted at the position, or an empty string.
+   */
+  public void onStateDelta(int newCursorPos, int pos, int deletedLength, String insertedText);
+}
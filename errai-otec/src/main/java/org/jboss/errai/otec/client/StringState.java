@@ -19,27 +19,30 @@ package org.jboss.errai.otec.client;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.jboss.errai.otec.client.util.Md5Digest;
+import org.jboss.errai.otec.client.util.HashedRope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * A text {@link State}. The text is kept in a {@link HashedRope}, so an edit and the update of the state hash which
+ * follows it cost time in proportion to the size of the edit rather than to the size of the text.
+ *
  * @author Mike Brock
  * @author Christian Sadilek <csadilek@redhat.com>
  */
 public class StringState implements State<String> {
   private List<StateChangeListener> stateChangeListeners = new LinkedList<StateChangeListener>();
-  public StringBuffer buffer;
+  private HashedRope rope;
   public String stateId = "<initial>";
   
   private static final Logger logger = LoggerFactory.getLogger(StringState.class);
 
   private StringState(final String buffer) {
-    this.buffer = new StringBuffer(buffer);
+    this.rope = HashedRope.of(buffer);
   }
 
-  private StringState(final StringBuffer buffer) {
-    this.buffer = buffer;
+  private StringState(final HashedRope rope) {
+    this.rope = rope;
   }
 
   public static StringState of(final String buffer) {
@@ -47,34 +50,21 @@ public class StringState implements State<String> {
   }
 
   public void insert(final int pos, final char data) {
-    if (pos == buffer.length()) {
-      buffer.append(String.valueOf(data));
-    }
-    else {
-      buffer.insert(pos, String.valueOf(data));
-    }
-
-    updateStateId();
-    notifyStateChangeListeners(pos, 1);
+    insert(pos, String.valueOf(data));
   }
 
   public void insert(final int pos, final String data) {
     try {
-      if (pos == buffer.length()) {
-        buffer.append(data);
-      }
-      else {
-        buffer.insert(pos, data);
-      }
+      rope = rope.insert(pos, data);
 
       updateStateId();
-      notifyStateChangeListeners(pos, data.length());
+      notifyStateChangeListeners(pos, data.length(), data);
     }
     catch (StringIndexOutOfBoundsException e) {
       System.out.println("********");
       System.out.println("FAILED TO INSERT: \"" + data + "\"");
       System.out.println("        POSITION: " + pos);
-      System.out.println("      BUFFER LEN: " + buffer.length());
+      System.out.println("      BUFFER LEN: " + rope.length());
 
       e.printStackTrace(System.out);
       System.out.println("********");
@@ -84,32 +74,34 @@ public class StringState implements State<String> {
   }
 
   public void delete(final int pos) {
-    buffer.delete(pos, pos + 1);
-    updateStateId();
-    notifyStateChangeListeners(pos, -1);
+    delete(pos, 1);
   }
 
   public void delete(final int pos, final int length) {
     try {
-      buffer.delete(pos, pos + length);
+      // like StringBuffer.delete(), a range running past the end of the text stops at the end.
+      final int deleted = Math.min(length, rope.length() - pos);
+      rope = rope.delete(pos, deleted);
       updateStateId();
-      notifyStateChangeListeners(pos, -length);
+      notifyStateChangeListeners(pos, -deleted, "");
     }
     catch (StringIndexOutOfBoundsException e) {
       System.out.println("********");
       System.out.println("FAILED TO DELETE: " + length);
       System.out.println("        POSITION: " + pos);
-      System.out.println("      BUFFER LEN: " + buffer.length());
+      System.out.println("      BUFFER LEN: " + rope.length());
       throw new OTException("could not update state", e);
     }
   }
 
   private void updateStateId() {
-    final String string = buffer.toString();
-    stateId = createHashFor(string);
+    stateId = rope.getHash();
   }
 
-  private void notifyStateChangeListeners(final int pos, final int offset) {
+  private void notifyStateChangeListeners(final int pos, final int offset, final String insertedText) {
+    // only materialized for listeners which want the whole value, and then only once.
+    String value = null;
+
     for (final StateChangeListener listener : stateChangeListeners) {
       int cursorPos = listener.getCursorPos();
       if (cursorPos > pos) {
@@ -126,26 +118,32 @@ public class StringState implements State<String> {
         cursorPos = length();
       }
 
-      listener.onStateChange(cursorPos, buffer.toString());
+      if (listener instanceof StateDeltaListener) {
+        ((StateDeltaListener) listener).onStateDelta(cursorPos, pos, offset < 0 ? -offset : 0, insertedText);
+      }
+      else {
+        if (value == null) {
+          value = rope.toString();
+        }
+        listener.onStateChange(cursorPos, value);
+      }
     }
   }
 
   @Override
   public String get() {
-    return buffer.toString();
+    return rope.toString();
   }
 
   @Override
   public State<String> snapshot() {
-    return of(buffer.toString());
+    return new StringState(rope);
   }
 
-  @SuppressWarnings("RedundantStringToString")
   @Override
   public void syncStateFrom(final State<String> fromState) {
     if (fromState instanceof StringState) {
-      clear();
-      buffer.append(fromState.get().toString());
+      rope = ((StringState) fromState).rope;
       updateStateId();
     }
     else {
@@ -160,12 +158,12 @@ public class StringState implements State<String> {
 
   @Override
   public void clear() {
-    buffer.delete(0, buffer.length());
+    rope = HashedRope.EMPTY;
   }
 
   @Override
   public State<String> getTransientState() {
-    return new StringState(new StringBuffer(buffer));
+    return new StringState(rope);
   }
 
   @Override
@@ -175,7 +173,7 @@ public class StringState implements State<String> {
 
   @Override
   public int length() {
-    return buffer.length();
+    return rope.length();
   }
 
   @Override
@@ -189,27 +187,8 @@ public class StringState implements State<String> {
     };
   }
 
-  private static String createHashFor(final String string) {
-    try {
-      final Md5Digest digest = new Md5Digest();
-      digest.update(string.getBytes("UTF-8"));
-      return hashToHexString(digest.digest());
-    }
-    catch (Throwable e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  private static String hashToHexString(final byte[] hash) {
-    final StringBuilder hexString = new StringBuilder(hash.length);
-    for (final byte mdbyte : hash) {
-      hexString.append(Integer.toHexString(0xFF & mdbyte));
-    }
-    return hexString.toString();
-  }
-
   @Override
   public String toString() {
-    return "\"" + buffer.toString() + "\"";
+    return "\"" + rope.toString() + "\"";
   }
 }
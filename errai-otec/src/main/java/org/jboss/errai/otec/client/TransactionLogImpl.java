@@ -22,23 +22,67 @@ import org.jboss.errai.otec.client.mutation.Mutation;
 import org.jboss.errai.otec.client.operation.OTOperation;
 
 /**
+ * The transaction log of an entity.
+ * <p/>
+ * The operations are kept in an array, along with their revisions and, for every operation, the position of the
+ * previous operation of the same agent. As long as the revisions in the log do not decrease, which is the case unless
+ * operations have been pruned, positions are found by binary search and the operations of an agent are found by
+ * following their chain rather than by scanning the log.
+ * <p/>
+ * Every change publishes a new {@link Entries} holder, which is never modified afterwards (appends only write past the
+ * end of the arrays it sees), so the queries read the log without taking the lock.
+ * <p/>
+ * To keep {@link #getEffectiveStateForRevision(int)} from replaying the whole history, the log caches the replayed
+ * state every <tt>snapshotInterval</tt> canon operations, or every <tt>snapshotMillis</tt> milliseconds. These
+ * checkpoints are dropped whenever the canon history changes, and are never used to drop operations: that is left to
+ * {@link #purgeTo(int)}, as only the peers know which revisions are still needed.
+ *
  * @author Christian Sadilek <csadilek@redhat.com>
  * @author Mike Brock
  */
 public class TransactionLogImpl implements TransactionLog {
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 128;
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int MAX_CHECKPOINTS = 16;
+
   private final Object lock = new Object();
 
-  private final List<StateSnapshot> stateSnapshots = new LinkedList<StateSnapshot>();
-  private final List<OTOperation> transactionLog = new LinkedList<OTOperation>();
   private final OTEntity entity;
+  private final int snapshotInterval;
+  private final long snapshotMillis;
+
+  private volatile Entries entries;
+
+  /**
+   * Guarded by lock.
+   */
+  private int opsSinceCheckpoint;
+  private long lastCheckpointTime;
 
-  private TransactionLogImpl(final OTEntity entity) {
+  private TransactionLogImpl(final OTEntity entity, final int snapshotInterval, final long snapshotMillis) {
     this.entity = entity;
-    stateSnapshots.add(new StateSnapshot(entity.getRevision(), entity.getState().snapshot()));
+    this.snapshotInterval = snapshotInterval;
+    this.snapshotMillis = snapshotMillis;
+    this.lastCheckpointTime = System.currentTimeMillis();
+    this.entries = Entries.build(Collections.<OTOperation>emptyList(),
+        new StateSnapshot[]{new StateSnapshot(entity.getRevision(), entity.getState().snapshot())});
   }
 
   public static TransactionLog createTransactionLog(final OTEntity entity) {
-    return new TransactionLogImpl(entity);
+    return new TransactionLogImpl(entity, DEFAULT_SNAPSHOT_INTERVAL, 0);
+  }
+
+  /**
+   * @param snapshotInterval
+   *     the number of canon operations after which the replayed state is cached, or 0 to not cache it by size.
+   * @param snapshotMillis
+   *     the time in milliseconds after which the replayed state is cached, or 0 to not cache it by time.
+   */
+  public static TransactionLog createTransactionLog(final OTEntity entity,
+                                                    final int snapshotInterval,
+                                                    final long snapshotMillis) {
+    return new TransactionLogImpl(entity, snapshotInterval, snapshotMillis);
   }
 
   @Override
@@ -46,11 +90,12 @@ public class TransactionLogImpl implements TransactionLog {
     return lock;
   }
 
+  /**
+   * Returns a read-only view of the log as it is now.
+   */
   @Override
   public List<OTOperation> getLog() {
-    synchronized (lock) {
-      return transactionLog;
-    }
+    return new LogView(entries);
   }
 
   @Override
@@ -65,30 +110,25 @@ public class TransactionLogImpl implements TransactionLog {
 
       makeSnapshot(revision, effectiveStateForRevision.getEffectiveState());
 
+      final Entries e = entries;
+
       int purged = 0;
-      final Iterator<OTOperation> iterator = transactionLog.iterator();
-      while (iterator.hasNext()) {
-        if (iterator.next().getRevision() < revision) {
-          purged++;
-          iterator.remove();
-        }
-        else {
-          break;
-        }
+      while (purged < e.size && e.ops[purged].getRevision() < revision) {
+        purged++;
       }
 
-      if (stateSnapshots.size() > 1) {
-        final Iterator<StateSnapshot> iterator1 = stateSnapshots.iterator();
-        while (iterator1.hasNext()) {
-          if (iterator1.next().getRevision() < revision) {
-            iterator1.remove();
-          }
-          else {
-            break;
-          }
+      StateSnapshot[] snapshots = e.snapshots;
+      if (snapshots.length > 1) {
+        int from = 0;
+        while (from < snapshots.length && snapshots[from].getRevision() < revision) {
+          from++;
         }
+        snapshots = new StateSnapshot[e.snapshots.length - from];
+        System.arraycopy(e.snapshots, from, snapshots, 0, snapshots.length);
       }
 
+      entries = Entries.build(e.asList().subList(purged, e.size), snapshots);
+
       return purged;
     }
   }
@@ -96,15 +136,15 @@ public class TransactionLogImpl implements TransactionLog {
   @Override
   public void pruneFromOperation(final OTOperation operation) {
     synchronized (lock) {
-      final int index = transactionLog.indexOf(operation);
+      final Entries e = entries;
+      final int index = e.asList().indexOf(operation);
       if (index == -1) {
         return;
       }
 
-      final ListIterator<OTOperation> delIter = transactionLog.listIterator(index);
-      while (delIter.hasNext()) {
+      for (int i = index; i < e.size; i++) {
         entity.decrementRevisionCounter();
-        final OTOperation next = delIter.next();
+        final OTOperation next = e.ops[i];
 
         final OTOperation outerPath = next.getOuterPath();
         if (outerPath != next && outerPath.getTransformedFrom() != null) {
@@ -116,52 +156,61 @@ public class TransactionLogImpl implements TransactionLog {
 
         next.removeFromCanonHistory();
       }
+
+      markDirty();
     }
   }
 
   @Override
   public List<OTOperation> getLocalOpsSinceRemoteOperation(final OTOperation operation, final boolean includeNonCanon) {
-    synchronized (lock) {
-      if (transactionLog.isEmpty()) {
-        return Collections.emptyList();
-      }
+    final Entries e = entries;
+    if (e.size == 0) {
+      return Collections.emptyList();
+    }
 
-      final ListIterator<OTOperation> operationListIterator = transactionLog.listIterator(transactionLog.size());
-      final List<OTOperation> operationList = new ArrayList<OTOperation>();
-      final int revision = operation.getRevision();
+    final List<OTOperation> operationList = new ArrayList<OTOperation>();
+    final int revision = operation.getRevision();
 
-      while (operationListIterator.hasPrevious()) {
-        final OTOperation previous = operationListIterator.previous();
+    for (int i = e.size - 1; i >= 0; i--) {
+      final OTOperation previous = e.ops[i];
 
-        if (!includeNonCanon && !previous.isCanon()) {
-          continue;
-        }
+      if (!includeNonCanon && !previous.isCanon()) {
+        continue;
+      }
 
-        operationList.add(previous);
+      operationList.add(previous);
 
-        if (previous.getRevision() == revision || previous.getRevisionHash().equals(operation.getRevisionHash())) {
-          Collections.reverse(operationList);
-          return operationList;
-        }
+      if (previous.getRevision() == revision || previous.getRevisionHash().equals(operation.getRevisionHash())) {
+        Collections.reverse(operationList);
+        return operationList;
       }
+    }
 
-      if ((revision - 1) == transactionLog.get(transactionLog.size() - 1).getRevision()) {
-        return Collections.emptyList();
-      }
-      else {
-        throw new OTException("unable to find revision in log: " + revision + "; op=" + operation);
-      }
+    if ((revision - 1) == e.revisions[e.size - 1]) {
+      return Collections.emptyList();
+    }
+    else {
+      throw new OTException("unable to find revision in log: " + revision + "; op=" + operation);
     }
   }
 
   @Override
   public List<OTOperation> getRemoteOpsSinceRevision(final String agentId, final int rev) {
-    synchronized (lock) {
-      final ListIterator<OTOperation> iter = transactionLog.listIterator(transactionLog.size());
-
-      final List<OTOperation> collect = new LinkedList<OTOperation>();
-      while (iter.hasPrevious()) {
-        final OTOperation previous = iter.previous();
+    final Entries e = entries;
+    final List<OTOperation> collect = new ArrayList<OTOperation>();
+
+    if (e.monotone) {
+      final Integer slot = e.agentSlots.get(agentId);
+      if (slot != null) {
+        final int from = e.lowerBound(rev);
+        for (int i = e.lastOfAgent[slot]; i >= from; i = e.prevOfAgent[i]) {
+          collect.add(e.ops[i]);
+        }
+      }
+    }
+    else {
+      for (int i = e.size - 1; i >= 0; i--) {
+        final OTOperation previous = e.ops[i];
         if (previous.getRevision() < rev) {
           break;
         }
@@ -169,84 +218,79 @@ public class TransactionLogImpl implements TransactionLog {
           collect.add(previous);
         }
       }
+    }
 
-      Collections.reverse(collect);
+    Collections.reverse(collect);
 
-      return collect;
-    }
+    return collect;
   }
 
   @Override
   public List<OTOperation> getCanonLog() {
-    synchronized (lock) {
-      final List<OTOperation> canonLog = new ArrayList<OTOperation>(transactionLog.size());
-      for (final OTOperation operation : transactionLog) {
-        if (operation.isCanon()) {
-          canonLog.add(operation);
-        }
+    final Entries e = entries;
+    final List<OTOperation> canonLog = new ArrayList<OTOperation>(e.size);
+    for (int i = 0; i < e.size; i++) {
+      if (e.ops[i].isCanon()) {
+        canonLog.add(e.ops[i]);
       }
-      return canonLog;
     }
+    return canonLog;
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public LogQuery getEffectiveStateForRevision(final int revision) {
-    synchronized (lock) {
-      final StateSnapshot latestSnapshotState = getLatestParentSnapshot(revision);
-      final State stateToTranslate = latestSnapshotState.getState().snapshot();
-
-      final ListIterator<OTOperation> operationListIterator
-          = transactionLog.listIterator(transactionLog.size());
-
-      while (operationListIterator.hasPrevious()) {
-        if (operationListIterator.previous().getRevision() == latestSnapshotState.getRevision()) {
-          break;
-        }
-      }
+    final Entries e = entries;
+    final StateSnapshot latestSnapshotState = e.getLatestParentSnapshot(revision);
+    final Checkpoint checkpoint = e.getLatestCheckpoint(latestSnapshotState, revision);
+
+    final State stateToTranslate;
+    int position;
+    if (checkpoint != null) {
+      stateToTranslate = checkpoint.state.snapshot();
+      position = checkpoint.position;
+    }
+    else {
+      stateToTranslate = latestSnapshotState.getState().snapshot();
+      position = Math.max(0, e.lastPositionOf(latestSnapshotState.getRevision()));
+    }
 
-      final Set<OTOperation> contingent = new LinkedHashSet<OTOperation>();
-      final List<OTOperation> needsMerge = new LinkedList<OTOperation>();
-      while (operationListIterator.hasNext()) {
-        final OTOperation op = operationListIterator.next();
+    final Set<OTOperation> contingent = new LinkedHashSet<OTOperation>();
+    if (checkpoint != null) {
+      contingent.addAll(checkpoint.contingent);
+    }
 
-        if (!op.isCanon()) {
-          continue;
-        }
+    final List<OTOperation> needsMerge = new ArrayList<OTOperation>();
+    for (; position < e.size; position++) {
+      final OTOperation op = e.ops[position];
 
-        if (op.getRevision() < revision) {
-          for (final Mutation mutation : op.getMutations()) {
-            mutation.apply(stateToTranslate);
-          }
-          contingent.add(op.getOuterPath());
-        }
-        else {
-          needsMerge.add(op);
-        }
+      if (!op.isCanon()) {
+        continue;
       }
 
-      return new LogQuery(stateToTranslate, contingent, needsMerge);
-    }
-  }
-
-  private StateSnapshot getLatestParentSnapshot(final int revision) {
-    synchronized (lock) {
-      final ListIterator<StateSnapshot> snapshotListIterator = stateSnapshots.listIterator(stateSnapshots.size());
-
-      while (snapshotListIterator.hasPrevious()) {
-        final StateSnapshot stateSnapshot = snapshotListIterator.previous();
-        if (stateSnapshot.getRevision() <= revision) {
-          return stateSnapshot;
+      if (op.getRevision() < revision) {
+        for (final Mutation mutation : op.getMutations()) {
+          mutation.apply(stateToTranslate);
         }
+        contingent.add(op.getOuterPath());
+      }
+      else {
+        needsMerge.add(op);
       }
-
-      throw new RuntimeException("no parent state for: " + revision);
     }
+
+    return new LogQuery(stateToTranslate, contingent, needsMerge);
   }
 
   private void makeSnapshot(final int revision, final State state) {
-    stateSnapshots.add(new StateSnapshot(revision, state.getTransientState()));
-    cleanLog();
+    synchronized (lock) {
+      final Entries e = entries;
+      final StateSnapshot[] snapshots = new StateSnapshot[e.snapshots.length + 1];
+      System.arraycopy(e.snapshots, 0, snapshots, 0, e.snapshots.length);
+      snapshots[e.snapshots.length] = new StateSnapshot(revision, state.getTransientState());
+      entries = e.withSnapshots(snapshots);
+      cleanLog();
+    }
   }
 
   @Override
@@ -256,28 +300,83 @@ public class TransactionLogImpl implements TransactionLog {
         return;
       }
 
-      transactionLog.add(operation);
+      entries = entries.append(operation);
+
+      if (operation.isCanon()) {
+        opsSinceCheckpoint++;
+      }
+      if (isCheckpointDue()) {
+        checkpoint();
+      }
     }
   }
 
+  private boolean isCheckpointDue() {
+    if (opsSinceCheckpoint == 0 || !entries.monotone) {
+      return false;
+    }
+    if (snapshotInterval > 0 && opsSinceCheckpoint >= snapshotInterval) {
+      return true;
+    }
+    return snapshotMillis > 0 && System.currentTimeMillis() - lastCheckpointTime >= snapshotMillis;
+  }
+
+  /**
+   * Caches the state for the revision of the last operation in the log, so later queries only have to replay the
+   * operations which follow it.
+   */
+  private void checkpoint() {
+    final Entries e = entries;
+    final int revision = e.revisions[e.size - 1];
+    final StateSnapshot parent = e.getLatestParentSnapshot(revision);
+    final Checkpoint latest = e.getLatestCheckpoint(parent, revision);
+
+    opsSinceCheckpoint = 0;
+    lastCheckpointTime = System.currentTimeMillis();
+
+    // the replay has to start before the operations of this revision, or there is nothing to cache.
+    if (parent.getRevision() >= revision || (latest != null && latest.revision == revision)) {
+      return;
+    }
+
+    final LogQuery query = getEffectiveStateForRevision(revision);
+    final Checkpoint checkpoint = new Checkpoint(parent, revision, e.lowerBound(revision), query.getEffectiveState(),
+        query.getContingentOps());
+
+    // keep the most recent ones, as transforms rarely rewind far.
+    final int kept = Math.min(e.checkpoints.length, MAX_CHECKPOINTS - 1);
+    final Checkpoint[] checkpoints = new Checkpoint[kept + 1];
+    System.arraycopy(e.checkpoints, e.checkpoints.length - kept, checkpoints, 0, kept);
+    checkpoints[kept] = checkpoint;
+
+    entries = e.withCheckpoints(checkpoints);
+  }
+
   @Override
   public void insertLog(final int revision, final OTOperation operation) {
     synchronized (lock) {
-      final ListIterator<OTOperation> operationListIterator
-          = transactionLog.listIterator(transactionLog.size());
-
-      while (operationListIterator.hasPrevious()) {
-        if (operationListIterator.previous().getRevision() == revision) {
-          operationListIterator.set(operation);
-          break;
-        }
+      final Entries e = entries;
+      final int position = e.lastPositionOf(revision);
+      if (position == -1) {
+        return;
       }
+
+      final List<OTOperation> ops = new ArrayList<OTOperation>(e.asList());
+      ops.set(position, operation);
+      entries = Entries.build(ops, e.snapshots);
     }
   }
 
+  /**
+   * Drops the cached states, which may include operations that have since been removed from the canon history.
+   */
   @Override
   public void markDirty() {
     synchronized (lock) {
+      final Entries e = entries;
+      if (e.checkpoints.length > 0) {
+        entries = e.withCheckpoints(new Checkpoint[0]);
+      }
     }
   }
 
@@ -293,22 +392,29 @@ public class TransactionLogImpl implements TransactionLog {
 
   private void cleanLogTo(final int rev) {
     synchronized (lock) {
+      final Entries e = entries;
       final Set<OTOperation> applied = new HashSet<OTOperation>();
+      final List<OTOperation> kept = new ArrayList<OTOperation>(e.size);
 
-      final Iterator<OTOperation> iterator = transactionLog.iterator();
-      while (iterator.hasNext()) {
-        final OTOperation next = iterator.next();
+      int i = 0;
+      for (; i < e.size; i++) {
+        final OTOperation next = e.ops[i];
         if (next.getRevision() > rev) {
-          return;
+          break;
         }
 
-        if (!next.isCanon() || applied.contains(next)) {
-          iterator.remove();
-        }
-        else {
+        if (next.isCanon() && !applied.contains(next)) {
+          kept.add(next);
           applied.add(next.getOuterPath());
         }
       }
+
+      if (kept.size() == i) {
+        return;
+      }
+
+      kept.addAll(e.asList().subList(i, e.size));
+      entries = Entries.build(kept, e.snapshots);
     }
   }
 
@@ -317,6 +423,192 @@ public class TransactionLogImpl implements TransactionLog {
     return Arrays.toString(getCanonLog().toArray());
   }
 
+  private static int[] copyOf(final int[] array, final int length) {
+    final int[] copy = new int[length];
+    System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+    return copy;
+  }
+
+  /**
+   * The contents of the log at one point in time. The arrays may be longer than <tt>size</tt> and shared with later
+   * holders, which append past <tt>size</tt>; nothing below <tt>size</tt> is ever written once the holder is published.
+   */
+  private static final class Entries {
+    private final OTOperation[] ops;
+    private final int[] revisions;
+    private final int[] prevOfAgent;
+    private final int size;
+
+    /**
+     * Whether the revisions never decrease along the log, which makes them searchable.
+     */
+    private final boolean monotone;
+
+    private final Map<String, Integer> agentSlots;
+    private final int[] lastOfAgent;
+
+    private final StateSnapshot[] snapshots;
+    private final Checkpoint[] checkpoints;
+
+    private Entries(final OTOperation[] ops,
+                    final int[] revisions,
+                    final int[] prevOfAgent,
+                    final int size,
+                    final boolean monotone,
+                    final Map<String, Integer> agentSlots,
+                    final int[] lastOfAgent,
+                    final StateSnapshot[] snapshots,
+                    final Checkpoint[] checkpoints) {
+      this.ops = ops;
+      this.revisions = revisions;
+      this.prevOfAgent = prevOfAgent;
+      this.size = size;
+      this.monotone = monotone;
+      this.agentSlots = agentSlots;
+      this.lastOfAgent = lastOfAgent;
+      this.snapshots = snapshots;
+      this.checkpoints = checkpoints;
+    }
+
+    private static Entries build(final List<OTOperation> operations, final StateSnapshot[] snapshots) {
+      final int capacity = Math.max(INITIAL_CAPACITY, operations.size() + operations.size() / 2);
+      Entries e = new Entries(new OTOperation[capacity], new int[capacity], new int[capacity], 0, true,
+          new HashMap<String, Integer>(), new int[0], snapshots, new Checkpoint[0]);
+      for (final OTOperation operation : operations) {
+        e = e.append(operation);
+      }
+      return e;
+    }
+
+    private Entries append(final OTOperation operation) {
+      OTOperation[] ops = this.ops;
+      int[] revisions = this.revisions;
+      int[] prevOfAgent = this.prevOfAgent;
+      if (size == ops.length) {
+        final int capacity = size + (size >> 1) + 1;
+        ops = new OTOperation[capacity];
+        System.arraycopy(this.ops, 0, ops, 0, size);
+        revisions = copyOf(revisions, capacity);
+        prevOfAgent = copyOf(prevOfAgent, capacity);
+      }
+
+      final int revision = operation.getRevision();
+      ops[size] = operation;
+      revisions[size] = revision;
+
+      Map<String, Integer> agentSlots = this.agentSlots;
+      final int[] lastOfAgent;
+      final Integer slot = agentSlots.get(operation.getAgentId());
+      if (slot == null) {
+        agentSlots = new HashMap<String, Integer>(agentSlots);
+        agentSlots.put(operation.getAgentId(), this.lastOfAgent.length);
+        lastOfAgent = copyOf(this.lastOfAgent, this.lastOfAgent.length + 1);
+        prevOfAgent[size] = -1;
+        lastOfAgent[this.lastOfAgent.length] = size;
+      }
+      else {
+        lastOfAgent = copyOf(this.lastOfAgent, this.lastOfAgent.length);
+        prevOfAgent[size] = lastOfAgent[slot];
+        lastOfAgent[slot] = size;
+      }
+
+      final boolean monotone = this.monotone && (size == 0 || revision >= revisions[size - 1]);
+
+      // the checkpoints rely on the revisions being ordered.
+      return new Entries(ops, revisions, prevOfAgent, size + 1, monotone, agentSlots, lastOfAgent, snapshots,
+          monotone ? checkpoints : new Checkpoint[0]);
+    }
+
+    private Entries withSnapshots(final StateSnapshot[] snapshots) {
+      return new Entries(ops, revisions, prevOfAgent, size, monotone, agentSlots, lastOfAgent, snapshots, checkpoints);
+    }
+
+    private Entries withCheckpoints(final Checkpoint[] checkpoints) {
+      return new Entries(ops, revisions, prevOfAgent, size, monotone, agentSlots, lastOfAgent, snapshots, checkpoints);
+    }
+
+    /**
+     * Returns the position of the first operation with a revision of at least the specified one. Only valid if the log
+     * is monotone.
+     */
+    private int lowerBound(final int revision) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (revisions[mid] < revision) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns the position of the last operation with the specified revision, or -1 if there is none.
+     */
+    private int lastPositionOf(final int revision) {
+      if (monotone) {
+        final int position = lowerBound(revision + 1) - 1;
+        return position >= 0 && revisions[position] == revision ? position : -1;
+      }
+
+      for (int i = size - 1; i >= 0; i--) {
+        if (revisions[i] == revision) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private StateSnapshot getLatestParentSnapshot(final int revision) {
+      for (int i = snapshots.length - 1; i >= 0; i--) {
+        if (snapshots[i].getRevision() <= revision) {
+          return snapshots[i];
+        }
+      }
+
+      throw new RuntimeException("no parent state for: " + revision);
+    }
+
+    private Checkpoint getLatestCheckpoint(final StateSnapshot parent, final int revision) {
+      for (int i = checkpoints.length - 1; i >= 0; i--) {
+        final Checkpoint checkpoint = checkpoints[i];
+        if (checkpoint.parent == parent && checkpoint.revision <= revision) {
+          return checkpoint;
+        }
+      }
+      return null;
+    }
+
+    private List<OTOperation> asList() {
+      return new LogView(this);
+    }
+  }
+
+  private static final class LogView extends AbstractList<OTOperation> {
+    private final Entries entries;
+
+    private LogView(final Entries entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public OTOperation get(final int index) {
+      if (index < 0 || index >= entries.size) {
+        throw new IndexOutOfBoundsException("index: " + index + "; size: " + entries.size);
+      }
+      return entries.ops[index];
+    }
+
+    @Override
+    public int size() {
+      return entries.size;
+    }
+  }
+
   private static class StateSnapshot {
     private final int revision;
     private final State state;
@@ -334,4 +626,26 @@ public class TransactionLogImpl implements TransactionLog {
       return state;
     }
   }
+
+  /**
+   * The state replayed from a snapshot up to, but not including, the operations of a revision, which start at
+   * <tt>position</tt> in the log, along with the operations which were replayed to reach it. A query starting from the
+   * checkpoint reports those as contingent, just as if it had replayed them itself.
+   */
+  private static class Checkpoint {
+    private final StateSnapshot parent;
+    private final int revision;
+    private final int position;
+    private final State state;
+    private final Set<OTOperation> contingent;
+
+    private Checkpoint(final StateSnapshot parent, final int revision, final int position, final State state,
+                       final Set<OTOperation> contingent) {
+      this.parent = parent;
+      this.revision = revision;
+      this.position = position;
+      this.state = state;
+      this.contingent = contingent;
+    }
+  }
 }
@@ -148,6 +148,7 @@ public class Transformer {
 
           if (changedLocally) {
             localOp.removeFromCanonHistory();
+            transactionLog.markDirty();
             entity.decrementRevisionCounter();
           }
 
@@ -375,6 +376,7 @@ public class Transformer {
                       remoteOp);
 
                   localOp.removeFromCanonHistory();
+                  transactionLog.markDirty();
 
                   entity.getState().syncStateFrom(rewind);
 
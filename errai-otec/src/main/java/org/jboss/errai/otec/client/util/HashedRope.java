@@ -0,0 +1,351 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.otec.client.util;
+
+/**
+ * An immutable rope of text which keeps a polynomial hash of its contents up to date as it is edited. The text is held
+ * in chunks of a few hundred characters at the leaves of a balanced tree (a treap), and every node carries the length
+ * and hash of its subtree, so inserting or deleting text only rebuilds the chunks touched by the edit and the nodes
+ * above them. The cost of an edit depends on the size of the edit and the logarithm of the size of the text, rather
+ * than the size of the text.
+ * <p/>
+ * The hash of a text only depends on its characters, never on how it was chunked or edited, so ropes which were edited
+ * differently but hold the same text have the same hash. It is meant for comparing replicas of a document, not as a
+ * cryptographic digest.
+ * <p/>
+ * Edits return a new rope and leave the old one untouched, with both sharing the parts of the tree which did not
+ * change, so taking a snapshot of a rope is free.
+ */
+public final class HashedRope {
+  /**
+   * Chunks are split once they grow beyond this many characters.
+   */
+  private static final int MAX_CHUNK = 512;
+  private static final int SPLIT_CHUNK = MAX_CHUNK / 2;
+
+  // two 31-bit hashes, so products fit into a long. The bases are primes larger than any char, so that distinct
+  // strings of UTF-16 code units do not collide trivially (with a base below the alphabet, "\u0001\u0000" and a
+  // single char of the base value hash the same).
+  private static final long MOD_1 = 2147483647L;
+  private static final long MOD_2 = 2147483629L;
+  private static final long BASE_1 = 1000000007L;
+  private static final long BASE_2 = 998244353L;
+
+  public static final HashedRope EMPTY = new HashedRope(null);
+
+  private static int prioritySeed = 0x2545F491;
+
+  private final Node root;
+
+  private HashedRope(final Node root) {
+    this.root = root;
+  }
+
+  public static HashedRope of(final String text) {
+    return new HashedRope(buildChunks(text, 0, text.length()));
+  }
+
+  public int length() {
+    return root == null ? 0 : root.length;
+  }
+
+  /**
+   * Returns a hash of the text, which is the same for all ropes holding the same text.
+   */
+  public String getHash() {
+    final StringBuilder sb = new StringBuilder(16);
+    appendHex(sb, root == null ? 0 : root.hash1);
+    appendHex(sb, root == null ? 0 : root.hash2);
+    return sb.toString();
+  }
+
+  /**
+   * Returns a rope with the specified text inserted at the specified position.
+   *
+   * @throws StringIndexOutOfBoundsException
+   *     if the position is outside of the text.
+   */
+  public HashedRope insert(final int pos, final String text) {
+    checkPosition(pos);
+    if (text.length() == 0) {
+      return this;
+    }
+    if (root == null) {
+      return of(text);
+    }
+
+    // the chunk the text is inserted into: the one containing pos, or the last one when appending.
+    final int chunk = pos == length() ? root.size - 1 : chunkAt(root, pos);
+    final Node[] parts = split(root, chunk);
+    final Node[] rest = split(parts[1], 1);
+    final Node target = rest[0];
+
+    final int offset = pos - lengthOf(parts[0]);
+    final String edited = target.text.substring(0, offset) + text + target.text.substring(offset);
+
+    return new HashedRope(merge(merge(parts[0], buildChunks(edited, 0, edited.length())), rest[1]));
+  }
+
+  /**
+   * Returns a rope with the specified range of characters removed.
+   *
+   * @throws StringIndexOutOfBoundsException
+   *     if the range is not within the text.
+   */
+  public HashedRope delete(final int pos, final int length) {
+    if (length < 0) {
+      throw new StringIndexOutOfBoundsException(length);
+    }
+    checkPosition(pos);
+    checkPosition(pos + length);
+    if (length == 0) {
+      return this;
+    }
+
+    final int first = chunkAt(root, pos);
+    final int last = chunkAt(root, pos + length - 1);
+
+    final Node[] parts = split(root, first);
+    final Node[] rest = split(parts[1], last - first + 1);
+
+    final String firstText = firstChunk(rest[0]).text;
+    final String lastText = lastChunk(rest[0]).text;
+    final int start = pos - lengthOf(parts[0]);
+    final int end = pos + length - (lengthOf(parts[0]) + lengthOf(rest[0]) - lastText.length());
+
+    final String remaining = firstText.substring(0, start) + lastText.substring(end);
+
+    return new HashedRope(merge(merge(parts[0], buildChunks(remaining, 0, remaining.length())), rest[1]));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(length());
+    appendTo(root, sb);
+    return sb.toString();
+  }
+
+  private void checkPosition(final int pos) {
+    if (pos < 0 || pos > length()) {
+      throw new StringIndexOutOfBoundsException(pos);
+    }
+  }
+
+  private static final class Node {
+    private final String text;
+    private final int priority;
+    private final Node left;
+    private final Node right;
+
+    // aggregates over the subtree.
+    private final int size;
+    private final int length;
+    private final long hash1;
+    private final long hash2;
+    private final long power1;
+    private final long power2;
+
+    // the hash of this node's own chunk, and the base raised to its length.
+    private final long chunkHash1;
+    private final long chunkHash2;
+    private final long chunkPower1;
+    private final long chunkPower2;
+
+    private Node(final String text) {
+      this.text = text;
+      this.priority = nextPriority();
+      this.left = null;
+      this.right = null;
+
+      long h1 = 0, h2 = 0, p1 = 1, p2 = 1;
+      for (int i = 0; i < text.length(); i++) {
+        final char c = text.charAt(i);
+        h1 = (h1 * BASE_1 + c) % MOD_1;
+        h2 = (h2 * BASE_2 + c) % MOD_2;
+        p1 = (p1 * BASE_1) % MOD_1;
+        p2 = (p2 * BASE_2) % MOD_2;
+      }
+      this.chunkHash1 = h1;
+      this.chunkHash2 = h2;
+      this.chunkPower1 = p1;
+      this.chunkPower2 = p2;
+
+      this.size = 1;
+      this.length = text.length();
+      this.hash1 = h1;
+      this.hash2 = h2;
+      this.power1 = p1;
+      this.power2 = p2;
+    }
+
+    private Node(final Node chunk, final Node left, final Node right) {
+      this.text = chunk.text;
+      this.priority = chunk.priority;
+      this.chunkHash1 = chunk.chunkHash1;
+      this.chunkHash2 = chunk.chunkHash2;
+      this.chunkPower1 = chunk.chunkPower1;
+      this.chunkPower2 = chunk.chunkPower2;
+      this.left = left;
+      this.right = right;
+
+      // hash(left + chunk + right) = (hash(left) * B^|chunk| + hash(chunk)) * B^|right| + hash(right)
+      long h1 = chunkHash1, h2 = chunkHash2, p1 = chunkPower1, p2 = chunkPower2;
+      int size = 1, length = text.length();
+      if (left != null) {
+        h1 = (left.hash1 * chunkPower1 + h1) % MOD_1;
+        h2 = (left.hash2 * chunkPower2 + h2) % MOD_2;
+        p1 = (left.power1 * p1) % MOD_1;
+        p2 = (left.power2 * p2) % MOD_2;
+        size += left.size;
+        length += left.length;
+      }
+      if (right != null) {
+        h1 = (h1 * right.power1 + right.hash1) % MOD_1;
+        h2 = (h2 * right.power2 + right.hash2) % MOD_2;
+        p1 = (p1 * right.power1) % MOD_1;
+        p2 = (p2 * right.power2) % MOD_2;
+        size += right.size;
+        length += right.length;
+      }
+      this.size = size;
+      this.length = length;
+      this.hash1 = h1;
+      this.hash2 = h2;
+      this.power1 = p1;
+      this.power2 = p2;
+    }
+  }
+
+  /**
+   * Builds a tree of chunks holding the specified range of the text, or null if the range is empty.
+   */
+  private static Node buildChunks(final String text, final int start, final int end) {
+    Node tree = null;
+    final int max = end - start > MAX_CHUNK ? SPLIT_CHUNK : MAX_CHUNK;
+    for (int i = start; i < end; i += max) {
+      tree = merge(tree, new Node(text.substring(i, Math.min(end, i + max))));
+    }
+    return tree;
+  }
+
+  /**
+   * Splits a tree into the first <tt>count</tt> chunks and the rest.
+   */
+  private static Node[] split(final Node node, final int count) {
+    if (node == null) {
+      return new Node[2];
+    }
+
+    final int leftSize = node.left == null ? 0 : node.left.size;
+    if (count <= leftSize) {
+      final Node[] parts = split(node.left, count);
+      parts[1] = new Node(node, parts[1], node.right);
+      return parts;
+    }
+    else {
+      final Node[] parts = split(node.right, count - leftSize - 1);
+      parts[0] = new Node(node, node.left, parts[0]);
+      return parts;
+    }
+  }
+
+  private static Node merge(final Node a, final Node b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+
+    if (a.priority > b.priority) {
+      return new Node(a, a.left, merge(a.right, b));
+    }
+    else {
+      return new Node(b, merge(a, b.left), b.right);
+    }
+  }
+
+  /**
+   * Returns the index of the chunk containing the character at the specified position.
+   */
+  private static int chunkAt(Node node, int pos) {
+    int index = 0;
+    while (node != null) {
+      final int leftLength = lengthOf(node.left);
+      if (pos < leftLength) {
+        node = node.left;
+      }
+      else if (pos < leftLength + node.text.length()) {
+        return index + (node.left == null ? 0 : node.left.size);
+      }
+      else {
+        pos -= leftLength + node.text.length();
+        index += (node.left == null ? 0 : node.left.size) + 1;
+        node = node.right;
+      }
+    }
+    throw new StringIndexOutOfBoundsException(pos);
+  }
+
+  private static Node firstChunk(Node node) {
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node;
+  }
+
+  private static Node lastChunk(Node node) {
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node;
+  }
+
+  private static int lengthOf(final Node node) {
+    return node == null ? 0 : node.length;
+  }
+
+  private static void appendTo(final Node node, final StringBuilder sb) {
+    if (node != null) {
+      appendTo(node.left, sb);
+      sb.append(node.text);
+      appendTo(node.right, sb);
+    }
+  }
+
+  private static void appendHex(final StringBuilder sb, final long value) {
+    final String hex = Long.toHexString(value);
+    for (int i = hex.length(); i < 8; i++) {
+      sb.append('0');
+    }
+    sb.append(hex);
+  }
+
+  /**
+   * Returns a pseudo-random priority from a xorshift generator. Priorities only need to be spread out to keep the tree
+   * balanced; they do not have to be unpredictable, and races on the seed are harmless.
+   */
+  private static int nextPriority() {
+    int x = prioritySeed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    prioritySeed = x;
+    return x;
+  }
+}
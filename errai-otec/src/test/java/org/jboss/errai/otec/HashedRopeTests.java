@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.otec;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+import org.jboss.errai.otec.client.StateDeltaListener;
+import org.jboss.errai.otec.client.StringState;
+import org.jboss.errai.otec.client.util.HashedRope;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class HashedRopeTests {
+
+  @Test
+  public void testRandomEditsMatchStringBuilder() {
+    final Random random = new Random(42);
+    final StringBuilder expected = new StringBuilder();
+    HashedRope rope = HashedRope.EMPTY;
+
+    for (int i = 0; i < 5000; i++) {
+      final int pos = random.nextInt(expected.length() + 1);
+      if (random.nextInt(3) > 0 || expected.length() == 0) {
+        final String text = randomText(random, random.nextInt(10) == 0 ? 700 : 1 + random.nextInt(5));
+        expected.insert(pos, text);
+        rope = rope.insert(pos, text);
+      }
+      else {
+        final int length = random.nextInt(Math.min(expected.length() - pos, 600) + 1);
+        expected.delete(pos, pos + length);
+        rope = rope.delete(pos, length);
+      }
+
+      assertEquals(expected.length(), rope.length());
+    }
+
+    assertEquals(expected.toString(), rope.toString());
+    assertEquals(HashedRope.of(expected.toString()).getHash(), rope.getHash());
+  }
+
+  @Test
+  public void testHashOnlyDependsOnText() {
+    final HashedRope typed = HashedRope.EMPTY.insert(0, "world").insert(0, "hello ").insert(11, "!");
+    final HashedRope edited = HashedRope.of("hello there world!").delete(6, 6);
+
+    assertEquals("hello world!", typed.toString());
+    assertEquals("hello world!", edited.toString());
+    assertEquals(HashedRope.of("hello world!").getHash(), typed.getHash());
+    assertEquals(typed.getHash(), edited.getHash());
+    assertFalse(typed.getHash().equals(HashedRope.of("hello world?").getHash()));
+    assertFalse(HashedRope.of("ab").getHash().equals(HashedRope.of("ba").getHash()));
+  }
+
+  @Test
+  public void testNonAsciiText() {
+    final String text = "caf\u00e9 \u65e5\u672c\u8a9e \ud83d\ude00 \uffff";
+    final HashedRope rope = HashedRope.EMPTY.insert(0, text.substring(8)).insert(0, text.substring(0, 8));
+
+    assertEquals(text, rope.toString());
+    assertEquals(HashedRope.of(text).getHash(), rope.getHash());
+    assertEquals("caf\u00e9 \ud83d\ude00 \uffff", rope.delete(5, 4).toString());
+
+    // chars beyond the base of a small polynomial hash must still produce distinct hashes.
+    assertFalse(HashedRope.of("\u0001\u0000").getHash().equals(HashedRope.of("\u0083").getHash()));
+    assertFalse(HashedRope.of("\u0001\u0000").getHash().equals(HashedRope.of("\u0101").getHash()));
+    assertFalse(HashedRope.of("\u00e9").getHash().equals(HashedRope.of("\u00e8").getHash()));
+  }
+
+  @Test
+  public void testDeltaListenerReceivesClampedDeleteLength() {
+    final StringState state = StringState.of("abc\u00e9");
+    final List<Integer> deleted = new ArrayList<Integer>();
+
+    state.addStateChangeListener(new StateDeltaListener() {
+      @Override
+      public void onStateDelta(final int newCursorPos, final int pos, final int deletedLength,
+                               final String insertedText) {
+        deleted.add(deletedLength);
+      }
+
+      @Override
+      public int getCursorPos() {
+        return 0;
+      }
+
+      @Override
+      public void onStateChange(final int newCursorPos, final Object newValue) {
+        throw new AssertionError("expected a delta");
+      }
+    });
+
+    state.delete(2, 10);
+
+    assertEquals("ab", state.get());
+    assertEquals(1, deleted.size());
+    assertEquals(Integer.valueOf(2), deleted.get(0));
+  }
+
+  @Test
+  public void testEditsLeaveEarlierRopesUntouched() {
+    final HashedRope original = HashedRope.of("abcdef");
+    final HashedRope edited = original.insert(3, "XYZ").delete(0, 1);
+
+    assertEquals("abcdef", original.toString());
+    assertEquals("bcXYZdef", edited.toString());
+  }
+
+  @Test(expected = StringIndexOutOfBoundsException.class)
+  public void testInsertOutOfBounds() {
+    HashedRope.of("abc").insert(4, "d");
+  }
+
+  @Test
+  public void testDeltaListenerReceivesChangeOnly() {
+    final StringState state = StringState.of("hello world");
+    final List<String> deltas = new ArrayList<String>();
+
+    state.addStateChangeListener(new StateDeltaListener() {
+      @Override
+      public void onStateDelta(final int newCursorPos, final int pos, final int deletedLength,
+                               final String insertedText) {
+        deltas.add(newCursorPos + ":" + pos + ":" + deletedLength + ":" + insertedText);
+      }
+
+      @Override
+      public int getCursorPos() {
+        return 11;
+      }
+
+      @Override
+      public void onStateChange(final int newCursorPos, final Object newValue) {
+        throw new AssertionError("expected a delta");
+      }
+    });
+
+    state.insert(5, ",");
+    state.delete(0, 1);
+
+    assertEquals("ello, world", state.get());
+    assertEquals(2, deltas.size());
+    assertEquals("12:5:0:,", deltas.get(0));
+    assertEquals("10:0:1:", deltas.get(1));
+
+    final StringState expected = StringState.of("ello, world");
+    expected.updateHash();
+    assertEquals(expected.getHash(), state.getHash());
+  }
+
+  private static String randomText(final Random random, final int length) {
+    final char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013 JBoss, by Red Hat, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.otec;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.jboss.errai.otec.client.mutation.MutationType.Insert;
+
+import org.jboss.errai.otec.client.LogQuery;
+import org.jboss.errai.otec.client.OTClientEngine;
+import org.jboss.errai.otec.client.OTEngine;
+import org.jboss.errai.otec.client.OTEntity;
+import org.jboss.errai.otec.client.StringState;
+import org.jboss.errai.otec.client.TransactionLog;
+import org.jboss.errai.otec.client.TransactionLogImpl;
+import org.jboss.errai.otec.client.operation.OTOperation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionLogTests {
+
+  private static OTOperation submit(final OTEngine localEngine, final OTEngine author, final OTEntity entity,
+                                    final TransactionLog reference, final int position, final String text) {
+    final OTOperation op = author.getOperationsFactory().createOperation(entity).add(Insert, position, text).build();
+    final OTOperation applied = ((OTClientEngine) localEngine).applyLocally(op);
+    reference.appendLog(applied);
+    return applied;
+  }
+
+  private static void assertSameQuery(final TransactionLog expected, final TransactionLog actual, final int revision) {
+    final LogQuery expectedQuery = expected.getEffectiveStateForRevision(revision);
+    final LogQuery actualQuery = actual.getEffectiveStateForRevision(revision);
+    assertEquals("state for " + revision,
+        expectedQuery.getEffectiveState().get(), actualQuery.getEffectiveState().get());
+    assertEquals("merge for " + revision,
+        expectedQuery.getLocalOpsNeedsMerge(), actualQuery.getLocalOpsNeedsMerge());
+    assertEquals("contingent for " + revision,
+        new ArrayList<OTOperation>(expectedQuery.getContingentOps()),
+        new ArrayList<OTOperation>(actualQuery.getContingentOps()));
+  }
+
+  @Test
+  public void testCachedStatesMatchFullReplay() {
+    final OTEngine engine = OTClientEngine.createEngineWithSinglePeer("ClientA");
+    final OTEntity entity = engine.getEntityStateSpace().addEntity(StringState.of(""));
+    final TransactionLog reference = TransactionLogImpl.createTransactionLog(entity, 0, 0);
+
+    for (int i = 0; i < 1000; i++) {
+      submit(engine, engine, entity, reference, i % 7, String.valueOf((char) ('a' + i % 26)));
+    }
+
+    for (int revision = 0; revision <= entity.getRevision(); revision += 13) {
+      assertSameQuery(reference, entity.getTransactionLog(), revision);
+    }
+    assertEquals(entity.getState().get(),
+        entity.getTransactionLog().getEffectiveStateForRevision(entity.getRevision()).getEffectiveState().get());
+  }
+
+  @Test
+  public void testCachedStatesDroppedWhenHistoryChanges() {
+    final OTEngine engine = OTClientEngine.createEngineWithSinglePeer("ClientA");
+    final OTEntity entity = engine.getEntityStateSpace().addEntity(StringState.of(""));
+    final TransactionLog reference = TransactionLogImpl.createTransactionLog(entity, 0, 0);
+
+    OTOperation early = null;
+    for (int i = 0; i < 600; i++) {
+      final OTOperation op = submit(engine, engine, entity, reference, 0, "x" + i + ";");
+      if (i == 10) {
+        early = op;
+      }
+    }
+
+    early.removeFromCanonHistory();
+    entity.getTransactionLog().markDirty();
+
+    for (int revision = 0; revision <= entity.getRevision(); revision += 31) {
+      assertSameQuery(reference, entity.getTransactionLog(), revision);
+    }
+  }
+
+  @Test
+  public void testRemoteOpsSinceRevisionOnlyReturnsTheAgentsOps() {
+    final OTEngine engine = OTClientEngine.createEngineWithSinglePeer("ClientA");
+    final OTEngine otherEngine = OTClientEngine.createEngineWithSinglePeer("ClientB");
+    final OTEntity entity = engine.getEntityStateSpace().addEntity(StringState.of(""));
+    final TransactionLog reference = TransactionLogImpl.createTransactionLog(entity, 0, 0);
+
+    for (int i = 0; i < 300; i++) {
+      submit(engine, i % 3 == 0 ? otherEngine : engine, entity, reference, 0, "z");
+    }
+
+    final List<OTOperation> remoteOps = entity.getTransactionLog().getRemoteOpsSinceRevision(otherEngine.getId(), 250);
+    assertEquals(16, remoteOps.size());
+
+    int lastRevision = 249;
+    for (final OTOperation op : remoteOps) {
+      assertEquals(otherEngine.getId(), op.getAgentId());
+      assertTrue(op.getRevision() > lastRevision);
+      lastRevision = op.getRevision();
+    }
+    assertEquals(reference.getRemoteOpsSinceRevision(otherEngine.getId(), 250), remoteOps);
+  }
+
+  @Test
+  public void testLogViewIsReadOnlyAndStable() {
+    final OTEngine engine = OTClientEngine.createEngineWithSinglePeer("ClientA");
+    final OTEntity entity = engine.getEntityStateSpace().addEntity(StringState.of(""));
+    final TransactionLog reference = TransactionLogImpl.createTransactionLog(entity, 0, 0);
+
+    final OTOperation op = submit(engine, engine, entity, reference, 0, "a");
+    final List<OTOperation> log = entity.getTransactionLog().getLog();
+    submit(engine, engine, entity, reference, 1, "b");
+
+    assertEquals(1, log.size());
+    assertTrue(log.contains(op));
+    assertEquals(2, entity.getTransactionLog().getLog().size());
+
+    boolean rejected = false;
+    try {
+      log.add(op);
+    }
+    catch (UnsupportedOperationException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+    assertFalse(entity.getTransactionLog().getCanonLog().isEmpty());
+  }
+}